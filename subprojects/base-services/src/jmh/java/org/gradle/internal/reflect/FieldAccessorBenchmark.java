@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.reflect;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares reading and writing bean fields through the {@link FieldAccessor} implementations,
+ * the way the instant execution bean codecs visit the state of a bean.
+ */
+@Fork(2)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class FieldAccessorBenchmark {
+
+    @Param({"reflection", "methodHandles"})
+    String mode;
+
+    private FieldAccessor[] accessors;
+    private Bean source;
+    private Bean target;
+
+    @Setup(Level.Trial)
+    public void setup() throws IllegalAccessException {
+        List<FieldAccessor> result = new ArrayList<>();
+        for (Field field : Bean.class.getDeclaredFields()) {
+            field.setAccessible(true);
+            result.add(mode.equals("reflection") ? new ReflectionBasedFieldAccessor(field) : new MethodHandleBasedFieldAccessor(field));
+        }
+        accessors = result.toArray(new FieldAccessor[0]);
+        source = new Bean();
+        target = new Bean();
+    }
+
+    @Benchmark
+    public void read(Blackhole bh) {
+        for (FieldAccessor accessor : accessors) {
+            bh.consume(accessor.get(source));
+        }
+    }
+
+    @Benchmark
+    public void copy() {
+        for (FieldAccessor accessor : accessors) {
+            accessor.set(target, accessor.get(source));
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static class Bean {
+        private String name = "name";
+        private Object value = new Object();
+        private List<String> values = new ArrayList<>();
+        private int count = 12;
+        private long size = 123L;
+        private boolean enabled = true;
+        private Integer boxed = 42;
+        private String description = "description";
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.reflect;
+
+import org.gradle.internal.UncheckedException;
+
+import java.lang.reflect.Field;
+
+/**
+ * A {@link FieldAccessor} that uses {@link Field#get(Object)} and {@link Field#set(Object, Object)}.
+ */
+public class ReflectionBasedFieldAccessor implements FieldAccessor {
+    private final Field field;
+
+    public ReflectionBasedFieldAccessor(Field field) {
+        this.field = field;
+    }
+
+    @Override
+    public Field getField() {
+        return field;
+    }
+
+    @Override
+    public Object get(Object bean) {
+        try {
+            return field.get(bean);
+        } catch (IllegalAccessException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    @Override
+    public void set(Object bean, Object value) {
+        try {
+            field.set(bean, value);
+        } catch (IllegalAccessException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return field.toString();
+    }
+}
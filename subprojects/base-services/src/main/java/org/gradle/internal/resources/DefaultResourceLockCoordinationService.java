@@ -22,6 +22,7 @@
 import org.gradle.internal.UncheckedException;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -95,7 +96,7 @@ public void notifyStateChange() {
         }
     }
 
-    private static class DefaultResourceLockState implements ResourceLockState {
+    static class DefaultResourceLockState implements ResourceLockState {
         private Set<ResourceLock> lockedResources;
         private Set<ResourceLock> unlockedResources;
         boolean rollback;
@@ -124,6 +125,10 @@ boolean hasUnlockedResources() {
             return unlockedResources != null && !unlockedResources.isEmpty();
         }
 
+        Set<ResourceLock> getUnlockedResources() {
+            return unlockedResources == null ? Collections.<ResourceLock>emptySet() : unlockedResources;
+        }
+
         @Override
         public void releaseLocks() {
             if (lockedResources != null) {
@@ -182,7 +187,7 @@ public static Transformer<ResourceLockState.Disposition, ResourceLockState> unlo
         return unlock(Arrays.asList(resourceLocks));
     }
 
-    private static class AcquireLocks implements Transformer<ResourceLockState.Disposition, ResourceLockState> {
+    static class AcquireLocks implements WaitingStateLockAction {
         private final Iterable<? extends ResourceLock> resourceLocks;
         private final boolean blocking;
 
@@ -191,6 +196,17 @@ private static class AcquireLocks implements Transformer<ResourceLockState.Dispo
             this.blocking = blocking;
         }
 
+        @Override
+        public Iterable<? extends ResourceLock> getAwaitedLocks() {
+            List<ResourceLock> awaitedLocks = Lists.newArrayList();
+            for (ResourceLock resourceLock : resourceLocks) {
+                if (!resourceLock.isLockedByCurrentThread()) {
+                    awaitedLocks.add(resourceLock);
+                }
+            }
+            return awaitedLocks;
+        }
+
         @Override
         public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
             for (ResourceLock resourceLock : resourceLocks) {
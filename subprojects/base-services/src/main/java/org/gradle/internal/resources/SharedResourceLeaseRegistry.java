@@ -39,6 +39,7 @@ public ResourceLock getResourceLock(final String sharedResource, final int lease
 
         // We don't want to cache lock instances here since it's valid for multiple threads to hold a lock on a given resource for a given number of leases.
         // For that reason we don't want to reuse lock instances, as it's very possible they can be concurrently held by multiple threads.
+        // The leases of a resource are instead pooled, so that releasing any of them wakes up the threads waiting for a lease of the same resource.
         return createResourceLock(displayName, new ResourceLockProducer<String, SharedResourceLease>() {
             @Override
             public SharedResourceLease create(String displayName, ResourceLockCoordinationService coordinationService, Action<ResourceLock> lockAction, Action<ResourceLock> unlockAction) {
@@ -47,7 +48,7 @@ public SharedResourceLease create(String displayName, ResourceLockCoordinationSe
         });
     }
 
-    public class SharedResourceLease extends AbstractTrackedResourceLock {
+    public class SharedResourceLease extends AbstractTrackedResourceLock implements PooledResourceLock {
         private final int leases;
         private final Pair<Integer, Semaphore> semaphore;
         private Thread ownerThread;
@@ -59,6 +60,11 @@ public class SharedResourceLease extends AbstractTrackedResourceLock {
             this.semaphore = sharedResources.get(sharedResource);
         }
 
+        @Override
+        public Object getResourcePool() {
+            return semaphore.getRight();
+        }
+
         @Override
         protected boolean acquireLock() {
             if (leases > semaphore.getLeft()) {
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resources;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.gradle.api.Transformer;
+import org.gradle.internal.UncheckedException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link ResourceLockCoordinationService} which wakes up waiting threads selectively, instead of notifying every waiting thread on each change.
+ *
+ * <p>Changes to the resource lock state are still applied atomically, one transform at a time, so the semantics of {@link ResourceLockState} are
+ * the same as for {@link DefaultResourceLockCoordinationService}. The waiting threads are partitioned into stripes:</p>
+ *
+ * <ul>
+ *     <li>A thread blocked in a {@link WaitingStateLockAction}, such as {@link DefaultResourceLockCoordinationService#lock(Iterable)}, waits only for the locks
+ *     the action is waiting for. Each lock is its own stripe, except for {@link PooledResourceLock}s which share a stripe with the other locks of their pool,
+ *     e.g. all worker leases.</li>
+ *     <li>A thread blocked in any other transform can depend on arbitrary state, so it is woken up whenever some resource lock is released.</li>
+ * </ul>
+ *
+ * <p>Each waiting thread has its own {@link Condition}, so only the threads waiting on a stripe with released locks are signalled.</p>
+ */
+public class StripedResourceLockCoordinationService implements ResourceLockCoordinationService {
+    public static final String STRIPED_COORDINATION_PROPERTY = "org.gradle.internal.resources.striped-coordination";
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<Waiter> waitingForAnyChange = Sets.newLinkedHashSet();
+    private final Map<Object, Set<Waiter>> waitingByStripe = Maps.newHashMap();
+    private final ThreadLocal<List<ResourceLockState>> currentState = new ThreadLocal<List<ResourceLockState>>() {
+        @Override
+        protected List<ResourceLockState> initialValue() {
+            return Lists.newArrayList();
+        }
+    };
+
+    @Override
+    public boolean withStateLock(Transformer<ResourceLockState.Disposition, ResourceLockState> stateLockAction) {
+        while (true) {
+            DefaultResourceLockCoordinationService.DefaultResourceLockState resourceLockState = new DefaultResourceLockCoordinationService.DefaultResourceLockState();
+            ResourceLockState.Disposition disposition;
+            lock.lock();
+            try {
+                currentState.get().add(resourceLockState);
+                disposition = stateLockAction.transform(resourceLockState);
+
+                switch (disposition) {
+                    case RETRY:
+                        Set<Object> stripes = blockedStripesOf(stateLockAction);
+                        resourceLockState.releaseLocks();
+                        awaitChange(stripes);
+                        break;
+                    case FINISHED:
+                        maybeNotifyStateChange(resourceLockState);
+                        return true;
+                    case FAILED:
+                        resourceLockState.releaseLocks();
+                        return false;
+                    default:
+                        throw new IllegalArgumentException("Unhandled disposition type: " + disposition.name());
+                }
+            } catch (Throwable t) {
+                resourceLockState.releaseLocks();
+                throw UncheckedException.throwAsUncheckedException(t);
+            } finally {
+                currentState.get().remove(resourceLockState);
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public ResourceLockState getCurrent() {
+        if (!currentState.get().isEmpty()) {
+            int numStates = currentState.get().size();
+            return currentState.get().get(numStates - 1);
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public void notifyStateChange() {
+        lock.lock();
+        try {
+            signal(waitingForAnyChange);
+            for (Set<Waiter> waiters : waitingByStripe.values()) {
+                signal(waiters);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void maybeNotifyStateChange(DefaultResourceLockCoordinationService.DefaultResourceLockState resourceLockState) {
+        if (resourceLockState.hasUnlockedResources()) {
+            signal(waitingForAnyChange);
+            for (ResourceLock unlocked : resourceLockState.getUnlockedResources()) {
+                Set<Waiter> waiters = waitingByStripe.get(stripeOf(unlocked));
+                if (waiters != null) {
+                    signal(waiters);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the stripes which need to change before the given transform can succeed, or an empty set when the transform can depend on any state.
+     */
+    private static Set<Object> blockedStripesOf(Transformer<ResourceLockState.Disposition, ResourceLockState> stateLockAction) {
+        Set<Object> stripes = Sets.newHashSet();
+        if (stateLockAction instanceof WaitingStateLockAction) {
+            for (ResourceLock resourceLock : ((WaitingStateLockAction) stateLockAction).getAwaitedLocks()) {
+                stripes.add(stripeOf(resourceLock));
+            }
+        }
+        return stripes;
+    }
+
+    private static Object stripeOf(ResourceLock resourceLock) {
+        if (resourceLock instanceof PooledResourceLock) {
+            return ((PooledResourceLock) resourceLock).getResourcePool();
+        }
+        return resourceLock;
+    }
+
+    private void awaitChange(Set<Object> stripes) {
+        Waiter waiter = new Waiter(lock.newCondition());
+        if (stripes.isEmpty()) {
+            waitingForAnyChange.add(waiter);
+        } else {
+            for (Object stripe : stripes) {
+                waitingByStripe.computeIfAbsent(stripe, s -> Sets.newLinkedHashSet()).add(waiter);
+            }
+        }
+        try {
+            while (!waiter.signalled) {
+                waiter.condition.await();
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            if (stripes.isEmpty()) {
+                waitingForAnyChange.remove(waiter);
+            } else {
+                for (Object stripe : stripes) {
+                    Set<Waiter> waiters = waitingByStripe.get(stripe);
+                    if (waiters != null) {
+                        waiters.remove(waiter);
+                        if (waiters.isEmpty()) {
+                            waitingByStripe.remove(stripe);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void signal(Set<Waiter> waiters) {
+        for (Waiter waiter : waiters) {
+            if (!waiter.signalled) {
+                waiter.signalled = true;
+                waiter.condition.signal();
+            }
+        }
+    }
+
+    private static class Waiter {
+        final Condition condition;
+        boolean signalled;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
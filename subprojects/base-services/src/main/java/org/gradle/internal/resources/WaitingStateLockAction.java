@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resources;
+
+import org.gradle.api.Transformer;
+
+/**
+ * A state lock action which knows the resource locks it is waiting for when it returns {@link ResourceLockState.Disposition#RETRY}.
+ * {@link StripedResourceLockCoordinationService} only runs such an action again once one of these locks, or another lock from the same pool, is released.
+ */
+public interface WaitingStateLockAction extends Transformer<ResourceLockState.Disposition, ResourceLockState> {
+    /**
+     * Returns the resource locks whose release can allow this action to finish. Called after the action returned {@link ResourceLockState.Disposition#RETRY},
+     * before the locks it acquired are rolled back. When no locks are returned, the action is run again on any change.
+     */
+    Iterable<? extends ResourceLock> getAwaitedLocks();
+}
@@ -32,6 +32,7 @@
 import org.gradle.internal.resources.AbstractResourceLockRegistry;
 import org.gradle.internal.resources.AbstractTrackedResourceLock;
 import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.resources.PooledResourceLock;
 import org.gradle.internal.resources.ProjectLock;
 import org.gradle.internal.resources.ProjectLockStatistics;
 import org.gradle.internal.resources.ResourceLock;
@@ -364,7 +365,7 @@ public void releaseLease() {
         }
     }
 
-    private class DefaultWorkerLease extends AbstractTrackedResourceLock implements LeaseHolder, WorkerLeaseCompletion, WorkerLease {
+    private class DefaultWorkerLease extends AbstractTrackedResourceLock implements LeaseHolder, WorkerLeaseCompletion, WorkerLease, PooledResourceLock {
         private final LeaseHolder parent;
         private final Thread ownerThread;
         int children;
@@ -417,6 +418,12 @@ protected void releaseLock() {
             }
         }
 
+        @Override
+        public Object getResourcePool() {
+            // All leases are granted from the root, even the leases for child operations
+            return root;
+        }
+
         @Override
         public boolean grantLease() {
             if (children == 0 || root.grantLease()) {
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.reflect
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.lang.reflect.Field
+
+class FieldAccessorTest extends Specification {
+
+    @Unroll
+    def "reads and writes private fields using #type.simpleName"() {
+        def bean = new Bean("initial")
+        def name = accessor(type, "name")
+        def count = accessor(type, "count")
+
+        expect:
+        name.get(bean) == "initial"
+        count.get(bean) == 0
+
+        when:
+        name.set(bean, "changed")
+        count.set(bean, 42)
+
+        then:
+        name.get(bean) == "changed"
+        count.get(bean) == 42
+        bean.count == 42
+
+        where:
+        type << [ReflectionBasedFieldAccessor, MethodHandleBasedFieldAccessor]
+    }
+
+    @Unroll
+    def "writes final fields using #type.simpleName"() {
+        def bean = new Bean("initial")
+        def items = accessor(type, "items")
+
+        when:
+        items.set(bean, ["a"])
+
+        then:
+        items.get(bean) == ["a"]
+
+        where:
+        type << [ReflectionBasedFieldAccessor, MethodHandleBasedFieldAccessor]
+    }
+
+    private static FieldAccessor accessor(Class<? extends FieldAccessor> type, String name) {
+        Field field = Bean.getDeclaredField(name)
+        field.accessible = true
+        return type.getConstructor(Field).newInstance(field)
+    }
+
+    static class Bean {
+        private String name
+        private int count
+        private final List<String> items = []
+
+        Bean(String name) {
+            this.name = name
+        }
+
+        int getCount() {
+            return count
+        }
+    }
+}
@@ -77,6 +77,37 @@ class SharedResourceLeaseRegistryTest extends ConcurrentSpec {
         noExceptionThrown()
     }
 
+    def "threads waiting for a lease are woken up when a lease of the same resource is released with striped coordination"() {
+        given:
+        def stripedCoordinationService = new StripedResourceLockCoordinationService()
+        def registry = new SharedResourceLeaseRegistry(stripedCoordinationService)
+        registry.registerSharedResource('resource', 1)
+        def threadCount = 10
+        def started = new CountDownLatch(threadCount)
+
+        expect:
+        registry.getResourceLock('resource', 1).resourcePool.is(registry.getResourceLock('resource', 1).resourcePool)
+
+        when:
+        async {
+            threadCount.times {
+                start {
+                    started.countDown()
+                    thread.blockUntil.releaseAll
+                    def sharedResourceLock = registry.getResourceLock('resource', 1)
+                    stripedCoordinationService.withStateLock(lock(sharedResourceLock))
+                    assert lockIsHeld(sharedResourceLock)
+                    stripedCoordinationService.withStateLock(unlock(sharedResourceLock))
+                }
+            }
+            started.await()
+            instant.releaseAll
+        }
+
+        then:
+        noExceptionThrown()
+    }
+
     def "locks on different shared resources can be concurrently held"() {
         given:
         sharedResourceLeaseRegistry.registerSharedResource('resource-a', 1)
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.resources
+
+import org.gradle.api.Transformer
+import org.gradle.test.fixtures.ConcurrentTestUtil
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.lock
+import static org.gradle.internal.resources.ResourceLockState.Disposition.FINISHED
+
+class StripedResourceLockCoordinationServiceTest extends DefaultResourceLockCoordinationServiceTest {
+
+    def setup() {
+        coordinationService = new StripedResourceLockCoordinationService()
+    }
+
+    def "thread blocked on a lock is only woken up when that lock is released"() {
+        def lock1 = resourceLock("lock1", true)
+        def lock2 = resourceLock("lock2", true)
+        def attempts = new AtomicInteger()
+
+        when:
+        async {
+            start {
+                coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                    @Override
+                    ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                        attempts.incrementAndGet()
+                        return lock(lock1).transform(resourceLockState)
+                    }
+                })
+                instant.acquired
+            }
+
+            ConcurrentTestUtil.poll {
+                assert attempts.get() == 1
+            }
+
+            lock2.lockedState = false
+            coordinationService.withStateLock(unlocked(lock2))
+            Thread.sleep(100)
+            assert attempts.get() == 1
+
+            lock1.lockedState = false
+            coordinationService.withStateLock(unlocked(lock1))
+            thread.blockUntil.acquired
+        }
+
+        then:
+        attempts.get() == 2
+        lock1.doIsLockedByCurrentThread()
+    }
+
+    def "thread blocked on a pooled lock is woken up when another lock of the pool is released"() {
+        def pool = new Object()
+        def lock1 = pooledLock("lock1", pool, true)
+        def lock2 = pooledLock("lock2", pool, true)
+
+        when:
+        async {
+            start {
+                coordinationService.withStateLock(lock(lock1))
+                instant.acquired
+            }
+
+            ConcurrentTestUtil.poll {
+                assert lock1.lockedState
+            }
+
+            lock1.lockedState = false
+            coordinationService.withStateLock(unlocked(lock2))
+            thread.blockUntil.acquired
+        }
+
+        then:
+        lock1.doIsLockedByCurrentThread()
+    }
+
+    def "thread blocked in a waiting action is only woken up when a lock from a stripe it waits for is released"() {
+        def pool = new Object()
+        def lease1 = pooledLock("lease1", pool, true)
+        def lease2 = pooledLock("lease2", pool, true)
+        def projectLock = resourceLock("project", true)
+        def attempts = new AtomicInteger()
+        def ready = false
+
+        when:
+        async {
+            start {
+                coordinationService.withStateLock(new WaitingStateLockAction() {
+                    @Override
+                    ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                        attempts.incrementAndGet()
+                        return ready ? FINISHED : ResourceLockState.Disposition.RETRY
+                    }
+
+                    @Override
+                    Iterable<? extends ResourceLock> getAwaitedLocks() {
+                        return [lease1]
+                    }
+                })
+                instant.finished
+            }
+
+            ConcurrentTestUtil.poll {
+                assert attempts.get() == 1
+            }
+
+            coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                @Override
+                ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                    ready = true
+                    resourceLockState.registerUnlocked(projectLock)
+                    return FINISHED
+                }
+            })
+            Thread.sleep(100)
+            assert attempts.get() == 1
+
+            coordinationService.withStateLock(unlocked(lease2))
+            thread.blockUntil.finished
+        }
+
+        then:
+        attempts.get() == 2
+    }
+
+    def "thread blocked in an arbitrary transform is woken up when any lock is released"() {
+        def lock1 = resourceLock("lock1", true)
+        def ready = false
+
+        when:
+        async {
+            start {
+                coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                    @Override
+                    ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                        return ready ? FINISHED : ResourceLockState.Disposition.RETRY
+                    }
+                })
+                instant.finished
+            }
+
+            Thread.sleep(100)
+            coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                @Override
+                ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                    ready = true
+                    return FINISHED
+                }
+            })
+            coordinationService.withStateLock(unlocked(lock1))
+            thread.blockUntil.finished
+        }
+
+        then:
+        noExceptionThrown()
+    }
+
+    private static Transformer<ResourceLockState.Disposition, ResourceLockState> unlocked(ResourceLock resourceLock) {
+        return new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+            @Override
+            ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                resourceLockState.registerUnlocked(resourceLock)
+                return FINISHED
+            }
+        }
+    }
+
+    private PooledTestLock pooledLock(String displayName, Object pool, boolean locked) {
+        return new PooledTestLock(displayName, coordinationService, pool, locked)
+    }
+
+    private static class PooledTestLock extends TestTrackedResourceLock implements PooledResourceLock {
+        final Object resourcePool
+
+        PooledTestLock(String displayName, ResourceLockCoordinationService coordinationService, Object resourcePool, boolean locked) {
+            super(displayName, coordinationService, {}, {}, locked)
+            this.resourcePool = resourcePool
+        }
+    }
+}
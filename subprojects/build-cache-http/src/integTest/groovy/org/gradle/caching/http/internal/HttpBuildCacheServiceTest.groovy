@@ -28,6 +28,7 @@ import org.gradle.caching.BuildCacheServiceFactory
 import org.gradle.caching.http.HttpBuildCache
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.resource.transport.http.DefaultSslContextFactory
+import org.gradle.internal.resource.transport.http.HttpConnectionPools
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.test.fixtures.server.http.AuthScheme
 import org.gradle.test.fixtures.server.http.HttpResourceInteraction
@@ -87,7 +88,7 @@ class HttpBuildCacheServiceTest extends Specification {
         def config = new HttpBuildCache()
         config.url = server.uri.resolve("/cache/")
         buildCacheDescriber = new NoopBuildCacheDescriber()
-        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), new DocumentationRegistry(), { it.addHeader("X-Gradle-Version", "3.0")})
+        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), new DocumentationRegistry(), { it.addHeader("X-Gradle-Version", "3.0")}, new HttpConnectionPools(false))
             .createBuildCacheService(config, buildCacheDescriber)
     }
 
@@ -274,7 +275,7 @@ class HttpBuildCacheServiceTest extends Specification {
         configuration.url = server.uri.resolve("/cache/")
         configuration.credentials.username = 'user'
         configuration.credentials.password = 'password'
-        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), new DocumentationRegistry(), {}).createBuildCacheService(configuration, buildCacheDescriber) as HttpBuildCacheService
+        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), new DocumentationRegistry(), {}, new HttpConnectionPools(false)).createBuildCacheService(configuration, buildCacheDescriber) as HttpBuildCacheService
 
         server.authenticationScheme = AuthScheme.BASIC
 
@@ -27,6 +27,7 @@
 import org.gradle.internal.authentication.DefaultBasicAuthentication;
 import org.gradle.internal.resource.transport.http.DefaultHttpSettings;
 import org.gradle.internal.resource.transport.http.HttpClientHelper;
+import org.gradle.internal.resource.transport.http.HttpConnectionPools;
 import org.gradle.internal.resource.transport.http.SslContextFactory;
 import org.gradle.internal.verifier.HttpRedirectVerifier;
 import org.gradle.internal.verifier.HttpRedirectVerifierFactory;
@@ -46,12 +47,14 @@ public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFac
     private final SslContextFactory sslContextFactory;
     private final DocumentationRegistry documentationRegistry;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
+    private final HttpConnectionPools connectionPools;
 
     @Inject
-    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, DocumentationRegistry documentationRegistry, HttpBuildCacheRequestCustomizer requestCustomizer) {
+    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, DocumentationRegistry documentationRegistry, HttpBuildCacheRequestCustomizer requestCustomizer, HttpConnectionPools connectionPools) {
         this.sslContextFactory = sslContextFactory;
         this.documentationRegistry = documentationRegistry;
         this.requestCustomizer = requestCustomizer;
+        this.connectionPools = connectionPools;
     }
 
     @Override
@@ -91,7 +94,7 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
         } else {
             builder.withSslContextFactory(sslContextFactory);
         }
-        HttpClientHelper httpClientHelper = new HttpClientHelper(builder.build());
+        HttpClientHelper httpClientHelper = new HttpClientHelper(builder.build(), connectionPools);
 
         describer.type("HTTP")
             .config("url", noUserInfoUrl.toASCIIString())
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import com.google.common.io.CountingOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.StreamHasher;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes the contents of unpacked files via the given executor, while the calling thread continues to read the archive.
+ * The content of each file is hashed while it is written.
+ *
+ * <p>Files of up to {@value #MAX_BUFFERED_FILE_SIZE} bytes are read into memory, then written and hashed concurrently, with at most {@value #MAX_PENDING_BYTES} bytes
+ * waiting to be written at any time. Bigger files are written and hashed by the calling thread.</p>
+ */
+class ConcurrentFileWriter {
+    private static final int MAX_BUFFERED_FILE_SIZE = 1024 * 1024;
+    private static final int MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+    private final Executor executor;
+    private final StreamHasher streamHasher;
+    private final Semaphore pendingBytes = new Semaphore(MAX_PENDING_BYTES);
+    private final List<CompletableFuture<?>> pendingWrites = new ArrayList<>();
+
+    ConcurrentFileWriter(Executor executor, StreamHasher streamHasher) {
+        this.executor = executor;
+        this.streamHasher = streamHasher;
+    }
+
+    /**
+     * Writes the next {@code size} bytes of the input to the given file, and applies the given function to the file and the hash of its content once it has been written.
+     *
+     * @return the result of the function, blocking until it is available.
+     */
+    <T> Supplier<T> write(InputStream input, long size, File file, BiFunction<File, HashCode, T> whenWritten) throws IOException {
+        if (size > MAX_BUFFERED_FILE_SIZE) {
+            HashCode hash = writeFromStream(input, size, file);
+            T result = whenWritten.apply(file, hash);
+            return () -> result;
+        }
+
+        int length = (int) size;
+        acquirePendingBytes(length);
+        byte[] content = new byte[length];
+        try {
+            IOUtils.readFully(input, content);
+        } catch (IOException e) {
+            pendingBytes.release(length);
+            throw e;
+        }
+        CompletableFuture<T> write = CompletableFuture.supplyAsync(() -> {
+            try {
+                writeFromArray(content, file);
+                return whenWritten.apply(file, streamHasher.hash(new ByteArrayInputStream(content)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                pendingBytes.release(length);
+            }
+        }, executor);
+        pendingWrites.add(write);
+        return write::join;
+    }
+
+    /**
+     * Waits for all pending writes to complete, and rethrows the first failure.
+     */
+    void finish() {
+        Throwable failure = awaitPendingWrites();
+        if (failure != null) {
+            throw UncheckedException.throwAsUncheckedException(failure);
+        }
+    }
+
+    /**
+     * Waits for all pending writes to complete, and returns the first failure, if any.
+     */
+    @Nullable
+    Throwable awaitPendingWrites() {
+        Throwable failure = null;
+        for (CompletableFuture<?> write : pendingWrites) {
+            try {
+                write.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        pendingWrites.clear();
+        return failure;
+    }
+
+    private void acquirePendingBytes(int length) {
+        try {
+            pendingBytes.acquire(length);
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static void writeFromArray(byte[] content, File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), CREATE, TRUNCATE_EXISTING, WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private HashCode writeFromStream(InputStream input, long size, File file) throws IOException {
+        BoundedInputStream content = new BoundedInputStream(input, size);
+        content.setPropagateClose(false);
+        try (FileChannel channel = FileChannel.open(file.toPath(), CREATE, TRUNCATE_EXISTING, WRITE)) {
+            CountingOutputStream output = new CountingOutputStream(Channels.newOutputStream(channel));
+            HashCode hash = streamHasher.hashCopy(content, output);
+            if (output.getCount() != size) {
+                throw new EOFException("Unexpected end of cache entry while unpacking " + file);
+            }
+            return hash;
+        }
+    }
+}
@@ -19,6 +19,7 @@
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Interner;
+import com.google.common.collect.Maps;
 import com.google.common.io.CountingOutputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
@@ -64,8 +65,14 @@
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -74,8 +81,13 @@
 
 /**
  * Packages build cache entries to a POSIX TAR file.
+ *
+ * <p>The content hash of each packed regular file is recorded in a PAX header of its entry, which the local cache uses to deduplicate files.
+ * When an executor for unpacking is given, the files are written and hashed concurrently with reading the rest of the entry, and unpacking
+ * verifies the recorded hashes against the unpacked content, so that a corrupt or tampered entry is rejected.</p>
  */
 public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
+    public static final String STREAMING_UNPACK_PROPERTY = "org.gradle.internal.build-cache.streaming-unpack";
 
     @SuppressWarnings("OctalInteger")
     private interface UnixPermissions {
@@ -89,6 +101,7 @@ private interface UnixPermissions {
     private static final Charset ENCODING = StandardCharsets.UTF_8;
     private static final String METADATA_PATH = "METADATA";
     private static final Pattern TREE_PATH = Pattern.compile("(missing-)?tree-([^/]+)(?:/(.*))?");
+    private static final String CONTENT_HASH_PAX_HEADER = "GRADLE.content-hash";
     private static final int BUFFER_SIZE = 64 * 1024;
     private static final ThreadLocal<byte[]> COPY_BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
 
@@ -96,12 +109,31 @@ private interface UnixPermissions {
     private final FileSystem fileSystem;
     private final StreamHasher streamHasher;
     private final Interner<String> stringInterner;
+    @Nullable
+    private final Executor unpackExecutor;
 
     public TarBuildCacheEntryPacker(Deleter deleter, FileSystem fileSystem, StreamHasher streamHasher, Interner<String> stringInterner) {
+        this(deleter, fileSystem, streamHasher, stringInterner, null);
+    }
+
+    public TarBuildCacheEntryPacker(Deleter deleter, FileSystem fileSystem, StreamHasher streamHasher, Interner<String> stringInterner, @Nullable Executor unpackExecutor) {
         this.deleter = deleter;
         this.fileSystem = fileSystem;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.unpackExecutor = unpackExecutor;
+    }
+
+    /**
+     * Returns the executor to write unpacked files with when streaming unpacking is enabled via {@value #STREAMING_UNPACK_PROPERTY}, otherwise {@code null}.
+     */
+    @Nullable
+    public static Executor streamingUnpackExecutorIfEnabled() {
+        return Boolean.getBoolean(STREAMING_UNPACK_PROPERTY) ? SharedPool.INSTANCE : null;
+    }
+
+    private static class SharedPool {
+        static final ForkJoinPool INSTANCE = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
     }
 
     @Override
@@ -158,19 +190,26 @@ private static void createTarEntry(String path, long size, int mode, TarArchiveO
 
     @Override
     public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        ConcurrentFileWriter fileWriter = unpackExecutor == null ? null : new ConcurrentFileWriter(unpackExecutor, streamHasher);
         try (TarArchiveInputStream tarInput = new TarArchiveInputStream(input, ENCODING.name())) {
-            return unpack(entity, tarInput, readOrigin);
+            return unpack(entity, tarInput, readOrigin, fileWriter);
+        } catch (Throwable t) {
+            if (fileWriter != null) {
+                // Don't leave any writes behind when failing
+                fileWriter.awaitPendingWrites();
+            }
+            throw t;
         }
     }
 
-    private UnpackResult unpack(CacheableEntity entity, TarArchiveInputStream tarInput, OriginReader readOriginAction) throws IOException {
+    private UnpackResult unpack(CacheableEntity entity, TarArchiveInputStream tarInput, OriginReader readOriginAction, @Nullable ConcurrentFileWriter fileWriter) throws IOException {
         ImmutableMap.Builder<String, CacheableTree> treesBuilder = ImmutableMap.builder();
         entity.visitOutputTrees((name, type, root) -> treesBuilder.put(name, new CacheableTree(type, root)));
         ImmutableMap<String, CacheableTree> treesByName = treesBuilder.build();
 
         TarArchiveEntry tarEntry;
         OriginMetadata originMetadata = null;
-        Map<String, CompleteFileSystemLocationSnapshot> snapshots = new HashMap<>();
+        Map<String, Supplier<CompleteFileSystemLocationSnapshot>> snapshots = new HashMap<>();
 
         tarEntry = tarInput.getNextTarEntry();
         MutableLong entries = new MutableLong();
@@ -197,14 +236,17 @@ private UnpackResult unpack(CacheableEntity entity, TarArchiveInputStream tarInp
 
                 boolean missing = matcher.group(1) != null;
                 String childPath = matcher.group(3);
-                tarEntry = unpackTree(treeName, tree.getType(), tree.getRoot(), tarInput, tarEntry, childPath, missing, snapshots, entries);
+                tarEntry = unpackTree(treeName, tree.getType(), tree.getRoot(), tarInput, tarEntry, childPath, missing, snapshots, entries, fileWriter);
             }
         }
+        if (fileWriter != null) {
+            fileWriter.finish();
+        }
         if (originMetadata == null) {
             throw new IllegalStateException("Cached result format error, no origin metadata was found.");
         }
 
-        return new UnpackResult(originMetadata, entries.get(), snapshots);
+        return new UnpackResult(originMetadata, entries.get(), ImmutableMap.copyOf(Maps.transformValues(snapshots, Supplier::get)));
     }
 
     private static class CacheableTree {
@@ -226,7 +268,7 @@ public File getRoot() {
     }
 
     @Nullable
-    private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File treeRoot, TarArchiveInputStream input, TarArchiveEntry rootEntry, String childPath, boolean missing, Map<String, CompleteFileSystemLocationSnapshot> snapshots, MutableLong entries) throws IOException {
+    private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File treeRoot, TarArchiveInputStream input, TarArchiveEntry rootEntry, String childPath, boolean missing, Map<String, Supplier<CompleteFileSystemLocationSnapshot>> snapshots, MutableLong entries, @Nullable ConcurrentFileWriter fileWriter) throws IOException {
         boolean isDirEntry = rootEntry.isDirectory();
         boolean root = Strings.isNullOrEmpty(childPath);
         if (!root) {
@@ -243,8 +285,8 @@ private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File tree
             if (isDirEntry) {
                 throw new IllegalStateException("Should be a file: " + treeName);
             }
-            RegularFileSnapshot fileSnapshot = unpackFile(input, rootEntry, treeRoot, treeRoot.getName());
-            snapshots.put(treeName, fileSnapshot);
+            Supplier<RegularFileSnapshot> fileSnapshot = unpackFile(input, rootEntry, treeRoot, treeRoot.getName(), fileWriter);
+            snapshots.put(treeName, fileSnapshot::get);
             return input.getNextTarEntry();
         }
 
@@ -253,7 +295,7 @@ private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File tree
         }
         chmodUnpackedFile(rootEntry, treeRoot);
 
-        return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName);
+        return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName, fileWriter);
     }
 
     private void unpackMissingFile(File treeRoot) throws IOException {
@@ -263,7 +305,19 @@ private void unpackMissingFile(File treeRoot) throws IOException {
         }
     }
 
-    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+    private Supplier<RegularFileSnapshot> unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName, @Nullable ConcurrentFileWriter fileWriter) throws IOException {
+        if (fileWriter != null) {
+            String recordedHash = entry.getExtraPaxHeader(CONTENT_HASH_PAX_HEADER);
+            long size = entry.getSize();
+            return fileWriter.write(input, size, file, (writtenFile, hash) -> {
+                if (recordedHash != null && !HashCode.fromString(recordedHash).equals(hash)) {
+                    throw new IllegalStateException(String.format("Cached entry format error, content of '%s' does not match its recorded hash.", entry.getName()));
+                }
+                chmodUnpackedFile(entry, writtenFile);
+                return snapshotUnpackedFile(writtenFile, fileName, hash, size);
+            });
+        }
+
         CountingOutputStream output = new CountingOutputStream(new FileOutputStream(file));
         HashCode hash;
         try {
@@ -272,20 +326,26 @@ private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEn
         } finally {
             IoActions.closeQuietly(output);
         }
+        RegularFileSnapshot fileSnapshot = snapshotUnpackedFile(file, fileName, hash, output.getCount());
+        return () -> fileSnapshot;
+    }
+
+    private RegularFileSnapshot snapshotUnpackedFile(File file, String fileName, HashCode hash, long length) {
         String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
         String internedFileName = stringInterner.intern(fileName);
-        return new RegularFileSnapshot(internedAbsolutePath, internedFileName, hash, new FileMetadata(output.getCount(), file.lastModified()));
+        return new RegularFileSnapshot(internedAbsolutePath, internedFileName, hash, new FileMetadata(length, file.lastModified()));
     }
 
     @Nullable
-    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, CompleteFileSystemLocationSnapshot> snapshots, MutableLong entries, File treeRoot, String treeName) throws IOException {
+    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, Supplier<CompleteFileSystemLocationSnapshot>> snapshots, MutableLong entries, File treeRoot, String treeName, @Nullable ConcurrentFileWriter fileWriter) throws IOException {
         RelativePathParser parser = new RelativePathParser();
         parser.rootPath(rootEntry.getName());
 
-        MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        // The snapshots of the unpacked files may only be available after the whole tree has been read, so replay the visits to the builder later
+        List<Consumer<MerkleDirectorySnapshotBuilder>> visits = new ArrayList<>();
         String rootPath = stringInterner.intern(treeRoot.getAbsolutePath());
         String rootDirName = stringInterner.intern(treeRoot.getName());
-        builder.preVisitDirectory(rootPath, rootDirName);
+        visits.add(builder -> builder.preVisitDirectory(rootPath, rootDirName));
 
         TarArchiveEntry entry;
 
@@ -293,7 +353,7 @@ private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArch
             boolean isDir = entry.isDirectory();
             int directoriesLeft = parser.nextPath(entry.getName(), isDir);
             for (int i = 0; i < directoriesLeft; i++) {
-                builder.postVisitDirectory();
+                visits.add(MerkleDirectorySnapshotBuilder::postVisitDirectory);
             }
             if (parser.getDepth() == 0) {
                 break;
@@ -306,18 +366,24 @@ private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArch
                 chmodUnpackedFile(entry, file);
                 String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
                 String internedDirName = stringInterner.intern(parser.getName());
-                builder.preVisitDirectory(internedAbsolutePath, internedDirName);
+                visits.add(builder -> builder.preVisitDirectory(internedAbsolutePath, internedDirName));
             } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
-                builder.visitFile(fileSnapshot);
+                Supplier<RegularFileSnapshot> fileSnapshot = unpackFile(input, entry, file, parser.getName(), fileWriter);
+                visits.add(builder -> builder.visitFile(fileSnapshot.get()));
             }
         }
 
         for (int i = 0; i < parser.getDepth(); i++) {
-            builder.postVisitDirectory();
+            visits.add(MerkleDirectorySnapshotBuilder::postVisitDirectory);
         }
 
-        snapshots.put(treeName, builder.getResult());
+        snapshots.put(treeName, () -> {
+            MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+            for (Consumer<MerkleDirectorySnapshotBuilder> visit : visits) {
+                visit.accept(builder);
+            }
+            return builder.getResult();
+        });
         return entry;
     }
 
@@ -386,7 +452,7 @@ public void visitFile(CompleteFileSystemLocationSnapshot fileSnapshot) {
                 assertCorrectType(isRoot, fileSnapshot);
                 File file = new File(fileSnapshot.getAbsolutePath());
                 int mode = fileSystem.getUnixMode(file);
-                storeFileEntry(file, targetPath, file.length(), mode, tarOutput);
+                storeFileEntry(file, targetPath, file.length(), mode, fileSnapshot.getHash(), tarOutput);
             }
             relativePathStringTracker.leave();
             entries++;
@@ -449,9 +515,13 @@ private void storeDirectoryEntry(String path, int mode, TarArchiveOutputStream t
             }
         }
 
-        private void storeFileEntry(File inputFile, String path, long size, int mode, TarArchiveOutputStream tarOutput) {
+        private void storeFileEntry(File inputFile, String path, long size, int mode, HashCode hash, TarArchiveOutputStream tarOutput) {
             try {
-                createTarEntry(path, size, UnixPermissions.FILE_FLAG | mode, tarOutput);
+                TarArchiveEntry entry = new TarArchiveEntry(path, true);
+                entry.setSize(size);
+                entry.setMode(UnixPermissions.FILE_FLAG | mode);
+                entry.addPaxHeader(CONTENT_HASH_PAX_HEADER, hash.toString());
+                tarOutput.putArchiveEntry(entry);
                 FileInputStream input = new FileInputStream(inputFile);
                 try {
                     IOUtils.copyLarge(input, tarOutput, COPY_BUFFERS.get());
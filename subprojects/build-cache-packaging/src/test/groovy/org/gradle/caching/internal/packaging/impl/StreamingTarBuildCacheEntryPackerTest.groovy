@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import java.util.concurrent.Executors
+
+import static org.gradle.internal.file.TreeType.DIRECTORY
+import static org.gradle.internal.file.TreeType.FILE
+
+class StreamingTarBuildCacheEntryPackerTest extends TarBuildCacheEntryPackerTest {
+    def executor = Executors.newFixedThreadPool(4)
+
+    def setup() {
+        packer = new TarBuildCacheEntryPacker(deleter, fileSystem, streamHasher, stringInterner, executor)
+    }
+
+    def cleanup() {
+        executor.shutdown()
+    }
+
+    def "hashes unpacked files while writing them"() {
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        100.times { i ->
+            sourceOutputDir.file("dir${i % 7}/file${i}.txt") << "output ${i}"
+        }
+        sourceOutputDir.file("large.bin").bytes = new byte[3 * 1024 * 1024]
+        def sourceOutputFile = temporaryFolder.file("source.txt")
+        sourceOutputFile << "output"
+        def hashingTargetDir = temporaryFolder.file("hashing-target")
+        def hashingTargetFile = temporaryFolder.file("hashing-target.txt")
+        def targetOutputDir = temporaryFolder.file("target")
+        def targetOutputFile = temporaryFolder.file("target.txt")
+        def output = new ByteArrayOutputStream()
+        pack output, prop("dir", DIRECTORY, sourceOutputDir), prop("file", FILE, sourceOutputFile)
+        def hashingResult = new TarBuildCacheEntryPacker(deleter, fileSystem, streamHasher, stringInterner)
+            .unpack(entity(prop("dir", DIRECTORY, hashingTargetDir), prop("file", FILE, hashingTargetFile)), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        when:
+        def result = unpack new ByteArrayInputStream(output.toByteArray()), prop("dir", DIRECTORY, targetOutputDir), prop("file", FILE, targetOutputFile)
+
+        then:
+        result.snapshots["dir"].hash == hashingResult.snapshots["dir"].hash
+        result.snapshots["file"].hash == hashingResult.snapshots["file"].hash
+        targetOutputDir.file("dir3/file10.txt").text == "output 10"
+        targetOutputDir.file("large.bin").length() == 3 * 1024 * 1024
+        targetOutputFile.text == "output"
+    }
+
+    def "rejects entries whose content does not match the recorded hash"() {
+        def sourceOutputFile = temporaryFolder.file("source.txt")
+        sourceOutputFile << "output"
+        def targetOutputFile = temporaryFolder.file("target.txt")
+        def output = new ByteArrayOutputStream()
+        pack output, prop("file", FILE, sourceOutputFile)
+        def recordedHash = streamHasher.hash(new ByteArrayInputStream("output".bytes)).toString()
+        def tamperedHash = (recordedHash[0] == "0" ? "1" : "0") + recordedHash.substring(1)
+        def tampered = new String(output.toByteArray(), "ISO-8859-1").replace(recordedHash, tamperedHash).getBytes("ISO-8859-1")
+
+        when:
+        unpack new ByteArrayInputStream(tampered), prop("file", FILE, targetOutputFile)
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message.contains("does not match its recorded hash")
+    }
+
+    def "records content hashes whether or not unpacking concurrently"() {
+        def sourceOutputFile = temporaryFolder.file("source.txt")
+        sourceOutputFile << "output"
+        def streamingOutput = new ByteArrayOutputStream()
+        pack streamingOutput, prop("file", FILE, sourceOutputFile)
+        packer = new TarBuildCacheEntryPacker(deleter, fileSystem, streamHasher, stringInterner)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        pack output, prop("file", FILE, sourceOutputFile)
+
+        then:
+        new String(streamingOutput.toByteArray(), "ISO-8859-1").contains("GRADLE.content-hash")
+        new String(output.toByteArray(), "ISO-8859-1").contains("GRADLE.content-hash")
+    }
+}
@@ -21,6 +21,7 @@ import org.gradle.caching.internal.CacheableEntity
 import org.gradle.caching.internal.TestCacheableTree
 import org.gradle.caching.internal.origin.OriginReader
 import org.gradle.caching.internal.origin.OriginWriter
+import org.gradle.caching.local.internal.DeduplicatingEntryStore
 import org.gradle.internal.file.Deleter
 import org.gradle.internal.file.TreeType
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint
@@ -31,6 +32,9 @@ import org.gradle.util.Requires
 import org.gradle.util.TestPrecondition
 import spock.lang.Unroll
 
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
 import static org.gradle.internal.file.TreeType.DIRECTORY
 import static org.gradle.internal.file.TreeType.FILE
 
@@ -248,6 +252,40 @@ class TarBuildCacheEntryPackerTest extends AbstractTarBuildCacheEntryPackerSpec
         targetDir.assertIsEmptyDir()
     }
 
+    def "packed entries are deduplicated by the local build cache"() {
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        def content = new byte[20000]
+        new Random(1).nextBytes(content)
+        sourceOutputDir.file("large.bin").bytes = content
+        sourceOutputDir.file("small.txt").text = "small"
+        def entry = temporaryFolder.file("entry.tgz")
+        entry.withOutputStream { output ->
+            new GZIPOutputStream(output).withStream { pack it, prop("dir", DIRECTORY, sourceOutputDir) }
+        }
+        def cacheDir = temporaryFolder.file("cache")
+        def entryStore = new DeduplicatingEntryStore(cacheDir, streamHasher)
+
+        def manifest = temporaryFolder.file("manifest")
+        def reassembled = temporaryFolder.file("reassembled.tgz")
+
+        when:
+        entryStore.split(entry, manifest)
+
+        then:
+        def blobs = entryStore.blobsDir.listFiles().findAll { it.directory }*.listFiles().flatten()
+        blobs.size() == 1
+        blobs[0].bytes == content
+
+        when:
+        entryStore.reassemble(manifest, reassembled)
+        def targetOutputDir = temporaryFolder.file("target")
+        new GZIPInputStream(new FileInputStream(reassembled)).withStream { unpack it, prop("dir", DIRECTORY, targetOutputDir) }
+
+        then:
+        targetOutputDir.file("large.bin").bytes == content
+        targetOutputDir.file("small.txt").text == "small"
+    }
+
     def pack(OutputStream output, OriginWriter writeOrigin = this.writeOrigin, TreeDefinition... treeDefs) {
         Map<String, CurrentFileCollectionFingerprint> fingerprints = treeDefs.collectEntries { treeDef ->
             return [(treeDef.tree.name): treeDef.fingerprint()]
@@ -0,0 +1,431 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.io.ByteStreams;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.StreamHasher;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stores build cache entries as manifests that refer to content-addressed blobs for the files in the entry.
+ *
+ * <p>An entry is a gzipped tar archive in which the packer records the content hash of each regular file in a
+ * {@value #CONTENT_HASH_PAX_HEADER} PAX header. The contents of large enough files are moved to
+ * {@code blobs/<hash>} in the cache directory, where they are shared by all entries containing the same file.
+ * Files without a recorded hash are hashed while they are moved.
+ * The manifest keeps the rest of the uncompressed archive, so that the original archive can be reassembled when the entry is loaded.</p>
+ *
+ * <p>A recorded hash is verified before the file is replaced by a reference to its blob, so that an entry can't change the contents of another entry.</p>
+ */
+public class DeduplicatingEntryStore {
+    public static final String BLOBS_DIR = "blobs";
+    static final String CONTENT_HASH_PAX_HEADER = "GRADLE.content-hash";
+
+    private static final int MAGIC = 0x47424d46;
+    private static final int VERSION = 1;
+
+    private static final byte INLINE = 0;
+    private static final byte BLOB = 1;
+    private static final byte END = 2;
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int SIZE_OFFSET = 124;
+    private static final int SIZE_LENGTH = 12;
+    private static final int TYPE_FLAG_OFFSET = 156;
+    private static final int MIN_BLOB_SIZE = 8 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PART_FILE_SUFFIX = ".part";
+    private static final String PARTIAL_BLOBS_DIR = "tmp";
+
+    private final File blobsDir;
+    private final StreamHasher streamHasher;
+
+    public DeduplicatingEntryStore(File cacheDir, StreamHasher streamHasher) {
+        this.blobsDir = new File(cacheDir, BLOBS_DIR);
+        this.streamHasher = streamHasher;
+    }
+
+    public File getBlobsDir() {
+        return blobsDir;
+    }
+
+    public boolean isManifest(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            return input.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes a manifest for the given entry, moving the contents of its files to blobs.
+     *
+     * @throws IOException when the entry can't be read as a gzipped tar archive, in which case it should be stored as is.
+     */
+    public void split(File entry, File manifest) throws IOException {
+        try (InputStream input = new GZIPInputStream(new FileInputStream(entry), BUFFER_SIZE);
+             ManifestWriter writer = new ManifestWriter(manifest)) {
+            byte[] header = new byte[BLOCK_SIZE];
+            Map<String, String> paxHeaders = Collections.emptyMap();
+            while (readHeader(input, header)) {
+                writer.inline(header, BLOCK_SIZE);
+                if (isEndOfArchive(header)) {
+                    continue;
+                }
+                String paxSize = paxHeaders.get("size");
+                long size = paxSize != null ? Long.parseLong(paxSize) : parseSize(header);
+                long padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+                byte type = header[TYPE_FLAG_OFFSET];
+                if (type == 'x') {
+                    byte[] content = new byte[Math.toIntExact(size + padding)];
+                    ByteStreams.readFully(input, content);
+                    writer.inline(content, content.length);
+                    paxHeaders = parsePaxHeaders(content, (int) size);
+                    continue;
+                }
+                boolean blob = isRegularFile(type) && size >= MIN_BLOB_SIZE;
+                HashCode recordedHash = blob ? recordedHash(paxHeaders) : null;
+                paxHeaders = Collections.emptyMap();
+                if (blob) {
+                    moveToBlob(input, size, recordedHash, writer);
+                    writer.inline(input, padding);
+                } else {
+                    writer.inline(input, size + padding);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reassembles the original entry from the given manifest.
+     *
+     * @return {@code false} when the manifest has a different format version or refers to a blob that no longer exists, in which case the entry is lost.
+     */
+    public boolean reassemble(File manifest, File entry) throws IOException {
+        try (InputStream fileInput = new BufferedInputStream(new FileInputStream(manifest), BUFFER_SIZE);
+             OutputStream output = new UncompressedGzipOutputStream(new FileOutputStream(entry))) {
+            DataInputStream header = new DataInputStream(fileInput);
+            if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+                return false;
+            }
+            DataInputStream input = new DataInputStream(new InflaterInputStream(fileInput));
+            while (true) {
+                byte segment = input.readByte();
+                switch (segment) {
+                    case INLINE:
+                        copy(input, input.readInt(), output);
+                        break;
+                    case BLOB:
+                        File blob = blobFile(readHash(input));
+                        long size = input.readLong();
+                        if (blob.length() != size) {
+                            return false;
+                        }
+                        Files.copy(blob.toPath(), output);
+                        break;
+                    case END:
+                        return true;
+                    default:
+                        throw new IOException("Unexpected segment " + segment + " in build cache manifest " + manifest);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the hashes of the blobs referenced by the given manifest to the given set.
+     *
+     * @return {@code false} when the given file is not a manifest with the current format version.
+     */
+    public boolean collectReferencedBlobs(File manifest, Set<HashCode> referencedBlobs) throws IOException {
+        try (InputStream fileInput = new BufferedInputStream(new FileInputStream(manifest), BUFFER_SIZE)) {
+            DataInputStream header = new DataInputStream(fileInput);
+            if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+                return false;
+            }
+            DataInputStream input = new DataInputStream(new InflaterInputStream(fileInput));
+            while (true) {
+                byte segment = input.readByte();
+                switch (segment) {
+                    case INLINE:
+                        ByteStreams.skipFully(input, input.readInt());
+                        break;
+                    case BLOB:
+                        referencedBlobs.add(readHash(input));
+                        input.readLong();
+                        break;
+                    case END:
+                        return true;
+                    default:
+                        throw new IOException("Unexpected segment " + segment + " in build cache manifest " + manifest);
+                }
+            }
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    File blobFile(HashCode hash) {
+        String name = hash.toString();
+        return new File(new File(blobsDir, name.substring(0, 2)), name);
+    }
+
+    static boolean isPartialBlob(File file) {
+        return file.getName().endsWith(PART_FILE_SUFFIX);
+    }
+
+    private void moveToBlob(InputStream input, long size, @Nullable HashCode recordedHash, ManifestWriter writer) throws IOException {
+        // The hash is only known once the content has been copied
+        File partialBlobsDir = new File(blobsDir, PARTIAL_BLOBS_DIR);
+        Files.createDirectories(partialBlobsDir.toPath());
+        File partialBlob = new File(partialBlobsDir, UUID.randomUUID() + PART_FILE_SUFFIX);
+        try {
+            HashCode actualHash;
+            try (OutputStream output = new FileOutputStream(partialBlob)) {
+                actualHash = streamHasher.hashCopy(ByteStreams.limit(input, size), output);
+            }
+            if (partialBlob.length() != size) {
+                throw new EOFException("Unexpected end of build cache entry");
+            }
+            if (recordedHash != null && !actualHash.equals(recordedHash)) {
+                // Keep the file in the manifest, its recorded hash can't be trusted
+                try (InputStream content = new FileInputStream(partialBlob)) {
+                    writer.inline(content, size);
+                }
+                return;
+            }
+            File blob = blobFile(actualHash);
+            if (!blob.isFile()) {
+                Files.createDirectories(blob.getParentFile().toPath());
+                Files.move(partialBlob.toPath(), blob.toPath());
+            }
+            writer.blob(actualHash, size);
+        } finally {
+            Files.deleteIfExists(partialBlob.toPath());
+        }
+    }
+
+    private static boolean readHeader(InputStream input, byte[] header) throws IOException {
+        int read = ByteStreams.read(input, header, 0, BLOCK_SIZE);
+        if (read == 0) {
+            return false;
+        }
+        if (read < BLOCK_SIZE) {
+            throw new EOFException("Unexpected end of build cache entry");
+        }
+        return true;
+    }
+
+    private static boolean isEndOfArchive(byte[] header) {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isRegularFile(byte type) {
+        return type == '0' || type == 0;
+    }
+
+    private static long parseSize(byte[] header) throws IOException {
+        if ((header[SIZE_OFFSET] & 0x80) != 0) {
+            // Base-256 encoding for big sizes
+            long size = header[SIZE_OFFSET] & 0x7f;
+            for (int i = SIZE_OFFSET + 1; i < SIZE_OFFSET + SIZE_LENGTH; i++) {
+                size = (size << 8) | (header[i] & 0xff);
+            }
+            return size;
+        }
+        long size = 0;
+        for (int i = SIZE_OFFSET; i < SIZE_OFFSET + SIZE_LENGTH; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (size > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Invalid entry size in build cache entry");
+            }
+            size = (size << 3) + (b - '0');
+        }
+        return size;
+    }
+
+    private static Map<String, String> parsePaxHeaders(byte[] content, int length) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        int pos = 0;
+        while (pos < length) {
+            int space = pos;
+            while (space < length && content[space] != ' ') {
+                space++;
+            }
+            int recordLength;
+            try {
+                recordLength = Integer.parseInt(new String(content, pos, space - pos, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid PAX header in build cache entry", e);
+            }
+            int recordEnd = pos + recordLength;
+            if (recordLength <= 0 || recordEnd > length) {
+                throw new IOException("Invalid PAX header in build cache entry");
+            }
+            String record = new String(content, space + 1, recordEnd - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                headers.put(record.substring(0, equals), record.substring(equals + 1));
+            }
+            pos = recordEnd;
+        }
+        return headers;
+    }
+
+    @Nullable
+    private static HashCode recordedHash(Map<String, String> paxHeaders) {
+        String hash = paxHeaders.get(CONTENT_HASH_PAX_HEADER);
+        if (hash == null) {
+            return null;
+        }
+        try {
+            return HashCode.fromString(hash);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static HashCode readHash(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readUnsignedByte()];
+        input.readFully(bytes);
+        return HashCode.fromBytes(bytes);
+    }
+
+    private static void copy(InputStream input, long length, OutputStream output) throws IOException {
+        long copied = ByteStreams.copy(ByteStreams.limit(input, length), output);
+        if (copied != length) {
+            throw new EOFException("Unexpected end of build cache manifest");
+        }
+    }
+
+    private static class ManifestWriter implements Closeable {
+        private final DataOutputStream output;
+        private final byte[] inlineBuffer = new byte[BUFFER_SIZE];
+        private int inlineLength;
+
+        ManifestWriter(File manifest) throws IOException {
+            OutputStream fileOutput = new BufferedOutputStream(new FileOutputStream(manifest), BUFFER_SIZE);
+            DataOutputStream header = new DataOutputStream(fileOutput);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            this.output = new DataOutputStream(new DeflaterOutputStream(fileOutput));
+        }
+
+        void inline(byte[] bytes, int length) throws IOException {
+            int offset = 0;
+            while (offset < length) {
+                int count = Math.min(length - offset, inlineBuffer.length - inlineLength);
+                System.arraycopy(bytes, offset, inlineBuffer, inlineLength, count);
+                inlineLength += count;
+                offset += count;
+                if (inlineLength == inlineBuffer.length) {
+                    flushInline();
+                }
+            }
+        }
+
+        void inline(InputStream input, long length) throws IOException {
+            long remaining = length;
+            while (remaining > 0) {
+                int read = input.read(inlineBuffer, inlineLength, (int) Math.min(remaining, inlineBuffer.length - inlineLength));
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of build cache entry");
+                }
+                inlineLength += read;
+                remaining -= read;
+                if (inlineLength == inlineBuffer.length) {
+                    flushInline();
+                }
+            }
+        }
+
+        void blob(HashCode hash, long size) throws IOException {
+            flushInline();
+            byte[] bytes = hash.toByteArray();
+            output.writeByte(BLOB);
+            output.writeByte(bytes.length);
+            output.write(bytes);
+            output.writeLong(size);
+        }
+
+        private void flushInline() throws IOException {
+            if (inlineLength > 0) {
+                output.writeByte(INLINE);
+                output.writeInt(inlineLength);
+                output.write(inlineBuffer, 0, inlineLength);
+                inlineLength = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushInline();
+                output.writeByte(END);
+            } finally {
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * The reassembled entry is only read once, so it isn't worth spending time on compressing it again.
+     */
+    private static class UncompressedGzipOutputStream extends GZIPOutputStream {
+        UncompressedGzipOutputStream(OutputStream output) throws IOException {
+            super(output, BUFFER_SIZE);
+            def.setLevel(Deflater.NO_COMPRESSION);
+        }
+    }
+}
@@ -30,6 +30,8 @@
 import org.gradle.internal.resource.local.LocallyAvailableResource;
 import org.gradle.internal.resource.local.PathKeyFileStore;
 import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import java.io.File;
@@ -40,20 +42,29 @@
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class DirectoryBuildCacheService implements LocalBuildCacheService, BuildCacheService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryBuildCacheService.class);
 
     private final PathKeyFileStore fileStore;
     private final PersistentCache persistentCache;
     private final BuildCacheTempFileStore tempFileStore;
     private final FileAccessTracker fileAccessTracker;
     private final String failedFileSuffix;
+    private final DeduplicatingEntryStore entryStore;
+    private final boolean deduplicate;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
-    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+    /**
+     * @param deduplicate whether to store new entries as manifests referring to shared blobs. Entries stored as manifests can be loaded either way.
+     */
+    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix,
+                                      DeduplicatingEntryStore entryStore, boolean deduplicate) {
         this.fileStore = fileStore;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
         this.fileAccessTracker = fileAccessTracker;
         this.failedFileSuffix = failedFileSuffix;
+        this.entryStore = entryStore;
+        this.deduplicate = deduplicate;
     }
 
     private static class LoadAction implements Action<File> {
@@ -114,7 +125,11 @@ private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
         fileAccessTracker.markAccessed(file);
 
         try {
-            reader.execute(file);
+            if (entryStore.isManifest(file)) {
+                loadFromManifest(key, file, reader);
+            } else {
+                reader.execute(file);
+            }
         } catch (Exception e) {
             // Try to move the file out of the way in case its permanently corrupt
             // Don't delete, so that it can be potentially used for debugging
@@ -127,6 +142,27 @@ private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
         }
     }
 
+    private void loadFromManifest(BuildCacheKey key, final File manifest, final Action<? super File> reader) {
+        fileAccessTracker.markAccessed(entryStore.getBlobsDir());
+        tempFileStore.withTempFile(key, new Action<File>() {
+            @Override
+            public void execute(@Nonnull File entry) {
+                boolean complete;
+                try {
+                    complete = entryStore.reassemble(manifest, entry);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (complete) {
+                    reader.execute(entry);
+                } else {
+                    // Some blob has been removed, treat the entry as missing
+                    GFileUtils.deleteQuietly(manifest);
+                }
+            }
+        });
+    }
+
     @Override
     public void store(final BuildCacheKey key, final BuildCacheEntryWriter result) throws BuildCacheException {
         tempFileStore.withTempFile(key, new Action<File>() {
@@ -165,7 +201,36 @@ public void run() {
         });
     }
 
-    private void storeInsideLock(BuildCacheKey key, File file) {
+    private void storeInsideLock(final BuildCacheKey key, final File file) {
+        if (!deduplicate) {
+            storeFile(key, file);
+            return;
+        }
+        tempFileStore.withTempFile(key, new Action<File>() {
+            @Override
+            public void execute(@Nonnull File manifest) {
+                if (splitIntoBlobs(file, manifest)) {
+                    storeFile(key, manifest);
+                    GFileUtils.deleteQuietly(file);
+                } else {
+                    storeFile(key, file);
+                }
+            }
+        });
+    }
+
+    private boolean splitIntoBlobs(File entry, File manifest) {
+        try {
+            entryStore.split(entry, manifest);
+            fileAccessTracker.markAccessed(entryStore.getBlobsDir());
+            return true;
+        } catch (IOException e) {
+            LOGGER.debug("Could not split build cache entry {} into blobs, storing it as is.", entry, e);
+            return false;
+        }
+    }
+
+    private void storeFile(BuildCacheKey key, File file) {
         LocallyAvailableResource resource = fileStore.move(key.getHashCode(), file);
         fileAccessTracker.markAccessed(resource.getFile());
     }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.cache.CleanableStore;
+import org.gradle.cache.CleanupAction;
+import org.gradle.cache.CleanupProgressMonitor;
+import org.gradle.internal.hash.HashCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Deletes the blobs of a {@link DeduplicatingEntryStore} that are no longer referenced by any manifest.
+ *
+ * This needs to run after the entries themselves have been cleaned up. When a manifest can't be read, no blobs are deleted.
+ */
+public class UnreferencedBlobsCleanup implements CleanupAction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnreferencedBlobsCleanup.class);
+
+    private final DeduplicatingEntryStore entryStore;
+
+    public UnreferencedBlobsCleanup(DeduplicatingEntryStore entryStore) {
+        this.entryStore = entryStore;
+    }
+
+    @Override
+    public void clean(CleanableStore cleanableStore, CleanupProgressMonitor progressMonitor) {
+        File[] blobDirs = entryStore.getBlobsDir().listFiles();
+        if (blobDirs == null) {
+            return;
+        }
+        Set<HashCode> referencedBlobs = collectReferencedBlobs(cleanableStore);
+        if (referencedBlobs == null) {
+            return;
+        }
+        int blobsDeleted = 0;
+        for (File blobDir : blobDirs) {
+            File[] blobs = blobDir.listFiles();
+            if (blobs == null) {
+                continue;
+            }
+            for (File blob : blobs) {
+                if (isReferenced(blob, referencedBlobs)) {
+                    progressMonitor.incrementSkipped();
+                } else {
+                    progressMonitor.incrementDeleted();
+                    if (FileUtils.deleteQuietly(blob)) {
+                        blobsDeleted++;
+                    }
+                }
+            }
+            // Only succeeds when the directory is empty
+            //noinspection ResultOfMethodCallIgnored
+            blobDir.delete();
+        }
+        LOGGER.debug("{} cleanup deleted {} unreferenced blobs.", cleanableStore.getDisplayName(), blobsDeleted);
+    }
+
+    private Set<HashCode> collectReferencedBlobs(CleanableStore cleanableStore) {
+        File[] entries = cleanableStore.getBaseDir().listFiles();
+        Set<HashCode> referencedBlobs = new HashSet<HashCode>();
+        if (entries == null) {
+            return referencedBlobs;
+        }
+        for (File entry : entries) {
+            if (!entry.isFile() || cleanableStore.getReservedCacheFiles().contains(entry)) {
+                continue;
+            }
+            try {
+                entryStore.collectReferencedBlobs(entry, referencedBlobs);
+            } catch (IOException e) {
+                LOGGER.debug("Could not read build cache entry {}, not deleting any blobs.", entry, e);
+                return null;
+            }
+        }
+        return referencedBlobs;
+    }
+
+    private static boolean isReferenced(File blob, Set<HashCode> referencedBlobs) {
+        if (DeduplicatingEntryStore.isPartialBlob(blob)) {
+            // Left behind by a process that crashed while storing an entry
+            return false;
+        }
+        try {
+            return referencedBlobs.contains(HashCode.fromString(blob.getName()));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -16,10 +16,13 @@
 
 package org.gradle.caching.local.internal
 
+import org.gradle.cache.CleanableStore
+import org.gradle.cache.CleanupProgressMonitor
 import org.gradle.cache.PersistentCache
 import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.hash.DefaultStreamHasher
 import org.gradle.internal.resource.local.DefaultPathKeyFileStore
 import org.gradle.internal.resource.local.FileAccessTracker
 import org.gradle.test.fixtures.file.CleanupTestDirectory
@@ -28,6 +31,9 @@ import org.gradle.util.UsesNativeServices
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
 @UsesNativeServices
 @CleanupTestDirectory
 class DirectoryBuildCacheServiceTest extends Specification {
@@ -40,7 +46,9 @@ class DirectoryBuildCacheServiceTest extends Specification {
     }
     def tempFileStore = new DefaultBuildCacheTempFileStore(cacheDir)
     def fileAccessTracker = Mock(FileAccessTracker)
-    def service = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed")
+    def streamHasher = new DefaultStreamHasher()
+    def entryStore = new DeduplicatingEntryStore(cacheDir, streamHasher)
+    def service = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", entryStore, false)
     def hashCode = "1234abcd"
     def key = Mock(BuildCacheKey) {
         getHashCode() >> hashCode
@@ -132,4 +140,157 @@ class DirectoryBuildCacheServiceTest extends Specification {
         1 * fileAccessTracker.markAccessed(cachedFile)
         loaded
     }
+
+    def "shares file contents between deduplicated entries"() {
+        def deduplicatingService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", entryStore, true)
+        def shared = content(20000, 1)
+        def first = tar(file("shared.bin", shared), file("first.bin", content(10000, 2)), file("small.txt", "small".bytes))
+        def second = tar(file("shared.bin", shared), file("second.bin", content(30000, 3)))
+
+        when:
+        deduplicatingService.storeLocally(key("first"), gzip(first))
+        deduplicatingService.storeLocally(key("second"), gzip(second))
+
+        then:
+        blobs().size() == 3
+        blobs()*.length().sort() == [10000L, 20000L, 30000L]
+
+        and:
+        loadUncompressed(deduplicatingService, key("first")) == first
+        loadUncompressed(deduplicatingService, key("second")) == second
+        loadUncompressed(service, key("first")) == first
+    }
+
+    def "keeps file contents with a wrong recorded hash in the manifest"() {
+        def deduplicatingService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", entryStore, true)
+        def entry = tar(file("file.bin", content(20000, 1), streamHasher.hash(new ByteArrayInputStream(content(20000, 2)))))
+
+        when:
+        deduplicatingService.storeLocally(key, gzip(entry))
+
+        then:
+        blobs().empty
+        loadUncompressed(deduplicatingService, key) == entry
+    }
+
+    def "moves file contents without a recorded hash to blobs"() {
+        def deduplicatingService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", entryStore, true)
+        def entry = tar(file("file.bin", content(20000, 1), null))
+
+        when:
+        deduplicatingService.storeLocally(key, gzip(entry))
+
+        then:
+        blobs()*.bytes == [content(20000, 1)]
+        loadUncompressed(deduplicatingService, key) == entry
+    }
+
+    def "treats deduplicated entry with missing blobs as missing"() {
+        def deduplicatingService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", entryStore, true)
+        deduplicatingService.storeLocally(key, gzip(tar(file("file.bin", content(20000, 1)))))
+        blobs()*.delete()
+
+        when:
+        def loaded = deduplicatingService.load(key, Mock(BuildCacheEntryReader))
+
+        then:
+        !loaded
+        fileStore.get(hashCode) == null
+    }
+
+    def "stores entries which are not archives as is"() {
+        def deduplicatingService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", entryStore, true)
+        def originalFile = temporaryFolder.createFile("foo")
+        originalFile.text = "bar"
+
+        when:
+        deduplicatingService.storeLocally(key, originalFile)
+
+        then:
+        blobs().empty
+        fileStore.get(hashCode).file.text == "bar"
+    }
+
+    def "deletes blobs which are not referenced by any entry"() {
+        def deduplicatingService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", entryStore, true)
+        def shared = content(20000, 1)
+        deduplicatingService.storeLocally(key("first"), gzip(tar(file("shared.bin", shared), file("first.bin", content(10000, 2)))))
+        deduplicatingService.storeLocally(key("second"), gzip(tar(file("shared.bin", shared))))
+        def cleanableStore = Stub(CleanableStore) {
+            getBaseDir() >> cacheDir
+            getReservedCacheFiles() >> []
+        }
+
+        when:
+        fileStore.get("first").file.delete()
+        new UnreferencedBlobsCleanup(entryStore).clean(cleanableStore, Stub(CleanupProgressMonitor))
+
+        then:
+        blobs()*.length() == [20000L]
+        loadUncompressed(deduplicatingService, key("second")) == tar(file("shared.bin", shared))
+    }
+
+    private BuildCacheKey key(String hashCode) {
+        Stub(BuildCacheKey) {
+            getHashCode() >> hashCode
+        }
+    }
+
+    private List<File> blobs() {
+        def blobsDir = cacheDir.file(DeduplicatingEntryStore.BLOBS_DIR)
+        blobsDir.exists() ? blobsDir.listFiles().collectMany { it.listFiles() as List } : []
+    }
+
+    private static byte[] content(int size, int seed) {
+        def bytes = new byte[size]
+        new Random(seed).nextBytes(bytes)
+        bytes
+    }
+
+    private byte[] loadUncompressed(DirectoryBuildCacheService service, BuildCacheKey key) {
+        byte[] result = null
+        service.loadLocally(key, { File file -> result = new GZIPInputStream(new FileInputStream(file)).bytes })
+        result
+    }
+
+    private File gzip(byte[] tar) {
+        def file = temporaryFolder.createFile("entry-${UUID.randomUUID()}.tgz")
+        file.withOutputStream { new GZIPOutputStream(it).withStream { it.write(tar) } }
+        file
+    }
+
+    private byte[] file(String name, byte[] content, hash = streamHasher.hash(new ByteArrayInputStream(content))) {
+        def output = new ByteArrayOutputStream()
+        if (hash == null) {
+            writeTarEntry(output, name, (char) '0', content)
+            return output.toByteArray()
+        }
+        def record = " ${DeduplicatingEntryStore.CONTENT_HASH_PAX_HEADER}=${hash}\n"
+        def length = record.length() + String.valueOf(record.length()).length()
+        if (String.valueOf(length).length() != String.valueOf(record.length()).length()) {
+            length++
+        }
+        writeTarEntry(output, "PaxHeaders/${name}", (char) 'x', "${length}${record}".bytes)
+        writeTarEntry(output, name, (char) '0', content)
+        output.toByteArray()
+    }
+
+    private static byte[] tar(byte[]... entries) {
+        def output = new ByteArrayOutputStream()
+        entries.each { output.write(it) }
+        output.write(new byte[1024])
+        output.toByteArray()
+    }
+
+    private static void writeTarEntry(OutputStream output, String name, char type, byte[] content) {
+        def header = new byte[512]
+        def nameBytes = name.bytes
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length)
+        def size = String.format("%011o", content.length).bytes
+        System.arraycopy(size, 0, header, 124, size.length)
+        header[156] = (byte) type
+        output.write(header)
+        output.write(content)
+        output.write(new byte[(512 - content.length % 512) % 512])
+    }
 }
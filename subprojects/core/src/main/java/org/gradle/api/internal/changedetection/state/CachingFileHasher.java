@@ -29,27 +29,59 @@
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.InterningStringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
 
 public class CachingFileHasher implements FileHasher {
+    /**
+     * When set, file hashes are kept in an {@link OffHeapFileHashIndex} instead of on the heap, so that the heap of the daemon does not grow with the number of hashed files.
+     */
+    public static final String OFF_HEAP_INDEX_PROPERTY = "org.gradle.internal.file-hash-cache.off-heap";
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingFileHasher.class);
+    private static final int MAX_ENTRIES_IN_MEMORY = 400000;
+    private static final int MAX_ENTRIES_IN_MEMORY_WITH_OFF_HEAP_INDEX = 1000;
+
     private final PersistentIndexedCache<String, FileInfo> cache;
+    @Nullable
+    private final OffHeapFileHashIndex offHeapIndex;
     private final FileHasher delegate;
     private final FileSystem fileSystem;
     private final StringInterner stringInterner;
     private final FileTimeStampInspector timestampInspector;
 
     public CachingFileHasher(FileHasher delegate, CrossBuildFileHashCache store, StringInterner stringInterner, FileTimeStampInspector timestampInspector, String cacheName, FileSystem fileSystem) {
+        this(delegate, store, stringInterner, timestampInspector, cacheName, fileSystem, Boolean.getBoolean(OFF_HEAP_INDEX_PROPERTY));
+    }
+
+    public CachingFileHasher(FileHasher delegate, CrossBuildFileHashCache store, StringInterner stringInterner, FileTimeStampInspector timestampInspector, String cacheName, FileSystem fileSystem, boolean offHeapIndex) {
         this.delegate = delegate;
         this.fileSystem = fileSystem;
-        this.cache = store.createCache(
-            PersistentIndexedCacheParameters.of(cacheName, new InterningStringSerializer(stringInterner), new FileInfoSerializer()),
-            400000,
-            true);
+        this.offHeapIndex = offHeapIndex ? createOffHeapIndex() : null;
+        PersistentIndexedCacheParameters<String, FileInfo> parameters = PersistentIndexedCacheParameters.of(cacheName, new InterningStringSerializer(stringInterner), new FileInfoSerializer());
+        if (this.offHeapIndex != null) {
+            // With the off-heap index in front, the in-memory store of the persistent cache only needs to buffer recent writes.
+            // The index is cleared whenever another process may have updated or discarded entries.
+            this.cache = store.createCache(parameters, MAX_ENTRIES_IN_MEMORY_WITH_OFF_HEAP_INDEX, false, this.offHeapIndex::clear);
+        } else {
+            this.cache = store.createCache(parameters, MAX_ENTRIES_IN_MEMORY, true);
+        }
         this.stringInterner = stringInterner;
         this.timestampInspector = timestampInspector;
     }
 
+    @Nullable
+    private static OffHeapFileHashIndex createOffHeapIndex() {
+        try {
+            return new OffHeapFileHashIndex();
+        } catch (OutOfMemoryError e) {
+            LOGGER.info("Could not allocate the off-heap file hash index. Keeping file hashes on the heap.", e);
+            return null;
+        }
+    }
+
     @Override
     public String toString() {
         return "{hasher cache: " + cache + "}";
@@ -73,7 +105,7 @@ private FileInfo snapshot(File file) {
     private FileInfo snapshot(File file, long length, long timestamp) {
         String absolutePath = file.getAbsolutePath();
         if (timestampInspector.timestampCanBeUsedToDetectFileChange(absolutePath, timestamp)) {
-            FileInfo info = cache.get(absolutePath);
+            FileInfo info = lookup(absolutePath);
 
             if (info != null && length == info.length && timestamp == info.timestamp) {
                 return info;
@@ -82,11 +114,34 @@ private FileInfo snapshot(File file, long length, long timestamp) {
 
         HashCode hash = delegate.hash(file);
         FileInfo info = new FileInfo(hash, length, timestamp);
-        cache.put(stringInterner.intern(absolutePath), info);
+        if (offHeapIndex != null) {
+            offHeapIndex.put(absolutePath, info);
+            cache.put(absolutePath, info);
+        } else {
+            cache.put(stringInterner.intern(absolutePath), info);
+        }
+        return info;
+    }
+
+    @Nullable
+    private FileInfo lookup(String absolutePath) {
+        if (offHeapIndex == null) {
+            return cache.get(absolutePath);
+        }
+        FileInfo info = offHeapIndex.get(absolutePath);
+        if (info == null) {
+            info = cache.get(absolutePath);
+            if (info != null) {
+                offHeapIndex.put(absolutePath, info);
+            }
+        }
         return info;
     }
 
     public void discard(String path) {
+        if (offHeapIndex != null) {
+            offHeapIndex.remove(path);
+        }
         cache.remove(path);
     }
 
@@ -105,6 +160,14 @@ public FileInfo(HashCode hash, long length, long timestamp) {
         public HashCode getHash() {
             return hash;
         }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
     }
 
     private static class FileInfoSerializer extends AbstractSerializer<FileInfo> {
@@ -16,9 +16,15 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import org.gradle.api.Transformer;
+import org.gradle.cache.AsyncCacheAccess;
 import org.gradle.cache.CacheBuilder;
+import org.gradle.cache.CacheDecorator;
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.CrossProcessCacheAccess;
+import org.gradle.cache.FileLock;
 import org.gradle.cache.FileLockManager;
+import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
@@ -27,6 +33,7 @@
 import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
+import java.util.Map;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
@@ -51,8 +58,95 @@ public <K, V> PersistentIndexedCache<K, V> createCache(PersistentIndexedCachePar
         );
     }
 
+    /**
+     * Creates a cache which runs the given action whenever the cache may have been changed by another process since this process last accessed it.
+     * This allows the caller to invalidate its own copies of the entries.
+     */
+    public <K, V> PersistentIndexedCache<K, V> createCache(PersistentIndexedCacheParameters<K, V> parameters, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses, Runnable onChangedByOtherProcess) {
+        CacheDecorator decorator = inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses);
+        return cache.createCache(parameters
+                .withCacheDecorator(new ChangeNotifyingCacheDecorator(decorator, onChangedByOtherProcess))
+        );
+    }
+
     @Override
     public void close() {
         cache.close();
     }
+
+    private static class ChangeNotifyingCacheDecorator implements CacheDecorator {
+        private final CacheDecorator delegate;
+        private final Runnable onChangedByOtherProcess;
+
+        ChangeNotifyingCacheDecorator(CacheDecorator delegate, Runnable onChangedByOtherProcess) {
+            this.delegate = delegate;
+            this.onChangedByOtherProcess = onChangedByOtherProcess;
+        }
+
+        @Override
+        public <K, V> MultiProcessSafePersistentIndexedCache<K, V> decorate(String cacheId, String cacheName, MultiProcessSafePersistentIndexedCache<K, V> persistentCache, CrossProcessCacheAccess crossProcessCacheAccess, AsyncCacheAccess asyncCacheAccess) {
+            return new ChangeNotifyingCache<K, V>(delegate.decorate(cacheId, cacheName, persistentCache, crossProcessCacheAccess, asyncCacheAccess), onChangedByOtherProcess);
+        }
+    }
+
+    private static class ChangeNotifyingCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
+        private final MultiProcessSafePersistentIndexedCache<K, V> delegate;
+        private final Runnable onChangedByOtherProcess;
+        private FileLock.State stateAtLockRelease;
+
+        ChangeNotifyingCache(MultiProcessSafePersistentIndexedCache<K, V> delegate, Runnable onChangedByOtherProcess) {
+            this.delegate = delegate;
+            this.onChangedByOtherProcess = onChangedByOtherProcess;
+        }
+
+        @Nullable
+        @Override
+        public V get(K key) {
+            return delegate.get(key);
+        }
+
+        @Override
+        public V get(K key, Transformer<? extends V, ? super K> producer) {
+            return delegate.get(key, producer);
+        }
+
+        @Override
+        public Map<K, V> getAll(Iterable<? extends K> keys) {
+            return delegate.getAll(keys);
+        }
+
+        @Override
+        public void put(K key, V value) {
+            delegate.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends K, ? extends V> entries) {
+            delegate.putAll(entries);
+        }
+
+        @Override
+        public void remove(K key) {
+            delegate.remove(key);
+        }
+
+        @Override
+        public void afterLockAcquire(FileLock.State currentCacheState) {
+            if (stateAtLockRelease == null || currentCacheState.hasBeenUpdatedSince(stateAtLockRelease)) {
+                onChangedByOtherProcess.run();
+            }
+            delegate.afterLockAcquire(currentCacheState);
+        }
+
+        @Override
+        public void finishWork() {
+            delegate.finishWork();
+        }
+
+        @Override
+        public void beforeLockRelease(FileLock.State currentCacheState) {
+            stateAtLockRelease = currentCacheState;
+            delegate.beforeLockRelease(currentCacheState);
+        }
+    }
 }
@@ -0,0 +1,427 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo;
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * An index of file hashes keyed by absolute path, which keeps its entries outside of the Java heap.
+ *
+ * <p>Entries are stored in an open addressing hash table of fixed-width records, keyed by a 64-bit hash of the path. Each record
+ * contains the file hash, length and timestamp, and a reference to the UTF-8 encoded path, which is stored in separate
+ * chunks and is used to detect collisions of the path hash. Lookups only allocate the returned {@link FileInfo}.</p>
+ *
+ * <p>Removed entries leave a tombstone and the bytes of their path behind. Both are reclaimed the next time the table is rebuilt.</p>
+ *
+ * <p>When no more native memory can be allocated, entries are no longer added to the index, so that callers fall back to looking them up elsewhere.</p>
+ */
+class OffHeapFileHashIndex {
+    private static final int RECORD_SIZE = 64;
+    private static final int KEY_HASH_OFFSET = 0;
+    private static final int PATH_REF_OFFSET = 8;
+    private static final int PATH_LENGTH_OFFSET = 16;
+    private static final int STATE_OFFSET = 20;
+    private static final int HASH_LENGTH_OFFSET = 21;
+    private static final int HASH_OFFSET = 22;
+    private static final int LENGTH_OFFSET = 48;
+    private static final int TIMESTAMP_OFFSET = 56;
+    @VisibleForTesting
+    static final int MAX_HASH_LENGTH = LENGTH_OFFSET - HASH_OFFSET;
+
+    private static final byte EMPTY = 0;
+    private static final byte OCCUPIED = 1;
+    private static final byte REMOVED = 2;
+
+    private static final int INITIAL_CAPACITY = 1 << 14;
+    private static final int MAX_CAPACITY = 1 << 24;
+    private static final int PATH_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final ToLongFunction<String> pathHasher;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private ByteBuffer records;
+    private int capacity;
+    private int occupied;
+    private int removed;
+    private PathChunks paths = new PathChunks();
+
+    /**
+     * @throws OutOfMemoryError when the initial table cannot be allocated.
+     */
+    OffHeapFileHashIndex() {
+        this(OffHeapFileHashIndex::hashPath);
+    }
+
+    @VisibleForTesting
+    OffHeapFileHashIndex(ToLongFunction<String> pathHasher) {
+        this.pathHasher = pathHasher;
+        records = ByteBuffer.allocateDirect(INITIAL_CAPACITY * RECORD_SIZE);
+        capacity = INITIAL_CAPACITY;
+    }
+
+    @Nullable
+    public FileInfo get(String path) {
+        long keyHash = pathHasher.applyAsLong(path);
+        lock.readLock().lock();
+        try {
+            int slot = find(path, keyHash);
+            if (slot < 0) {
+                return null;
+            }
+            int record = slot * RECORD_SIZE;
+            byte[] hash = new byte[records.get(record + HASH_LENGTH_OFFSET)];
+            for (int i = 0; i < hash.length; i++) {
+                hash[i] = records.get(record + HASH_OFFSET + i);
+            }
+            return new FileInfo(HashCode.fromBytes(hash), records.getLong(record + LENGTH_OFFSET), records.getLong(record + TIMESTAMP_OFFSET));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces the entry for the given path. Entries which do not fit into a record are not indexed.
+     */
+    public void put(String path, FileInfo info) {
+        byte[] hash = info.getHash().toByteArray();
+        long keyHash = pathHasher.applyAsLong(path);
+        lock.writeLock().lock();
+        try {
+            int slot = find(path, keyHash);
+            int pathLength = slot < 0 ? PathChunks.encodedLength(path) : 0;
+            if (hash.length > MAX_HASH_LENGTH || pathLength > PATH_CHUNK_SIZE) {
+                if (slot >= 0) {
+                    removeAt(slot);
+                }
+                return;
+            }
+            if (slot < 0) {
+                if (!ensureCapacityForInsert()) {
+                    return;
+                }
+                long pathRef = paths.append(path, pathLength);
+                if (pathRef < 0) {
+                    return;
+                }
+                slot = insertionSlot(keyHash);
+                int record = slot * RECORD_SIZE;
+                if (records.get(record + STATE_OFFSET) == REMOVED) {
+                    removed--;
+                }
+                occupied++;
+                records.putLong(record + KEY_HASH_OFFSET, keyHash);
+                records.putLong(record + PATH_REF_OFFSET, pathRef);
+                records.putInt(record + PATH_LENGTH_OFFSET, pathLength);
+                records.put(record + STATE_OFFSET, OCCUPIED);
+            }
+            writeValue(slot * RECORD_SIZE, hash, info.getLength(), info.getTimestamp());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String path) {
+        long keyHash = pathHasher.applyAsLong(path);
+        lock.writeLock().lock();
+        try {
+            int slot = find(path, keyHash);
+            if (slot >= 0) {
+                removeAt(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all entries, for example when the entries may have been changed by another process.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (int offset = 0; offset < capacity * RECORD_SIZE; offset += RECORD_SIZE) {
+                records.put(offset + STATE_OFFSET, EMPTY);
+            }
+            occupied = 0;
+            removed = 0;
+            paths = new PathChunks();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return occupied;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int find(String path, long keyHash) {
+        int mask = capacity - 1;
+        for (int slot = (int) (keyHash ^ (keyHash >>> 32)) & mask, probes = 0; probes < capacity; slot = (slot + 1) & mask, probes++) {
+            int record = slot * RECORD_SIZE;
+            byte state = records.get(record + STATE_OFFSET);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == OCCUPIED
+                && records.getLong(record + KEY_HASH_OFFSET) == keyHash
+                && paths.matches(records.getLong(record + PATH_REF_OFFSET), records.getInt(record + PATH_LENGTH_OFFSET), path)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int insertionSlot(long keyHash) {
+        return insertionSlot(records, capacity, keyHash);
+    }
+
+    private static int insertionSlot(ByteBuffer records, int capacity, long keyHash) {
+        int mask = capacity - 1;
+        int slot = (int) (keyHash ^ (keyHash >>> 32)) & mask;
+        while (records.get(slot * RECORD_SIZE + STATE_OFFSET) == OCCUPIED) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void writeValue(int record, byte[] hash, long length, long timestamp) {
+        records.put(record + HASH_LENGTH_OFFSET, (byte) hash.length);
+        for (int i = 0; i < hash.length; i++) {
+            records.put(record + HASH_OFFSET + i, hash[i]);
+        }
+        records.putLong(record + LENGTH_OFFSET, length);
+        records.putLong(record + TIMESTAMP_OFFSET, timestamp);
+    }
+
+    private void removeAt(int slot) {
+        int record = slot * RECORD_SIZE;
+        records.put(record + STATE_OFFSET, REMOVED);
+        paths.discard(records.getInt(record + PATH_LENGTH_OFFSET));
+        occupied--;
+        removed++;
+    }
+
+    /**
+     * Makes sure there is room for one more entry, rebuilding the table when it is too full or has accumulated too much garbage.
+     *
+     * @return false when the index is full, or the table cannot be rebuilt, and the entry cannot be added.
+     */
+    private boolean ensureCapacityForInsert() {
+        boolean tooFull = (occupied + removed + 1) * 5L > capacity * 4L;
+        if (!tooFull && !paths.hasTooMuchGarbage()) {
+            return true;
+        }
+        int newCapacity = capacity;
+        while ((occupied + 1) * 5L > newCapacity * 3L && newCapacity < MAX_CAPACITY) {
+            newCapacity <<= 1;
+        }
+        if ((occupied + 1) * 5L > newCapacity * 4L) {
+            return false;
+        }
+        try {
+            rebuild(newCapacity);
+        } catch (OutOfMemoryError e) {
+            // Keep the current table, which is still consistent
+            return !tooFull;
+        }
+        return true;
+    }
+
+    /**
+     * Copies the live entries into a new table. The current table is only replaced once all entries have been copied.
+     */
+    private void rebuild(int newCapacity) {
+        ByteBuffer newRecords = ByteBuffer.allocateDirect(newCapacity * RECORD_SIZE);
+        PathChunks newPaths = new PathChunks();
+        int newOccupied = 0;
+        for (int oldSlot = 0; oldSlot < capacity; oldSlot++) {
+            int oldRecord = oldSlot * RECORD_SIZE;
+            if (records.get(oldRecord + STATE_OFFSET) != OCCUPIED) {
+                continue;
+            }
+            long keyHash = records.getLong(oldRecord + KEY_HASH_OFFSET);
+            int pathLength = records.getInt(oldRecord + PATH_LENGTH_OFFSET);
+            long pathRef = newPaths.copy(paths, records.getLong(oldRecord + PATH_REF_OFFSET), pathLength);
+            if (pathRef < 0) {
+                throw new OutOfMemoryError("Could not allocate path chunk.");
+            }
+
+            int record = insertionSlot(newRecords, newCapacity, keyHash) * RECORD_SIZE;
+            for (int offset = 0; offset < RECORD_SIZE; offset += 8) {
+                newRecords.putLong(record + offset, records.getLong(oldRecord + offset));
+            }
+            newRecords.putLong(record + PATH_REF_OFFSET, pathRef);
+            newOccupied++;
+        }
+        records = newRecords;
+        capacity = newCapacity;
+        occupied = newOccupied;
+        removed = 0;
+        paths = newPaths;
+    }
+
+    @VisibleForTesting
+    static long hashPath(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Stores the UTF-8 encoded indexed paths in fixed-size direct buffers. A path is referenced by the index of its chunk and its offset in the chunk.
+     */
+    private static class PathChunks {
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private long usedBytes;
+        private long garbageBytes;
+
+        static int encodedLength(String path) {
+            int length = 0;
+            for (int i = 0; i < path.length(); i++) {
+                char c = path.charAt(i);
+                if (c < 0x80) {
+                    length++;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else {
+                    // Surrogates are encoded separately, which is enough to compare paths
+                    length += 3;
+                }
+            }
+            return length;
+        }
+
+        /**
+         * Returns the reference to the appended path, or -1 when no chunk can be allocated for it.
+         */
+        long append(String path, int length) {
+            ByteBuffer chunk = chunkFor(length);
+            if (chunk == null) {
+                return -1;
+            }
+            long ref = refOf(chunk);
+            for (int i = 0; i < path.length(); i++) {
+                char c = path.charAt(i);
+                if (c < 0x80) {
+                    chunk.put((byte) c);
+                } else if (c < 0x800) {
+                    chunk.put((byte) (0xc0 | (c >> 6)));
+                    chunk.put((byte) (0x80 | (c & 0x3f)));
+                } else {
+                    chunk.put((byte) (0xe0 | (c >> 12)));
+                    chunk.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                    chunk.put((byte) (0x80 | (c & 0x3f)));
+                }
+            }
+            usedBytes += length;
+            return ref;
+        }
+
+        /**
+         * Returns the reference to the copied path, or -1 when no chunk can be allocated for it.
+         */
+        long copy(PathChunks source, long sourceRef, int length) {
+            ByteBuffer chunk = chunkFor(length);
+            if (chunk == null) {
+                return -1;
+            }
+            long ref = refOf(chunk);
+            ByteBuffer sourceChunk = source.chunks.get((int) (sourceRef >>> 32));
+            int sourceOffset = (int) sourceRef;
+            for (int i = 0; i < length; i++) {
+                chunk.put(sourceChunk.get(sourceOffset + i));
+            }
+            usedBytes += length;
+            return ref;
+        }
+
+        boolean matches(long ref, int length, String path) {
+            ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+            int offset = (int) ref;
+            int end = offset + length;
+            for (int i = 0; i < path.length(); i++) {
+                char c = path.charAt(i);
+                if (c < 0x80) {
+                    if (offset + 1 > end || chunk.get(offset++) != (byte) c) {
+                        return false;
+                    }
+                } else if (c < 0x800) {
+                    if (offset + 2 > end
+                        || chunk.get(offset++) != (byte) (0xc0 | (c >> 6))
+                        || chunk.get(offset++) != (byte) (0x80 | (c & 0x3f))) {
+                        return false;
+                    }
+                } else {
+                    if (offset + 3 > end
+                        || chunk.get(offset++) != (byte) (0xe0 | (c >> 12))
+                        || chunk.get(offset++) != (byte) (0x80 | ((c >> 6) & 0x3f))
+                        || chunk.get(offset++) != (byte) (0x80 | (c & 0x3f))) {
+                        return false;
+                    }
+                }
+            }
+            return offset == end;
+        }
+
+        void discard(int length) {
+            garbageBytes += length;
+        }
+
+        boolean hasTooMuchGarbage() {
+            return garbageBytes * 2 > PATH_CHUNK_SIZE && garbageBytes * 2 > usedBytes;
+        }
+
+        @Nullable
+        private ByteBuffer chunkFor(int length) {
+            ByteBuffer current = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (current == null || current.remaining() < length) {
+                try {
+                    current = ByteBuffer.allocateDirect(PATH_CHUNK_SIZE);
+                } catch (OutOfMemoryError e) {
+                    return null;
+                }
+                chunks.add(current);
+            }
+            return current;
+        }
+
+        private long refOf(ByteBuffer chunk) {
+            return ((long) (chunks.size() - 1) << 32) | chunk.position();
+        }
+    }
+}
@@ -62,7 +62,7 @@ BuildCacheEntryPacker createResultPacker(
         StringInterner stringInterner
     ) {
         return new GZipBuildCacheEntryPacker(
-            new TarBuildCacheEntryPacker(deleter, fileSystem, fileHasher, stringInterner));
+            new TarBuildCacheEntryPacker(deleter, fileSystem, fileHasher, stringInterner, TarBuildCacheEntryPacker.streamingUnpackExecutorIfEnabled()));
     }
 
     OriginMetadataFactory createOriginMetadataFactory(
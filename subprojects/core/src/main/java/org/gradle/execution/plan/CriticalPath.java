@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.plan;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.gradle.internal.time.TimeFormatting;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the remaining critical path of each node in an execution plan, i.e. the longest chain of estimated execution times
+ * from the node to any node which depends on it, and records when nodes actually run to compare the prediction with the outcome.
+ */
+class CriticalPath {
+    private final ExecutionTimeEstimator estimator;
+    private final Map<Node, Long> remaining = Maps.newIdentityHashMap();
+    private final Map<Node, Long> started = Maps.newIdentityHashMap();
+    private final Map<Node, Long> finished = Maps.newIdentityHashMap();
+
+    CriticalPath(ExecutionTimeEstimator estimator) {
+        this.estimator = estimator;
+    }
+
+    /**
+     * Estimates the remaining critical path of the given nodes, which must be in execution order.
+     * Returns the nodes in the order they should be preferred in when they are ready at the same time.
+     */
+    List<Node> prioritize(Iterable<Node> nodesInExecutionOrder) {
+        clear();
+        List<Node> nodes = Lists.newArrayList(nodesInExecutionOrder);
+        estimator.prepare(nodes);
+        Map<Node, Integer> executionOrder = Maps.newIdentityHashMap();
+        for (int i = 0; i < nodes.size(); i++) {
+            executionOrder.put(nodes.get(i), i);
+        }
+        // Dependents come after their dependencies in execution order
+        for (Node node : Lists.reverse(nodes)) {
+            long estimate = estimator.estimateExecutionTime(node);
+            long longestDependent = 0;
+            for (Node dependent : node.getDependencyPredecessors()) {
+                longestDependent = Math.max(longestDependent, remaining.getOrDefault(dependent, 0L));
+            }
+            remaining.put(node, estimate + longestDependent);
+        }
+        List<Node> prioritized = new ArrayList<>(nodes);
+        prioritized.sort(Comparator.<Node>comparingLong(remaining::get).reversed().thenComparing(executionOrder::get));
+        return prioritized;
+    }
+
+    void started(Node node, long timestamp) {
+        started.put(node, timestamp);
+    }
+
+    void finished(Node node, long timestamp) {
+        if (started.containsKey(node)) {
+            finished.put(node, timestamp);
+        }
+    }
+
+    /**
+     * Returns the chain of nodes with the longest estimated execution time.
+     */
+    List<Node> getPredictedPath() {
+        List<Node> path = new ArrayList<>();
+        Node current = longest(remaining.keySet(), remaining);
+        while (current != null) {
+            path.add(current);
+            current = longest(current.getDependencyPredecessors(), remaining);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the chain of executed nodes which determined when the last node finished, following the dependency which finished last.
+     */
+    List<Node> getActualPath() {
+        List<Node> path = new ArrayList<>();
+        Node current = longest(finished.keySet(), finished);
+        while (current != null) {
+            path.add(current);
+            current = longest(current.getDependencySuccessors(), finished);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    String render() {
+        List<Node> predicted = getPredictedPath();
+        List<Node> actual = getActualPath();
+        StringBuilder builder = new StringBuilder();
+        long predictedTime = predicted.isEmpty() ? 0 : remaining.get(predicted.get(0));
+        builder.append("Predicted critical path (").append(TimeFormatting.formatDurationTerse(predictedTime)).append("): ");
+        appendPath(builder, predicted);
+        long actualTime = actual.isEmpty() ? 0 : finished.get(actual.get(actual.size() - 1)) - started.get(actual.get(0));
+        builder.append(System.lineSeparator()).append("Actual critical path (").append(TimeFormatting.formatDurationTerse(actualTime)).append("): ");
+        appendPath(builder, actual);
+        return builder.toString();
+    }
+
+    private static void appendPath(StringBuilder builder, List<Node> path) {
+        if (path.isEmpty()) {
+            builder.append("none");
+        }
+        for (int i = 0; i < path.size(); i++) {
+            if (i > 0) {
+                builder.append(" -> ");
+            }
+            builder.append(path.get(i));
+        }
+    }
+
+    @Nullable
+    private static Node longest(Iterable<Node> candidates, Map<Node, Long> values) {
+        Node longest = null;
+        long longestValue = Long.MIN_VALUE;
+        for (Node candidate : candidates) {
+            Long value = values.get(candidate);
+            if (value != null && value > longestValue) {
+                longest = candidate;
+                longestValue = value;
+            }
+        }
+        return longest;
+    }
+
+    void clear() {
+        remaining.clear();
+        started.clear();
+        finished.clear();
+    }
+}
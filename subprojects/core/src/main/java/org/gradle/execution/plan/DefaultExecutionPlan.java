@@ -62,15 +62,26 @@
 
 /**
  * A reusable implementation of ExecutionPlan. The {@link #addEntryTasks(java.util.Collection)} and {@link #clear()} methods are NOT threadsafe, and callers must synchronize access to these methods.
+ *
+ * <p>By default, {@link #selectNext(WorkerLeaseRegistry.WorkerLease, ResourceLockState)} scans the whole execution queue for a node that can run.
+ * When the {@value #INDEXED_READY_QUEUE_PROPERTY} system property is set to {@code true}, a {@link ReadyNodeQueue} is maintained instead,
+ * which only contains the nodes whose dependencies are complete and which are not blocked by a project lock, a shared resource or a running node.</p>
+ *
+ * <p>When {@link #prioritizeCriticalPath(ExecutionTimeEstimator)} is used, the ready queue prefers the nodes with the longest estimated chain of
+ * dependent nodes still to run over the execution order. This can start ready nodes before nodes they should run after.</p>
  */
 @NonNullApi
 public class DefaultExecutionPlan implements ExecutionPlan {
+    public static final String INDEXED_READY_QUEUE_PROPERTY = "org.gradle.internal.scheduler.indexed";
+    public static final String CRITICAL_PATH_PRIORITY_PROPERTY = "org.gradle.internal.scheduler.critical-path";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultExecutionPlan.class);
 
     private final Set<Node> entryNodes = new LinkedHashSet<>();
     private final NodeMapping nodeMapping = new NodeMapping();
-    private final List<Node> executionQueue = Lists.newLinkedList();
+    private final Set<Node> executionQueue = new LinkedHashSet<>();
     private final Map<Project, ResourceLock> projectLocks = Maps.newHashMap();
+    private final Set<ResourceLock> awaitedSharedResourceLocks = new LinkedHashSet<>();
     private final FailureCollector failureCollector = new FailureCollector();
     private final TaskNodeFactory taskNodeFactory;
     private final TaskDependencyResolver dependencyResolver;
@@ -84,14 +95,23 @@ public class DefaultExecutionPlan implements ExecutionPlan {
     private final Map<Pair<Node, Node>, Boolean> reachableCache = Maps.newHashMap();
     private final List<Node> dependenciesWhichRequireMonitoring = Lists.newArrayList();
     private boolean maybeNodesReady;
+    private boolean indexedReadyQueue;
+    private final ReadyNodeQueue readyNodes = new ReadyNodeQueue();
+    @Nullable
+    private CriticalPath criticalPath;
     private final GradleInternal gradle;
 
     private boolean buildCancelled;
 
     public DefaultExecutionPlan(GradleInternal gradle, TaskNodeFactory taskNodeFactory, TaskDependencyResolver dependencyResolver) {
+        this(gradle, taskNodeFactory, dependencyResolver, Boolean.getBoolean(INDEXED_READY_QUEUE_PROPERTY));
+    }
+
+    public DefaultExecutionPlan(GradleInternal gradle, TaskNodeFactory taskNodeFactory, TaskDependencyResolver dependencyResolver, boolean indexedReadyQueue) {
         this.gradle = gradle;
         this.taskNodeFactory = taskNodeFactory;
         this.dependencyResolver = dependencyResolver;
+        this.indexedReadyQueue = indexedReadyQueue;
     }
 
     @Override
@@ -328,8 +348,15 @@ public NodeInVisitingSegment apply(Node node) {
         executionQueue.clear();
         dependencyResolver.clear();
         Iterables.addAll(executionQueue, nodeMapping);
+        if (indexedReadyQueue) {
+            readyNodes.reset(criticalPath != null ? criticalPath.prioritize(executionQueue) : executionQueue);
+        }
         for (Node node : executionQueue) {
-            maybeNodesReady |= node.updateAllDependenciesComplete() && node.isReady();
+            boolean nodeReady = node.updateAllDependenciesComplete() && node.isReady();
+            maybeNodesReady |= nodeReady;
+            if (nodeReady && indexedReadyQueue) {
+                readyNodes.offer(node);
+            }
         }
         this.dependenciesWhichRequireMonitoring.addAll(dependenciesWhichRequireMonitoring);
     }
@@ -469,7 +496,12 @@ public void clear() {
         entryNodes.clear();
         nodeMapping.clear();
         executionQueue.clear();
+        readyNodes.clear();
+        if (criticalPath != null) {
+            criticalPath.clear();
+        }
         projectLocks.clear();
+        awaitedSharedResourceLocks.clear();
         failureCollector.clearFailures();
         producedButNotYetConsumed.clear();
         reachableCache.clear();
@@ -505,6 +537,23 @@ public void setContinueOnFailure(boolean continueOnFailure) {
         this.continueOnFailure = continueOnFailure;
     }
 
+    /**
+     * Prefers the ready nodes with the longest estimated remaining critical path when selecting the next node, using the indexed ready queue.
+     * Takes effect the next time the execution plan is determined.
+     */
+    public void prioritizeCriticalPath(ExecutionTimeEstimator estimator) {
+        this.criticalPath = new CriticalPath(estimator);
+        this.indexedReadyQueue = true;
+    }
+
+    /**
+     * Returns a description of the predicted and the actual critical path of the execution, or {@code null} when not prioritizing the critical path.
+     */
+    @Nullable
+    public String renderCriticalPath() {
+        return criticalPath == null ? null : criticalPath.render();
+    }
+
     @Override
     @Nullable
     public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLockState resourceLockState) {
@@ -521,6 +570,9 @@ public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLock
                 iterator.remove();
             }
         }
+        if (indexedReadyQueue) {
+            return selectNextFromReadyQueue(workerLease, resourceLockState);
+        }
         if (!maybeNodesReady) {
             return null;
         }
@@ -551,6 +603,59 @@ public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLock
         return null;
     }
 
+    @Nullable
+    private Node selectNextFromReadyQueue(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLockState resourceLockState) {
+        readyNodes.projectsMayHaveBeenUnlocked(project -> getProjectLock(project).isLocked());
+        // Shared resources can be released by other builds, so re-check the waiting nodes on every selection
+        readyNodes.sharedResourcesMayHaveBeenReleased();
+
+        Node node;
+        while ((node = readyNodes.poll()) != null) {
+            if (!node.isReady() || !node.allDependenciesComplete()) {
+                // Stale entry, the node will be offered again once it becomes ready
+                continue;
+            }
+            MutationInfo mutations = getResolvedMutationInfo(node);
+
+            Project projectToLock = node.getProjectToLock();
+            if (projectToLock != null && !getProjectLock(projectToLock).tryLock()) {
+                LOGGER.debug("Cannot acquire project lock for node {}", node);
+                resourceLockState.releaseLocks();
+                readyNodes.parkUntilProjectUnlocked(node, projectToLock);
+                continue;
+            }
+            if (!tryLockSharedResourceFor(node)) {
+                LOGGER.debug("Cannot acquire shared resource lock for node {}", node);
+                resourceLockState.releaseLocks();
+                readyNodes.parkUntilSharedResourcesReleased(node);
+                continue;
+            }
+            if (!workerLease.tryLock()) {
+                // No other node can run on this worker either
+                LOGGER.debug("Cannot acquire worker lease lock for node {}", node);
+                resourceLockState.releaseLocks();
+                readyNodes.putBack(node);
+                return null;
+            }
+            if (!canRunWithCurrentlyExecutedNodes(node, mutations)) {
+                LOGGER.debug("Node {} cannot run with currently running nodes {}", node, runningNodes);
+                resourceLockState.releaseLocks();
+                readyNodes.parkUntilRunningNodesChange(node);
+                continue;
+            }
+
+            if (node.allDependenciesSuccessful()) {
+                node.startExecution(this::recordNodeExecutionStarted);
+            } else {
+                node.skipExecution(this::recordNodeCompleted);
+            }
+            executionQueue.remove(node);
+            return node;
+        }
+        LOGGER.debug("No node could be selected from the ready queue");
+        return null;
+    }
+
     private boolean tryAcquireLocksForNode(Node node, WorkerLeaseRegistry.WorkerLease workerLease, MutationInfo mutations) {
         if (!tryLockProjectFor(node)) {
             LOGGER.debug("Cannot acquire project lock for node {}", node);
@@ -571,7 +676,11 @@ private boolean tryAcquireLocksForNode(Node node, WorkerLeaseRegistry.WorkerLeas
 
     private void updateAllDependenciesCompleteForPredecessors(Node node) {
         for (Node predecessor : node.getAllPredecessors()) {
-            maybeNodesReady |= predecessor.updateAllDependenciesComplete() && predecessor.isReady();
+            boolean predecessorReady = predecessor.updateAllDependenciesComplete() && predecessor.isReady();
+            maybeNodesReady |= predecessorReady;
+            if (predecessorReady && indexedReadyQueue) {
+                readyNodes.offer(predecessor);
+            }
         }
     }
 
@@ -594,7 +703,12 @@ private ResourceLock getProjectLock(Project project) {
     }
 
     private boolean tryLockSharedResourceFor(Node node) {
-        return node.getResourcesToLock().stream().allMatch(ResourceLock::tryLock);
+        List<? extends ResourceLock> resourceLocks = node.getResourcesToLock();
+        if (resourceLocks.stream().allMatch(ResourceLock::tryLock)) {
+            return true;
+        }
+        awaitedSharedResourceLocks.addAll(resourceLocks);
+        return false;
     }
 
     private void unlockSharedResourcesFor(Node node) {
@@ -732,6 +846,9 @@ private static String getOverLappedPath(String firstPath, String secondPath) {
 
     private void recordNodeExecutionStarted(Node node) {
         runningNodes.add(node);
+        if (criticalPath != null) {
+            criticalPath.started(node, System.currentTimeMillis());
+        }
     }
 
     private void recordNodeCompleted(Node node) {
@@ -748,9 +865,22 @@ private void recordNodeCompleted(Node node) {
             producedButNotYetConsumed.add(node);
         }
 
+        if (indexedReadyQueue) {
+            readyNodes.runningNodesChanged();
+        }
+
         updateAllDependenciesCompleteForPredecessors(node);
     }
 
+    @Override
+    public Collection<? extends ResourceLock> getAwaitedLocks() {
+        // Nodes waiting for a lock are not necessarily tried again on each selection, so wait for any lock they may be waiting for
+        List<ResourceLock> awaitedLocks = new ArrayList<>(projectLocks.size() + awaitedSharedResourceLocks.size());
+        awaitedLocks.addAll(projectLocks.values());
+        awaitedLocks.addAll(awaitedSharedResourceLocks);
+        return awaitedLocks;
+    }
+
     @Override
     public void finishedExecuting(Node node) {
         try {
@@ -765,6 +895,9 @@ public void finishedExecuting(Node node) {
                 }
 
                 runningNodes.remove(node);
+                if (criticalPath != null) {
+                    criticalPath.finished(node, System.currentTimeMillis());
+                }
                 node.finishExecution(this::recordNodeCompleted);
             } else {
                 LOGGER.debug("Already completed node {} reported as finished executing", node);
@@ -775,7 +908,7 @@ public void finishedExecuting(Node node) {
         }
     }
 
-    private static void enforceFinalizers(Node node) {
+    private void enforceFinalizers(Node node) {
         for (Node finalizerNode : node.getFinalizers()) {
             if (finalizerNode.isRequired() || finalizerNode.isMustNotRun()) {
                 Set<Node> enforcedNodes = Sets.newHashSet();
@@ -784,7 +917,7 @@ private static void enforceFinalizers(Node node) {
         }
     }
 
-    private static void enforceWithDependencies(Node nodeInfo, Set<Node> enforcedNodes) {
+    private void enforceWithDependencies(Node nodeInfo, Set<Node> enforcedNodes) {
         Deque<Node> candidateNodes = new ArrayDeque<>();
         candidateNodes.add(nodeInfo);
 
@@ -797,6 +930,9 @@ private static void enforceWithDependencies(Node nodeInfo, Set<Node> enforcedNod
 
                 if (node.isMustNotRun() || node.isRequired()) {
                     node.enforceRun();
+                    if (indexedReadyQueue) {
+                        readyNodes.offer(node);
+                    }
                     // Completed changed from true to false - inform all nodes depending on this one.
                     for (Node predecessor : node.getAllPredecessors()) {
                         predecessor.forceAllDependenciesCompleteUpdate();
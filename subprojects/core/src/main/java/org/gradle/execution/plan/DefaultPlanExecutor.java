@@ -16,15 +16,20 @@
 
 package org.gradle.execution.plan;
 
+import com.google.common.collect.Iterables;
 import org.gradle.api.Action;
 import org.gradle.api.NonNullApi;
+import org.gradle.api.Transformer;
 import org.gradle.concurrent.ParallelismConfiguration;
 import org.gradle.initialization.BuildCancellationToken;
 import org.gradle.internal.MutableBoolean;
 import org.gradle.internal.MutableReference;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.resources.WaitingStateLockAction;
 import org.gradle.internal.time.Time;
 import org.gradle.internal.time.TimeFormatting;
 import org.gradle.internal.time.Timer;
@@ -34,6 +39,7 @@
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -70,7 +76,7 @@ public void process(ExecutionPlan executionPlan, Collection<? super Throwable> f
             WorkerLease parentWorkerLease = workerLeaseService.getCurrentWorkerLease();
             startAdditionalWorkers(executionPlan, nodeExecutor, executor, parentWorkerLease);
             new ExecutorWorker(executionPlan, nodeExecutor, parentWorkerLease, cancellationToken, coordinationService).run();
-            awaitCompletion(executionPlan, failures);
+            awaitCompletion(executionPlan, parentWorkerLease, failures);
         } finally {
             executor.stop();
         }
@@ -79,15 +85,33 @@ public void process(ExecutionPlan executionPlan, Collection<? super Throwable> f
     /**
      * Blocks until all nodes in the plan have been processed. This method will only return when every node in the plan has either completed, failed or been skipped.
      */
-    private void awaitCompletion(final ExecutionPlan executionPlan, final Collection<? super Throwable> failures) {
-        coordinationService.withStateLock(resourceLockState -> {
+    private void awaitCompletion(final ExecutionPlan executionPlan, WorkerLease workerLease, final Collection<? super Throwable> failures) {
+        coordinationService.withStateLock(waitingForPlan(executionPlan, workerLease, resourceLockState -> {
             if (executionPlan.allNodesComplete()) {
                 executionPlan.collectFailures(failures);
                 return FINISHED;
             } else {
                 return RETRY;
             }
-        });
+        }));
+    }
+
+    /**
+     * Returns an action which, when retried, waits for the locks that can allow the plan to make progress rather than for any change.
+     */
+    private static WaitingStateLockAction waitingForPlan(ExecutionPlan executionPlan, WorkerLease workerLease, Transformer<ResourceLockState.Disposition, ResourceLockState> action) {
+        return new WaitingStateLockAction() {
+            @Override
+            public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                return action.transform(resourceLockState);
+            }
+
+            @Override
+            public Iterable<? extends ResourceLock> getAwaitedLocks() {
+                // Nodes finish executing together with releasing their worker lease, which is from the same pool as this one
+                return Iterables.concat(executionPlan.getAwaitedLocks(), Collections.singleton(workerLease));
+            }
+        };
     }
 
     private void startAdditionalWorkers(ExecutionPlan executionPlan, Action<? super Node> nodeExecutor, Executor executor, WorkerLease parentWorkerLease) {
@@ -152,7 +176,7 @@ public void run() {
         private boolean executeNextNode(final WorkerLease workerLease, final Action<Node> nodeExecutor) {
             final MutableReference<Node> selected = MutableReference.empty();
             final MutableBoolean nodesRemaining = new MutableBoolean();
-            coordinationService.withStateLock(resourceLockState -> {
+            coordinationService.withStateLock(waitingForPlan(executionPlan, workerLease, resourceLockState -> {
                 if (cancellationToken.isCancellationRequested()) {
                     executionPlan.cancelExecution();
                 }
@@ -175,7 +199,7 @@ private boolean executeNextNode(final WorkerLease workerLease, final Action<Node
                 } else {
                     return FINISHED;
                 }
-            });
+            }));
 
             Node selectedNode = selected.get();
             if (selectedNode != null) {
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.plan;
+
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the execution time of task nodes using the execution time of the outputs recorded in the execution history.
+ * The execution times of all tasks in the plan are loaded in a single batch when the estimator is prepared.
+ */
+public class ExecutionHistoryExecutionTimeEstimator implements ExecutionTimeEstimator {
+    private final ExecutionHistoryStore executionHistoryStore;
+    private Map<String, Long> executionTimes = Collections.emptyMap();
+
+    public ExecutionHistoryExecutionTimeEstimator(ExecutionHistoryStore executionHistoryStore) {
+        this.executionHistoryStore = executionHistoryStore;
+    }
+
+    @Override
+    public void prepare(Collection<Node> nodes) {
+        List<String> taskPaths = new ArrayList<>();
+        for (Node node : nodes) {
+            if (node instanceof LocalTaskNode) {
+                taskPaths.add(((LocalTaskNode) node).getTask().getPath());
+            }
+        }
+        executionTimes = executionHistoryStore.loadExecutionTimes(taskPaths);
+    }
+
+    @Override
+    public long estimateExecutionTime(Node node) {
+        if (!(node instanceof LocalTaskNode)) {
+            return 0;
+        }
+        return Math.max(0, executionTimes.getOrDefault(((LocalTaskNode) node).getTask().getPath(), 0L));
+    }
+}
@@ -18,6 +18,7 @@
 
 import org.gradle.api.Describable;
 import org.gradle.api.Task;
+import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockState;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 
@@ -35,6 +36,12 @@ public interface ExecutionPlan extends Describable {
     @Nullable
     Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLockState resourceLockState);
 
+    /**
+     * Returns the resource locks, other than worker leases, whose release can allow a node to be selected once {@link #selectNext} returned null.
+     * Nodes also become ready when other nodes finish executing, which always releases a worker lease.
+     */
+    Collection<? extends ResourceLock> getAwaitedLocks();
+
     void finishedExecuting(Node node);
 
     void abortAllAndFail(Throwable t);
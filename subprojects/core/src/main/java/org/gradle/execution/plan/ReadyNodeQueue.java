@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.gradle.api.NonNullApi;
+import org.gradle.api.Project;
+
+import javax.annotation.Nullable;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * An index of the nodes of an execution plan that are candidates for execution, ordered by their position in the execution queue.
+ *
+ * <p>Nodes are offered to the queue when they become ready and all their dependencies are complete. Nodes which could be selected
+ * but cannot currently run because of a conflict are parked, and are only offered again when the conflict may have been resolved:
+ * nodes waiting for a project lock are parked per project, nodes waiting for shared resources or for conflicting mutations
+ * of running nodes are parked until some other node completes.</p>
+ *
+ * <p>The queue may contain stale entries, i.e. nodes which are no longer ready. Callers need to check the state of polled nodes.</p>
+ *
+ * <p>This class is not thread-safe. It is used while holding the state lock of the execution plan.</p>
+ */
+@NonNullApi
+class ReadyNodeQueue {
+    private final Map<Node, Integer> ordinals = Maps.newIdentityHashMap();
+    private final NavigableSet<Node> readyNodes = new TreeSet<>(Comparator.comparingInt(ordinals::get));
+    private final Map<Project, Set<Node>> waitingForProjectLock = Maps.newHashMap();
+    private final Set<Node> waitingForSharedResources = Sets.newIdentityHashSet();
+    private final Set<Node> waitingForRunningNodes = Sets.newIdentityHashSet();
+
+    /**
+     * Assigns the execution order of the given nodes. Discards any previous state.
+     */
+    public void reset(Iterable<Node> nodesInExecutionOrder) {
+        clear();
+        int ordinal = 0;
+        for (Node node : nodesInExecutionOrder) {
+            ordinals.put(node, ordinal++);
+        }
+    }
+
+    /**
+     * Offers a node which might be ready for execution. Does nothing when the node is not part of the plan or is already queued.
+     */
+    public void offer(Node node) {
+        if (ordinals.containsKey(node)) {
+            readyNodes.add(node);
+        }
+    }
+
+    /**
+     * Removes and returns the first queued node in execution order, or {@code null} when no node is queued.
+     */
+    @Nullable
+    public Node poll() {
+        return readyNodes.pollFirst();
+    }
+
+    /**
+     * Puts a polled node back into the queue, keeping its position in execution order.
+     */
+    public void putBack(Node node) {
+        readyNodes.add(node);
+    }
+
+    public boolean isEmpty() {
+        return readyNodes.isEmpty();
+    }
+
+    public void parkUntilProjectUnlocked(Node node, Project project) {
+        waitingForProjectLock.computeIfAbsent(project, p -> Sets.newIdentityHashSet()).add(node);
+    }
+
+    public void parkUntilSharedResourcesReleased(Node node) {
+        waitingForSharedResources.add(node);
+    }
+
+    public void parkUntilRunningNodesChange(Node node) {
+        waitingForRunningNodes.add(node);
+    }
+
+    /**
+     * Offers again the nodes waiting for the lock of any project which is no longer locked.
+     */
+    public void projectsMayHaveBeenUnlocked(Predicate<? super Project> isLocked) {
+        for (Iterator<Map.Entry<Project, Set<Node>>> iterator = waitingForProjectLock.entrySet().iterator(); iterator.hasNext();) {
+            Map.Entry<Project, Set<Node>> entry = iterator.next();
+            if (!isLocked.test(entry.getKey())) {
+                unpark(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    public void sharedResourcesMayHaveBeenReleased() {
+        unpark(waitingForSharedResources);
+    }
+
+    public void runningNodesChanged() {
+        unpark(waitingForRunningNodes);
+    }
+
+    private void unpark(Set<Node> waiting) {
+        for (Iterator<Node> iterator = waiting.iterator(); iterator.hasNext();) {
+            offer(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    public void clear() {
+        readyNodes.clear();
+        ordinals.clear();
+        waitingForProjectLock.clear();
+        waitingForSharedResources.clear();
+        waitingForRunningNodes.clear();
+    }
+}
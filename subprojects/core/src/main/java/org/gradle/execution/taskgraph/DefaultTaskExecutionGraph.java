@@ -32,12 +32,14 @@
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.internal.project.ProjectStateRegistry;
 import org.gradle.api.internal.tasks.NodeExecutionContext;
+import org.gradle.api.logging.Logging;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.api.tasks.TaskState;
 import org.gradle.configuration.internal.ListenerBuildOperationDecorator;
 import org.gradle.execution.ProjectExecutionServiceRegistry;
 import org.gradle.execution.plan.DefaultExecutionPlan;
+import org.gradle.execution.plan.ExecutionHistoryExecutionTimeEstimator;
 import org.gradle.execution.plan.Node;
 import org.gradle.execution.plan.NodeExecutor;
 import org.gradle.execution.plan.PlanExecutor;
@@ -46,6 +48,7 @@
 import org.gradle.execution.plan.TaskNodeFactory;
 import org.gradle.internal.Cast;
 import org.gradle.internal.event.ListenerBroadcast;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -61,6 +64,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -68,6 +72,8 @@
 
 @NonNullApi
 public class DefaultTaskExecutionGraph implements TaskExecutionGraphInternal {
+    public static final String PREFETCH_EXECUTION_HISTORY_PROPERTY = "org.gradle.internal.execution-history.prefetch";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultTaskExecutionGraph.class);
 
     private enum GraphState {
@@ -116,6 +122,9 @@ public DefaultTaskExecutionGraph(
         this.projectStateRegistry = projectStateRegistry;
         this.globalServices = globalServices;
         this.executionPlan = new DefaultExecutionPlan(gradleInternal, taskNodeFactory, dependencyResolver);
+        if (Boolean.getBoolean(DefaultExecutionPlan.CRITICAL_PATH_PRIORITY_PROPERTY)) {
+            executionPlan.prioritizeCriticalPath(new ExecutionHistoryExecutionTimeEstimator(globalServices.get(ExecutionHistoryStore.class)));
+        }
     }
 
     @Override
@@ -185,6 +194,11 @@ public void run() {
             LOGGER.warn("Ignoring listeners of task graph ready event, as this build (" + gradleInternal.getIdentityPath() + ") has already executed work.");
         }
 
+        boolean prefetchHistory = Boolean.getBoolean(PREFETCH_EXECUTION_HISTORY_PROPERTY);
+        if (prefetchHistory) {
+            prefetchExecutionHistory();
+        }
+
         try {
             planExecutor.process(executionPlan, failures,
                 new BuildOperationAwareExecutionAction(
@@ -193,7 +207,15 @@ public void run() {
                 )
             );
             LOGGER.debug("Timing: Executing the DAG took " + clock.getElapsed());
+            String criticalPath = executionPlan.renderCriticalPath();
+            if (criticalPath != null) {
+                LOGGER.info(Logging.LIFECYCLE, criticalPath);
+            }
         } finally {
+            if (prefetchHistory) {
+                // Tasks which did not run, for example after a failure, never load their prefetched history
+                globalServices.get(ExecutionHistoryStore.class).discardPrefetched();
+            }
             coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
                 @Override
                 public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
@@ -204,6 +226,16 @@ public ResourceLockState.Disposition transform(ResourceLockState resourceLockSta
         }
     }
 
+    private void prefetchExecutionHistory() {
+        Timer clock = Time.startTimer();
+        List<String> taskPaths = new ArrayList<>();
+        for (Task task : executionPlan.getTasks()) {
+            taskPaths.add(task.getPath());
+        }
+        globalServices.get(ExecutionHistoryStore.class).prefetch(taskPaths);
+        LOGGER.debug("Timing: Prefetching the execution history of {} tasks took {}", taskPaths.size(), clock.getElapsed());
+    }
+
     @Override
     public void addTaskExecutionGraphListener(TaskExecutionGraphListener listener) {
         graphListeners.add(listenerBuildOperationDecorator.decorate("TaskExecutionGraph.addTaskExecutionGraphListener", TaskExecutionGraphListener.class, listener));
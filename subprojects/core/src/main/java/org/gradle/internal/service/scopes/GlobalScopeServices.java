@@ -85,6 +85,7 @@
 import org.gradle.internal.reflect.DirectInstantiator;
 import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.gradle.internal.resources.StripedResourceLockCoordinationService;
 import org.gradle.internal.service.CachingServiceLocator;
 import org.gradle.internal.service.DefaultServiceLocator;
 import org.gradle.internal.service.ServiceRegistration;
@@ -147,6 +148,9 @@ void configure(ServiceRegistration registration, ClassLoaderRegistry classLoader
     }
 
     ResourceLockCoordinationService createWorkerLeaseCoordinationService() {
+        if (Boolean.getBoolean(StripedResourceLockCoordinationService.STRIPED_COORDINATION_PROPERTY)) {
+            return new StripedResourceLockCoordinationService();
+        }
         return new DefaultResourceLockCoordinationService();
     }
 
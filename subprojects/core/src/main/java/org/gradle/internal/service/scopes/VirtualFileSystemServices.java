@@ -73,9 +73,11 @@
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.vfs.RoutingVirtualFileSystem;
 import org.gradle.internal.vfs.VirtualFileSystem;
+import org.gradle.internal.vfs.VirtualFileSystemPersistence;
 import org.gradle.internal.vfs.WatchingVirtualFileSystem;
 import org.gradle.internal.vfs.impl.DefaultVirtualFileSystem;
 import org.gradle.internal.vfs.impl.DefaultWatchingVirtualFileSystem;
+import org.gradle.internal.vfs.impl.SnapshotHierarchyFile;
 import org.gradle.internal.vfs.watch.impl.JdkFileWatcherRegistryFactory;
 import org.gradle.util.SingleMessageLogger;
 import org.slf4j.Logger;
@@ -123,6 +125,16 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
      */
     public static final String VFS_DROP_PROPERTY = "org.gradle.unsafe.vfs.drop";
 
+    /**
+     * JVM system property of the daemon to keep the retained VFS state between daemons.
+     *
+     * The state is written when the daemon stops and restored when the next daemon starts.
+     * Restored snapshots are checked against the file system before they are used.
+     *
+     * @see #VFS_RETENTION_ENABLED_PROPERTY
+     */
+    public static final String VFS_PERSISTENCE_ENABLED_PROPERTY = "org.gradle.unsafe.vfs.persistence";
+
     public static boolean isPartialInvalidationEnabled(Map<String, String> systemPropertiesArgs) {
         return getSystemProperty(VFS_PARTIAL_INVALIDATION_ENABLED_PROPERTY, systemPropertiesArgs) != null
             || isRetentionEnabled(systemPropertiesArgs);
@@ -156,6 +168,11 @@ CrossBuildFileHashCache createCrossBuildFileHashCache(CacheRepository cacheRepos
                 return new CrossBuildFileHashCache(null, cacheRepository, inMemoryCacheDecoratorFactory);
             }
 
+            VirtualFileSystemPersistence createVirtualFileSystemPersistence(CacheScopeMapping cacheScopeMapping, StringInterner stringInterner) {
+                File stateFile = new File(cacheScopeMapping.getBaseDirectory(null, "vfs", VersionStrategy.CachePerVersion), "snapshots.bin");
+                return new VirtualFileSystemPersistence(new SnapshotHierarchyFile(stateFile), stringInterner, System.getProperty(VFS_PERSISTENCE_ENABLED_PROPERTY) != null);
+            }
+
             FileHasher createCachingFileHasher(StringInterner stringInterner, CrossBuildFileHashCache fileStore, FileSystem fileSystem, GlobalScopeFileTimeStampInspector fileTimeStampInspector, StreamHasher streamHasher) {
                 CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem);
                 fileTimeStampInspector.attach(fileHasher);
@@ -168,17 +185,22 @@ VirtualFileSystem createVirtualFileSystem(
                 ListenerManager listenerManager,
                 Stat stat,
                 StringInterner stringInterner,
-                WellKnownFileLocations wellKnownFileLocations
+                WellKnownFileLocations wellKnownFileLocations,
+                VirtualFileSystemPersistence virtualFileSystemPersistence,
+                GlobalScopeFileTimeStampInspector fileTimeStampInspector
             ) {
+                DefaultVirtualFileSystem delegate = new DefaultVirtualFileSystem(
+                    hasher,
+                    stringInterner,
+                    stat,
+                    fileSystem.isCaseSensitive() ? CASE_SENSITIVE : CASE_INSENSITIVE,
+                    fileTimeStampInspector::timestampCanBeUsedToDetectFileChange,
+                    DirectoryScanner.getDefaultExcludes()
+                );
+                virtualFileSystemPersistence.attach(delegate);
                 WatchingVirtualFileSystem virtualFileSystem = new DefaultWatchingVirtualFileSystem(
                     new JdkFileWatcherRegistryFactory(),
-                    new DefaultVirtualFileSystem(
-                        hasher,
-                        stringInterner,
-                        stat,
-                        fileSystem.isCaseSensitive() ? CASE_SENSITIVE : CASE_INSENSITIVE,
-                        DirectoryScanner.getDefaultExcludes()
-                    ),
+                    delegate,
                     path -> !wellKnownFileLocations.isImmutable(path.toString())
                 );
                 listenerManager.addListener(new RootBuildLifecycleListener() {
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs;
+
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
+import org.gradle.internal.vfs.impl.DefaultVirtualFileSystem;
+import org.gradle.internal.vfs.impl.SnapshotHierarchyFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Keeps the state of the virtual file system between daemons.
+ *
+ * The snapshots are restored when the virtual file system is attached, and written back when this service is closed, i.e. when the daemon stops.
+ * Any failure to read or write the state is logged and otherwise ignored, as the state can always be recreated from the file system.
+ */
+public class VirtualFileSystemPersistence implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualFileSystemPersistence.class);
+
+    private final SnapshotHierarchyFile stateFile;
+    private final StringInterner stringInterner;
+    private final boolean enabled;
+    private DefaultVirtualFileSystem virtualFileSystem;
+
+    public VirtualFileSystemPersistence(SnapshotHierarchyFile stateFile, StringInterner stringInterner, boolean enabled) {
+        this.stateFile = stateFile;
+        this.stringInterner = stringInterner;
+        this.enabled = enabled;
+    }
+
+    public void attach(DefaultVirtualFileSystem virtualFileSystem) {
+        if (!enabled) {
+            return;
+        }
+        this.virtualFileSystem = virtualFileSystem;
+        try {
+            List<CompleteFileSystemLocationSnapshot> snapshots = stateFile.read(stringInterner);
+            LOGGER.info("Restored {} file system snapshots from the previous daemon", snapshots.size());
+            virtualFileSystem.restore(snapshots);
+        } catch (Exception e) {
+            LOGGER.info("Couldn't restore the file system snapshots of the previous daemon", e);
+            deleteStateFile();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (virtualFileSystem == null) {
+            return;
+        }
+        try {
+            stateFile.write(virtualFileSystem.getRootSnapshots());
+        } catch (Exception e) {
+            LOGGER.info("Couldn't store the file system snapshots for the next daemon", e);
+            deleteStateFile();
+        } finally {
+            virtualFileSystem = null;
+        }
+    }
+
+    private void deleteStateFile() {
+        try {
+            stateFile.delete();
+        } catch (Exception e) {
+            LOGGER.debug("Couldn't delete the file system snapshots", e);
+        }
+    }
+}
@@ -166,4 +166,62 @@ class CachingFileHasherTest extends Specification {
         }
         0 * _._
     }
+
+    def servesHashesFromOffHeapIndexWhenEnabled() {
+        def stat = fileSystem.stat(file)
+        Runnable onChangedByOtherProcess = null
+        1 * cacheAccess.createCache({ it.cacheName == "fileHashes" }, _, false, _) >> { parameters, maxEntries, cacheInMemory, listener ->
+            onChangedByOtherProcess = listener
+            cache
+        }
+        def offHeapHasher = new CachingFileHasher(target, cacheAccess, new StringInterner(), timeStampInspector, "fileHashes", fileSystem, true)
+
+        when:
+        def result = offHeapHasher.hash(file)
+
+        then:
+        result == hash
+
+        and:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
+        1 * cache.get(file.absolutePath) >> null
+        1 * target.hash(file) >> hash
+        1 * cache.put(file.absolutePath, _)
+        0 * _._
+
+        when:
+        result = offHeapHasher.hash(file)
+
+        then:
+        result == hash
+
+        and:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
+        0 * _._
+
+        when:
+        offHeapHasher.discard(file.absolutePath)
+        result = offHeapHasher.hash(file)
+
+        then:
+        result == hash
+
+        and:
+        1 * cache.remove(file.absolutePath)
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
+        1 * cache.get(file.absolutePath) >> new FileInfo(hash, stat.length, stat.lastModified)
+        0 * _._
+
+        when:
+        onChangedByOtherProcess.run()
+        result = offHeapHasher.hash(file)
+
+        then:
+        result == hash
+
+        and:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
+        1 * cache.get(file.absolutePath) >> new FileInfo(hash, stat.length, stat.lastModified)
+        0 * _._
+    }
 }
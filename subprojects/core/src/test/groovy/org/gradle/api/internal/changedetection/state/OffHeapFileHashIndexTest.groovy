@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
+import spock.lang.Specification
+
+class OffHeapFileHashIndexTest extends Specification {
+    def index = new OffHeapFileHashIndex()
+
+    def "returns null for unknown path"() {
+        expect:
+        index.get("/some/file") == null
+        index.size() == 0
+    }
+
+    def "stores hash, length and timestamp of a path"() {
+        def hash = Hashing.hashString("content")
+
+        when:
+        index.put("/some/file", new FileInfo(hash, 12, 345))
+        def info = index.get("/some/file")
+
+        then:
+        info.hash == hash
+        info.length == 12
+        info.timestamp == 345
+        index.size() == 1
+    }
+
+    def "replaces entry for the same path"() {
+        def hash = Hashing.hashString("new content")
+
+        when:
+        index.put("/some/file", new FileInfo(Hashing.hashString("content"), 12, 345))
+        index.put("/some/file", new FileInfo(hash, 13, 346))
+        def info = index.get("/some/file")
+
+        then:
+        info.hash == hash
+        info.length == 13
+        info.timestamp == 346
+        index.size() == 1
+    }
+
+    def "distinguishes paths with colliding hashes"() {
+        def collidingIndex = new OffHeapFileHashIndex({ String path -> 42L })
+        def hash1 = HashCode.fromInt(1)
+        def hash2 = HashCode.fromInt(2)
+
+        when:
+        collidingIndex.put("/file1", new FileInfo(hash1, 1, 1))
+        collidingIndex.put("/file2", new FileInfo(hash2, 2, 2))
+
+        then:
+        collidingIndex.get("/file1").hash == hash1
+        collidingIndex.get("/file2").hash == hash2
+        collidingIndex.get("/file3") == null
+
+        when:
+        collidingIndex.remove("/file1")
+
+        then:
+        collidingIndex.get("/file1") == null
+        collidingIndex.get("/file2").hash == hash2
+    }
+
+    def "removes entries"() {
+        when:
+        index.put("/some/file", new FileInfo(HashCode.fromInt(1), 1, 1))
+        index.remove("/some/file")
+
+        then:
+        index.get("/some/file") == null
+        index.size() == 0
+
+        when:
+        index.put("/some/file", new FileInfo(HashCode.fromInt(2), 2, 2))
+
+        then:
+        index.get("/some/file").hash == HashCode.fromInt(2)
+        index.size() == 1
+    }
+
+    def "keeps entries when growing and reclaiming removed entries"() {
+        def count = 100000
+
+        when:
+        count.times { i ->
+            index.put("/dir/file" + i, new FileInfo(HashCode.fromInt(i), i, i + 1))
+        }
+        (0..<count).step(2) { i ->
+            index.remove("/dir/file" + i)
+        }
+        count.times { i ->
+            index.put("/other/file" + i, new FileInfo(HashCode.fromInt(-i), i, i))
+        }
+
+        then:
+        index.size() == count + count / 2
+        count.times { i ->
+            def info = index.get("/dir/file" + i)
+            if (i % 2 == 0) {
+                assert info == null
+            } else {
+                assert info.hash == HashCode.fromInt(i)
+                assert info.length == i
+                assert info.timestamp == i + 1
+            }
+            assert index.get("/other/file" + i).hash == HashCode.fromInt(-i)
+        }
+    }
+
+    def "stores paths with non-ASCII characters"() {
+        def paths = ["/some/f\u00e9le", "/some/f\u00e8le", "/some/\u6587\u4ef6", "/some/\ud83d\ude00", "/some/fele"]
+
+        when:
+        paths.eachWithIndex { path, i ->
+            index.put(path, new FileInfo(HashCode.fromInt(i), i, i))
+        }
+
+        then:
+        paths.eachWithIndex { path, i ->
+            assert index.get(path).hash == HashCode.fromInt(i)
+        }
+        index.get("/some/f\u00e9l") == null
+        index.get("/some/f\u00e9lee") == null
+    }
+
+    def "can be cleared"() {
+        given:
+        index.put("/some/file", new FileInfo(HashCode.fromInt(1), 1, 1))
+
+        when:
+        index.clear()
+
+        then:
+        index.get("/some/file") == null
+        index.size() == 0
+
+        when:
+        index.put("/some/file", new FileInfo(HashCode.fromInt(2), 2, 2))
+
+        then:
+        index.get("/some/file").hash == HashCode.fromInt(2)
+    }
+
+    def "does not index hashes which do not fit into a record"() {
+        def longHash = HashCode.fromBytes(new byte[OffHeapFileHashIndex.MAX_HASH_LENGTH + 1])
+
+        when:
+        index.put("/some/file", new FileInfo(HashCode.fromInt(1), 1, 1))
+        index.put("/some/file", new FileInfo(longHash, 2, 2))
+
+        then:
+        index.get("/some/file") == null
+        index.size() == 0
+    }
+}
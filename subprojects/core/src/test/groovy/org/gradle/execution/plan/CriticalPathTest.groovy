@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.plan
+
+import spock.lang.Specification
+
+class CriticalPathTest extends Specification {
+    def durations = [:]
+    def criticalPath = new CriticalPath({ Node node -> durations[node] ?: 0L } as ExecutionTimeEstimator)
+
+    def "prefers nodes with the longest chain of dependents"() {
+        // short -> shortDependent
+        // compile -> test -> report
+        def shortNode = node("short", 10)
+        def shortDependent = node("shortDependent", 10)
+        def compile = node("compile", 100)
+        def test = node("test", 300)
+        def report = node("report", 5)
+        dependsOn(shortDependent, shortNode)
+        dependsOn(test, compile)
+        dependsOn(report, test)
+
+        when:
+        def prioritized = criticalPath.prioritize([shortNode, compile, shortDependent, test, report])
+
+        then:
+        prioritized == [compile, test, shortNode, shortDependent, report]
+        criticalPath.predictedPath == [compile, test, report]
+    }
+
+    def "keeps execution order for nodes with the same estimate"() {
+        def a = node("a", 0)
+        def b = node("b", 0)
+        def c = node("c", 0)
+
+        expect:
+        criticalPath.prioritize([b, c, a]) == [b, c, a]
+    }
+
+    def "prepares the estimator with all nodes before estimating them"() {
+        def estimator = Mock(ExecutionTimeEstimator)
+        def a = node("a", 0)
+        def b = node("b", 0)
+
+        when:
+        new CriticalPath(estimator).prioritize([a, b])
+
+        then:
+        1 * estimator.prepare([a, b])
+
+        then:
+        2 * estimator.estimateExecutionTime(_) >> 0L
+    }
+
+    def "actual path follows the dependency which finished last"() {
+        def a = node("a", 0)
+        def b = node("b", 0)
+        def c = node("c", 0)
+        dependsOn(c, a)
+        dependsOn(c, b)
+        criticalPath.prioritize([a, b, c])
+
+        when:
+        criticalPath.started(a, 0)
+        criticalPath.started(b, 0)
+        criticalPath.finished(a, 10)
+        criticalPath.finished(b, 50)
+        criticalPath.started(c, 50)
+        criticalPath.finished(c, 60)
+
+        then:
+        criticalPath.actualPath == [b, c]
+        criticalPath.render().contains("Actual critical path (60ms): b -> c")
+    }
+
+    private Node node(String name, long duration) {
+        def successors = new TreeSet<Node>({ Node left, Node right -> left.toString() <=> right.toString() } as Comparator)
+        def predecessors = new TreeSet<Node>({ Node left, Node right -> left.toString() <=> right.toString() } as Comparator)
+        def node = Stub(Node) {
+            getDependencySuccessors() >> successors
+            getDependencyPredecessors() >> predecessors
+            toString() >> name
+        }
+        durations[node] = duration
+        return node
+    }
+
+    private static void dependsOn(Node dependent, Node dependency) {
+        dependent.dependencySuccessors.add(dependency)
+        dependency.dependencyPredecessors.add(dependent)
+    }
+}
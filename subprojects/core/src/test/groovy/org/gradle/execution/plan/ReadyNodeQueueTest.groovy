@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan
+
+import org.gradle.api.Project
+import spock.lang.Specification
+
+class ReadyNodeQueueTest extends Specification {
+    def queue = new ReadyNodeQueue()
+    def a = Stub(Node)
+    def b = Stub(Node)
+    def c = Stub(Node)
+
+    def setup() {
+        queue.reset([a, b, c])
+    }
+
+    def "polls nodes in execution order regardless of offer order"() {
+        when:
+        queue.offer(c)
+        queue.offer(a)
+        queue.offer(b)
+        queue.offer(a)
+
+        then:
+        queue.poll() == a
+        queue.poll() == b
+        queue.poll() == c
+        queue.poll() == null
+        queue.empty
+    }
+
+    def "ignores nodes which are not part of the plan"() {
+        when:
+        queue.offer(Stub(Node))
+
+        then:
+        queue.empty
+    }
+
+    def "node put back keeps its position"() {
+        given:
+        queue.offer(a)
+        queue.offer(b)
+
+        when:
+        def first = queue.poll()
+        queue.putBack(first)
+
+        then:
+        queue.poll() == a
+    }
+
+    def "nodes waiting for a project lock are offered again once the project is unlocked"() {
+        def project1 = Stub(Project)
+        def project2 = Stub(Project)
+
+        given:
+        queue.parkUntilProjectUnlocked(a, project1)
+        queue.parkUntilProjectUnlocked(b, project2)
+
+        when:
+        queue.projectsMayHaveBeenUnlocked { true }
+
+        then:
+        queue.empty
+
+        when:
+        queue.projectsMayHaveBeenUnlocked { it == project1 }
+
+        then:
+        queue.poll() == b
+        queue.empty
+
+        when:
+        queue.projectsMayHaveBeenUnlocked { false }
+
+        then:
+        queue.poll() == a
+    }
+
+    def "nodes waiting for running nodes or shared resources are offered again"() {
+        given:
+        queue.parkUntilRunningNodesChange(c)
+        queue.parkUntilSharedResourcesReleased(b)
+
+        when:
+        queue.sharedResourcesMayHaveBeenReleased()
+
+        then:
+        queue.poll() == b
+        queue.empty
+
+        when:
+        queue.runningNodesChanged()
+        queue.runningNodesChanged()
+
+        then:
+        queue.poll() == c
+        queue.empty
+    }
+
+    def "reset discards queued and parked nodes"() {
+        given:
+        queue.offer(a)
+        queue.parkUntilRunningNodesChange(b)
+
+        when:
+        queue.reset([c, b, a])
+        queue.runningNodesChanged()
+        queue.offer(a)
+        queue.offer(c)
+
+        then:
+        queue.poll() == c
+        queue.poll() == a
+        queue.empty
+    }
+}
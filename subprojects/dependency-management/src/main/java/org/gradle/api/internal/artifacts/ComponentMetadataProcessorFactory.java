@@ -34,4 +34,9 @@ public interface ComponentMetadataProcessorFactory {
      * @return a {@code ComponentMetadataProcessor}
      */
     ComponentMetadataProcessor createComponentMetadataProcessor(MetadataResolutionContext resolutionContext);
+
+    /**
+     * Returns true when the processors created by this factory may transform metadata.
+     */
+    boolean hasRules();
 }
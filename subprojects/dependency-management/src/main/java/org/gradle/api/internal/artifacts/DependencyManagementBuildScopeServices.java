@@ -27,6 +27,8 @@
 import org.gradle.api.internal.artifacts.dsl.dependencies.DependencyFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheLockingManager;
 import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetadata;
+import org.gradle.api.internal.artifacts.ivyservice.ResolvedGraphCache;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ArtifactDownloadScheduler;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ConnectionFailureRepositoryBlacklister;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.RepositoryBlacklister;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolveIvyFactory;
@@ -39,6 +41,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.DependencyVerificationOverride;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.InMemoryModuleMetadataCache;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleDescriptorSnapshotStore;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleComponentResolveMetadataSerializer;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleMetadataSerializer;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleRepositoryCacheProvider;
@@ -62,6 +65,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectPublicationRegistry;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.DefaultArtifactDependencyResolver;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.MetadataPrefetchExecutor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DesugaredAttributeContainerSerializer;
 import org.gradle.api.internal.artifacts.mvnsettings.DefaultLocalMavenRepositoryLocator;
@@ -75,6 +79,8 @@
 import org.gradle.api.internal.artifacts.repositories.resolver.ExternalResourceAccessor;
 import org.gradle.api.internal.artifacts.repositories.transport.RepositoryTransport;
 import org.gradle.api.internal.artifacts.repositories.transport.RepositoryTransportFactory;
+import org.gradle.api.internal.artifacts.verification.CachingChecksumService;
+import org.gradle.api.internal.artifacts.verification.ChecksumService;
 import org.gradle.api.internal.attributes.ImmutableAttributesFactory;
 import org.gradle.api.internal.file.FileCollectionFactory;
 import org.gradle.api.internal.file.TemporaryFileProvider;
@@ -101,6 +107,7 @@
 import org.gradle.internal.build.BuildStateRegistry;
 import org.gradle.internal.component.external.model.ModuleComponentArtifactMetadata;
 import org.gradle.internal.component.external.model.PreferJavaRuntimeVariant;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.file.FileAccessTimeJournal;
 import org.gradle.internal.installation.CurrentGradleInstallation;
 import org.gradle.internal.instantiation.InstantiatorFactory;
@@ -117,6 +124,7 @@
 import org.gradle.internal.resource.cached.ByUrlCachedExternalResourceIndex;
 import org.gradle.internal.resource.cached.ExternalResourceFileStore;
 import org.gradle.internal.resource.connector.ResourceConnectorFactory;
+import org.gradle.internal.resource.local.DefaultPathKeyFileStore;
 import org.gradle.internal.resource.local.FileResourceRepository;
 import org.gradle.internal.resource.local.LocallyAvailableResourceFinder;
 import org.gradle.internal.resource.local.ivy.LocallyAvailableResourceFinderFactory;
@@ -193,6 +201,21 @@ AttributeContainerSerializer createAttributeContainerSerializer(ImmutableAttribu
         return new DesugaredAttributeContainerSerializer(attributesFactory, instantiator);
     }
 
+    ResolvedGraphCache createResolvedGraphCache(ArtifactCacheLockingManager artifactCacheLockingManager, BuildCommencedTimeProvider timeProvider, ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+        return new ResolvedGraphCache(artifactCacheLockingManager, timeProvider, moduleIdentifierFactory, Boolean.getBoolean(ResolvedGraphCache.ENABLED_PROPERTY), Boolean.getBoolean(ResolvedGraphCache.INCREMENTAL_PROPERTY));
+    }
+
+    ModuleDescriptorSnapshotStore createModuleDescriptorSnapshotStore(ArtifactCacheLockingManager artifactCacheLockingManager, ArtifactCacheMetadata artifactCacheMetadata, ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+                                                                      AttributeContainerSerializer attributeContainerSerializer, MavenMutableModuleMetadataFactory mavenMetadataFactory, IvyMutableModuleMetadataFactory ivyMetadataFactory, SimpleMapInterner stringInterner) {
+        return new ModuleDescriptorSnapshotStore(
+            artifactCacheLockingManager,
+            new DefaultPathKeyFileStore(artifactCacheMetadata.getMetaDataStoreDirectory()),
+            new ModuleMetadataSerializer(attributeContainerSerializer, mavenMetadataFactory, ivyMetadataFactory),
+            moduleIdentifierFactory,
+            stringInterner,
+            Boolean.getBoolean(ModuleDescriptorSnapshotStore.ENABLED_PROPERTY));
+    }
+
     ModuleRepositoryCacheProvider createModuleRepositoryCacheProvider(BuildCommencedTimeProvider timeProvider, ArtifactCacheLockingManager artifactCacheLockingManager, ImmutableModuleIdentifierFactory moduleIdentifierFactory,
                                                                       ArtifactCacheMetadata artifactCacheMetadata, AttributeContainerSerializer attributeContainerSerializer, MavenMutableModuleMetadataFactory mavenMetadataFactory, IvyMutableModuleMetadataFactory ivyMetadataFactory, SimpleMapInterner stringInterner,
                                                                       ArtifactIdentifierFileStore artifactIdentifierFileStore) {
@@ -314,8 +337,15 @@ StartParameterResolutionOverride createStartParameterResolutionOverride(StartPar
         return new StartParameterResolutionOverride(startParameter);
     }
 
-    DependencyVerificationOverride createDependencyVerificationOverride(StartParameterResolutionOverride startParameterResolutionOverride, BuildOperationExecutor buildOperationExecutor) {
-        return startParameterResolutionOverride.dependencyVerificationOverride(buildOperationExecutor);
+    ChecksumService createChecksumService(ArtifactCacheLockingManager artifactCacheLockingManager) {
+        if (Boolean.getBoolean(CachingChecksumService.ENABLED_PROPERTY)) {
+            return new CachingChecksumService(artifactCacheLockingManager);
+        }
+        return ChecksumService.UNCACHED;
+    }
+
+    DependencyVerificationOverride createDependencyVerificationOverride(StartParameterResolutionOverride startParameterResolutionOverride, BuildOperationExecutor buildOperationExecutor, ChecksumService checksumService, ExecutorFactory executorFactory) {
+        return startParameterResolutionOverride.dependencyVerificationOverride(buildOperationExecutor, checksumService, executorFactory);
     }
 
     ResolveIvyFactory createResolveIvyFactory(StartParameterResolutionOverride startParameterResolutionOverride, ModuleRepositoryCacheProvider moduleRepositoryCacheProvider,
@@ -325,7 +355,8 @@ ResolveIvyFactory createResolveIvyFactory(StartParameterResolutionOverride start
                                               ImmutableModuleIdentifierFactory moduleIdentifierFactory,
                                               RepositoryBlacklister repositoryBlacklister,
                                               VersionParser versionParser,
-                                              InstantiatorFactory instantiatorFactory) {
+                                              InstantiatorFactory instantiatorFactory,
+                                              ArtifactDownloadScheduler artifactDownloadScheduler) {
         return new ResolveIvyFactory(
             moduleRepositoryCacheProvider,
             startParameterResolutionOverride,
@@ -335,10 +366,15 @@ ResolveIvyFactory createResolveIvyFactory(StartParameterResolutionOverride start
             moduleIdentifierFactory,
             repositoryBlacklister,
             versionParser,
-            instantiatorFactory
+            instantiatorFactory,
+            artifactDownloadScheduler
         );
     }
 
+    ArtifactDownloadScheduler createArtifactDownloadScheduler(BuildOperationExecutor buildOperationExecutor) {
+        return new ArtifactDownloadScheduler(buildOperationExecutor, Integer.getInteger(ArtifactDownloadScheduler.MAX_DOWNLOADS_PER_REPOSITORY_PROPERTY, 0));
+    }
+
     ArtifactDependencyResolver createArtifactDependencyResolver(ResolveIvyFactory resolveIvyFactory,
                                                                 DependencyDescriptorFactory dependencyDescriptorFactory,
                                                                 VersionComparator versionComparator,
@@ -350,7 +386,8 @@ ArtifactDependencyResolver createArtifactDependencyResolver(ResolveIvyFactory re
                                                                 ImmutableAttributesFactory attributesFactory,
                                                                 VersionSelectorScheme versionSelectorScheme,
                                                                 VersionParser versionParser,
-                                                                ComponentMetadataSupplierRuleExecutor componentMetadataSupplierRuleExecutor) {
+                                                                ComponentMetadataSupplierRuleExecutor componentMetadataSupplierRuleExecutor,
+                                                                MetadataPrefetchExecutor metadataPrefetchExecutor) {
         return new DefaultArtifactDependencyResolver(
             buildOperationExecutor,
             resolverFactories,
@@ -363,7 +400,12 @@ ArtifactDependencyResolver createArtifactDependencyResolver(ResolveIvyFactory re
             attributesFactory,
             versionSelectorScheme,
             versionParser,
-            componentMetadataSupplierRuleExecutor);
+            componentMetadataSupplierRuleExecutor,
+            metadataPrefetchExecutor);
+    }
+
+    MetadataPrefetchExecutor createMetadataPrefetchExecutor(ExecutorFactory executorFactory) {
+        return new MetadataPrefetchExecutor(executorFactory);
     }
 
     ProjectPublicationRegistry createProjectPublicationRegistry() {
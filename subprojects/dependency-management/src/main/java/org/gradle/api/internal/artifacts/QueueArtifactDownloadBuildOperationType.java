@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Waiting for a download slot of a repository, when the number of concurrent downloads from the repository is limited.
+ */
+public final class QueueArtifactDownloadBuildOperationType implements BuildOperationType<QueueArtifactDownloadBuildOperationType.Details, QueueArtifactDownloadBuildOperationType.Result> {
+
+    public interface Details {
+
+        String getArtifactIdentifier();
+
+        String getRepositoryName();
+
+        /**
+         * The number of downloads waiting for a slot of the repository, including this one.
+         */
+        int getQueueDepth();
+
+        /**
+         * The rate at which artifacts have been downloaded from the repository so far in the build, in bytes per second.
+         */
+        long getBytesPerSecond();
+
+    }
+
+    public interface Result {
+
+    }
+
+    public static class DetailsImpl implements Details {
+
+        private final String artifactIdentifier;
+        private final String repositoryName;
+        private final int queueDepth;
+        private final long bytesPerSecond;
+
+        public DetailsImpl(String artifactIdentifier, String repositoryName, int queueDepth, long bytesPerSecond) {
+            this.artifactIdentifier = artifactIdentifier;
+            this.repositoryName = repositoryName;
+            this.queueDepth = queueDepth;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public String getArtifactIdentifier() {
+            return artifactIdentifier;
+        }
+
+        @Override
+        public String getRepositoryName() {
+            return repositoryName;
+        }
+
+        @Override
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        @Override
+        public long getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+
+    }
+
+    public final static Result RESULT = new Result() {
+    };
+
+    private QueueArtifactDownloadBuildOperationType() {
+    }
+
+}
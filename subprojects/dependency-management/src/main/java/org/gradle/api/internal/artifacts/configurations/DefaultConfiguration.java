@@ -37,6 +37,7 @@
 import org.gradle.api.artifacts.DependencyResolutionListener;
 import org.gradle.api.artifacts.DependencySet;
 import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.PublishArtifact;
 import org.gradle.api.artifacts.PublishArtifactSet;
 import org.gradle.api.artifacts.ResolutionStrategy;
@@ -74,6 +75,8 @@
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.RootComponentMetadataBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.ResolvedProjectConfiguration;
+import org.gradle.api.internal.artifacts.result.ResolutionResultGraphVisitor;
+import org.gradle.api.internal.artifacts.result.ResolutionResultInternal;
 import org.gradle.api.internal.artifacts.transform.DefaultExtraExecutionGraphDependenciesResolverFactory;
 import org.gradle.api.internal.artifacts.transform.ExtraExecutionGraphDependenciesResolverFactory;
 import org.gradle.api.internal.attributes.AttributeContainerInternal;
@@ -1557,7 +1560,7 @@ private void assertArtifactsResolved() {
             DefaultConfiguration.this.resolveToStateOrLater(ARTIFACTS_RESOLVED);
         }
 
-        private class LenientResolutionResult implements ResolutionResult {
+        private class LenientResolutionResult implements ResolutionResultInternal {
             private final Action<? super Throwable> errorHandler;
             private volatile ResolutionResult delegate;
 
@@ -1627,6 +1630,12 @@ public AttributeContainer getRequestedAttributes() {
                 return delegate.getRequestedAttributes();
             }
 
+            @Override
+            public void visitGraph(Spec<? super ModuleVersionIdentifier> componentFilter, ResolutionResultGraphVisitor visitor) {
+                resolve();
+                ((ResolutionResultInternal) delegate).visitGraph(componentFilter, visitor);
+            }
+
             @Override
             public int hashCode() {
                 resolve();
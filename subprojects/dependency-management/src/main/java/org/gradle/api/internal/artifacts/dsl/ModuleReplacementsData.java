@@ -32,12 +32,19 @@ public Replacement getReplacementFor(ModuleIdentifier sourceModule) {
         public boolean participatesInReplacements(ModuleIdentifier moduleId) {
             return false;
         }
+
+        @Override
+        public boolean hasReplacements() {
+            return false;
+        }
     };
 
     @Nullable Replacement getReplacementFor(ModuleIdentifier sourceModule);
 
     boolean participatesInReplacements(ModuleIdentifier moduleId);
 
+    boolean hasReplacements();
+
     class Replacement {
         private final ModuleIdentifier target;
         private final String reason;
@@ -36,6 +36,7 @@
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
+import java.util.Map;
 
 import static org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup.DEFAULT_MAX_AGE_IN_DAYS_FOR_EXTERNAL_CACHE_ENTRIES;
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
@@ -119,11 +120,21 @@ public V get(final K key, final Transformer<? extends V, ? super K> producer) {
             return cache.useCache(() -> persistentCache.get(key, producer));
         }
 
+        @Override
+        public Map<K, V> getAll(Iterable<? extends K> keys) {
+            return cache.useCache(() -> persistentCache.getAll(keys));
+        }
+
         @Override
         public void put(final K key, final V value) {
             cache.useCache(() -> persistentCache.put(key, value));
         }
 
+        @Override
+        public void putAll(Map<? extends K, ? extends V> entries) {
+            cache.useCache(() -> persistentCache.putAll(entries));
+        }
+
         @Override
         public void remove(final K key) {
             cache.useCache(() -> persistentCache.remove(key));
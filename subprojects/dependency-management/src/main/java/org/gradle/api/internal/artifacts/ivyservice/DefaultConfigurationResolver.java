@@ -17,24 +17,37 @@
 package org.gradle.api.internal.artifacts.ivyservice;
 
 import com.google.common.collect.ImmutableList;
+import groovy.lang.Closure;
+import org.gradle.api.Action;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.ProjectDependency;
 import org.gradle.api.artifacts.UnresolvedDependency;
 import org.gradle.api.artifacts.component.BuildIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.dsl.RepositoryHandler;
+import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolutionResult;
 import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.attributes.AttributeContainer;
 import org.gradle.api.internal.artifacts.ArtifactDependencyResolver;
 import org.gradle.api.internal.artifacts.ComponentSelectorConverter;
 import org.gradle.api.internal.artifacts.ConfigurationResolver;
+import org.gradle.api.internal.artifacts.DefaultResolverResults;
 import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
 import org.gradle.api.internal.artifacts.ResolverResults;
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
 import org.gradle.api.internal.artifacts.configurations.ConflictResolution;
 import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.DependencyVerificationOverride;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.BuildDependenciesOnlyVisitedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultResolvedArtifactsBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DependencyArtifactsVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactsResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedFileDependencyResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyArtifactsVisitor;
@@ -52,11 +65,15 @@
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.FileDependencyCollectingGraphVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.InMemoryBinaryStore;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.StoreSet;
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.artifacts.result.ResolutionResultGraphVisitor;
+import org.gradle.api.internal.artifacts.result.ResolutionResultInternal;
 import org.gradle.api.internal.artifacts.transform.ArtifactTransforms;
 import org.gradle.api.internal.artifacts.type.ArtifactTypeRegistry;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
 import org.gradle.api.internal.attributes.AttributeDesugaring;
 import org.gradle.api.internal.attributes.AttributesSchemaInternal;
 import org.gradle.api.specs.Spec;
@@ -66,15 +83,24 @@
 import org.gradle.internal.Transformers;
 import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
 import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.locking.DependencyLockingArtifactVisitor;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.snapshot.ValueSnapshotter;
 import org.gradle.util.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 public class DefaultConfigurationResolver implements ConfigurationResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultConfigurationResolver.class);
     private static final Spec<DependencyMetadata> IS_LOCAL_EDGE = new Spec<DependencyMetadata>() {
         @Override
         public boolean isSatisfiedBy(DependencyMetadata element) {
@@ -96,6 +122,9 @@ public boolean isSatisfiedBy(DependencyMetadata element) {
     private final BuildIdentifier currentBuild;
     private final AttributeDesugaring attributeDesugaring;
     private final DependencyVerificationOverride dependencyVerificationOverride;
+    private final ResolvedGraphCache resolvedGraphCache;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final ResolutionInputsFingerprinter inputsFingerprinter;
 
     public DefaultConfigurationResolver(ArtifactDependencyResolver resolver, RepositoryHandler repositories,
                                         GlobalDependencyResolutionRules metadataHandler,
@@ -109,7 +138,10 @@ public DefaultConfigurationResolver(ArtifactDependencyResolver resolver, Reposit
                                         ComponentSelectorConverter componentSelectorConverter,
                                         AttributeContainerSerializer attributeContainerSerializer,
                                         BuildIdentifier currentBuild, AttributeDesugaring attributeDesugaring,
-                                        DependencyVerificationOverride dependencyVerificationOverride) {
+                                        DependencyVerificationOverride dependencyVerificationOverride,
+                                        ResolvedGraphCache resolvedGraphCache,
+                                        VersionSelectorScheme versionSelectorScheme,
+                                        ValueSnapshotter valueSnapshotter) {
         this.resolver = resolver;
         this.repositories = repositories;
         this.metadataHandler = metadataHandler;
@@ -125,6 +157,9 @@ public DefaultConfigurationResolver(ArtifactDependencyResolver resolver, Reposit
         this.currentBuild = currentBuild;
         this.attributeDesugaring = attributeDesugaring;
         this.dependencyVerificationOverride = dependencyVerificationOverride;
+        this.resolvedGraphCache = resolvedGraphCache;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.inputsFingerprinter = new ResolutionInputsFingerprinter(valueSnapshotter);
     }
 
     @Override
@@ -134,13 +169,43 @@ public void resolveBuildDependencies(ConfigurationInternal configuration, Resolv
         InMemoryResolutionResultBuilder resolutionResultBuilder = new InMemoryResolutionResultBuilder();
         CompositeDependencyGraphVisitor graphVisitor = new CompositeDependencyGraphVisitor(failureCollector, resolutionResultBuilder);
         DefaultResolvedArtifactsBuilder artifactsVisitor = new DefaultResolvedArtifactsBuilder(currentBuild, buildProjectDependencies, resolutionStrategy.getSortOrder());
-        resolver.resolve(configuration, ImmutableList.<ResolutionAwareRepository>of(), metadataHandler, IS_LOCAL_EDGE, graphVisitor, artifactsVisitor, attributesSchema, artifactTypeRegistry);
+        resolver.resolve(configuration, ImmutableList.<ResolutionAwareRepository>of(), metadataHandler, IS_LOCAL_EDGE, graphVisitor, artifactsVisitor, attributesSchema, artifactTypeRegistry, Collections.<ModuleVersionIdentifier>emptyList());
         result.graphResolved(resolutionResultBuilder.getResolutionResult(), new ResolvedLocalComponentsResultGraphVisitor(currentBuild), new BuildDependenciesOnlyVisitedArtifactSet(failureCollector.complete(Collections.<UnresolvedDependency>emptySet()), artifactsVisitor.complete(), artifactTransforms, configuration.getDependenciesResolver()));
     }
 
     @Override
     public void resolveGraph(ConfigurationInternal configuration, ResolverResults results) {
         List<ResolutionAwareRepository> resolutionAwareRepositories = getRepositories();
+        HashCode inputsFingerprint = null;
+        if (resolvedGraphCache.isEnabled()) {
+            inputsFingerprint = inputsFingerprinter.fingerprint(configuration, resolutionAwareRepositories, metadataHandler, attributesSchema);
+            if (inputsFingerprint != null) {
+                ResolvedGraphCache.CachedGraph cachedGraph = resolvedGraphCache.get(inputsFingerprint, configuration.getResolutionStrategy().getCachePolicy());
+                if (cachedGraph != null) {
+                    replayGraph(configuration, results, cachedGraph, inputsFingerprint);
+                    return;
+                }
+            }
+        }
+        resolveGraph(configuration, results, resolutionAwareRepositories, inputsFingerprint);
+    }
+
+    /**
+     * Uses a graph resolved by an earlier build. The artifacts of the graph are only resolved when they are required, by resolving the graph again.
+     *
+     * <p>The recorded graph is only read when the result is queried before artifacts are required. Otherwise, the result of resolving the graph again is used
+     * instead, so that only requests that need the graph alone are served from the cache.</p>
+     */
+    private void replayGraph(ConfigurationInternal configuration, ResolverResults results, ResolvedGraphCache.CachedGraph cachedGraph, HashCode inputsFingerprint) {
+        StoreSet stores = storeFactory.createStoreSet();
+        StreamingResolutionResultBuilder newModelBuilder = new StreamingResolutionResultBuilder(new InMemoryBinaryStore(cachedGraph.getGraph()), stores.newModelCache(), moduleIdentifierFactory, attributeContainerSerializer, attributeDesugaring);
+        ReplayedResolutionResult resolutionResult = new ReplayedResolutionResult((ResolutionResultInternal) newModelBuilder.replay(configuration.getAttributes().asImmutable()));
+        DeferredArtifactResolveState deferredState = new DeferredArtifactResolveState(configuration, resolutionResult, inputsFingerprint);
+        results.graphResolved(resolutionResult, new ResolvedLocalComponentsResultGraphVisitor(currentBuild), deferredState);
+        results.retainState(deferredState);
+    }
+
+    private void resolveGraph(ConfigurationInternal configuration, ResolverResults results, List<ResolutionAwareRepository> resolutionAwareRepositories, @Nullable HashCode inputsFingerprint) {
         StoreSet stores = storeFactory.createStoreSet();
 
         BinaryStore oldModelStore = stores.nextBinaryStore();
@@ -159,7 +224,24 @@ public void resolveGraph(ConfigurationInternal configuration, ResolverResults re
         DefaultResolvedArtifactsBuilder artifactsBuilder = new DefaultResolvedArtifactsBuilder(currentBuild, buildProjectDependencies, resolutionStrategy.getSortOrder());
         FileDependencyCollectingGraphVisitor fileDependencyVisitor = new FileDependencyCollectingGraphVisitor();
         ResolutionFailureCollector failureCollector = new ResolutionFailureCollector(componentSelectorConverter);
-        DependencyGraphVisitor graphVisitor = new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector);
+        ImmutableList.Builder<DependencyGraphVisitor> graphVisitors = new ImmutableList.Builder<DependencyGraphVisitor>();
+        graphVisitors.add(newModelBuilder, localComponentsVisitor, failureCollector);
+        ResolvedGraphRecorder graphRecorder = null;
+        if (inputsFingerprint != null) {
+            graphRecorder = new ResolvedGraphRecorder(moduleIdentifierFactory, attributeContainerSerializer, attributeDesugaring, versionSelectorScheme);
+            graphVisitors.add(graphRecorder);
+        }
+        HashCode configurationKey = null;
+        SelectedModulesRecorder selectionsRecorder = null;
+        List<ModuleVersionIdentifier> previousSelections = Collections.emptyList();
+        if (resolvedGraphCache.isIncremental()) {
+            configurationKey = configurationKey(configuration);
+            previousSelections = resolvedGraphCache.getPreviousSelections(configurationKey);
+            selectionsRecorder = new SelectedModulesRecorder();
+            graphVisitors.add(selectionsRecorder);
+        }
+        List<DependencyGraphVisitor> allGraphVisitors = graphVisitors.build();
+        DependencyGraphVisitor graphVisitor = new CompositeDependencyGraphVisitor(allGraphVisitors.toArray(new DependencyGraphVisitor[0]));
 
         ImmutableList.Builder<DependencyArtifactsVisitor> visitors = new ImmutableList.Builder<DependencyArtifactsVisitor>();
         visitors.add(oldModelVisitor);
@@ -176,7 +258,7 @@ public void resolveGraph(ConfigurationInternal configuration, ResolverResults re
         ImmutableList<DependencyArtifactsVisitor> allVisitors = visitors.build();
         CompositeDependencyArtifactsVisitor artifactsVisitor = new CompositeDependencyArtifactsVisitor(allVisitors);
 
-        resolver.resolve(configuration, resolutionAwareRepositories, metadataHandler, Specs.<DependencyMetadata>satisfyAll(), graphVisitor, artifactsVisitor, attributesSchema, artifactTypeRegistry);
+        resolver.resolve(configuration, resolutionAwareRepositories, metadataHandler, Specs.<DependencyMetadata>satisfyAll(), graphVisitor, artifactsVisitor, attributesSchema, artifactTypeRegistry, previousSelections);
 
         VisitedArtifactsResults artifactsResults = artifactsBuilder.complete();
         VisitedFileDependencyResults fileDependencyResults = fileDependencyVisitor.complete();
@@ -192,9 +274,27 @@ public void resolveGraph(ConfigurationInternal configuration, ResolverResults re
         results.retainState(new ArtifactResolveState(graphResults, artifactsResults, fileDependencyResults, failures, oldTransientModelBuilder));
         if (!results.hasError() && failures.isEmpty()) {
             artifactsVisitor.complete();
+            if (graphRecorder != null) {
+                resolvedGraphCache.store(inputsFingerprint, graphRecorder);
+            }
+            if (selectionsRecorder != null) {
+                resolvedGraphCache.storeSelections(configurationKey, selectionsRecorder);
+            }
         }
     }
 
+    /**
+     * Identifies a configuration across builds. As the cache is shared by all builds, different builds may use the same key for some configurations.
+     * This only affects which metadata is fetched ahead of time, not the result of the resolution.
+     */
+    private static HashCode configurationKey(ConfigurationInternal configuration) {
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(configuration.getIdentityPath().getPath());
+        hasher.putString(String.valueOf(configuration.getModule().getGroup()));
+        hasher.putString(configuration.getModule().getName());
+        return hasher.hash();
+    }
+
     @Override
     public List<ResolutionAwareRepository> getRepositories() {
         return CollectionUtils.collect(repositories, Transformers.cast(ResolutionAwareRepository.class));
@@ -202,7 +302,10 @@ public List<ResolutionAwareRepository> getRepositories() {
 
     @Override
     public void resolveArtifacts(ConfigurationInternal configuration, ResolverResults results) {
-        ArtifactResolveState resolveState = (ArtifactResolveState) results.getArtifactResolveState();
+        Object state = results.getArtifactResolveState();
+        ArtifactResolveState resolveState = state instanceof DeferredArtifactResolveState
+            ? ((DeferredArtifactResolveState) state).getResolveState()
+            : (ArtifactResolveState) state;
         ResolvedGraphResults graphResults = resolveState.graphResults;
         VisitedArtifactsResults artifactResults = resolveState.artifactsResults;
         TransientConfigurationResultsBuilder transientConfigurationResultsBuilder = resolveState.transientConfigurationResultsBuilder;
@@ -229,4 +332,128 @@ private static class ArtifactResolveState {
         }
     }
 
+    /**
+     * The state of a configuration whose graph was loaded from the {@link ResolvedGraphCache}. Resolves the graph again, the first time that artifacts are required.
+     * The graph resolved again replaces the cached one, so that a stale entry is not used by later builds.
+     */
+    private class DeferredArtifactResolveState implements VisitedArtifactSet {
+        private final ConfigurationInternal configuration;
+        private final ReplayedResolutionResult resolutionResult;
+        private final HashCode inputsFingerprint;
+        private DefaultResolverResults fullResults;
+
+        DeferredArtifactResolveState(ConfigurationInternal configuration, ReplayedResolutionResult resolutionResult, HashCode inputsFingerprint) {
+            this.configuration = configuration;
+            this.resolutionResult = resolutionResult;
+            this.inputsFingerprint = inputsFingerprint;
+        }
+
+        private synchronized ResolverResults getFullResults() {
+            if (fullResults == null) {
+                DefaultResolverResults results = new DefaultResolverResults();
+                resolveGraph(configuration, results, getRepositories(), inputsFingerprint);
+                resolutionResult.resolved(results.getResolutionResult(), configuration);
+                fullResults = results;
+            }
+            return fullResults;
+        }
+
+        ArtifactResolveState getResolveState() {
+            return (ArtifactResolveState) getFullResults().getArtifactResolveState();
+        }
+
+        @Override
+        public SelectedArtifactSet select(Spec<? super Dependency> dependencySpec, AttributeContainerInternal requestedAttributes, Spec<? super ComponentIdentifier> componentSpec, boolean allowNoMatchingVariant) {
+            return getFullResults().getVisitedArtifacts().select(dependencySpec, requestedAttributes, componentSpec, allowNoMatchingVariant);
+        }
+    }
+
+    /**
+     * The result of a graph loaded from the {@link ResolvedGraphCache}. Switches to the result of resolving the graph again when that happens before the
+     * recorded graph has been queried.
+     */
+    private static class ReplayedResolutionResult implements ResolutionResultInternal {
+        private final ResolutionResultInternal replayed;
+        private ResolutionResultInternal resolved;
+        private boolean queried;
+
+        ReplayedResolutionResult(ResolutionResultInternal replayed) {
+            this.replayed = replayed;
+        }
+
+        private synchronized ResolutionResultInternal getDelegate() {
+            if (resolved != null) {
+                return resolved;
+            }
+            queried = true;
+            return replayed;
+        }
+
+        /**
+         * Uses the result of resolving the graph again from now on, so that the graph matches the resolved artifacts. When the recorded graph has already
+         * been queried and selected other modules, the change is logged, as earlier queries saw the recorded graph.
+         */
+        synchronized void resolved(ResolutionResult result, ConfigurationInternal configuration) {
+            if (queried && !selectedModulesOf(replayed).equals(selectedModulesOf(result))) {
+                LOGGER.info("The dependency graph of {} has changed since it was loaded from the graph cache. Using the graph resolved again.", configuration.getDisplayName());
+            }
+            resolved = (ResolutionResultInternal) result;
+        }
+
+        private static Set<ModuleVersionIdentifier> selectedModulesOf(ResolutionResult result) {
+            Set<ModuleVersionIdentifier> modules = new HashSet<ModuleVersionIdentifier>();
+            for (ResolvedComponentResult component : result.getAllComponents()) {
+                if (component.getId() instanceof ModuleComponentIdentifier) {
+                    modules.add(component.getModuleVersion());
+                }
+            }
+            return modules;
+        }
+
+        @Override
+        public ResolvedComponentResult getRoot() {
+            return getDelegate().getRoot();
+        }
+
+        @Override
+        public Set<? extends DependencyResult> getAllDependencies() {
+            return getDelegate().getAllDependencies();
+        }
+
+        @Override
+        public void allDependencies(Action<? super DependencyResult> action) {
+            getDelegate().allDependencies(action);
+        }
+
+        @Override
+        public void allDependencies(Closure closure) {
+            getDelegate().allDependencies(closure);
+        }
+
+        @Override
+        public Set<ResolvedComponentResult> getAllComponents() {
+            return getDelegate().getAllComponents();
+        }
+
+        @Override
+        public void allComponents(Action<? super ResolvedComponentResult> action) {
+            getDelegate().allComponents(action);
+        }
+
+        @Override
+        public void allComponents(Closure closure) {
+            getDelegate().allComponents(closure);
+        }
+
+        @Override
+        public AttributeContainer getRequestedAttributes() {
+            return replayed.getRequestedAttributes();
+        }
+
+        @Override
+        public void visitGraph(Spec<? super ModuleVersionIdentifier> componentFilter, ResolutionResultGraphVisitor visitor) {
+            getDelegate().visitGraph(componentFilter, visitor);
+        }
+    }
+
 }
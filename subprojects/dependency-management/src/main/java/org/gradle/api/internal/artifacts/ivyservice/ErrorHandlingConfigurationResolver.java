@@ -19,6 +19,7 @@
 import org.gradle.api.Action;
 import org.gradle.api.artifacts.Dependency;
 import org.gradle.api.artifacts.LenientConfiguration;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.ResolveException;
 import org.gradle.api.artifacts.ResolvedArtifact;
 import org.gradle.api.artifacts.ResolvedConfiguration;
@@ -37,6 +38,8 @@
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet;
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.artifacts.result.ResolutionResultGraphVisitor;
+import org.gradle.api.internal.artifacts.result.ResolutionResultInternal;
 import org.gradle.api.internal.attributes.AttributeContainerInternal;
 import org.gradle.api.internal.tasks.TaskDependencyResolveContext;
 import org.gradle.api.specs.Spec;
@@ -186,7 +189,7 @@ public Set<File> getFiles(Spec<? super Dependency> dependencySpec) {
         }
     }
 
-    private static class ErrorHandlingResolutionResult implements ResolutionResult {
+    private static class ErrorHandlingResolutionResult implements ResolutionResultInternal {
         private final ResolutionResult resolutionResult;
         private final ResolveContext resolveContext;
 
@@ -246,6 +249,15 @@ public void allComponents(Closure closure) {
         public AttributeContainer getRequestedAttributes() {
             return resolutionResult.getRequestedAttributes();
         }
+
+        @Override
+        public void visitGraph(Spec<? super ModuleVersionIdentifier> componentFilter, ResolutionResultGraphVisitor visitor) {
+            try {
+                ((ResolutionResultInternal) resolutionResult).visitGraph(componentFilter, visitor);
+            } catch (Exception e) {
+                throw wrapException(e, resolveContext);
+            }
+        }
     }
 
     private static class ErrorHandlingResolvedConfiguration implements ResolvedConfiguration {
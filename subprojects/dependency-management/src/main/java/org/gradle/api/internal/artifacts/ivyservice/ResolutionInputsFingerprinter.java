@@ -0,0 +1,319 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.Action;
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyArtifact;
+import org.gradle.api.artifacts.DependencyConstraint;
+import org.gradle.api.artifacts.DependencySubstitution;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.FileCollectionDependency;
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.capabilities.Capability;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.dependencies.DependencyConstraintInternal;
+import org.gradle.api.internal.artifacts.repositories.AbstractArtifactRepository;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.artifacts.repositories.descriptor.RepositoryDescriptor;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.attributes.CompatibilityRule;
+import org.gradle.api.internal.attributes.DefaultCompatibilityRuleChain;
+import org.gradle.api.internal.attributes.DefaultDisambiguationRuleChain;
+import org.gradle.api.internal.attributes.DefaultOrderedCompatibilityRule;
+import org.gradle.api.internal.attributes.DefaultOrderedDisambiguationRule;
+import org.gradle.api.internal.attributes.DisambiguationRule;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
+import org.gradle.internal.Actions;
+import org.gradle.internal.action.ConfigurableRule;
+import org.gradle.internal.action.InstantiatingAction;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.ValueSnapshotter;
+import org.gradle.internal.snapshot.ValueSnapshottingException;
+import org.gradle.util.GradleVersion;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates a fingerprint of everything that can influence the dependency graph resolved for a configuration.
+ *
+ * <p>Only configurations whose graph is fully described by declared values can be fingerprinted. Configurations which use project dependencies, rules
+ * implemented in build logic, dependency locking or local repositories are not cacheable, as their outcome can change without any change to the values
+ * which are fingerprinted here.</p>
+ *
+ * <p>The attribute matching rules of the schema are fingerprinted by their implementation and parameters, in the same way as the inputs of cached
+ * component metadata rules. Ordering rules are only fingerprinted when their comparator can be snapshotted.</p>
+ */
+public class ResolutionInputsFingerprinter {
+    private static final Comparator<Attribute<?>> ATTRIBUTE_ORDER = Comparator.comparing(Attribute::getName);
+
+    private final ValueSnapshotter valueSnapshotter;
+
+    public ResolutionInputsFingerprinter(ValueSnapshotter valueSnapshotter) {
+        this.valueSnapshotter = valueSnapshotter;
+    }
+
+    /**
+     * Returns the fingerprint of the resolution inputs of the given configuration, or {@code null} when the resolved graph of the configuration can't be cached.
+     */
+    @Nullable
+    public HashCode fingerprint(ConfigurationInternal configuration, List<ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules metadataHandler, AttributesSchemaInternal attributesSchema) {
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(GradleVersion.current().getVersion());
+        appendRules(hasher, configuration.getResolutionStrategy(), metadataHandler);
+        appendConfiguration(hasher, configuration);
+        appendRepositories(hasher, repositories);
+        appendSchema(hasher, attributesSchema);
+        return hasher.isValid() ? hasher.hash() : null;
+    }
+
+    private static void appendRules(Hasher hasher, ResolutionStrategyInternal resolutionStrategy, GlobalDependencyResolutionRules metadataHandler) {
+        if (resolutionStrategy.getDependencySubstitutionRule() != Actions.<DependencySubstitution>doNothing()) {
+            hasher.markAsInvalid("dependency substitution rules");
+        }
+        if (!resolutionStrategy.getComponentSelection().getRules().isEmpty()) {
+            hasher.markAsInvalid("component selection rules");
+        }
+        if (resolutionStrategy.getCapabilitiesResolutionRules().hasRules()) {
+            hasher.markAsInvalid("capabilities resolution rules");
+        }
+        if (resolutionStrategy.isDependencyLockingEnabled()) {
+            hasher.markAsInvalid("dependency locking");
+        }
+        if (metadataHandler.getComponentMetadataProcessorFactory().hasRules()) {
+            hasher.markAsInvalid("component metadata rules");
+        }
+        if (metadataHandler.getModuleMetadataProcessor().getModuleReplacements().hasReplacements()) {
+            hasher.markAsInvalid("module replacements");
+        }
+        hasher.putString(resolutionStrategy.getConflictResolution().name());
+        hasher.putBoolean(resolutionStrategy.isFailingOnDynamicVersions());
+        hasher.putBoolean(resolutionStrategy.isFailingOnChangingVersions());
+    }
+
+    private static void appendConfiguration(Hasher hasher, ConfigurationInternal configuration) {
+        hasher.putString(configuration.getPath());
+        putNullableString(hasher, configuration.getModule().getGroup());
+        putNullableString(hasher, configuration.getModule().getName());
+        putNullableString(hasher, configuration.getModule().getVersion());
+        putNullableString(hasher, configuration.getModule().getStatus());
+        hasher.putBoolean(configuration.isTransitive());
+        appendAttributes(hasher, configuration.getAttributes());
+        appendCapabilities(hasher, configuration.getOutgoing().getCapabilities());
+        for (Configuration inherited : configuration.getHierarchy()) {
+            hasher.putString(inherited.getName());
+            appendExcludes(hasher, inherited.getExcludeRules());
+        }
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            appendDependency(hasher, dependency);
+        }
+        for (DependencyConstraint constraint : configuration.getAllDependencyConstraints()) {
+            appendConstraint(hasher, constraint);
+        }
+    }
+
+    private static void appendDependency(Hasher hasher, Dependency dependency) {
+        if (dependency instanceof FileCollectionDependency) {
+            // Files are not part of the graph
+            return;
+        }
+        if (!(dependency instanceof ExternalModuleDependency) || dependency instanceof ClientModule) {
+            hasher.markAsInvalid("dependency " + dependency);
+            return;
+        }
+        ExternalModuleDependency moduleDependency = (ExternalModuleDependency) dependency;
+        putNullableString(hasher, moduleDependency.getGroup());
+        hasher.putString(moduleDependency.getName());
+        appendVersionConstraint(hasher, moduleDependency.getVersionConstraint());
+        hasher.putBoolean(moduleDependency.isChanging());
+        hasher.putBoolean(moduleDependency.isForce());
+        appendModuleDependency(hasher, moduleDependency);
+        putNullableString(hasher, moduleDependency.getReason());
+    }
+
+    private static void appendModuleDependency(Hasher hasher, ModuleDependency dependency) {
+        hasher.putBoolean(dependency.isTransitive());
+        hasher.putBoolean(dependency.isEndorsingStrictVersions());
+        putNullableString(hasher, dependency.getTargetConfiguration());
+        appendAttributes(hasher, dependency.getAttributes());
+        appendCapabilities(hasher, dependency.getRequestedCapabilities());
+        appendExcludes(hasher, dependency.getExcludeRules());
+        hasher.putInt(dependency.getArtifacts().size());
+        for (DependencyArtifact artifact : dependency.getArtifacts()) {
+            hasher.putString(artifact.getName());
+            putNullableString(hasher, artifact.getType());
+            putNullableString(hasher, artifact.getExtension());
+            putNullableString(hasher, artifact.getClassifier());
+            putNullableString(hasher, artifact.getUrl());
+        }
+    }
+
+    private static void appendConstraint(Hasher hasher, DependencyConstraint constraint) {
+        putNullableString(hasher, constraint.getGroup());
+        hasher.putString(constraint.getName());
+        appendVersionConstraint(hasher, constraint.getVersionConstraint());
+        hasher.putBoolean(constraint instanceof DependencyConstraintInternal && ((DependencyConstraintInternal) constraint).isForce());
+        appendAttributes(hasher, constraint.getAttributes());
+        putNullableString(hasher, constraint.getReason());
+    }
+
+    private static void appendVersionConstraint(Hasher hasher, VersionConstraint versionConstraint) {
+        putNullableString(hasher, versionConstraint.getRequiredVersion());
+        putNullableString(hasher, versionConstraint.getPreferredVersion());
+        putNullableString(hasher, versionConstraint.getStrictVersion());
+        putNullableString(hasher, versionConstraint.getBranch());
+        hasher.putInt(versionConstraint.getRejectedVersions().size());
+        for (String rejectedVersion : versionConstraint.getRejectedVersions()) {
+            hasher.putString(rejectedVersion);
+        }
+    }
+
+    private static void appendExcludes(Hasher hasher, Collection<ExcludeRule> excludeRules) {
+        hasher.putInt(excludeRules.size());
+        for (ExcludeRule excludeRule : excludeRules) {
+            putNullableString(hasher, excludeRule.getGroup());
+            putNullableString(hasher, excludeRule.getModule());
+        }
+    }
+
+    private static void appendCapabilities(Hasher hasher, Collection<? extends Capability> capabilities) {
+        hasher.putInt(capabilities.size());
+        for (Capability capability : capabilities) {
+            hasher.putString(capability.getGroup());
+            hasher.putString(capability.getName());
+            putNullableString(hasher, capability.getVersion());
+        }
+    }
+
+    private static void appendAttributes(Hasher hasher, AttributeContainer attributes) {
+        ImmutableAttributes immutableAttributes = ((AttributeContainerInternal) attributes).asImmutable();
+        List<Attribute<?>> keys = new ArrayList<Attribute<?>>(immutableAttributes.keySet());
+        keys.sort(ATTRIBUTE_ORDER);
+        hasher.putInt(keys.size());
+        for (Attribute<?> key : keys) {
+            hasher.putString(key.getName());
+            hasher.putString(key.getType().getName());
+            hasher.putString(String.valueOf(immutableAttributes.findEntry(key).get()));
+        }
+    }
+
+    private static void appendRepositories(Hasher hasher, List<ResolutionAwareRepository> repositories) {
+        hasher.putInt(repositories.size());
+        for (ResolutionAwareRepository repository : repositories) {
+            if (!(repository instanceof AbstractArtifactRepository) || ((AbstractArtifactRepository) repository).hasResolutionRules()) {
+                hasher.markAsInvalid("repository rules");
+                return;
+            }
+            RepositoryDescriptor descriptor = repository.getDescriptor();
+            if (descriptor.getType() == RepositoryDescriptor.Type.FLAT_DIR) {
+                hasher.markAsInvalid("local repository");
+                return;
+            }
+            hasher.putString(descriptor.getType().name());
+            hasher.putString(descriptor.name);
+            for (Map.Entry<String, ?> property : descriptor.getProperties().entrySet()) {
+                Object value = property.getValue();
+                if (value instanceof URI && "file".equals(((URI) value).getScheme())) {
+                    // Local repositories are not subject to the cache policy
+                    hasher.markAsInvalid("local repository");
+                    return;
+                }
+                hasher.putString(property.getKey());
+                hasher.putString(String.valueOf(value));
+            }
+        }
+    }
+
+    private void appendSchema(Hasher hasher, AttributesSchemaInternal attributesSchema) {
+        List<Attribute<?>> attributes = new ArrayList<Attribute<?>>(attributesSchema.getAttributes());
+        attributes.sort(ATTRIBUTE_ORDER);
+        hasher.putInt(attributes.size());
+        for (Attribute<?> attribute : attributes) {
+            hasher.putString(attribute.getName());
+            hasher.putString(attribute.getType().getName());
+            CompatibilityRule<Object> compatibilityRules = attributesSchema.compatibilityRules(attribute);
+            DisambiguationRule<Object> disambiguationRules = attributesSchema.disambiguationRules(attribute);
+            if (!(compatibilityRules instanceof DefaultCompatibilityRuleChain) || !(disambiguationRules instanceof DefaultDisambiguationRuleChain)) {
+                hasher.markAsInvalid("attribute matching rules");
+                return;
+            }
+            List<Object> ruleInputs = new ArrayList<Object>();
+            if (!collectRuleInputs(((DefaultCompatibilityRuleChain<Object>) compatibilityRules).getRules(), ruleInputs)
+                || !collectRuleInputs(((DefaultDisambiguationRuleChain<Object>) disambiguationRules).getRules(), ruleInputs)) {
+                hasher.markAsInvalid("attribute matching rules");
+                return;
+            }
+            try {
+                valueSnapshotter.snapshot(ruleInputs).appendToHasher(hasher);
+            } catch (ValueSnapshottingException e) {
+                hasher.markAsInvalid("attribute matching rules");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Collects the implementation and parameters of the given rules, or returns {@code false} when a rule can't be described this way.
+     */
+    private static boolean collectRuleInputs(List<? extends Action<?>> rules, List<Object> ruleInputs) {
+        ruleInputs.add(rules.size());
+        for (Action<?> rule : rules) {
+            if (rule instanceof InstantiatingAction) {
+                for (ConfigurableRule<?> configurableRule : ((InstantiatingAction<?>) rule).getRules().getConfigurableRules()) {
+                    ruleInputs.add(configurableRule.getRuleClass());
+                    ruleInputs.add(configurableRule.getRuleParams());
+                }
+            } else if (rule instanceof DefaultOrderedCompatibilityRule) {
+                DefaultOrderedCompatibilityRule<?> orderedRule = (DefaultOrderedCompatibilityRule<?>) rule;
+                ruleInputs.add(orderedRule.getComparator());
+                ruleInputs.add(orderedRule.isReverse());
+            } else if (rule instanceof DefaultOrderedDisambiguationRule) {
+                DefaultOrderedDisambiguationRule<?> orderedRule = (DefaultOrderedDisambiguationRule<?>) rule;
+                ruleInputs.add(orderedRule.getComparator());
+                ruleInputs.add(orderedRule.isPickFirst());
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void putNullableString(Hasher hasher, @Nullable String value) {
+        if (value == null) {
+            hasher.putNull();
+        } else {
+            hasher.putString(value);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ModuleVersionIdentifierSerializer;
+import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.dynamicversions.DefaultResolvedModuleVersion;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
+import org.gradle.internal.serialize.ListSerializer;
+import org.gradle.util.BuildCommencedTimeProvider;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A persistent cache of resolved dependency graphs, keyed by the fingerprint of the resolution inputs.
+ *
+ * <p>A cached graph is only used when the cache policy of the configuration would not refresh any of the modules in the graph, nor the version
+ * listing of any module that was selected using a dynamic version. Otherwise, the graph has to be resolved again.</p>
+ *
+ * <p>In incremental mode, the modules selected by the last resolution of each configuration are also kept, whether or not its graph can be cached. When the
+ * configuration is resolved again, the metadata of these modules is fetched ahead of the traversal, so that only the part of the graph affected by a change
+ * has to wait for metadata.</p>
+ */
+public class ResolvedGraphCache {
+    /**
+     * When set to {@code true}, resolved graphs are cached across builds.
+     */
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.dependency-resolution.graph-cache";
+
+    /**
+     * When set to {@code true}, the modules selected by the last resolution of a configuration are used to resolve the configuration again.
+     */
+    public static final String INCREMENTAL_PROPERTY = "org.gradle.internal.dependency-resolution.incremental";
+
+    private final ArtifactCacheLockingManager artifactCacheLockingManager;
+    private final BuildCommencedTimeProvider timeProvider;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final boolean enabled;
+    private final boolean incremental;
+
+    private PersistentIndexedCache<HashCode, CachedGraph> cache;
+    private PersistentIndexedCache<HashCode, List<ModuleVersionIdentifier>> selectionsCache;
+
+    public ResolvedGraphCache(ArtifactCacheLockingManager artifactCacheLockingManager, BuildCommencedTimeProvider timeProvider, ImmutableModuleIdentifierFactory moduleIdentifierFactory, boolean enabled, boolean incremental) {
+        this.artifactCacheLockingManager = artifactCacheLockingManager;
+        this.timeProvider = timeProvider;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.enabled = enabled;
+        this.incremental = incremental;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    private PersistentIndexedCache<HashCode, CachedGraph> getCache() {
+        if (cache == null) {
+            cache = initCache();
+        }
+        return cache;
+    }
+
+    private PersistentIndexedCache<HashCode, CachedGraph> initCache() {
+        return artifactCacheLockingManager.createCache("resolved-graphs", new HashCodeSerializer(), new CachedGraphSerializer(moduleIdentifierFactory));
+    }
+
+    private PersistentIndexedCache<HashCode, List<ModuleVersionIdentifier>> getSelectionsCache() {
+        if (selectionsCache == null) {
+            selectionsCache = artifactCacheLockingManager.createCache("resolved-graph-selections", new HashCodeSerializer(), new ListSerializer<ModuleVersionIdentifier>(new ModuleVersionIdentifierSerializer(moduleIdentifierFactory)));
+        }
+        return selectionsCache;
+    }
+
+    /**
+     * Returns the graph cached for the given inputs, or {@code null} when there is no graph or the graph may be out-of-date according to the given cache policy.
+     */
+    @Nullable
+    public CachedGraph get(HashCode inputsFingerprint, CachePolicy cachePolicy) {
+        CachedGraph cachedGraph = getCache().get(inputsFingerprint);
+        if (cachedGraph == null) {
+            return null;
+        }
+        long ageMillis = timeProvider.getCurrentTime() - cachedGraph.timestamp;
+        for (ModuleVersionIdentifier selected : cachedGraph.dynamicSelections) {
+            if (cachePolicy.mustRefreshVersionList(selected.getModule(), Collections.singleton(selected), ageMillis)) {
+                return null;
+            }
+        }
+        for (ModuleVersionIdentifier module : cachedGraph.modules) {
+            if (cachePolicy.mustRefreshModule(new DefaultResolvedModuleVersion(module), ageMillis, cachedGraph.changingModules.contains(module))) {
+                return null;
+            }
+        }
+        return cachedGraph;
+    }
+
+    void store(HashCode inputsFingerprint, ResolvedGraphRecorder recorder) {
+        getCache().put(inputsFingerprint, recorder.toCachedGraph(timeProvider.getCurrentTime()));
+    }
+
+    /**
+     * Returns the modules selected by the last successful resolution of the given configuration, or an empty list when the configuration has not been resolved before.
+     */
+    List<ModuleVersionIdentifier> getPreviousSelections(HashCode configurationKey) {
+        List<ModuleVersionIdentifier> selections = getSelectionsCache().get(configurationKey);
+        return selections == null ? Collections.<ModuleVersionIdentifier>emptyList() : selections;
+    }
+
+    void storeSelections(HashCode configurationKey, SelectedModulesRecorder recorder) {
+        getSelectionsCache().put(configurationKey, recorder.getSelectedModules());
+    }
+
+    public static class CachedGraph {
+        private final byte[] graph;
+        private final long timestamp;
+        private final ImmutableList<ModuleVersionIdentifier> modules;
+        private final ImmutableSet<ModuleVersionIdentifier> changingModules;
+        private final ImmutableSet<ModuleVersionIdentifier> dynamicSelections;
+
+        CachedGraph(byte[] graph, long timestamp, Collection<ModuleVersionIdentifier> modules, Collection<ModuleVersionIdentifier> changingModules, Collection<ModuleVersionIdentifier> dynamicSelections) {
+            this.graph = graph;
+            this.timestamp = timestamp;
+            this.modules = ImmutableList.copyOf(modules);
+            this.changingModules = ImmutableSet.copyOf(changingModules);
+            this.dynamicSelections = ImmutableSet.copyOf(dynamicSelections);
+        }
+
+        /**
+         * The graph, as written by {@link org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder}.
+         */
+        public byte[] getGraph() {
+            return graph;
+        }
+    }
+
+    private static class CachedGraphSerializer extends AbstractSerializer<CachedGraph> {
+        private final ModuleVersionIdentifierSerializer moduleVersionIdentifierSerializer;
+
+        private CachedGraphSerializer(ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+            this.moduleVersionIdentifierSerializer = new ModuleVersionIdentifierSerializer(moduleIdentifierFactory);
+        }
+
+        @Override
+        public void write(Encoder encoder, CachedGraph value) throws Exception {
+            encoder.writeBinary(value.graph);
+            encoder.writeLong(value.timestamp);
+            writeModules(encoder, value.modules);
+            writeModules(encoder, value.changingModules);
+            writeModules(encoder, value.dynamicSelections);
+        }
+
+        @Override
+        public CachedGraph read(Decoder decoder) throws Exception {
+            byte[] graph = decoder.readBinary();
+            long timestamp = decoder.readLong();
+            return new CachedGraph(graph, timestamp, readModules(decoder), readModules(decoder), readModules(decoder));
+        }
+
+        private void writeModules(Encoder encoder, Collection<ModuleVersionIdentifier> modules) throws Exception {
+            encoder.writeSmallInt(modules.size());
+            for (ModuleVersionIdentifier module : modules) {
+                moduleVersionIdentifierSerializer.write(encoder, module);
+            }
+        }
+
+        private ImmutableList<ModuleVersionIdentifier> readModules(Decoder decoder) throws Exception {
+            int size = decoder.readSmallInt();
+            ImmutableList.Builder<ModuleVersionIdentifier> modules = ImmutableList.builderWithExpectedSize(size);
+            for (int i = 0; i < size; i++) {
+                modules.add(moduleVersionIdentifierSerializer.read(decoder));
+            }
+            return modules.build();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.InMemoryBinaryStore;
+import org.gradle.api.internal.attributes.AttributeDesugaring;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+
+import javax.annotation.Nullable;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records the serialized form of a resolved graph, along with the details required to decide whether the graph is still up-to-date in a later build.
+ */
+class ResolvedGraphRecorder implements DependencyGraphVisitor {
+    private final InMemoryBinaryStore store = new InMemoryBinaryStore();
+    private final StreamingResolutionResultBuilder resultBuilder;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final Map<ModuleIdentifier, ModuleVersionIdentifier> modules = new LinkedHashMap<ModuleIdentifier, ModuleVersionIdentifier>();
+    private final Set<ModuleVersionIdentifier> changingModules = new HashSet<ModuleVersionIdentifier>();
+    private final Set<ModuleIdentifier> dynamicallySelectedModules = new HashSet<ModuleIdentifier>();
+
+    ResolvedGraphRecorder(ImmutableModuleIdentifierFactory moduleIdentifierFactory, AttributeContainerSerializer attributeContainerSerializer, AttributeDesugaring attributeDesugaring, VersionSelectorScheme versionSelectorScheme) {
+        this.resultBuilder = new StreamingResolutionResultBuilder(store, null, moduleIdentifierFactory, attributeContainerSerializer, attributeDesugaring);
+        this.versionSelectorScheme = versionSelectorScheme;
+    }
+
+    @Override
+    public void start(RootGraphNode root) {
+        resultBuilder.start(root);
+    }
+
+    @Override
+    public void visitNode(DependencyGraphNode node) {
+        resultBuilder.visitNode(node);
+        DependencyGraphComponent component = node.getOwner();
+        if (component.getComponentId() instanceof ModuleComponentIdentifier) {
+            ModuleVersionIdentifier id = component.getModuleVersion();
+            modules.put(id.getModule(), id);
+            ComponentResolveMetadata metadata = component.getMetadata();
+            if (metadata == null || metadata.isChanging()) {
+                changingModules.add(id);
+            }
+        }
+    }
+
+    @Override
+    public void visitSelector(DependencyGraphSelector selector) {
+        resultBuilder.visitSelector(selector);
+        ComponentSelector requested = selector.getRequested();
+        if (requested instanceof ModuleComponentSelector) {
+            ModuleComponentSelector moduleSelector = (ModuleComponentSelector) requested;
+            if (isDynamic(moduleSelector.getVersionConstraint())) {
+                dynamicallySelectedModules.add(moduleSelector.getModuleIdentifier());
+            }
+        }
+    }
+
+    @Override
+    public void visitEdges(DependencyGraphNode node) {
+        resultBuilder.visitEdges(node);
+    }
+
+    @Override
+    public void finish(DependencyGraphNode root) {
+        resultBuilder.finish(root);
+    }
+
+    /**
+     * Returns the recorded graph, to be stored in the given cache.
+     */
+    ResolvedGraphCache.CachedGraph toCachedGraph(long timestamp) {
+        Set<ModuleVersionIdentifier> dynamicSelections = new LinkedHashSet<ModuleVersionIdentifier>();
+        for (ModuleIdentifier module : dynamicallySelectedModules) {
+            ModuleVersionIdentifier selected = modules.get(module);
+            if (selected != null) {
+                dynamicSelections.add(selected);
+            }
+        }
+        return new ResolvedGraphCache.CachedGraph(store.getContent(), timestamp, modules.values(), changingModules, dynamicSelections);
+    }
+
+    private boolean isDynamic(VersionConstraint versionConstraint) {
+        return isDynamic(versionConstraint.getRequiredVersion())
+            || isDynamic(versionConstraint.getPreferredVersion())
+            || isDynamic(versionConstraint.getStrictVersion());
+    }
+
+    private boolean isDynamic(@Nullable String version) {
+        return version != null && !version.isEmpty() && versionSelectorScheme.parseSelector(version).isDynamic();
+    }
+}
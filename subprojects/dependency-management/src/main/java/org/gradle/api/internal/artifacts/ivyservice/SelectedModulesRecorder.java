@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records the external modules selected by a resolution, so that a later resolution of the same configuration can fetch their metadata ahead of time.
+ */
+class SelectedModulesRecorder implements DependencyGraphVisitor {
+    private final Set<ModuleVersionIdentifier> selectedModules = new LinkedHashSet<ModuleVersionIdentifier>();
+
+    @Override
+    public void start(RootGraphNode root) {
+    }
+
+    @Override
+    public void visitNode(DependencyGraphNode node) {
+        DependencyGraphComponent component = node.getOwner();
+        if (component.getComponentId() instanceof ModuleComponentIdentifier) {
+            selectedModules.add(component.getModuleVersion());
+        }
+    }
+
+    @Override
+    public void visitSelector(DependencyGraphSelector selector) {
+    }
+
+    @Override
+    public void visitEdges(DependencyGraphNode node) {
+    }
+
+    @Override
+    public void finish(DependencyGraphNode root) {
+    }
+
+    List<ModuleVersionIdentifier> getSelectedModules() {
+        return new ArrayList<ModuleVersionIdentifier>(selectedModules);
+    }
+}
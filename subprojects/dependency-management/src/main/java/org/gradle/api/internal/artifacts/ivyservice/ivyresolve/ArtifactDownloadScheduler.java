@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve;
+
+import org.gradle.api.internal.artifacts.QueueArtifactDownloadBuildOperationType;
+import org.gradle.internal.component.model.ComponentArtifactMetadata;
+import org.gradle.internal.component.model.ModuleSources;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.resolve.result.BuildableArtifactResolveResult;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.util.NumberUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of artifacts downloaded concurrently from each repository.
+ *
+ * <p>Downloads run on the worker threads of the build operation executor, so without a limit the number of concurrent requests made to a repository
+ * is only bounded by the number of workers. Downloads beyond the limit wait for a slot in a build operation that reports the queue depth of the
+ * repository and the download rate achieved so far.</p>
+ */
+public class ArtifactDownloadScheduler implements Stoppable {
+    /**
+     * The maximum number of artifacts to download concurrently from a repository. Unlimited when not set.
+     */
+    public static final String MAX_DOWNLOADS_PER_REPOSITORY_PROPERTY = "org.gradle.internal.dependency-resolution.max-downloads-per-repository";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactDownloadScheduler.class);
+
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final int maxDownloadsPerRepository;
+    private final Map<String, RepositoryQueue> queues = new ConcurrentHashMap<String, RepositoryQueue>();
+
+    public ArtifactDownloadScheduler(BuildOperationExecutor buildOperationExecutor, int maxDownloadsPerRepository) {
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.maxDownloadsPerRepository = maxDownloadsPerRepository;
+    }
+
+    public boolean isEnabled() {
+        return maxDownloadsPerRepository > 0;
+    }
+
+    /**
+     * Returns a repository whose remote artifact downloads are subject to the limit of this scheduler.
+     */
+    public ModuleComponentRepository schedule(ModuleComponentRepository repository) {
+        if (!isEnabled()) {
+            return repository;
+        }
+        RepositoryQueue queue = queues.computeIfAbsent(repository.getId(), id -> new RepositoryQueue(repository.getName(), maxDownloadsPerRepository));
+        return new BaseModuleComponentRepository(repository, repository.getLocalAccess(), new ScheduledRemoteAccess(repository.getRemoteAccess(), queue));
+    }
+
+    @Override
+    public void stop() {
+        for (RepositoryQueue queue : queues.values()) {
+            if (queue.downloads > 0) {
+                LOGGER.info("Downloaded {} artifacts ({}) from repository '{}' at {}/s, {} downloads waited for a slot (max queue depth {}).",
+                    queue.downloads, NumberUtil.formatBytes(queue.bytes), queue.repositoryName, NumberUtil.formatBytes(queue.getBytesPerSecond()), queue.queuedDownloads, queue.maxQueueDepth);
+            }
+        }
+        queues.clear();
+    }
+
+    private class ScheduledRemoteAccess extends BaseModuleComponentRepositoryAccess {
+        private final RepositoryQueue queue;
+
+        ScheduledRemoteAccess(ModuleComponentRepositoryAccess delegate, RepositoryQueue queue) {
+            super(delegate);
+            this.queue = queue;
+        }
+
+        @Override
+        public String toString() {
+            return "scheduled > " + getDelegate().toString();
+        }
+
+        @Override
+        public void resolveArtifact(ComponentArtifactMetadata artifact, ModuleSources moduleSources, BuildableArtifactResolveResult result) {
+            acquire(artifact);
+            queue.started();
+            try {
+                super.resolveArtifact(artifact, moduleSources, result);
+            } finally {
+                queue.finished(result.hasResult() && result.isSuccessful() ? result.getResult().length() : 0);
+            }
+        }
+
+        private void acquire(ComponentArtifactMetadata artifact) {
+            if (queue.permits.tryAcquire()) {
+                return;
+            }
+            int queueDepth = queue.waiting.incrementAndGet();
+            queue.queued(queueDepth);
+            try {
+                buildOperationExecutor.run(new RunnableBuildOperation() {
+                    @Override
+                    public void run(BuildOperationContext context) {
+                        queue.permits.acquireUninterruptibly();
+                        context.setResult(QueueArtifactDownloadBuildOperationType.RESULT);
+                    }
+
+                    @Override
+                    public BuildOperationDescriptor.Builder description() {
+                        String displayName = "Wait to download " + artifact.getId().getDisplayName() + " from " + queue.repositoryName;
+                        return BuildOperationDescriptor.displayName(displayName)
+                            .details(new QueueArtifactDownloadBuildOperationType.DetailsImpl(artifact.getId().getDisplayName(), queue.repositoryName, queueDepth, queue.getBytesPerSecond()));
+                    }
+                });
+            } finally {
+                queue.waiting.decrementAndGet();
+            }
+        }
+    }
+
+    private static class RepositoryQueue {
+        private final String repositoryName;
+        private final Semaphore permits;
+        private final AtomicInteger waiting = new AtomicInteger();
+        // Guarded by this
+        private int active;
+        private long activeSince;
+        private long activeTime;
+        private long bytes;
+        private int downloads;
+        private int queuedDownloads;
+        private int maxQueueDepth;
+
+        RepositoryQueue(String repositoryName, int maxDownloads) {
+            this.repositoryName = repositoryName;
+            this.permits = new Semaphore(maxDownloads, true);
+        }
+
+        synchronized void queued(int queueDepth) {
+            queuedDownloads++;
+            maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+        }
+
+        synchronized void started() {
+            if (active++ == 0) {
+                activeSince = Time.clock().getCurrentTime();
+            }
+        }
+
+        void finished(long downloadedBytes) {
+            synchronized (this) {
+                downloads++;
+                bytes += downloadedBytes;
+                if (--active == 0) {
+                    activeTime += Time.clock().getCurrentTime() - activeSince;
+                }
+            }
+            permits.release();
+        }
+
+        synchronized long getBytesPerSecond() {
+            // The rate is measured over the time during which at least one download from the repository was in progress
+            long time = active == 0 ? activeTime : activeTime + Time.clock().getCurrentTime() - activeSince;
+            if (time == 0) {
+                return 0;
+            }
+            return bytes * TimeUnit.SECONDS.toMillis(1) / time;
+        }
+    }
+}
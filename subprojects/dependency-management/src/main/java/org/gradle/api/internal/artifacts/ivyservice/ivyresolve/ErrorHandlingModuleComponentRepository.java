@@ -54,7 +54,7 @@
  * This allows other repository implementations to throw exceptions on failure.
  *
  * This implementation will also blacklist any repository that throws a critical failure, failing-fast with that
- * repository for any subsequent requests.
+ * repository for any subsequent requests. Failures of {@link SpeculativeResolution speculative} requests are neither retried nor blacklist the repository.
  */
 public class ErrorHandlingModuleComponentRepository implements ModuleComponentRepository {
 
@@ -228,6 +228,7 @@ private <E extends Throwable, R extends ErroringResolveResult<E>> void tryResolv
         private <E extends Throwable, R extends ErroringResolveResult<E>> void tryResolveAndMaybeBlacklist(R result, Callable<E> operation, Transformer<E, Throwable> onError) {
             int retries = 0;
             int backoff = initialBackOff;
+            boolean speculative = SpeculativeResolution.isSpeculative();
 
             while (retries < maxTentativesCount) {
                 retries++;
@@ -245,9 +246,9 @@ private <E extends Throwable, R extends ErroringResolveResult<E>> void tryResolv
                     unexpectedFailure = throwable;
                     failure = onError.transform(throwable);
                 }
-                boolean doNotRetry = !NetworkingIssueVerifier.isLikelyTransientNetworkingIssue(failure);
+                boolean doNotRetry = speculative || !NetworkingIssueVerifier.isLikelyTransientNetworkingIssue(failure);
                 if (doNotRetry || retries == maxTentativesCount) {
-                    if (unexpectedFailure != null) {
+                    if (unexpectedFailure != null && !speculative) {
                         repositoryBlacklister.blacklistRepository(repositoryId, unexpectedFailure);
                     }
                     result.failed(failure);
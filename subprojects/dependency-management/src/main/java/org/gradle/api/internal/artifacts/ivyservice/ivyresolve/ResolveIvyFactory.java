@@ -68,6 +68,7 @@ public class ResolveIvyFactory {
     private final RepositoryBlacklister repositoryBlacklister;
     private final VersionParser versionParser;
     private final InstantiatorFactory instantiatorFactory;
+    private final ArtifactDownloadScheduler artifactDownloadScheduler;
 
     private final DependencyVerificationOverride dependencyVerificationOverride;
 
@@ -79,7 +80,8 @@ public ResolveIvyFactory(ModuleRepositoryCacheProvider cacheProvider,
                              ImmutableModuleIdentifierFactory moduleIdentifierFactory,
                              RepositoryBlacklister repositoryBlacklister,
                              VersionParser versionParser,
-                             InstantiatorFactory instantiatorFactory) {
+                             InstantiatorFactory instantiatorFactory,
+                             ArtifactDownloadScheduler artifactDownloadScheduler) {
         this.cacheProvider = cacheProvider;
         this.startParameterResolutionOverride = startParameterResolutionOverride;
         this.timeProvider = timeProvider;
@@ -88,6 +90,7 @@ public ResolveIvyFactory(ModuleRepositoryCacheProvider cacheProvider,
         this.repositoryBlacklister = repositoryBlacklister;
         this.versionParser = versionParser;
         this.instantiatorFactory = instantiatorFactory;
+        this.artifactDownloadScheduler = artifactDownloadScheduler;
         this.dependencyVerificationOverride = dependencyVerificationOverride;
     }
 
@@ -130,6 +133,7 @@ public ComponentResolvers create(String resolveContextName,
                 moduleComponentRepository = startParameterResolutionOverride.overrideModuleVersionRepository(moduleComponentRepository);
                 moduleComponentRepository = new CachingModuleComponentRepository(moduleComponentRepository, cacheProvider.getPersistentCaches(),
                     cachePolicy, timeProvider, componentMetadataProcessor);
+                moduleComponentRepository = artifactDownloadScheduler.schedule(moduleComponentRepository);
             }
             moduleComponentRepository = cacheProvider.getResolvedArtifactCaches().provideResolvedArtifactCache(moduleComponentRepository);
 
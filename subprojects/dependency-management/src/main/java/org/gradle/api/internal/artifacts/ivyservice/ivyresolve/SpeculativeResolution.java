@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve;
+
+/**
+ * Marks the resolution work done by the current thread as speculative, such as fetching metadata ahead of the graph traversal.
+ *
+ * <p>The work is done again when it turns out to be required, so failures of speculative work are only reported to the caller:
+ * they are not retried and don't blacklist the repository.</p>
+ */
+public class SpeculativeResolution {
+    private static final ThreadLocal<Boolean> SPECULATIVE = new ThreadLocal<Boolean>();
+
+    private SpeculativeResolution() {
+    }
+
+    public static void run(Runnable action) {
+        Boolean previous = SPECULATIVE.get();
+        SPECULATIVE.set(Boolean.TRUE);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) {
+                SPECULATIVE.remove();
+            }
+        }
+    }
+
+    public static boolean isSpeculative() {
+        return SPECULATIVE.get() != null;
+    }
+}
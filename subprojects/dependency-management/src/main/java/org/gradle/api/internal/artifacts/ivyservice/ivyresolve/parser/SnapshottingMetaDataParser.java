@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelector;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleDescriptorSnapshotStore;
+import org.gradle.api.internal.component.ArtifactType;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.ModuleDependencyMetadata;
+import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
+import org.gradle.internal.hash.HashUtil;
+import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.resource.local.FileResourceRepository;
+import org.gradle.internal.resource.local.LocallyAvailableExternalResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+/**
+ * A {@link MetaDataParser} that reuses the effective model of descriptors parsed previously, skipping the parsing of the descriptor and of its parent
+ * and imported descriptors.
+ *
+ * <p>A snapshot is only reused when each of the parent and imported descriptors it was derived from still has the same content. Descriptors which
+ * refer to other descriptors using a dynamic version are not snapshotted.</p>
+ */
+public class SnapshottingMetaDataParser<T extends MutableModuleComponentResolveMetadata> implements MetaDataParser<T> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshottingMetaDataParser.class);
+
+    private final MetaDataParser<T> delegate;
+    private final Class<T> metadataType;
+    private final String descriptorType;
+    private final ModuleDescriptorSnapshotStore snapshotStore;
+    private final FileResourceRepository fileResourceRepository;
+
+    public SnapshottingMetaDataParser(MetaDataParser<T> delegate, Class<T> metadataType, String descriptorType, ModuleDescriptorSnapshotStore snapshotStore, FileResourceRepository fileResourceRepository) {
+        this.delegate = delegate;
+        this.metadataType = metadataType;
+        this.descriptorType = descriptorType;
+        this.snapshotStore = snapshotStore;
+        this.fileResourceRepository = fileResourceRepository;
+    }
+
+    @Override
+    public ParseResult<T> parseMetaData(DescriptorParseContext context, LocallyAvailableExternalResource resource) throws MetaDataParseException {
+        HashValue contentHash = HashUtil.createHash(resource.getFile(), "MD5");
+        ModuleDescriptorSnapshotStore.Snapshot snapshot = snapshotStore.get(descriptorType, contentHash);
+        if (snapshot != null && metadataType.isInstance(snapshot.getMetadata()) && isUpToDate(context, snapshot)) {
+            return ParseResult.of(metadataType.cast(snapshot.getMetadata()), snapshot.hasGradleMetadataRedirectionMarker());
+        }
+
+        RecordingDescriptorParseContext recordingContext = new RecordingDescriptorParseContext(context);
+        ParseResult<T> parseResult = delegate.parseMetaData(recordingContext, resource);
+        if (parseResult.getResult() != null && recordingContext.isSnapshottable()) {
+            snapshotStore.put(descriptorType, contentHash, new ModuleDescriptorSnapshotStore.Snapshot(recordingContext.getReferences(), parseResult.getResult(), parseResult.hasGradleMetadataRedirectionMarker()));
+        }
+        return parseResult;
+    }
+
+    @Override
+    public ParseResult<T> parseMetaData(DescriptorParseContext context, File descriptorFile) throws MetaDataParseException {
+        return parseMetaData(context, fileResourceRepository.resource(descriptorFile));
+    }
+
+    @Override
+    public ParseResult<T> parseMetaData(DescriptorParseContext context, File descriptorFile, boolean validate) throws MetaDataParseException {
+        if (validate) {
+            return delegate.parseMetaData(context, descriptorFile, true);
+        }
+        return parseMetaData(context, descriptorFile);
+    }
+
+    private static boolean isUpToDate(DescriptorParseContext context, ModuleDescriptorSnapshotStore.Snapshot snapshot) {
+        for (ModuleDescriptorSnapshotStore.Reference reference : snapshot.getReferences()) {
+            try {
+                LocallyAvailableExternalResource resource = context.getMetaDataArtifact(reference.getId(), reference.getArtifactType());
+                if (!HashUtil.createHash(resource.getFile(), "MD5").equals(reference.getContentHash())) {
+                    return false;
+                }
+            } catch (RuntimeException e) {
+                // Parse the descriptor again, to report the failure in context
+                LOGGER.debug("Could not check descriptor {} referenced by snapshot.", reference.getId(), e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the descriptors requested while parsing a descriptor.
+     */
+    private static class RecordingDescriptorParseContext implements DescriptorParseContext {
+        private final DescriptorParseContext delegate;
+        private final ImmutableList.Builder<ModuleDescriptorSnapshotStore.Reference> references = ImmutableList.builder();
+        private boolean snapshottable = true;
+
+        RecordingDescriptorParseContext(DescriptorParseContext delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public LocallyAvailableExternalResource getMetaDataArtifact(ModuleComponentIdentifier componentIdentifier, ArtifactType artifactType) {
+            LocallyAvailableExternalResource resource = delegate.getMetaDataArtifact(componentIdentifier, artifactType);
+            record(componentIdentifier, artifactType, resource);
+            return resource;
+        }
+
+        @Override
+        public LocallyAvailableExternalResource getMetaDataArtifact(ModuleDependencyMetadata dependencyMetadata, VersionSelector acceptor, ArtifactType artifactType) {
+            LocallyAvailableExternalResource resource = delegate.getMetaDataArtifact(dependencyMetadata, acceptor, artifactType);
+            if (acceptor.isDynamic()) {
+                // The selected version may change without any change to the referencing descriptor
+                snapshottable = false;
+            } else {
+                ModuleComponentSelector selector = dependencyMetadata.getSelector();
+                record(DefaultModuleComponentIdentifier.newId(selector.getModuleIdentifier(), selector.getVersion()), artifactType, resource);
+            }
+            return resource;
+        }
+
+        private void record(ModuleComponentIdentifier id, ArtifactType artifactType, LocallyAvailableExternalResource resource) {
+            references.add(new ModuleDescriptorSnapshotStore.Reference(id, artifactType, HashUtil.createHash(resource.getFile(), "MD5")));
+        }
+
+        boolean isSnapshottable() {
+            return snapshottable;
+        }
+
+        ImmutableList<ModuleDescriptorSnapshotStore.Reference> getReferences() {
+            return references.build();
+        }
+    }
+}
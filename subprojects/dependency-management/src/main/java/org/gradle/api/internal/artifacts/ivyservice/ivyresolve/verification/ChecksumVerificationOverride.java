@@ -15,6 +15,8 @@
  */
 package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.artifacts.component.ComponentArtifactIdentifier;
@@ -23,29 +25,48 @@
 import org.gradle.api.component.Artifact;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.DependencyVerifyingModuleComponentRepository;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleComponentRepository;
+import org.gradle.api.internal.artifacts.verification.ChecksumService;
 import org.gradle.api.internal.artifacts.verification.DependencyVerifier;
 import org.gradle.api.internal.artifacts.verification.serializer.DependencyVerificationsXmlReader;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.component.external.model.ModuleComponentArtifactIdentifier;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.logging.text.TreeFormatter;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationRef;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-public class ChecksumVerificationOverride implements DependencyVerificationOverride, ArtifactVerificationOperation {
+/**
+ * Verifies the checksums of artifacts as they are resolved.
+ *
+ * <p>Artifacts are verified on a dedicated pool, so that resolving threads do not wait for checksums to be computed. Pending verifications are
+ * waited for when the files of resolved artifacts are accessed, before failures are reported.</p>
+ */
+public class ChecksumVerificationOverride implements DependencyVerificationOverride, ArtifactVerificationOperation, Stoppable {
     private static final Comparator<Map.Entry<ModuleComponentArtifactIdentifier, DependencyVerifier.VerificationFailure>> BY_MODULE_ID = Comparator.comparing(e -> e.getKey().getDisplayName());
 
     private final DependencyVerifier verifier;
     private final Map<ModuleComponentArtifactIdentifier, DependencyVerifier.VerificationFailure> failures = Maps.newLinkedHashMapWithExpectedSize(2);
+    private final List<Future<?>> pendingVerifications = Lists.newArrayList();
     private final BuildOperationExecutor buildOperationExecutor;
+    private final ChecksumService checksumService;
+    private final ManagedExecutor executor;
 
-    public ChecksumVerificationOverride(BuildOperationExecutor buildOperationExecutor, File verificationsFile) {
+    public ChecksumVerificationOverride(BuildOperationExecutor buildOperationExecutor, ChecksumService checksumService, ExecutorFactory executorFactory, File verificationsFile) {
         this.buildOperationExecutor = buildOperationExecutor;
+        this.checksumService = checksumService;
+        this.executor = executorFactory.create("Dependency verification", Runtime.getRuntime().availableProcessors());
         try {
             this.verifier = DependencyVerificationsXmlReader.readFromXml(
                 new FileInputStream(verificationsFile)
@@ -57,11 +78,36 @@ public ChecksumVerificationOverride(BuildOperationExecutor buildOperationExecuto
 
     @Override
     public void onArtifact(ModuleComponentArtifactIdentifier artifact, File path) {
-        verifier.verify(buildOperationExecutor, artifact, path, f -> {
+        // Verifications run on another thread, so attach them to the operation resolving the artifact
+        BuildOperationRef parent = buildOperationExecutor.getCurrentOperation();
+        Future<?> verification = executor.submit(() -> verifier.verify(buildOperationExecutor, parent, checksumService, artifact, path, f -> {
             synchronized (failures) {
                 failures.put(artifact, f);
             }
-        });
+        }));
+        synchronized (pendingVerifications) {
+            pendingVerifications.add(verification);
+        }
+    }
+
+    private void waitForPendingVerifications() {
+        List<Future<?>> verifications;
+        synchronized (pendingVerifications) {
+            verifications = ImmutableList.copyOf(pendingVerifications);
+        }
+        for (Future<?> verification : verifications) {
+            try {
+                verification.get();
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            } catch (ExecutionException e) {
+                throw UncheckedException.throwAsUncheckedException(e.getCause());
+            }
+        }
+        // Only forget verifications once they have completed, so that concurrent callers also wait for them
+        synchronized (pendingVerifications) {
+            pendingVerifications.removeIf(Future::isDone);
+        }
     }
 
     @Override
@@ -71,6 +117,7 @@ public ModuleComponentRepository overrideDependencyVerification(ModuleComponentR
 
     @Override
     public void artifactsAccessed(String displayName) {
+        waitForPendingVerifications();
         synchronized (failures) {
             if (!failures.isEmpty()) {
                 TreeFormatter formatter = new TreeFormatter();
@@ -129,4 +176,9 @@ public Class<? extends Artifact> getType() {
             }
         };
     }
+
+    @Override
+    public void stop() {
+        executor.stop();
+    }
 }
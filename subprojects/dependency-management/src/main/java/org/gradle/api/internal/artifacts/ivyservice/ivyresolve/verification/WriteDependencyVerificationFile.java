@@ -26,6 +26,7 @@
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.DependencyVerifyingModuleComponentRepository;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleComponentRepository;
+import org.gradle.api.internal.artifacts.verification.ChecksumService;
 import org.gradle.api.internal.artifacts.verification.DependencyVerifierBuilder;
 import org.gradle.api.internal.artifacts.verification.model.ChecksumKind;
 import org.gradle.api.internal.artifacts.verification.serializer.DependencyVerificationsXmlReader;
@@ -35,7 +36,6 @@
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.component.external.model.ModuleComponentArtifactIdentifier;
 import org.gradle.internal.deprecation.DeprecatableConfiguration;
-import org.gradle.internal.hash.HashUtil;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -69,13 +69,15 @@ public class WriteDependencyVerificationFile implements DependencyVerificationOv
     private final DependencyVerifierBuilder verificationsBuilder = new DependencyVerifierBuilder();
     private final File buildDirectory;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final ChecksumService checksumService;
     private final List<String> checksums;
     private final Map<FileChecksum, String> cachedChecksums = Maps.newConcurrentMap();
     private final Set<ChecksumEntry> entriesToBeWritten = Sets.newLinkedHashSetWithExpectedSize(512);
 
-    public WriteDependencyVerificationFile(File buildDirectory, BuildOperationExecutor buildOperationExecutor, List<String> checksums) {
+    public WriteDependencyVerificationFile(File buildDirectory, BuildOperationExecutor buildOperationExecutor, ChecksumService checksumService, List<String> checksums) {
         this.buildDirectory = buildDirectory;
         this.buildOperationExecutor = buildOperationExecutor;
+        this.checksumService = checksumService;
         this.checksums = validateChecksums(checksums);
     }
 
@@ -198,7 +200,7 @@ public BuildOperationDescriptor.Builder description() {
     }
 
     private String createHash(File file, ChecksumKind kind) {
-        return cachedChecksums.computeIfAbsent(new FileChecksum(file, kind), key -> HashUtil.createHash(file, kind.getAlgorithm()).asHexString());
+        return cachedChecksums.computeIfAbsent(new FileChecksum(file, kind), key -> checksumService.checksum(file, kind).asHexString());
     }
 
     private static void resolveAllConfigurationsAndForceDownload(Project p) {
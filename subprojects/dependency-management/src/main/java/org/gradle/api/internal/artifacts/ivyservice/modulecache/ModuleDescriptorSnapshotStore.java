@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Maps;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheLockingManager;
+import org.gradle.api.internal.component.ArtifactType;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
+import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.resource.local.LocallyAvailableResource;
+import org.gradle.internal.resource.local.PathKeyFileStore;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Stores the metadata parsed from module descriptors, keyed by the content hash of the descriptor.
+ *
+ * <p>A snapshot holds the effective model of the descriptor, with the content of any parent or imported descriptors already applied. Each of these
+ * other descriptors is recorded along with its content hash, so that the snapshot can be discarded when any of them changes.</p>
+ */
+public class ModuleDescriptorSnapshotStore {
+    /**
+     * When set to {@code true}, parsed module descriptors are stored and reused across builds.
+     */
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.dependency-resolution.descriptor-snapshots";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModuleDescriptorSnapshotStore.class);
+
+    private final ArtifactCacheLockingManager artifactCacheLockingManager;
+    private final PathKeyFileStore metaDataStore;
+    private final ModuleMetadataSerializer moduleMetadataSerializer;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final Interner<String> stringInterner;
+    private final boolean enabled;
+
+    public ModuleDescriptorSnapshotStore(ArtifactCacheLockingManager artifactCacheLockingManager, PathKeyFileStore metaDataStore, ModuleMetadataSerializer moduleMetadataSerializer, ImmutableModuleIdentifierFactory moduleIdentifierFactory, Interner<String> stringInterner, boolean enabled) {
+        this.artifactCacheLockingManager = artifactCacheLockingManager;
+        this.metaDataStore = metaDataStore;
+        this.moduleMetadataSerializer = moduleMetadataSerializer;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.stringInterner = stringInterner;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the snapshot of the descriptor of the given type with the given content hash, or {@code null} when there is none or it cannot be read.
+     */
+    @Nullable
+    public Snapshot get(String descriptorType, HashValue contentHash) {
+        return artifactCacheLockingManager.useCache(() -> {
+            LocallyAvailableResource resource = metaDataStore.get(getFilePath(descriptorType, contentHash));
+            if (resource == null) {
+                return null;
+            }
+            try {
+                StringDeduplicatingDecoder decoder = new StringDeduplicatingDecoder(new KryoBackedDecoder(new FileInputStream(resource.getFile())), stringInterner);
+                try {
+                    return read(decoder);
+                } finally {
+                    decoder.close();
+                }
+            } catch (Exception e) {
+                // Treat a snapshot that cannot be read as missing, so the descriptor is parsed and snapshotted again
+                LOGGER.info("Could not load module descriptor snapshot from {}, discarding it.", resource.getDisplayName(), e);
+                GFileUtils.deleteQuietly(resource.getFile());
+                return null;
+            }
+        });
+    }
+
+    public void put(String descriptorType, HashValue contentHash, Snapshot snapshot) {
+        artifactCacheLockingManager.useCache(() -> {
+            metaDataStore.add(String.join("/", getFilePath(descriptorType, contentHash)), snapshotFile -> {
+                try {
+                    KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(snapshotFile));
+                    try {
+                        write(encoder, snapshot);
+                    } finally {
+                        encoder.close();
+                    }
+                } catch (Exception e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            });
+        });
+    }
+
+    private Snapshot read(Decoder decoder) throws IOException {
+        boolean gradleMetadataRedirect = decoder.readBoolean();
+        int count = decoder.readSmallInt();
+        ImmutableList.Builder<Reference> references = ImmutableList.builderWithExpectedSize(count);
+        for (int i = 0; i < count; i++) {
+            ModuleComponentIdentifier id = DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId(decoder.readString(), decoder.readString()), decoder.readString());
+            ArtifactType artifactType = ArtifactType.values()[decoder.readSmallInt()];
+            HashValue referenceHash = new HashValue(decoder.readBinary());
+            references.add(new Reference(id, artifactType, referenceHash));
+        }
+        MutableModuleComponentResolveMetadata metadata = moduleMetadataSerializer.read(decoder, moduleIdentifierFactory, Maps.newHashMap());
+        return new Snapshot(references.build(), metadata, gradleMetadataRedirect);
+    }
+
+    private void write(Encoder encoder, Snapshot snapshot) throws IOException {
+        encoder.writeBoolean(snapshot.gradleMetadataRedirect);
+        encoder.writeSmallInt(snapshot.references.size());
+        for (Reference reference : snapshot.references) {
+            encoder.writeString(reference.id.getGroup());
+            encoder.writeString(reference.id.getModule());
+            encoder.writeString(reference.id.getVersion());
+            encoder.writeSmallInt(reference.artifactType.ordinal());
+            encoder.writeBinary(reference.contentHash.asByteArray());
+        }
+        moduleMetadataSerializer.write(encoder, snapshot.metadata.asImmutable(), Maps.newHashMap());
+    }
+
+    private static String[] getFilePath(String descriptorType, HashValue contentHash) {
+        return new String[] {
+            "snapshots",
+            descriptorType,
+            contentHash.asHexString() + ".bin"
+        };
+    }
+
+    /**
+     * The effective model of a descriptor, along with the other descriptors it was derived from.
+     */
+    public static class Snapshot {
+        private final List<Reference> references;
+        private final MutableModuleComponentResolveMetadata metadata;
+        private final boolean gradleMetadataRedirect;
+
+        public Snapshot(List<Reference> references, MutableModuleComponentResolveMetadata metadata, boolean gradleMetadataRedirect) {
+            this.references = references;
+            this.metadata = metadata;
+            this.gradleMetadataRedirect = gradleMetadataRedirect;
+        }
+
+        /**
+         * The parent and imported descriptors that were applied to this descriptor, transitively.
+         */
+        public List<Reference> getReferences() {
+            return references;
+        }
+
+        public MutableModuleComponentResolveMetadata getMetadata() {
+            return metadata;
+        }
+
+        public boolean hasGradleMetadataRedirectionMarker() {
+            return gradleMetadataRedirect;
+        }
+    }
+
+    /**
+     * A descriptor that was read while parsing another descriptor.
+     */
+    public static class Reference {
+        private final ModuleComponentIdentifier id;
+        private final ArtifactType artifactType;
+        private final HashValue contentHash;
+
+        public Reference(ModuleComponentIdentifier id, ArtifactType artifactType, HashValue contentHash) {
+            this.id = id;
+            this.artifactType = artifactType;
+            this.contentHash = contentHash;
+        }
+
+        public ModuleComponentIdentifier getId() {
+            return id;
+        }
+
+        public ArtifactType getArtifactType() {
+            return artifactType;
+        }
+
+        public HashValue getContentHash() {
+            return contentHash;
+        }
+    }
+}
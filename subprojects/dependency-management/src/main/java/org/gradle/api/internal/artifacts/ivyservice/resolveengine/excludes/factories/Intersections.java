@@ -18,6 +18,7 @@
 import com.google.common.collect.Sets;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simple.ModuleIdBitSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeAnyOf;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeNothing;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeSpec;
@@ -186,8 +187,13 @@ private ExcludeSpec intersectModuleId(ModuleIdExclude left, ExcludeSpec right) {
     private ExcludeSpec intersectModuleIdSet(ModuleIdSetExclude left, ExcludeSpec right) {
         Set<ModuleIdentifier> moduleIds = left.getModuleIds();
         if (right instanceof ModuleIdSetExclude) {
-            Set<ModuleIdentifier> common = Sets.newHashSet(((ModuleIdSetExclude) right).getModuleIds());
-            common.retainAll(moduleIds);
+            Set<ModuleIdentifier> rightModuleIds = ((ModuleIdSetExclude) right).getModuleIds();
+            // fast path when the sets are backed by bit sets
+            Set<ModuleIdentifier> common = ModuleIdBitSet.intersection(moduleIds, rightModuleIds);
+            if (common == null) {
+                common = Sets.newHashSet(rightModuleIds);
+                common.retainAll(moduleIds);
+            }
             return moduleIds(common);
         } else if (right instanceof ModuleSetExclude) {
             Set<String> modules = ((ModuleSetExclude) right).getModules();
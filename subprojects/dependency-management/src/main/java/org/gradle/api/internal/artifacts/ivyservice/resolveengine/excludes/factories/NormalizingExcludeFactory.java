@@ -18,6 +18,8 @@
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simple.ModuleIdBitSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.CompositeExclude;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeAllOf;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeAnyOf;
@@ -179,7 +181,7 @@ private ExcludeSpec doUnion(Set<ExcludeSpec> specs) {
             }
         }
         if (moduleIdSetsExcludes.size() > 1) {
-            moduleIdSetsExcludes = ImmutableList.of(delegate.moduleIdSet(moduleIdSetsExcludes.stream().flatMap(e -> e.getModuleIds().stream()).collect(toSet())));
+            moduleIdSetsExcludes = ImmutableList.of(delegate.moduleIdSet(unionOfModuleIds(moduleIdSetsExcludes)));
         }
         if (groupSetExcludes.size() > 1) {
             groupSetExcludes = ImmutableList.of(delegate.groupSet(groupSetExcludes.stream().flatMap(e -> e.getGroups().stream()).collect(toSet())));
@@ -201,6 +203,15 @@ private ExcludeSpec doUnion(Set<ExcludeSpec> specs) {
         return Optimizations.optimizeCollection(this, builder.build(), delegate::anyOf);
     }
 
+    private static Set<ModuleIdentifier> unionOfModuleIds(List<ModuleIdSetExclude> moduleIdSetExcludes) {
+        // fast path when the sets are backed by bit sets
+        Set<ModuleIdentifier> union = ModuleIdBitSet.union(moduleIdSetExcludes.stream().map(ModuleIdSetExclude::getModuleIds).collect(Collectors.toList()));
+        if (union != null) {
+            return union;
+        }
+        return moduleIdSetExcludes.stream().flatMap(e -> e.getModuleIds().stream()).collect(toSet());
+    }
+
     /**
      * Flattens a collection of elements that are going to be joined or intersected. There
      * are 3 possible outcomes:
@@ -33,6 +33,8 @@
 import java.util.Set;
 
 public class DefaultExcludeFactory implements ExcludeFactory {
+    private final ModuleIdIndex moduleIdIndex = new ModuleIdIndex();
+
     @Override
     public ExcludeNothing nothing() {
         return DefaultExcludeNothing.get();
@@ -90,7 +92,7 @@ public ExcludeSpec ivyPatternExclude(ModuleIdentifier moduleId, IvyArtifactName
 
     @Override
     public ModuleIdSetExclude moduleIdSet(Set<ModuleIdentifier> modules) {
-        return DefaultModuleIdSetExclude.of(modules);
+        return DefaultModuleIdSetExclude.of(ModuleIdBitSet.of(moduleIdIndex, modules));
     }
 
     @Override
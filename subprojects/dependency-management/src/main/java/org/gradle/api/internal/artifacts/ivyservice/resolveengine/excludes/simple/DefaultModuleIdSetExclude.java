@@ -15,7 +15,6 @@
  */
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simple;
 
-import com.google.common.collect.ImmutableSet;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ModuleIdSetExclude;
 import org.gradle.internal.component.model.IvyArtifactName;
@@ -26,11 +25,11 @@ final class DefaultModuleIdSetExclude implements ModuleIdSetExclude {
     private final Set<ModuleIdentifier> moduleIds;
     private final int hashCode;
 
-    static ModuleIdSetExclude of(Set<ModuleIdentifier> ids) {
-        return new DefaultModuleIdSetExclude(ImmutableSet.copyOf(ids));
+    static ModuleIdSetExclude of(ModuleIdBitSet ids) {
+        return new DefaultModuleIdSetExclude(ids);
     }
 
-    private DefaultModuleIdSetExclude(ImmutableSet<ModuleIdentifier> moduleIds) {
+    private DefaultModuleIdSetExclude(Set<ModuleIdentifier> moduleIds) {
         this.moduleIds = moduleIds;
         this.hashCode = moduleIds.hashCode();
     }
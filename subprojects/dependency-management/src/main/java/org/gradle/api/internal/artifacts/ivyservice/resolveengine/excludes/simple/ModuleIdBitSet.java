@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simple;
+
+import org.gradle.api.artifacts.ModuleIdentifier;
+
+import javax.annotation.Nullable;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable set of module identifiers, backed by a bit set of the ids assigned
+ * by a {@link ModuleIdIndex}. Unions, intersections and equality checks of sets
+ * sharing the same index are computed on the bit sets.
+ */
+public final class ModuleIdBitSet extends AbstractSet<ModuleIdentifier> {
+    private final ModuleIdIndex index;
+    private final BitSet bits;
+    private final int size;
+    private final int hashCode;
+
+    static ModuleIdBitSet of(ModuleIdIndex index, Set<ModuleIdentifier> moduleIds) {
+        if (moduleIds instanceof ModuleIdBitSet && ((ModuleIdBitSet) moduleIds).index == index) {
+            return (ModuleIdBitSet) moduleIds;
+        }
+        BitSet bits = new BitSet();
+        for (ModuleIdentifier moduleId : moduleIds) {
+            bits.set(index.intern(moduleId));
+        }
+        return new ModuleIdBitSet(index, bits);
+    }
+
+    private ModuleIdBitSet(ModuleIdIndex index, BitSet bits) {
+        this.index = index;
+        this.bits = bits;
+        this.size = bits.cardinality();
+        int hashCode = 0;
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            hashCode += index.get(i).hashCode();
+        }
+        this.hashCode = hashCode;
+    }
+
+    /**
+     * Returns the union of the given sets, or {@code null} if they are not all bit sets sharing the same index.
+     */
+    @Nullable
+    public static Set<ModuleIdentifier> union(Collection<? extends Set<ModuleIdentifier>> sets) {
+        ModuleIdIndex index = null;
+        BitSet union = new BitSet();
+        for (Set<ModuleIdentifier> set : sets) {
+            if (!(set instanceof ModuleIdBitSet)) {
+                return null;
+            }
+            ModuleIdBitSet bitSet = (ModuleIdBitSet) set;
+            if (index == null) {
+                index = bitSet.index;
+            } else if (index != bitSet.index) {
+                return null;
+            }
+            union.or(bitSet.bits);
+        }
+        return index == null ? null : new ModuleIdBitSet(index, union);
+    }
+
+    /**
+     * Returns the intersection of the given sets, or {@code null} if they are not bit sets sharing the same index.
+     */
+    @Nullable
+    public static Set<ModuleIdentifier> intersection(Set<ModuleIdentifier> left, Set<ModuleIdentifier> right) {
+        if (!(left instanceof ModuleIdBitSet) || !(right instanceof ModuleIdBitSet)) {
+            return null;
+        }
+        ModuleIdBitSet leftBitSet = (ModuleIdBitSet) left;
+        ModuleIdBitSet rightBitSet = (ModuleIdBitSet) right;
+        if (leftBitSet.index != rightBitSet.index) {
+            return null;
+        }
+        BitSet intersection = (BitSet) leftBitSet.bits.clone();
+        intersection.and(rightBitSet.bits);
+        return new ModuleIdBitSet(leftBitSet.index, intersection);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        int i = index.indexOf(o);
+        return i >= 0 && bits.get(i);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<ModuleIdentifier> iterator() {
+        return new Iterator<ModuleIdentifier>() {
+            private int next = bits.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public ModuleIdentifier next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                ModuleIdentifier moduleId = index.get(next);
+                next = bits.nextSetBit(next + 1);
+                return moduleId;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof ModuleIdBitSet && ((ModuleIdBitSet) o).index == index) {
+            ModuleIdBitSet that = (ModuleIdBitSet) o;
+            return hashCode == that.hashCode && bits.equals(that.bits);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simple;
+
+import org.gradle.api.artifacts.ModuleIdentifier;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns dense integer ids to module identifiers, so that sets of module identifiers
+ * can be represented as bit sets.
+ */
+final class ModuleIdIndex {
+    private final Map<ModuleIdentifier, Integer> indices = new ConcurrentHashMap<>();
+    private volatile ModuleIdentifier[] moduleIds = new ModuleIdentifier[64];
+    private int count;
+
+    int indexOf(Object moduleId) {
+        if (moduleId == null) {
+            return -1;
+        }
+        Integer index = indices.get(moduleId);
+        return index == null ? -1 : index;
+    }
+
+    int intern(ModuleIdentifier moduleId) {
+        Integer index = indices.get(moduleId);
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            index = indices.get(moduleId);
+            if (index != null) {
+                return index;
+            }
+            if (count == moduleIds.length) {
+                moduleIds = Arrays.copyOf(moduleIds, count * 2);
+            }
+            moduleIds[count] = moduleId;
+            indices.put(moduleId, count);
+            return count++;
+        }
+    }
+
+    ModuleIdentifier get(int index) {
+        return moduleIds[index];
+    }
+}
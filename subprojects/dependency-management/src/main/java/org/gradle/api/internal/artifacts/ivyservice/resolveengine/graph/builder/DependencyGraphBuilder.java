@@ -76,6 +76,7 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 public class DependencyGraphBuilder {
@@ -95,6 +96,7 @@ public class DependencyGraphBuilder {
     private final VersionSelectorScheme versionSelectorScheme;
     private final Comparator<Version> versionComparator;
     private final VersionParser versionParser;
+    private final Executor metadataPrefetchExecutor;
 
     final static Spec<EdgeState> ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC = dependencyState -> dependencyState.getDependencyState().getDependency().isEndorsingStrictVersions();
     final static Spec<EdgeState> NOT_ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC = dependencyState -> !dependencyState.getDependencyState().getDependency().isEndorsingStrictVersions();
@@ -113,7 +115,8 @@ public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolve
                                   ImmutableAttributesFactory attributesFactory,
                                   VersionSelectorScheme versionSelectorScheme,
                                   Comparator<Version> versionComparator,
-                                  VersionParser versionParser) {
+                                  VersionParser versionParser,
+                                  Executor metadataPrefetchExecutor) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
@@ -129,9 +132,17 @@ public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolve
         this.versionSelectorScheme = versionSelectorScheme;
         this.versionComparator = versionComparator;
         this.versionParser = versionParser;
+        this.metadataPrefetchExecutor = metadataPrefetchExecutor;
     }
 
     public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor) {
+        resolve(resolveContext, Collections.<ModuleVersionIdentifier>emptyList(), modelVisitor);
+    }
+
+    /**
+     * Resolves the graph of the given context. The metadata of the modules selected by an earlier resolution of the context is fetched ahead of the traversal.
+     */
+    public void resolve(final ResolveContext resolveContext, Collection<? extends ModuleVersionIdentifier> previousSelections, final DependencyGraphVisitor modelVisitor) {
 
         IdGenerator<Long> idGenerator = new LongIdGenerator();
         DefaultBuildableComponentResolveResult rootModule = new DefaultBuildableComponentResolveResult();
@@ -140,10 +151,18 @@ public void resolve(final ResolveContext resolveContext, final DependencyGraphVi
         int graphSize = estimateSize(resolveContext);
         ResolutionStrategyInternal resolutionStrategy = resolveContext.getResolutionStrategy();
 
-        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver, edgeFilter, attributesSchema, moduleExclusions, componentSelectorConverter, attributesFactory, dependencySubstitutionApplicator, versionSelectorScheme, versionComparator, versionParser, moduleConflictHandler.getResolver(), resolutionStrategy.isFailingOnDynamicVersions(), graphSize);
+        MetadataPrefetcher metadataPrefetcher = MetadataPrefetcher.createIfEnabled(metaDataResolver, versionSelectorScheme, buildOperationExecutor, metadataPrefetchExecutor, resolveContext.getDisplayName(), previousSelections);
+        ComponentMetaDataResolver componentMetaDataResolver = metadataPrefetcher != null ? metadataPrefetcher : metaDataResolver;
+        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, componentMetaDataResolver, edgeFilter, attributesSchema, moduleExclusions, componentSelectorConverter, attributesFactory, dependencySubstitutionApplicator, versionSelectorScheme, versionComparator, versionParser, moduleConflictHandler.getResolver(), resolutionStrategy.isFailingOnDynamicVersions(), metadataPrefetcher, graphSize);
 
         Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache = Maps.newHashMapWithExpectedSize(graphSize / 2);
-        traverseGraph(resolveState, componentIdentifierCache);
+        try {
+            traverseGraph(resolveState, componentIdentifierCache);
+        } finally {
+            if (metadataPrefetcher != null) {
+                metadataPrefetcher.stop();
+            }
+        }
 
         validateGraph(resolveState, resolutionStrategy.isFailingOnDynamicVersions(), resolutionStrategy.isFailingOnChangingVersions());
 
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the metadata prefetches of all resolutions in a build. At most {@value #MAX_CONCURRENT_FETCHES} components are fetched concurrently.
+ * The threads are stopped together with the build.
+ */
+public class MetadataPrefetchExecutor implements Executor, Stoppable {
+    static final int MAX_CONCURRENT_FETCHES = 16;
+
+    private final ManagedExecutor executor;
+
+    public MetadataPrefetchExecutor(ExecutorFactory executorFactory) {
+        this.executor = executorFactory.create("Metadata prefetch", MAX_CONCURRENT_FETCHES);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    @Override
+    public void stop() {
+        executor.stop();
+    }
+}
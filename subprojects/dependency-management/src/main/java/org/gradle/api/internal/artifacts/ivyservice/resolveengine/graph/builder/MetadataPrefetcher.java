@@ -0,0 +1,271 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.SpeculativeResolution;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves the metadata of components ahead of the graph traversal, so that the traversal finds it in the module metadata cache.
+ *
+ * <p>Whenever a node is queued for traversal, the fixed versions selected by its dependencies are fetched in the background. The dependencies of the
+ * fetched components are followed up to {@value #MAX_SPECULATION_DEPTH} levels ahead of the queue. Parent POMs and imported BOMs are fetched as part of
+ * the component that refers to them. The fetches run on the {@link MetadataPrefetchExecutor} shared by all resolutions of the build.</p>
+ *
+ * <p>When the modules selected by an earlier resolution of the same configuration are known, their metadata is fetched as soon as the resolution starts.
+ * Most of them are usually selected again, so that only the components that are reachable from changed dependencies are fetched by the traversal itself.</p>
+ *
+ * <p>When the traversal requires metadata that is still being fetched, it waits for the fetch instead of starting another one.</p>
+ *
+ * <p>The fetches are {@link SpeculativeResolution speculative}, so that a failed fetch neither blacklists a repository nor fails the resolution.
+ * The traversal resolves the component again and reports the failure if the component is actually required.</p>
+ */
+class MetadataPrefetcher implements ComponentMetaDataResolver {
+    /**
+     * When set to {@code true}, component metadata is fetched ahead of the graph traversal.
+     */
+    static final String PREFETCH_PROPERTY = "org.gradle.internal.dependency-resolution.prefetch-metadata";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataPrefetcher.class);
+    private static final int MAX_SPECULATION_DEPTH = 3;
+
+    private final ComponentMetaDataResolver delegate;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final Executor executor;
+    private final BuildOperationRef parentOperation;
+    private final String displayName;
+    private final Map<ComponentIdentifier, FutureTask<Void>> prefetches = new ConcurrentHashMap<ComponentIdentifier, FutureTask<Void>>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final Object lock = new Object();
+    private boolean stopped;
+
+    private MetadataPrefetcher(ComponentMetaDataResolver delegate, VersionSelectorScheme versionSelectorScheme, BuildOperationExecutor buildOperationExecutor, Executor executor, String displayName) {
+        this.delegate = delegate;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.executor = executor;
+        this.parentOperation = buildOperationExecutor.getCurrentOperation();
+        this.displayName = displayName;
+    }
+
+    /**
+     * Creates a prefetcher for a single resolution when prefetching is enabled via {@value #PREFETCH_PROPERTY} or when modules selected by an earlier
+     * resolution are known, otherwise returns {@code null}.
+     */
+    @Nullable
+    static MetadataPrefetcher createIfEnabled(ComponentMetaDataResolver delegate, VersionSelectorScheme versionSelectorScheme, BuildOperationExecutor buildOperationExecutor, Executor executor, String displayName, Collection<? extends ModuleVersionIdentifier> previousSelections) {
+        if (!Boolean.getBoolean(PREFETCH_PROPERTY) && previousSelections.isEmpty()) {
+            return null;
+        }
+        MetadataPrefetcher prefetcher = new MetadataPrefetcher(delegate, versionSelectorScheme, buildOperationExecutor, executor, displayName);
+        prefetcher.prefetchModules(previousSelections);
+        return prefetcher;
+    }
+
+    /**
+     * Starts fetching the metadata of the components selected by the dependencies of the given node.
+     */
+    void prefetchDependenciesOf(NodeState node) {
+        prefetch(node.getMetadata().getDependencies(), 0);
+    }
+
+    @Override
+    public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+        FutureTask<Void> prefetch = prefetches.get(identifier);
+        if (prefetch != null) {
+            hits.incrementAndGet();
+            // Runs the fetch in this thread when it has not started yet
+            prefetch.run();
+            await(prefetch);
+        } else if (identifier instanceof ModuleComponentIdentifier && !delegate.isFetchingMetadataCheap(identifier)) {
+            misses.incrementAndGet();
+        }
+        delegate.resolve(identifier, componentOverrideMetadata, result);
+    }
+
+    @Override
+    public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+        return delegate.isFetchingMetadataCheap(identifier);
+    }
+
+    /**
+     * Cancels the fetches which have not started yet, and waits for the others to complete.
+     */
+    void stop() {
+        List<FutureTask<Void>> started;
+        synchronized (lock) {
+            // No fetch can be added once stopped, so that all of them are awaited below
+            stopped = true;
+            started = new ArrayList<FutureTask<Void>>(prefetches.values());
+        }
+        for (FutureTask<Void> prefetch : started) {
+            prefetch.cancel(false);
+        }
+        for (FutureTask<Void> prefetch : started) {
+            await(prefetch);
+        }
+        int used = hits.get();
+        int required = used + misses.get();
+        LOGGER.info("Prefetched metadata of {} components for {}, {} of which were used. {} of {} components fetched during the traversal were prefetched ({}%).",
+            prefetches.size(), displayName, used, used, required, required == 0 ? 100 : 100 * used / required);
+    }
+
+    private void prefetchModules(Collection<? extends ModuleVersionIdentifier> modules) {
+        for (ModuleVersionIdentifier module : modules) {
+            // The whole graph is prefetched, so there is no need to follow the dependencies of these modules
+            prefetch(DefaultModuleComponentIdentifier.newId(module), false, MAX_SPECULATION_DEPTH);
+        }
+    }
+
+    private void prefetch(List<? extends DependencyMetadata> dependencies, int depth) {
+        for (DependencyMetadata dependency : dependencies) {
+            ModuleComponentIdentifier id = toPrefetchableComponent(dependency);
+            if (id != null) {
+                prefetch(id, dependency.isChanging(), depth);
+            }
+        }
+    }
+
+    private void prefetch(ModuleComponentIdentifier id, boolean changing, int depth) {
+        if (prefetches.containsKey(id) || delegate.isFetchingMetadataCheap(id)) {
+            return;
+        }
+        FutureTask<Void> prefetch = new FutureTask<Void>(new PrefetchMetadata(id, changing, depth), null);
+        synchronized (lock) {
+            if (stopped || prefetches.putIfAbsent(id, prefetch) != null) {
+                return;
+            }
+        }
+        executor.execute(prefetch);
+    }
+
+    /**
+     * Returns the component that the given dependency will most likely select, or {@code null} when this can't be known without a version listing or
+     * when the metadata of the component depends on the dependency.
+     */
+    @Nullable
+    private ModuleComponentIdentifier toPrefetchableComponent(DependencyMetadata dependency) {
+        ComponentSelector selector = dependency.getSelector();
+        if (!(selector instanceof ModuleComponentSelector) || dependency.isConstraint() || !dependency.getArtifacts().isEmpty() || DefaultComponentOverrideMetadata.extractClientModule(dependency) != null) {
+            return null;
+        }
+        ModuleComponentSelector moduleSelector = (ModuleComponentSelector) selector;
+        String version = moduleSelector.getVersion();
+        if (version.isEmpty() || versionSelectorScheme.parseSelector(version).isDynamic()) {
+            return null;
+        }
+        return DefaultModuleComponentIdentifier.newId(moduleSelector.getModuleIdentifier(), version);
+    }
+
+    private void prefetchDependenciesOf(ComponentResolveMetadata metadata, int depth) {
+        Optional<ImmutableList<? extends ConfigurationMetadata>> variants = metadata.getVariantsForGraphTraversal();
+        if (variants.isPresent()) {
+            for (ConfigurationMetadata variant : variants.get()) {
+                prefetch(variant.getDependencies(), depth);
+            }
+        } else {
+            ConfigurationMetadata defaultConfiguration = metadata.getConfiguration("default");
+            if (defaultConfiguration != null) {
+                prefetch(defaultConfiguration.getDependencies(), depth);
+            }
+        }
+    }
+
+    private static void await(FutureTask<Void> prefetch) {
+        try {
+            prefetch.get();
+        } catch (CancellationException e) {
+            // Not started before the traversal completed
+        } catch (ExecutionException e) {
+            // Ignore, the traversal resolves the component again and reports the failure
+            LOGGER.debug("Failed to prefetch component metadata.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class PrefetchMetadata implements Runnable {
+        private final ModuleComponentIdentifier id;
+        private final boolean changing;
+        private final int depth;
+
+        PrefetchMetadata(ModuleComponentIdentifier id, boolean changing, int depth) {
+            this.id = id;
+            this.changing = changing;
+            this.depth = depth;
+        }
+
+        @Override
+        public void run() {
+            SpeculativeResolution.run(this::prefetch);
+        }
+
+        private void prefetch() {
+            buildOperationExecutor.run(new RunnableBuildOperation() {
+                @Override
+                public void run(BuildOperationContext context) {
+                    DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+                    delegate.resolve(id, DefaultComponentOverrideMetadata.forDependency(changing, null, null), result);
+                    if (result.getFailure() == null && depth < MAX_SPECULATION_DEPTH) {
+                        prefetchDependenciesOf(result.getMetadata(), depth + 1);
+                    }
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    return BuildOperationDescriptor.displayName("Prefetch metadata of " + id).parent(parentOperation);
+                }
+            });
+        }
+    }}
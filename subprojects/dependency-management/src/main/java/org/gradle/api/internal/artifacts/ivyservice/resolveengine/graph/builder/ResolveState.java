@@ -40,7 +40,6 @@
 import org.gradle.api.internal.attributes.ImmutableAttributes;
 import org.gradle.api.internal.attributes.ImmutableAttributesFactory;
 import org.gradle.api.specs.Spec;
-import org.gradle.internal.Pair;
 import org.gradle.internal.component.model.ComponentResolveMetadata;
 import org.gradle.internal.component.model.ConfigurationMetadata;
 import org.gradle.internal.component.model.DependencyMetadata;
@@ -49,11 +48,15 @@
 import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver;
 import org.gradle.internal.resolve.result.ComponentResolveResult;
 
+import javax.annotation.Nullable;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -62,8 +65,11 @@
 class ResolveState implements ComponentStateFactory<ComponentState> {
     private final Spec<? super DependencyMetadata> edgeFilter;
     private final Map<ModuleIdentifier, ModuleResolveState> modules;
-    private final Map<ResolvedConfigurationIdentifier, NodeState> nodes;
-    private final Map<Pair<ComponentSelector, Boolean>, SelectorState> selectors;
+    private final List<NodeState> nodes;
+    // Selectors are looked up for every edge, so use a map per value of 'ignoreVersion' rather than allocating a composite key for each lookup
+    private final Map<ComponentSelector, SelectorState> selectors;
+    private final Map<ComponentSelector, SelectorState> selectorsIgnoringVersion;
+    private final List<SelectorState> allSelectors;
     private final RootNode root;
     private final IdGenerator<Long> idGenerator;
     private final DependencyToComponentIdResolver idResolver;
@@ -84,6 +90,7 @@ class ResolveState implements ComponentStateFactory<ComponentState> {
     private final Map<VersionConstraint, ResolvedVersionConstraint> resolvedVersionConstraints = Maps.newHashMap();
     private final AttributeDesugaring attributeDesugaring;
     private final boolean denyDynamicSelector;
+    private final MetadataPrefetcher metadataPrefetcher;
 
     public ResolveState(IdGenerator<Long> idGenerator,
                         ComponentResolveResult rootResult,
@@ -101,6 +108,7 @@ public ResolveState(IdGenerator<Long> idGenerator,
                         VersionParser versionParser,
                         ModuleConflictResolver conflictResolver,
                         boolean denyDynamicSelectorm,
+                        @Nullable MetadataPrefetcher metadataPrefetcher,
                         int graphSize) {
         this.idGenerator = idGenerator;
         this.idResolver = idResolver;
@@ -114,9 +122,12 @@ public ResolveState(IdGenerator<Long> idGenerator,
         this.versionSelectorScheme = versionSelectorScheme;
         this.versionComparator = versionComparator;
         this.versionParser = versionParser;
+        this.metadataPrefetcher = metadataPrefetcher;
         this.modules = new LinkedHashMap<ModuleIdentifier, ModuleResolveState>(graphSize);
-        this.nodes = new LinkedHashMap<ResolvedConfigurationIdentifier, NodeState>(3 * graphSize / 2);
-        this.selectors = new LinkedHashMap<Pair<ComponentSelector, Boolean>, SelectorState>(5 * graphSize / 2);
+        this.nodes = new ArrayList<NodeState>(3 * graphSize / 2);
+        this.selectors = new HashMap<ComponentSelector, SelectorState>(5 * graphSize / 2);
+        this.selectorsIgnoringVersion = new HashMap<ComponentSelector, SelectorState>();
+        this.allSelectors = new ArrayList<SelectorState>(5 * graphSize / 2);
         this.queue = new ArrayDeque<NodeState>(graphSize);
         this.resolveOptimizations = new ResolveOptimizations();
         this.attributeDesugaring = new AttributeDesugaring(attributesFactory);
@@ -124,7 +135,7 @@ public ResolveState(IdGenerator<Long> idGenerator,
         final ResolvedConfigurationIdentifier id = new ResolvedConfigurationIdentifier(rootVersion.getId(), rootConfigurationName);
         ConfigurationMetadata configurationMetadata = rootVersion.getMetadata().getConfiguration(id.getConfiguration());
         root = new RootNode(idGenerator.generateId(), rootVersion, id, this, configurationMetadata);
-        nodes.put(root.getResolvedConfigurationId(), root);
+        nodes.add(root);
         root.getComponent().getModule().select(root.getComponent());
         this.replaceSelectionWithConflictResultAction = new ReplaceSelectionWithConflictResultAction(this);
         selectorStateResolver = new SelectorStateResolver<ComponentState>(conflictResolver, this, rootVersion, resolveOptimizations);
@@ -158,7 +169,7 @@ public ComponentState getRevision(ComponentIdentifier componentIdentifier, Modul
     }
 
     public Collection<NodeState> getNodes() {
-        return nodes.values();
+        return nodes;
     }
 
     public int getNodeCount() {
@@ -166,19 +177,32 @@ public int getNodeCount() {
     }
 
     public NodeState getNode(ComponentState module, ConfigurationMetadata configurationMetadata) {
-        ResolvedConfigurationIdentifier id = new ResolvedConfigurationIdentifier(module.getId(), configurationMetadata.getName());
-        return nodes.computeIfAbsent(id, rci -> new NodeState(idGenerator.generateId(), id, module, this, configurationMetadata));
+        // A component has a single state per resolution and only a few nodes, so look the node up there instead of allocating an identifier for each lookup
+        String configurationName = configurationMetadata.getName();
+        for (NodeState node : module.getNodes()) {
+            if (node.getResolvedConfigurationId().getConfiguration().equals(configurationName)) {
+                return node;
+            }
+        }
+        ResolvedConfigurationIdentifier id = new ResolvedConfigurationIdentifier(module.getId(), configurationName);
+        NodeState node = new NodeState(idGenerator.generateId(), id, module, this, configurationMetadata);
+        nodes.add(node);
+        return node;
     }
 
     public Collection<SelectorState> getSelectors() {
-        return selectors.values();
+        return allSelectors;
     }
 
     public SelectorState getSelector(DependencyState dependencyState, boolean ignoreVersion) {
-        SelectorState selectorState = selectors.computeIfAbsent(Pair.of(dependencyState.getRequested(), ignoreVersion), req -> {
+        Map<ComponentSelector, SelectorState> selectorsForRequest = ignoreVersion ? selectorsIgnoringVersion : selectors;
+        SelectorState selectorState = selectorsForRequest.get(dependencyState.getRequested());
+        if (selectorState == null) {
             ModuleIdentifier moduleIdentifier = dependencyState.getModuleIdentifier();
-            return new SelectorState(idGenerator.generateId(), dependencyState, idResolver, this, moduleIdentifier, ignoreVersion);
-        });
+            selectorState = new SelectorState(idGenerator.generateId(), dependencyState, idResolver, this, moduleIdentifier, ignoreVersion);
+            selectorsForRequest.put(dependencyState.getRequested(), selectorState);
+            allSelectors.add(selectorState);
+        }
         selectorState.update(dependencyState);
         return selectorState;
     }
@@ -200,6 +224,9 @@ public void onMoreSelected(NodeState node) {
         // possible before attempting to resolve them
         if (node.enqueue()) {
             queue.addLast(node);
+            if (metadataPrefetcher != null) {
+                metadataPrefetcher.prefetchDependenciesOf(node);
+            }
         }
     }
 
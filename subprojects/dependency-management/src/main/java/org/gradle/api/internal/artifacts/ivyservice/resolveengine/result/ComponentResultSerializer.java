@@ -19,11 +19,13 @@
 import com.google.common.collect.ImmutableList;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.result.ComponentSelectionReason;
 import org.gradle.api.artifacts.result.ResolvedVariantResult;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
 import org.gradle.api.internal.artifacts.ModuleVersionIdentifierSerializer;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphComponent;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.Serializer;
@@ -54,7 +56,7 @@ public ResolvedGraphComponent read(Decoder decoder) throws IOException {
         long resultId = decoder.readSmallLong();
         ModuleVersionIdentifier id = idSerializer.read(decoder);
         ComponentSelectionReason reason = reasonSerializer.read(decoder);
-        ComponentIdentifier componentId = componentIdSerializer.read(decoder);
+        ComponentIdentifier componentId = decoder.readBoolean() ? DefaultModuleComponentIdentifier.newId(id) : componentIdSerializer.read(decoder);
         List<ResolvedVariantResult> resolvedVariants = readResolvedVariants(decoder);
         String repositoryName = decoder.readNullableString();
         return new DetachedComponentResult(resultId, id, reason, componentId, resolvedVariants, repositoryName);
@@ -74,11 +76,22 @@ public void write(Encoder encoder, ResolvedGraphComponent value) throws IOExcept
         encoder.writeSmallLong(value.getResultId());
         idSerializer.write(encoder, value.getModuleVersion());
         reasonSerializer.write(encoder, value.getSelectionReason());
-        componentIdSerializer.write(encoder, value.getComponentId());
+        writeComponentId(encoder, value.getModuleVersion(), value.getComponentId());
         writeSelectedVariantDetails(encoder, value.getResolvedVariants());
         encoder.writeNullableString(value.getRepositoryName());
     }
 
+    private void writeComponentId(Encoder encoder, ModuleVersionIdentifier moduleVersion, ComponentIdentifier componentId) throws IOException {
+        // The id of most components can be derived from their module version, so only write the ids which differ
+        boolean impliedByModuleVersion = componentId.getClass() == DefaultModuleComponentIdentifier.class
+            && ((ModuleComponentIdentifier) componentId).getModuleIdentifier().equals(moduleVersion.getModule())
+            && ((ModuleComponentIdentifier) componentId).getVersion().equals(moduleVersion.getVersion());
+        encoder.writeBoolean(impliedByModuleVersion);
+        if (!impliedByModuleVersion) {
+            componentIdSerializer.write(encoder, componentId);
+        }
+    }
+
     private void writeSelectedVariantDetails(Encoder encoder, List<ResolvedVariantResult> variants) throws IOException {
         encoder.writeSmallInt(variants.size());
         for (ResolvedVariantResult variant : variants) {
@@ -19,6 +19,7 @@
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.artifacts.VersionConstraint;
 import org.gradle.api.artifacts.component.BuildIdentifier;
 import org.gradle.api.artifacts.component.ComponentSelector;
@@ -48,6 +49,9 @@
 public class ComponentSelectorSerializer extends AbstractSerializer<ComponentSelector> {
     private final OptimizingAttributeContainerSerializer attributeContainerSerializer;
     private final BuildIdentifierSerializer buildIdentifierSerializer;
+    // Many selectors refer to the same module, so each module is written once and then referred to by index
+    private final Map<ModuleIdentifier, Integer> moduleWriteIndex = Maps.newHashMap();
+    private final List<ModuleIdentifier> moduleReadIndex = Lists.newArrayList();
 
     public ComponentSelectorSerializer(AttributeContainerSerializer attributeContainerSerializer) {
         this.attributeContainerSerializer = new OptimizingAttributeContainerSerializer(attributeContainerSerializer);
@@ -56,6 +60,8 @@ public ComponentSelectorSerializer(AttributeContainerSerializer attributeContain
 
     void reset() {
         attributeContainerSerializer.reset();
+        moduleWriteIndex.clear();
+        moduleReadIndex.clear();
     }
 
     @Override
@@ -80,7 +86,7 @@ public ComponentSelector read(Decoder decoder) throws IOException {
             Path projectPath = Path.path(decoder.readString());
             return new DefaultProjectComponentSelector(buildIdentifier, identityPath, projectPath, projectPath.getName(), readAttributes(decoder), readCapabilities(decoder));
         } else if (Implementation.MODULE.getId() == id) {
-            return DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId(decoder.readString(), decoder.readString()), readVersionConstraint(decoder), readAttributes(decoder), readCapabilities(decoder));
+            return DefaultModuleComponentSelector.newSelector(readModule(decoder), readVersionConstraint(decoder), readAttributes(decoder), readCapabilities(decoder));
         } else if (Implementation.LIBRARY.getId() == id) {
             return new DefaultLibraryComponentSelector(decoder.readString(), decoder.readNullableString(), decoder.readNullableString());
         }
@@ -88,6 +94,16 @@ public ComponentSelector read(Decoder decoder) throws IOException {
         throw new IllegalArgumentException("Unable to find component selector with id: " + id);
     }
 
+    private ModuleIdentifier readModule(Decoder decoder) throws IOException {
+        int idx = decoder.readSmallInt();
+        if (idx == moduleReadIndex.size()) {
+            ModuleIdentifier module = DefaultModuleIdentifier.newId(decoder.readString(), decoder.readString());
+            moduleReadIndex.add(module);
+            return module;
+        }
+        return moduleReadIndex.get(idx);
+    }
+
     private ImmutableAttributes readAttributes(Decoder decoder) throws IOException {
         return attributeContainerSerializer.read(decoder);
     }
@@ -137,8 +153,7 @@ public void write(Encoder encoder, ComponentSelector value) throws IOException {
 
         if (implementation == Implementation.MODULE) {
             ModuleComponentSelector moduleComponentSelector = (ModuleComponentSelector) value;
-            encoder.writeString(moduleComponentSelector.getGroup());
-            encoder.writeString(moduleComponentSelector.getModule());
+            writeModule(encoder, moduleComponentSelector.getModuleIdentifier());
             VersionConstraint versionConstraint = moduleComponentSelector.getVersionConstraint();
             writeVersionConstraint(encoder, versionConstraint);
             writeAttributes(encoder, moduleComponentSelector.getAttributes());
@@ -178,6 +193,19 @@ public void write(Encoder encoder, ComponentSelector value) throws IOException {
         }
     }
 
+    private void writeModule(Encoder encoder, ModuleIdentifier module) throws IOException {
+        Integer idx = moduleWriteIndex.get(module);
+        if (idx == null) {
+            idx = moduleWriteIndex.size();
+            moduleWriteIndex.put(module, idx);
+            encoder.writeSmallInt(idx);
+            encoder.writeString(module.getGroup());
+            encoder.writeString(module.getName());
+        } else {
+            encoder.writeSmallInt(idx);
+        }
+    }
+
     private void writeAttributes(Encoder encoder, AttributeContainer attributes) throws IOException {
         attributeContainerSerializer.write(encoder, attributes);
     }
@@ -38,6 +38,7 @@
 import org.gradle.internal.component.external.model.DefaultModuleComponentSelector;
 import org.gradle.internal.resolve.ModuleVersionResolveException;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -98,14 +99,22 @@ private void create(Long id, ModuleVersionIdentifier moduleVersion, ComponentSel
     }
 
     public void addExtraFailures(Long rootId, Set<UnresolvedDependency> extraFailures) {
-        DefaultResolvedComponentResult root = modules.get(rootId);
+        visitOutgoingEdges(rootId, extraFailures(extraFailures));
+    }
+
+    /**
+     * Returns the dependencies of the root component representing the given failures, which are detected after the graph is resolved.
+     */
+    public static List<ResolvedGraphDependency> extraFailures(Set<UnresolvedDependency> extraFailures) {
+        List<ResolvedGraphDependency> dependencies = new ArrayList<ResolvedGraphDependency>(extraFailures.size());
         for (UnresolvedDependency failure : extraFailures) {
             ModuleVersionSelector failureSelector = failure.getSelector();
             ModuleComponentSelector failureComponentSelector = DefaultModuleComponentSelector.newSelector(failureSelector.getModule(), failureSelector.getVersion());
-            root.addDependency(dependencyResultFactory.createUnresolvedDependency(failureComponentSelector, root, true,
-                    ComponentSelectionReasons.of(new DefaultComponentSelectionDescriptor(ComponentSelectionCause.CONSTRAINT, Describables.of("Dependency locking"))),
-                new ModuleVersionResolveException(failureComponentSelector, () -> "Dependency lock state out of date", failure.getProblem())));
+            dependencies.add(new DetachedResolvedGraphDependency(failureComponentSelector, null,
+                ComponentSelectionReasons.of(new DefaultComponentSelectionDescriptor(ComponentSelectionCause.CONSTRAINT, Describables.of("Dependency locking"))),
+                new ModuleVersionResolveException(failureComponentSelector, () -> "Dependency lock state out of date", failure.getProblem()), true, null, null));
         }
+        return dependencies;
     }
 
     private static class RootFactory implements Factory<ResolvedComponentResult> {
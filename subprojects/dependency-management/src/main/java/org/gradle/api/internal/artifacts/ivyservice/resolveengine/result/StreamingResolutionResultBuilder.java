@@ -16,7 +16,6 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.result;
 
-import com.google.common.collect.Lists;
 import org.gradle.api.artifacts.UnresolvedDependency;
 import org.gradle.api.artifacts.component.ComponentSelector;
 import org.gradle.api.artifacts.result.ResolutionResult;
@@ -32,7 +31,9 @@
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphDependency;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode;
 import org.gradle.api.internal.attributes.AttributeDesugaring;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
 import org.gradle.api.internal.artifacts.result.DefaultResolutionResult;
+import org.gradle.api.internal.artifacts.result.ResolutionResultGraphVisitor;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.cache.internal.BinaryStore;
@@ -46,9 +47,9 @@
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -92,7 +93,15 @@ public StreamingResolutionResultBuilder(BinaryStore store,
     public ResolutionResult complete(Set<UnresolvedDependency> extraFailures) {
         BinaryStore.BinaryData data = store.done();
         RootFactory rootSource = new RootFactory(data, failures, cache, componentSelectorSerializer, dependencyResultSerializer, componentResultSerializer, attributeContainerSerializer, extraFailures);
-        return new DefaultResolutionResult(rootSource, rootAttributes);
+        return new DefaultResolutionResult(rootSource, rootSource::visitGraph, rootAttributes);
+    }
+
+    /**
+     * Creates the result from a graph that was previously written to the store, without visiting the graph again.
+     */
+    public ResolutionResult replay(ImmutableAttributes requestedAttributes) {
+        rootAttributes = desugaring.desugar(requestedAttributes);
+        return complete(Collections.<UnresolvedDependency>emptySet());
     }
 
     @Override
@@ -198,33 +207,66 @@ public ResolvedComponentResult create() {
                 return cache.load(new Factory<ResolvedComponentResult>() {
                     @Override
                     public ResolvedComponentResult create() {
-                        try {
-                            return data.read(new BinaryStore.ReadAction<ResolvedComponentResult>() {
-                                @Override
-                                public ResolvedComponentResult read(Decoder decoder) throws IOException {
-                                    return deserialize(decoder);
-                                }
-                            });
-                        } finally {
-                            try {
-                                data.close();
-                            } catch (IOException e) {
-                                throw throwAsUncheckedException(e);
+                        DefaultResolutionResultBuilder builder = new DefaultResolutionResultBuilder();
+                        Long rootId = read(new ResolutionResultGraphVisitor() {
+                            @Override
+                            public void visitComponent(ResolvedGraphComponent component) {
+                                builder.visitComponent(component);
                             }
-                        }
+
+                            @Override
+                            public void visitDependency(Long fromComponent, ResolvedGraphDependency dependency) {
+                                builder.visitOutgoingEdges(fromComponent, Collections.singletonList(dependency));
+                            }
+
+                            @Override
+                            public void finish(Long rootComponent) {
+                            }
+                        });
+                        builder.addExtraFailures(rootId, extraFailures);
+                        return builder.complete(rootId).getRoot();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Visits the graph as it is read from the store, without building the object graph.
+         */
+        void visitGraph(ResolutionResultGraphVisitor visitor) {
+            synchronized (lock) {
+                Long rootId = read(visitor);
+                for (ResolvedGraphDependency extraFailure : DefaultResolutionResultBuilder.extraFailures(extraFailures)) {
+                    visitor.visitDependency(rootId, extraFailure);
+                }
+                visitor.finish(rootId);
+            }
+        }
+
+        private Long read(ResolutionResultGraphVisitor visitor) {
+            try {
+                return data.read(new BinaryStore.ReadAction<Long>() {
+                    @Override
+                    public Long read(Decoder decoder) throws IOException {
+                        return deserialize(decoder, visitor);
                     }
                 });
+            } finally {
+                try {
+                    data.close();
+                } catch (IOException e) {
+                    throw throwAsUncheckedException(e);
+                }
             }
         }
 
-        private ResolvedComponentResult deserialize(Decoder decoder) {
+        private Long deserialize(Decoder decoder, ResolutionResultGraphVisitor visitor) {
             componentSelectorSerializer.reset();
             componentResultSerializer.reset();
             int valuesRead = 0;
             byte type = -1;
             Timer clock = Time.startTimer();
             try {
-                DefaultResolutionResultBuilder builder = new DefaultResolutionResultBuilder();
                 Map<Long, ComponentSelector> selectors = new HashMap<Long, ComponentSelector>();
                 while (true) {
                     type = decoder.readByte();
@@ -233,14 +275,13 @@ private ResolvedComponentResult deserialize(Decoder decoder) {
                         case ROOT:
                             // Last entry, complete the result
                             Long rootId = decoder.readSmallLong();
-                            builder.setRequestedAttributes(attributeContainerSerializer.read(decoder));
-                            builder.addExtraFailures(rootId, extraFailures);
-                            ResolvedComponentResult root = builder.complete(rootId).getRoot();
+                            // The requested attributes are kept by the result
+                            attributeContainerSerializer.read(decoder);
                             LOG.debug("Loaded resolution results ({}) from {}", clock.getElapsed(), data);
-                            return root;
+                            return rootId;
                         case COMPONENT:
                             ResolvedGraphComponent component = componentResultSerializer.read(decoder);
-                            builder.visitComponent(component);
+                            visitor.visitComponent(component);
                             break;
                         case SELECTOR:
                             Long id = decoder.readSmallLong();
@@ -250,12 +291,8 @@ private ResolvedComponentResult deserialize(Decoder decoder) {
                         case DEPENDENCY:
                             Long fromId = decoder.readSmallLong();
                             int size = decoder.readSmallInt();
-                            if (size > 0) {
-                                List<ResolvedGraphDependency> deps = Lists.newArrayListWithExpectedSize(size);
-                                for (int i = 0; i < size; i++) {
-                                    deps.add(dependencyResultSerializer.read(decoder, selectors, failures));
-                                }
-                                builder.visitOutgoingEdges(fromId, deps);
+                            for (int i = 0; i < size; i++) {
+                                visitor.visitDependency(fromId, dependencyResultSerializer.read(decoder, selectors, failures));
                             }
                             break;
                         default:
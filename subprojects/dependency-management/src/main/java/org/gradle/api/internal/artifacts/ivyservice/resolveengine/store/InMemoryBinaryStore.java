@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.cache.internal.BinaryStore;
+import org.gradle.internal.serialize.kryo.StringDeduplicatingKryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.StringDeduplicatingKryoBackedEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * A {@link BinaryStore} which keeps a single segment in memory, using the same encoding as {@link DefaultBinaryStore}.
+ */
+public class InMemoryBinaryStore implements BinaryStore {
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    private StringDeduplicatingKryoBackedEncoder encoder;
+
+    public InMemoryBinaryStore() {
+    }
+
+    /**
+     * Creates a store containing content previously returned by {@link #getContent()}.
+     */
+    public InMemoryBinaryStore(byte[] content) {
+        this.content.write(content, 0, content.length);
+    }
+
+    @Override
+    public void write(WriteAction write) {
+        if (encoder == null) {
+            encoder = new StringDeduplicatingKryoBackedEncoder(content);
+        }
+        try {
+            write.write(encoder);
+        } catch (Exception e) {
+            throw new RuntimeException("Problems writing to " + this, e);
+        }
+    }
+
+    @Override
+    public BinaryData done() {
+        final byte[] bytes = getContent();
+        return new BinaryData() {
+            private StringDeduplicatingKryoBackedDecoder decoder;
+
+            @Override
+            public <T> T read(ReadAction<T> readAction) {
+                if (decoder == null) {
+                    decoder = new StringDeduplicatingKryoBackedDecoder(new ByteArrayInputStream(bytes));
+                }
+                try {
+                    return readAction.read(decoder);
+                } catch (Exception e) {
+                    throw new RuntimeException("Problems reading data from " + InMemoryBinaryStore.this, e);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (decoder != null) {
+                    decoder.close();
+                    decoder = null;
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the content written to this store so far.
+     */
+    public byte[] getContent() {
+        if (encoder != null) {
+            encoder.flush();
+        }
+        return content.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return "In-memory binary store";
+    }
+}
@@ -116,6 +116,13 @@ public Action<? super ArtifactResolutionDetails> getContentFilter() {
         return repositoryContentDescriptor.toContentFilter();
     }
 
+    /**
+     * Returns true when this repository has been configured with rules which affect resolution, such as a content filter or a metadata supplier.
+     */
+    public boolean hasResolutionRules() {
+        return componentMetadataSupplierRuleClass != null || componentMetadataListerRuleClass != null || getContentFilter() != null;
+    }
+
     @Override
     public void content(Action<? super RepositoryContentDescriptor> configureAction) {
         configureAction.execute(repositoryContentDescriptor);
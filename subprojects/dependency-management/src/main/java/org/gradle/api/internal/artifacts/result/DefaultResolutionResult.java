@@ -18,27 +18,48 @@
 
 import groovy.lang.Closure;
 import org.gradle.api.Action;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.result.DependencyResult;
-import org.gradle.api.artifacts.result.ResolutionResult;
 import org.gradle.api.artifacts.result.ResolvedComponentResult;
 import org.gradle.api.artifacts.result.ResolvedDependencyResult;
+import org.gradle.api.artifacts.result.ResolvedVariantResult;
+import org.gradle.api.artifacts.result.UnresolvedDependencyResult;
 import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphDependency;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DetachedComponentResult;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DetachedResolvedGraphDependency;
+import org.gradle.api.specs.Spec;
 import org.gradle.internal.Actions;
 import org.gradle.internal.Factory;
+import org.gradle.internal.resolve.ModuleVersionResolveException;
 import org.gradle.util.ConfigureUtil;
 
+import javax.annotation.Nullable;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
-public class DefaultResolutionResult implements ResolutionResult {
+public class DefaultResolutionResult implements ResolutionResultInternal {
 
     private final Factory<ResolvedComponentResult> rootSource;
+    private final Action<? super ResolutionResultGraphVisitor> graphSource;
     private final AttributeContainer requestedAttributes;
 
     public DefaultResolutionResult(Factory<ResolvedComponentResult> rootSource, AttributeContainer requestedAttributes) {
+        this(rootSource, null, requestedAttributes);
+    }
+
+    /**
+     * @param graphSource visits the recorded graph without building the object graph, or {@code null} to visit the object graph created by the root source instead.
+     */
+    public DefaultResolutionResult(Factory<ResolvedComponentResult> rootSource, @Nullable Action<? super ResolutionResultGraphVisitor> graphSource, AttributeContainer requestedAttributes) {
         assert rootSource != null;
         this.rootSource = rootSource;
+        this.graphSource = graphSource;
         this.requestedAttributes = requestedAttributes;
     }
 
@@ -69,7 +90,7 @@ public void allDependencies(final Closure closure) {
         allDependencies(ConfigureUtil.configureUsing(closure));
     }
 
-    private void eachElement(ResolvedComponentResult node,
+    private static void eachElement(ResolvedComponentResult node,
                              Action<? super ResolvedComponentResult> moduleAction, Action<? super DependencyResult> dependencyAction,
                              Set<ResolvedComponentResult> visited) {
         if (!visited.add(node)) {
@@ -106,4 +127,80 @@ public AttributeContainer getRequestedAttributes() {
         return requestedAttributes;
     }
 
+    @Override
+    public void visitGraph(Spec<? super ModuleVersionIdentifier> componentFilter, ResolutionResultGraphVisitor visitor) {
+        FilteringGraphVisitor filteringVisitor = new FilteringGraphVisitor(componentFilter, visitor);
+        if (graphSource != null) {
+            graphSource.execute(filteringVisitor);
+        } else {
+            visitObjectGraph(getRoot(), filteringVisitor);
+        }
+    }
+
+    private static void visitObjectGraph(ResolvedComponentResult root, ResolutionResultGraphVisitor visitor) {
+        Map<ResolvedComponentResult, Long> ids = new LinkedHashMap<ResolvedComponentResult, Long>();
+        eachElement(root, component -> ids.put(component, (long) ids.size()), Actions.doNothing(), new HashSet<ResolvedComponentResult>());
+        for (Map.Entry<ResolvedComponentResult, Long> entry : ids.entrySet()) {
+            ResolvedComponentResult component = entry.getKey();
+            String repositoryName = component instanceof ResolvedComponentResultInternal ? ((ResolvedComponentResultInternal) component).getRepositoryName() : null;
+            visitor.visitComponent(new DetachedComponentResult(entry.getValue(), component.getModuleVersion(), component.getSelectionReason(), component.getId(), component.getVariants(), repositoryName));
+        }
+        for (Map.Entry<ResolvedComponentResult, Long> entry : ids.entrySet()) {
+            ResolvedComponentResult component = entry.getKey();
+            Map<DependencyResult, ResolvedVariantResult> fromVariants = new IdentityHashMap<DependencyResult, ResolvedVariantResult>();
+            for (ResolvedVariantResult variant : component.getVariants()) {
+                for (DependencyResult dependency : component.getDependenciesForVariant(variant)) {
+                    fromVariants.put(dependency, variant);
+                }
+            }
+            for (DependencyResult dependency : component.getDependencies()) {
+                visitor.visitDependency(entry.getValue(), toGraphDependency(dependency, fromVariants.get(dependency), ids));
+            }
+        }
+        visitor.finish(ids.get(root));
+    }
+
+    private static ResolvedGraphDependency toGraphDependency(DependencyResult dependency, @Nullable ResolvedVariantResult fromVariant, Map<ResolvedComponentResult, Long> ids) {
+        if (dependency instanceof ResolvedDependencyResult) {
+            ResolvedDependencyResult resolved = (ResolvedDependencyResult) dependency;
+            return new DetachedResolvedGraphDependency(dependency.getRequested(), ids.get(resolved.getSelected()), null, null, dependency.isConstraint(), fromVariant, resolved.getResolvedVariant());
+        }
+        UnresolvedDependencyResult unresolved = (UnresolvedDependencyResult) dependency;
+        Throwable failure = unresolved.getFailure();
+        ModuleVersionResolveException resolveFailure = failure instanceof ModuleVersionResolveException ? (ModuleVersionResolveException) failure : new ModuleVersionResolveException(dependency.getRequested(), failure);
+        return new DetachedResolvedGraphDependency(dependency.getRequested(), null, unresolved.getAttemptedReason(), resolveFailure, dependency.isConstraint(), fromVariant, null);
+    }
+
+    /**
+     * Relies on all components being visited before any dependency, so that only the ids of the matching components need to be kept.
+     */
+    private static class FilteringGraphVisitor implements ResolutionResultGraphVisitor {
+        private final Spec<? super ModuleVersionIdentifier> componentFilter;
+        private final ResolutionResultGraphVisitor delegate;
+        private final Set<Long> matchingComponents = new HashSet<Long>();
+
+        FilteringGraphVisitor(Spec<? super ModuleVersionIdentifier> componentFilter, ResolutionResultGraphVisitor delegate) {
+            this.componentFilter = componentFilter;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void visitComponent(ResolvedGraphComponent component) {
+            if (componentFilter.isSatisfiedBy(component.getModuleVersion()) && matchingComponents.add(component.getResultId())) {
+                delegate.visitComponent(component);
+            }
+        }
+
+        @Override
+        public void visitDependency(Long fromComponent, ResolvedGraphDependency dependency) {
+            if (matchingComponents.contains(fromComponent) || (dependency.getSelected() != null && matchingComponents.contains(dependency.getSelected()))) {
+                delegate.visitDependency(fromComponent, dependency);
+            }
+        }
+
+        @Override
+        public void finish(Long rootComponent) {
+            delegate.finish(rootComponent);
+        }
+    }
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.result;
+
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphDependency;
+
+/**
+ * Receives the components and dependencies of a resolved graph, in the order in which they were recorded.
+ * All components are visited before any dependency.
+ */
+public interface ResolutionResultGraphVisitor {
+    void visitComponent(ResolvedGraphComponent component);
+
+    void visitDependency(Long fromComponent, ResolvedGraphDependency dependency);
+
+    /**
+     * Called once all components and dependencies have been visited.
+     */
+    void finish(Long rootComponent);
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.result;
+
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.specs.Spec;
+
+public interface ResolutionResultInternal extends ResolutionResult {
+    /**
+     * Visits the components of the graph matching the given filter, and the dependencies from or to these components.
+     *
+     * <p>When the result is backed by a binary store, the graph is read directly from the store, without building the
+     * object graph returned by {@link #getRoot()}. Only the ids of the matching components are kept while visiting.</p>
+     */
+    void visitGraph(Spec<? super ModuleVersionIdentifier> componentFilter, ResolutionResultGraphVisitor visitor);
+}
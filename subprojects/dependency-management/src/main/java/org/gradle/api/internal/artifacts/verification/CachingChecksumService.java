@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.verification;
+
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheLockingManager;
+import org.gradle.api.internal.artifacts.verification.model.ChecksumKind;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A {@link ChecksumService} which keeps the checksums of artifacts across builds, similar to what
+ * {@code CachingFileHasher} does for file hashes. Checksums are keyed by the absolute path of the artifact,
+ * and are reused for as long as the length and the modification time of the artifact are unchanged.
+ * An artifact altered without changing either would pass verification, so this service is only used
+ * when {@link #ENABLED_PROPERTY} is set.
+ *
+ * <p>Checksums of different kinds are computed on demand, so the cached entry of an artifact may
+ * not contain all of them. Concurrent updates of the same entry may drop a checksum, which is then
+ * computed again next time it is needed.</p>
+ */
+public class CachingChecksumService implements ChecksumService {
+    /**
+     * When set to {@code true}, the checksums of artifacts are cached across builds.
+     */
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.dependency-verification.checksum-cache";
+
+    private final ArtifactCacheLockingManager artifactCacheLockingManager;
+    private final ChecksumService delegate;
+    private PersistentIndexedCache<String, CachedChecksums> cache;
+
+    public CachingChecksumService(ArtifactCacheLockingManager artifactCacheLockingManager) {
+        this(artifactCacheLockingManager, ChecksumService.UNCACHED);
+    }
+
+    CachingChecksumService(ArtifactCacheLockingManager artifactCacheLockingManager, ChecksumService delegate) {
+        this.artifactCacheLockingManager = artifactCacheLockingManager;
+        this.delegate = delegate;
+    }
+
+    private synchronized PersistentIndexedCache<String, CachedChecksums> getCache() {
+        if (cache == null) {
+            cache = artifactCacheLockingManager.createCache("artifact-checksums", BaseSerializerFactory.STRING_SERIALIZER, new CachedChecksumsSerializer());
+        }
+        return cache;
+    }
+
+    @Override
+    public HashValue checksum(File file, ChecksumKind kind) {
+        String absolutePath = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        PersistentIndexedCache<String, CachedChecksums> cache = getCache();
+        CachedChecksums cached = cache.get(absolutePath);
+        if (cached == null || cached.length != length || cached.lastModified != lastModified) {
+            cached = new CachedChecksums(length, lastModified, new EnumMap<>(ChecksumKind.class));
+        } else {
+            HashValue checksum = cached.checksums.get(kind);
+            if (checksum != null) {
+                return checksum;
+            }
+        }
+        HashValue checksum = delegate.checksum(file, kind);
+        EnumMap<ChecksumKind, HashValue> checksums = new EnumMap<>(cached.checksums);
+        checksums.put(kind, checksum);
+        cache.put(absolutePath, new CachedChecksums(length, lastModified, checksums));
+        return checksum;
+    }
+
+    private static class CachedChecksums {
+        private final long length;
+        private final long lastModified;
+        private final EnumMap<ChecksumKind, HashValue> checksums;
+
+        private CachedChecksums(long length, long lastModified, EnumMap<ChecksumKind, HashValue> checksums) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksums = checksums;
+        }
+    }
+
+    private static class CachedChecksumsSerializer extends AbstractSerializer<CachedChecksums> {
+        private static final ChecksumKind[] KINDS = ChecksumKind.values();
+
+        @Override
+        public CachedChecksums read(Decoder decoder) throws Exception {
+            long length = decoder.readLong();
+            long lastModified = decoder.readLong();
+            int size = decoder.readSmallInt();
+            EnumMap<ChecksumKind, HashValue> checksums = new EnumMap<>(ChecksumKind.class);
+            for (int i = 0; i < size; i++) {
+                checksums.put(KINDS[decoder.readSmallInt()], new HashValue(decoder.readString()));
+            }
+            return new CachedChecksums(length, lastModified, checksums);
+        }
+
+        @Override
+        public void write(Encoder encoder, CachedChecksums value) throws Exception {
+            encoder.writeLong(value.length);
+            encoder.writeLong(value.lastModified);
+            encoder.writeSmallInt(value.checksums.size());
+            for (Map.Entry<ChecksumKind, HashValue> entry : value.checksums.entrySet()) {
+                encoder.writeSmallInt(entry.getKey().ordinal());
+                encoder.writeString(entry.getValue().asHexString());
+            }
+        }
+    }
+}
@@ -26,11 +26,10 @@
 import org.gradle.api.internal.artifacts.verification.model.ComponentVerificationMetadata;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.component.external.model.ModuleComponentArtifactIdentifier;
-import org.gradle.internal.hash.HashUtil;
-import org.gradle.internal.hash.HashValue;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationRef;
 import org.gradle.internal.operations.CallableBuildOperation;
 
 import java.io.File;
@@ -57,10 +56,10 @@ public class DependencyVerifier {
         .weakValues()
         .build();
 
-    public void verify(BuildOperationExecutor buildOperationExecutor, ModuleComponentArtifactIdentifier foundArtifact, File file, Action<VerificationFailure> onFailure) {
+    public void verify(BuildOperationExecutor buildOperationExecutor, BuildOperationRef parent, ChecksumService checksumService, ModuleComponentArtifactIdentifier foundArtifact, File file, Action<VerificationFailure> onFailure) {
         try {
             Optional<VerificationFailure> verificationFailure = verificationCache.get(file, () -> {
-                return performVerification(buildOperationExecutor, foundArtifact, file);
+                return performVerification(buildOperationExecutor, parent, checksumService, foundArtifact, file);
             });
             verificationFailure.ifPresent(f -> onFailure.execute(f));
         } catch (ExecutionException e) {
@@ -68,21 +67,22 @@ public void verify(BuildOperationExecutor buildOperationExecutor, ModuleComponen
         }
     }
 
-    private Optional<VerificationFailure> performVerification(BuildOperationExecutor buildOperationExecutor, ModuleComponentArtifactIdentifier foundArtifact, File file) {
+    private Optional<VerificationFailure> performVerification(BuildOperationExecutor buildOperationExecutor, BuildOperationRef parent, ChecksumService checksumService, ModuleComponentArtifactIdentifier foundArtifact, File file) {
         return buildOperationExecutor.call(new CallableBuildOperation<Optional<VerificationFailure>>() {
             @Override
             public Optional<VerificationFailure> call(BuildOperationContext context) {
-                return doVerifyArtifact(foundArtifact, file);
+                return doVerifyArtifact(checksumService, foundArtifact, file);
             }
 
             @Override
             public BuildOperationDescriptor.Builder description() {
-                return BuildOperationDescriptor.displayName("Verifying dependency " + foundArtifact);
+                return BuildOperationDescriptor.displayName("Verifying dependency " + foundArtifact)
+                    .parent(parent);
             }
         });
     }
 
-    private Optional<VerificationFailure> doVerifyArtifact(ModuleComponentArtifactIdentifier foundArtifact, File file) {
+    private Optional<VerificationFailure> doVerifyArtifact(ChecksumService checksumService, ModuleComponentArtifactIdentifier foundArtifact, File file) {
         AtomicReference<VerificationFailure> failure = new AtomicReference<>();
         ComponentVerificationMetadata componentVerification = verificationMetadata.get(foundArtifact.getComponentIdentifier());
         if (componentVerification != null) {
@@ -92,7 +92,7 @@ private Optional<VerificationFailure> doVerifyArtifact(ModuleComponentArtifactId
                 if (verifiedArtifact.equals(foundArtifact)) {
                     Map<ChecksumKind, String> checksums = verification.getChecksums();
                     for (Map.Entry<ChecksumKind, String> entry : checksums.entrySet()) {
-                        verify(entry.getKey(), file, entry.getValue(), f -> failure.set(f));
+                        verify(checksumService, entry.getKey(), file, entry.getValue(), f -> failure.set(f));
                         if (failure.get() != null) {
                             return Optional.of(failure.get());
                         }
@@ -105,23 +105,8 @@ private Optional<VerificationFailure> doVerifyArtifact(ModuleComponentArtifactId
         return VerificationFailure.OPT_MISSING;
     }
 
-    private static void verify(ChecksumKind algorithm, File file, String expected, Action<VerificationFailure> onFailure) {
-        HashValue hashValue = null;
-        switch (algorithm) {
-            case md5:
-                hashValue = HashUtil.md5(file);
-                break;
-            case sha1:
-                hashValue = HashUtil.sha1(file);
-                break;
-            case sha256:
-                hashValue = HashUtil.sha256(file);
-                break;
-            case sha512:
-                hashValue = HashUtil.sha512(file);
-                break;
-        }
-        String actual = hashValue.asHexString();
+    private static void verify(ChecksumService checksumService, ChecksumKind algorithm, File file, String expected, Action<VerificationFailure> onFailure) {
+        String actual = checksumService.checksum(file, algorithm).asHexString();
         if (!actual.equals(expected)) {
             onFailure.execute(new VerificationFailure(algorithm, expected, actual));
         }
@@ -44,4 +44,12 @@ public void execute(CompatibilityCheckDetails<T> details) {
         }
     }
 
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    public boolean isReverse() {
+        return reverse;
+    }
+
 }
@@ -52,4 +52,12 @@ public void execute(MultipleCandidatesDetails<T> details) {
             }
         }
     }
+
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    public boolean isPickFirst() {
+        return pickFirst;
+    }
 }
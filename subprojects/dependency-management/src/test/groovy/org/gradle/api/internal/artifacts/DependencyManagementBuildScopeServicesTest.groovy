@@ -15,14 +15,60 @@
  */
 package org.gradle.api.internal.artifacts
 
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheLockingManager
+import org.gradle.api.internal.artifacts.verification.DependencyVerifierBuilder
+import org.gradle.api.internal.artifacts.verification.model.ChecksumKind
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.hash.HashUtil
+import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.service.DefaultServiceRegistry
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
 import spock.lang.Specification
 
 class DependencyManagementBuildScopeServicesTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+
     def services = DefaultServiceRegistry.create(new DependencyManagementBuildScopeServices())
 
     def "provides a DependencyManagementServices"() {
         expect:
         services.get(DependencyManagementServices) instanceof DefaultDependencyManagementServices
     }
+
+    def "verification detects an artifact altered without changing its size or modification time"() {
+        def entries = [:]
+        def cacheLockingManager = Stub(ArtifactCacheLockingManager) {
+            createCache("artifact-checksums", _, _) >> Stub(PersistentIndexedCache) {
+                get(_) >> { String key -> entries[key] }
+                put(_, _) >> { String key, value -> entries[key] = value }
+            }
+        }
+        def checksumService = new DependencyManagementBuildScopeServices().createChecksumService(cacheLockingManager)
+        def artifact = new DefaultModuleComponentArtifactIdentifier(DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("group", "module"), "1.0"), "module", "jar", "jar")
+        def file = temporaryFolder.file("module-1.0.jar")
+        file.text = "original"
+        def lastModified = file.lastModified()
+        def builder = new DependencyVerifierBuilder()
+        builder.addChecksum(artifact, ChecksumKind.sha256, HashUtil.sha256(file).asHexString())
+        def failures = []
+
+        when:
+        builder.build().verify(new TestBuildOperationExecutor(), null, checksumService, artifact, file) { failures << it }
+
+        then:
+        failures.empty
+
+        when:
+        file.text = "tampered"
+        file.lastModified = lastModified
+        builder.build().verify(new TestBuildOperationExecutor(), null, checksumService, artifact, file) { failures << it }
+
+        then:
+        failures.size() == 1
+        failures[0].kind == ChecksumKind.sha256
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.internal.hash.HashCode
+import org.gradle.util.BuildCommencedTimeProvider
+import spock.lang.Specification
+import spock.lang.Subject
+
+class ResolvedGraphCacheTest extends Specification {
+    def entries = [:]
+    def persistentCache = Stub(PersistentIndexedCache) {
+        get(_) >> { HashCode key -> entries[key] }
+        put(_, _) >> { HashCode key, value -> entries[key] = value }
+    }
+    def selections = [:]
+    def selectionsCache = Stub(PersistentIndexedCache) {
+        get(_) >> { HashCode key -> selections[key] }
+        put(_, _) >> { HashCode key, value -> selections[key] = value }
+    }
+    def cacheLockingManager = Stub(ArtifactCacheLockingManager) {
+        createCache("resolved-graphs", _, _) >> persistentCache
+        createCache("resolved-graph-selections", _, _) >> selectionsCache
+    }
+    def now = 1000L
+    def timeProvider = Stub(BuildCommencedTimeProvider) {
+        getCurrentTime() >> { now }
+    }
+    def cachePolicy = Mock(CachePolicy)
+    def key = HashCode.fromInt(123)
+    def fixed = DefaultModuleVersionIdentifier.newId("org", "fixed", "1.0")
+    def dynamic = DefaultModuleVersionIdentifier.newId("org", "dynamic", "2.1")
+    def changing = DefaultModuleVersionIdentifier.newId("org", "changing", "1.0-SNAPSHOT")
+
+    @Subject
+    def cache = new ResolvedGraphCache(cacheLockingManager, timeProvider, Stub(ImmutableModuleIdentifierFactory), true, true)
+
+    def setup() {
+        def recorder = Stub(ResolvedGraphRecorder) {
+            toCachedGraph(_) >> { long timestamp -> new ResolvedGraphCache.CachedGraph([1, 2, 3] as byte[], timestamp, [fixed, dynamic, changing], [changing], [dynamic]) }
+        }
+        cache.store(key, recorder)
+        now = 5000L
+    }
+
+    def "returns graph when cache policy does not require any module to be refreshed"() {
+        when:
+        def cachedGraph = cache.get(key, cachePolicy)
+
+        then:
+        1 * cachePolicy.mustRefreshVersionList(dynamic.module, [dynamic] as Set, 4000) >> false
+        1 * cachePolicy.mustRefreshModule({ it.id == fixed }, 4000, false) >> false
+        1 * cachePolicy.mustRefreshModule({ it.id == dynamic }, 4000, false) >> false
+        1 * cachePolicy.mustRefreshModule({ it.id == changing }, 4000, true) >> false
+
+        and:
+        cachedGraph.graph == [1, 2, 3] as byte[]
+    }
+
+    def "does not return graph when version listing of dynamically selected module must be refreshed"() {
+        when:
+        def cachedGraph = cache.get(key, cachePolicy)
+
+        then:
+        1 * cachePolicy.mustRefreshVersionList(dynamic.module, [dynamic] as Set, 4000) >> true
+        0 * cachePolicy.mustRefreshModule(*_)
+
+        and:
+        cachedGraph == null
+    }
+
+    def "does not return graph when changing module must be refreshed"() {
+        given:
+        cachePolicy.mustRefreshModule(_, _, false) >> false
+        cachePolicy.mustRefreshModule(_, _, true) >> true
+
+        expect:
+        cache.get(key, cachePolicy) == null
+    }
+
+    def "does not return graph for other inputs"() {
+        expect:
+        cache.get(HashCode.fromInt(456), cachePolicy) == null
+    }
+
+    def "returns modules selected by the last resolution of a configuration"() {
+        def configuration = HashCode.fromInt(789)
+
+        expect:
+        cache.getPreviousSelections(configuration).empty
+
+        when:
+        cache.storeSelections(configuration, Stub(SelectedModulesRecorder) {
+            getSelectedModules() >> [fixed, changing]
+        })
+
+        then:
+        cache.getPreviousSelections(configuration) == [fixed, changing]
+        cache.getPreviousSelections(key).empty
+    }
+}
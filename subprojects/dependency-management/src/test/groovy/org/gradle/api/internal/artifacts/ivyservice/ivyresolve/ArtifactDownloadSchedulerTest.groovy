@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve
+
+import org.gradle.api.artifacts.component.ComponentArtifactIdentifier
+import org.gradle.api.internal.artifacts.QueueArtifactDownloadBuildOperationType
+import org.gradle.internal.component.model.ComponentArtifactMetadata
+import org.gradle.internal.component.model.ModuleSources
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.internal.resolve.result.DefaultBuildableArtifactResolveResult
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+
+class ArtifactDownloadSchedulerTest extends ConcurrentSpec {
+    final buildOperationExecutor = Mock(BuildOperationExecutor)
+    final localAccess = Mock(ModuleComponentRepositoryAccess)
+    final remoteAccess = Mock(ModuleComponentRepositoryAccess)
+    final delegate = Stub(ModuleComponentRepository) {
+        getId() >> "id"
+        getName() >> "repo"
+        getLocalAccess() >> localAccess
+        getRemoteAccess() >> remoteAccess
+    }
+    final moduleSources = Stub(ModuleSources)
+    final artifactA = artifact("a")
+    final artifactB = artifact("b")
+
+    def "does not decorate repository when downloads are not limited"() {
+        def scheduler = new ArtifactDownloadScheduler(buildOperationExecutor, 0)
+
+        expect:
+        scheduler.schedule(delegate) == delegate
+    }
+
+    def "downloads artifact without waiting when a slot is available"() {
+        def scheduler = new ArtifactDownloadScheduler(buildOperationExecutor, 1)
+        def repository = scheduler.schedule(delegate)
+        def result = new DefaultBuildableArtifactResolveResult()
+
+        when:
+        repository.remoteAccess.resolveArtifact(artifactA, moduleSources, result)
+        repository.remoteAccess.resolveArtifact(artifactB, moduleSources, result)
+
+        then:
+        1 * remoteAccess.resolveArtifact(artifactA, moduleSources, result)
+        1 * remoteAccess.resolveArtifact(artifactB, moduleSources, result)
+        0 * buildOperationExecutor._
+
+        and:
+        repository.localAccess == localAccess
+    }
+
+    def "releases slot when download fails"() {
+        def scheduler = new ArtifactDownloadScheduler(buildOperationExecutor, 1)
+        def repository = scheduler.schedule(delegate)
+        def failure = new RuntimeException("broken")
+
+        when:
+        repository.remoteAccess.resolveArtifact(artifactA, moduleSources, new DefaultBuildableArtifactResolveResult())
+
+        then:
+        def e = thrown(RuntimeException)
+        e == failure
+        1 * remoteAccess.resolveArtifact(artifactA, _, _) >> { throw failure }
+
+        when:
+        repository.remoteAccess.resolveArtifact(artifactB, moduleSources, new DefaultBuildableArtifactResolveResult())
+
+        then:
+        1 * remoteAccess.resolveArtifact(artifactB, _, _)
+        0 * buildOperationExecutor._
+    }
+
+    def "waits for a slot when the repository is busy"() {
+        def scheduler = new ArtifactDownloadScheduler(buildOperationExecutor, 1)
+        def repository = scheduler.schedule(delegate)
+        QueueArtifactDownloadBuildOperationType.Details details = null
+
+        when:
+        async {
+            start {
+                repository.remoteAccess.resolveArtifact(artifactA, moduleSources, new DefaultBuildableArtifactResolveResult())
+            }
+            start {
+                thread.blockUntil.aStarted
+                repository.remoteAccess.resolveArtifact(artifactB, moduleSources, new DefaultBuildableArtifactResolveResult())
+            }
+        }
+
+        then:
+        1 * remoteAccess.resolveArtifact(artifactA, _, _) >> {
+            instant.aStarted
+            thread.blockUntil.queued
+            instant.aFinished
+        }
+        1 * buildOperationExecutor.run(_) >> { RunnableBuildOperation operation ->
+            details = operation.description().build().details as QueueArtifactDownloadBuildOperationType.Details
+            instant.queued
+            operation.run(Stub(BuildOperationContext))
+        }
+        1 * remoteAccess.resolveArtifact(artifactB, _, _) >> {
+            instant.bStarted
+        }
+
+        and:
+        instant.bStarted > instant.aFinished
+        details.artifactIdentifier == "b"
+        details.repositoryName == "repo"
+        details.queueDepth == 1
+    }
+
+    private ComponentArtifactMetadata artifact(String name) {
+        def id = Stub(ComponentArtifactIdentifier) {
+            getDisplayName() >> name
+        }
+        Stub(ComponentArtifactMetadata) {
+            getId() >> id
+        }
+    }
+}
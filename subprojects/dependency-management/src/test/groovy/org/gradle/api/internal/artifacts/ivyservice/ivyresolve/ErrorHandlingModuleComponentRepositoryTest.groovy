@@ -153,6 +153,26 @@ class ErrorHandlingModuleComponentRepositoryTest extends Specification {
         [maxRetries, exception, effectiveRetries] << retryCombinations()
     }
 
+    def "speculative requests are not retried and do not blacklist the repository"() {
+        access = createAccess(3)
+
+        given:
+        def moduleComponentIdentifier = new DefaultModuleComponentIdentifier(DefaultModuleIdentifier.newId('a', 'b'), '1.0')
+        def requestMetaData = Mock(ComponentOverrideMetadata)
+        def result = Mock(BuildableModuleComponentMetaDataResolveResult)
+        repositoryBlacklister.isBlacklisted(REPOSITORY_ID) >> false
+
+        when:
+        SpeculativeResolution.run {
+            access.resolveComponentMetaData(moduleComponentIdentifier, requestMetaData, result)
+        }
+
+        then:
+        1 * delegate.resolveComponentMetaData(moduleComponentIdentifier, requestMetaData, result) >> { throw connectTimeout }
+        1 * result.failed(_ as ModuleVersionResolveException)
+        0 * repositoryBlacklister.blacklistRepository(_, _)
+    }
+
     @Unroll("can resolve artifacts with type (max retries = #maxRetries, exception=#exception)")
     def "can resolve artifacts with type"() {
         access = createAccess(maxRetries)
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser
+
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelector
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleDescriptorSnapshotStore
+import org.gradle.api.internal.component.ArtifactType
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.external.model.ModuleDependencyMetadata
+import org.gradle.internal.component.external.model.maven.MutableMavenModuleResolveMetadata
+import org.gradle.internal.hash.HashUtil
+import org.gradle.internal.resource.local.FileResourceRepository
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class SnapshottingMetaDataParserTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    final FileResourceRepository fileRepository = TestFiles.fileRepository()
+    final delegate = Mock(MetaDataParser)
+    final snapshotStore = Mock(ModuleDescriptorSnapshotStore)
+    final parseContext = Mock(DescriptorParseContext)
+    final parser = new SnapshottingMetaDataParser<MutableMavenModuleResolveMetadata>(delegate, MutableMavenModuleResolveMetadata, "pom", snapshotStore, fileRepository)
+    final parentId = DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org", "parent"), "1.0")
+    def pomFile = tmpDir.file("child.pom") << "<project/>"
+    def parentFile = tmpDir.file("parent.pom") << "<project><version>1.0</version></project>"
+
+    def "parses descriptor and stores snapshot with referenced descriptors"() {
+        def metadata = Stub(MutableMavenModuleResolveMetadata)
+        ModuleDescriptorSnapshotStore.Snapshot snapshot = null
+
+        when:
+        def result = parser.parseMetaData(parseContext, pomFile)
+
+        then:
+        1 * snapshotStore.get("pom", HashUtil.createHash(pomFile, "MD5")) >> null
+        1 * delegate.parseMetaData(_, _) >> { DescriptorParseContext context, resource ->
+            context.getMetaDataArtifact(parentId, ArtifactType.MAVEN_POM)
+            MetaDataParser.ParseResult.of(metadata, true)
+        }
+        1 * parseContext.getMetaDataArtifact(parentId, ArtifactType.MAVEN_POM) >> fileRepository.resource(parentFile)
+        1 * snapshotStore.put("pom", HashUtil.createHash(pomFile, "MD5"), _) >> { String type, hash, ModuleDescriptorSnapshotStore.Snapshot value -> snapshot = value }
+
+        and:
+        result.result == metadata
+        snapshot.metadata == metadata
+        snapshot.hasGradleMetadataRedirectionMarker()
+        snapshot.references.size() == 1
+        snapshot.references[0].id == parentId
+        snapshot.references[0].contentHash == HashUtil.createHash(parentFile, "MD5")
+    }
+
+    def "uses snapshot when referenced descriptors have not changed"() {
+        def metadata = Stub(MutableMavenModuleResolveMetadata)
+
+        when:
+        def result = parser.parseMetaData(parseContext, pomFile)
+
+        then:
+        1 * snapshotStore.get("pom", HashUtil.createHash(pomFile, "MD5")) >> snapshot(metadata, HashUtil.createHash(parentFile, "MD5"))
+        1 * parseContext.getMetaDataArtifact(parentId, ArtifactType.MAVEN_POM) >> fileRepository.resource(parentFile)
+        0 * delegate._
+        0 * snapshotStore.put(*_)
+
+        and:
+        result.result == metadata
+        !result.hasGradleMetadataRedirectionMarker()
+    }
+
+    def "parses descriptor again when referenced descriptor has changed"() {
+        def metadata = Stub(MutableMavenModuleResolveMetadata)
+
+        when:
+        def result = parser.parseMetaData(parseContext, pomFile)
+
+        then:
+        1 * snapshotStore.get(_, _) >> snapshot(Stub(MutableMavenModuleResolveMetadata), HashUtil.createHash("old content", "MD5"))
+        1 * parseContext.getMetaDataArtifact(parentId, ArtifactType.MAVEN_POM) >> fileRepository.resource(parentFile)
+        1 * delegate.parseMetaData(_, _) >> MetaDataParser.ParseResult.of(metadata, false)
+        1 * snapshotStore.put(_, _, _)
+
+        and:
+        result.result == metadata
+    }
+
+    def "does not store snapshot when descriptor refers to another descriptor using a dynamic version"() {
+        def dependency = Stub(ModuleDependencyMetadata) {
+            getSelector() >> DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId("org", "parent"), "[1.0,2.0)")
+        }
+        def acceptor = Stub(VersionSelector) {
+            isDynamic() >> true
+        }
+
+        when:
+        parser.parseMetaData(parseContext, pomFile)
+
+        then:
+        1 * delegate.parseMetaData(_, _) >> { DescriptorParseContext context, resource ->
+            context.getMetaDataArtifact(dependency, acceptor, ArtifactType.MAVEN_POM)
+            MetaDataParser.ParseResult.of(Stub(MutableMavenModuleResolveMetadata), false)
+        }
+        1 * parseContext.getMetaDataArtifact(dependency, acceptor, ArtifactType.MAVEN_POM) >> fileRepository.resource(parentFile)
+        0 * snapshotStore.put(*_)
+    }
+
+    private ModuleDescriptorSnapshotStore.Snapshot snapshot(MutableMavenModuleResolveMetadata metadata, parentHash) {
+        new ModuleDescriptorSnapshotStore.Snapshot([new ModuleDescriptorSnapshotStore.Reference(parentId, ArtifactType.MAVEN_POM, parentHash)], metadata, false)
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheLockingManager
+import org.gradle.internal.Factory
+import org.gradle.internal.hash.HashValue
+import org.gradle.internal.resource.local.LocallyAvailableResource
+import org.gradle.internal.resource.local.PathKeyFileStore
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.internal.SimpleMapInterner
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Subject
+
+class ModuleDescriptorSnapshotStoreTest extends Specification {
+
+    @Rule TestNameTestDirectoryProvider temporaryFolder
+    def cacheLockingManager = Mock(ArtifactCacheLockingManager)
+    def pathKeyFileStore = Mock(PathKeyFileStore)
+    def serializer = Mock(ModuleMetadataSerializer)
+    def contentHash = HashValue.parse("1234")
+    @Subject ModuleDescriptorSnapshotStore store = new ModuleDescriptorSnapshotStore(cacheLockingManager, pathKeyFileStore, serializer, Mock(ImmutableModuleIdentifierFactory), SimpleMapInterner.notThreadSafe(), true)
+
+    def "returns null when there is no snapshot"() {
+        when:
+        def snapshot = store.get("pom", contentHash)
+
+        then:
+        1 * cacheLockingManager.useCache(_) >> { Factory<?> factory -> factory.create() }
+        1 * pathKeyFileStore.get("snapshots", "pom", contentHash.asHexString() + ".bin") >> null
+        snapshot == null
+    }
+
+    def "discards a snapshot that cannot be read"() {
+        def snapshotFile = temporaryFolder.createFile("snapshot.bin")
+        snapshotFile.bytes = [1, 2, 3] as byte[]
+        def resource = Stub(LocallyAvailableResource) {
+            getFile() >> snapshotFile
+        }
+
+        when:
+        def snapshot = store.get("pom", contentHash)
+
+        then:
+        1 * cacheLockingManager.useCache(_) >> { Factory<?> factory -> factory.create() }
+        1 * pathKeyFileStore.get("snapshots", "pom", contentHash.asHexString() + ".bin") >> resource
+        snapshot == null
+        !snapshotFile.exists()
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simple
+
+import org.gradle.api.artifacts.ModuleIdentifier
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import spock.lang.Specification
+
+class ModuleIdBitSetTest extends Specification {
+    private final ModuleIdIndex index = new ModuleIdIndex()
+
+    def "behaves like a set of module identifiers"() {
+        def set = ModuleIdBitSet.of(index, [id("a"), id("b")] as Set)
+
+        expect:
+        set.size() == 2
+        set.contains(id("a"))
+        set.contains(id("b"))
+        !set.contains(id("c"))
+        !set.contains("a")
+        set.toList() == [id("a"), id("b")]
+        set == [id("a"), id("b")] as Set
+        [id("a"), id("b")] as Set == set
+        set.hashCode() == ([id("a"), id("b")] as Set).hashCode()
+        set != [id("a")] as Set
+    }
+
+    def "sets with the same module identifiers are equal"() {
+        expect:
+        ModuleIdBitSet.of(index, [id("a"), id("b")] as Set) == ModuleIdBitSet.of(index, [id("b"), id("a")] as Set)
+        ModuleIdBitSet.of(index, [id("a"), id("b")] as Set) != ModuleIdBitSet.of(index, [id("a"), id("c")] as Set)
+        ModuleIdBitSet.of(index, [id("a")] as Set) == ModuleIdBitSet.of(new ModuleIdIndex(), [id("a")] as Set)
+    }
+
+    def "computes union and intersection of sets sharing the same index"() {
+        def left = ModuleIdBitSet.of(index, [id("a"), id("b")] as Set)
+        def right = ModuleIdBitSet.of(index, [id("b"), id("c")] as Set)
+
+        expect:
+        ModuleIdBitSet.union([left, right]) == [id("a"), id("b"), id("c")] as Set
+        ModuleIdBitSet.intersection(left, right) == [id("b")] as Set
+        ModuleIdBitSet.intersection(left, ModuleIdBitSet.of(index, [id("d")] as Set)).empty
+    }
+
+    def "does not compute union or intersection of other sets"() {
+        def left = ModuleIdBitSet.of(index, [id("a"), id("b")] as Set)
+
+        expect:
+        ModuleIdBitSet.union([left, [id("c")] as Set]) == null
+        ModuleIdBitSet.union([left, ModuleIdBitSet.of(new ModuleIdIndex(), [id("c")] as Set)]) == null
+        ModuleIdBitSet.intersection(left, [id("a")] as Set) == null
+        ModuleIdBitSet.intersection(left, ModuleIdBitSet.of(new ModuleIdIndex(), [id("a")] as Set)) == null
+    }
+
+    def "reuses set backed by the same index"() {
+        def set = ModuleIdBitSet.of(index, [id("a")] as Set)
+
+        expect:
+        ModuleIdBitSet.of(index, set).is(set)
+        !ModuleIdBitSet.of(new ModuleIdIndex(), set).is(set)
+    }
+
+    def "assigns dense ids beyond initial capacity"() {
+        def ids = (0..<200).collect { id("m$it") } as Set
+        def set = ModuleIdBitSet.of(index, ids)
+
+        expect:
+        set == ids
+        index.indexOf(id("m0")) == 0
+        index.indexOf(id("m199")) == 199
+        index.indexOf(id("other")) == -1
+    }
+
+    private static ModuleIdentifier id(String name) {
+        DefaultModuleIdentifier.newId("org", name)
+    }
+}
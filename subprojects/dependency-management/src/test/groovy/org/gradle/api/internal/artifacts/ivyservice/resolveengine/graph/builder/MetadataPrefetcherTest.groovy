@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import com.google.common.base.Optional
+import org.gradle.api.artifacts.component.ComponentIdentifier
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.SpeculativeResolution
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.model.ComponentOverrideMetadata
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.ConfigurationMetadata
+import org.gradle.internal.component.model.DependencyMetadata
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
+import spock.lang.Specification
+import spock.util.environment.RestoreSystemProperties
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+@RestoreSystemProperties
+class MetadataPrefetcherTest extends Specification {
+    def resolved = new ConcurrentLinkedQueue<ComponentIdentifier>()
+    def components = [:]
+    def component = metadata([])
+    def delegate = new ComponentMetaDataResolver() {
+        @Override
+        void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+            resolved.add(identifier)
+            result.resolved(components[identifier] ?: component)
+        }
+
+        @Override
+        boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+            return false
+        }
+    }
+    def versionSelectorScheme = new DefaultVersionSelectorScheme(new DefaultVersionComparator(), new VersionParser())
+    def executor = new MetadataPrefetchExecutor(new DefaultExecutorFactory())
+    MetadataPrefetcher prefetcher
+
+    def setup() {
+        System.setProperty(MetadataPrefetcher.PREFETCH_PROPERTY, "true")
+        prefetcher = MetadataPrefetcher.createIfEnabled(delegate, versionSelectorScheme, new TestBuildOperationExecutor(), executor, "test", [])
+    }
+
+    def cleanup() {
+        prefetcher?.stop()
+        executor.stop()
+    }
+
+    def "is not created unless enabled"() {
+        given:
+        System.clearProperty(MetadataPrefetcher.PREFETCH_PROPERTY)
+
+        expect:
+        MetadataPrefetcher.createIfEnabled(delegate, versionSelectorScheme, new TestBuildOperationExecutor(), executor, "test", []) == null
+    }
+
+    def "prefetches fixed versions selected by the dependencies of a queued node"() {
+        when:
+        prefetcher.prefetchDependenciesOf(node(dependency("a", "1.0"), dependency("b", "1.+"), dependency("c", "[1.0,2.0)")))
+        prefetcher.resolve(id("a", "1.0"), Stub(ComponentOverrideMetadata), new DefaultBuildableComponentResolveResult())
+
+        then:
+        resolved.toList() == [id("a", "1.0"), id("a", "1.0")]
+    }
+
+    def "follows the dependencies of prefetched components"() {
+        given:
+        components[id("a", "1.0")] = metadata([dependency("b", "2.0")])
+
+        when:
+        prefetcher.prefetchDependenciesOf(node(dependency("a", "1.0")))
+        prefetcher.resolve(id("a", "1.0"), Stub(ComponentOverrideMetadata), new DefaultBuildableComponentResolveResult())
+        prefetcher.resolve(id("b", "2.0"), Stub(ComponentOverrideMetadata), new DefaultBuildableComponentResolveResult())
+
+        then:
+        resolved.count(id("b", "2.0")) == 2
+    }
+
+    def "prefetches modules selected by an earlier resolution"() {
+        given:
+        System.clearProperty(MetadataPrefetcher.PREFETCH_PROPERTY)
+        components[id("a", "1.0")] = metadata([dependency("b", "2.0")])
+
+        when:
+        def seeded = MetadataPrefetcher.createIfEnabled(delegate, versionSelectorScheme, new TestBuildOperationExecutor(), executor, "test", [DefaultModuleVersionIdentifier.newId("org", "a", "1.0")])
+        seeded.resolve(id("a", "1.0"), Stub(ComponentOverrideMetadata), new DefaultBuildableComponentResolveResult())
+        seeded.stop()
+
+        then:
+        resolved.toList() == [id("a", "1.0"), id("a", "1.0")]
+    }
+
+    def "does not prefetch constraints"() {
+        when:
+        prefetcher.prefetchDependenciesOf(node(dependency("a", "1.0", true)))
+        prefetcher.stop()
+
+        then:
+        resolved.empty
+    }
+
+    def "prefetches speculatively"() {
+        given:
+        def speculative = new ConcurrentLinkedQueue<Boolean>()
+        def recordingDelegate = new ComponentMetaDataResolver() {
+            @Override
+            void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+                speculative.add(SpeculativeResolution.isSpeculative())
+                result.resolved(component)
+            }
+
+            @Override
+            boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+                return false
+            }
+        }
+        def recordingPrefetcher = MetadataPrefetcher.createIfEnabled(recordingDelegate, versionSelectorScheme, new TestBuildOperationExecutor(), executor, "test", [])
+
+        when:
+        recordingPrefetcher.prefetchDependenciesOf(node(dependency("a", "1.0")))
+        recordingPrefetcher.resolve(id("a", "1.0"), Stub(ComponentOverrideMetadata), new DefaultBuildableComponentResolveResult())
+        recordingPrefetcher.stop()
+
+        then:
+        speculative.toList() == [true, false]
+    }
+
+    def "does not prefetch once stopped"() {
+        when:
+        prefetcher.stop()
+        prefetcher.prefetchDependenciesOf(node(dependency("a", "1.0")))
+
+        then:
+        resolved.empty
+    }
+
+    private static ComponentIdentifier id(String name, String version) {
+        DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org", name), version)
+    }
+
+    private DependencyMetadata dependency(String name, String version, boolean constraint = false) {
+        Stub(DependencyMetadata) {
+            getSelector() >> DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId("org", name), version)
+            isConstraint() >> constraint
+            getArtifacts() >> []
+        }
+    }
+
+    private NodeState node(DependencyMetadata... dependencies) {
+        def configuration = Stub(ConfigurationMetadata) {
+            getDependencies() >> (dependencies as List)
+        }
+        Stub(NodeState) {
+            getMetadata() >> configuration
+        }
+    }
+
+    private ComponentResolveMetadata metadata(List<DependencyMetadata> dependencies) {
+        def configuration = Stub(ConfigurationMetadata) {
+            getDependencies() >> dependencies
+        }
+        Stub(ComponentResolveMetadata) {
+            getVariantsForGraphTraversal() >> Optional.absent()
+            getConfiguration("default") >> configuration
+        }
+    }
+}
@@ -86,6 +86,23 @@ class ComponentResultSerializerTest extends SerializerSpec {
         result.repositoryName == 'repoName'
     }
 
+    def "serializes component whose id is implied by its module version"() {
+        def componentIdentifier = new DefaultModuleComponentIdentifier(DefaultModuleIdentifier.newId('org', 'foo'), '2.0')
+        def selection = new DetachedComponentResult(12L,
+            newId('org', 'foo', '2.0'),
+            ComponentSelectionReasons.requested(),
+            componentIdentifier, [],
+            null)
+
+        when:
+        def result = serialize(selection, serializer)
+
+        then:
+        result.moduleVersion == newId('org', 'foo', '2.0')
+        result.componentId == componentIdentifier
+        result.repositoryName == null
+    }
+
     private Capability capability(String name) {
         Mock(Capability) {
             getGroup() >> 'org'
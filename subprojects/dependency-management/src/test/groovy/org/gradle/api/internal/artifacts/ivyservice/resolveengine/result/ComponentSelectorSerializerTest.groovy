@@ -256,6 +256,23 @@ class ComponentSelectorSerializerTest extends SerializerSpec {
 
     }
 
+    def "de-duplicates modules"() {
+        given:
+        ModuleComponentSelector selector1 = DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId('group1', 'name1'), constraint('1.0'))
+        ModuleComponentSelector selector2 = DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId('group1', 'name1'), constraint('2.0'))
+        ModuleComponentSelector selector3 = DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId('group2', 'name1'), constraint('1.0'))
+
+        when:
+        ModuleComponentSelector result1 = serialize(selector1, serializer)
+        ModuleComponentSelector result2 = serialize(selector2, serializer)
+        ModuleComponentSelector result3 = serialize(selector3, serializer)
+
+        then:
+        result1 == selector1
+        result2 == selector2
+        result3 == selector3
+        result2.moduleIdentifier.is(result1.moduleIdentifier)
+    }
 
     private static List<Capability> capabilities() {
         [new ImmutableCapability("org", "foo", "${Math.random()}"), new ImmutableCapability("org", "bar", "${Math.random()}")]
@@ -26,8 +26,12 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.Dependen
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphComponent
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphDependency
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode
+import org.gradle.api.internal.artifacts.result.ResolutionResultGraphVisitor
 import org.gradle.api.internal.attributes.AttributeDesugaring
+import org.gradle.api.specs.Spec
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
 import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
 import org.gradle.internal.component.local.model.RootConfigurationMetadata
@@ -211,6 +215,51 @@ class StreamingResolutionResultBuilderTest extends Specification {
 """
     }
 
+    def "visits components matching filter and their dependencies from byte stream"() {
+        def root = rootNode(1, "org", "root", "1.0")
+        def selector1 = selector(10, "org", "dep1", "1.0")
+        def selector2 = selector(11, "other", "dep2", "1.0")
+        root.outgoingEdges >> [dep(selector1, 2), dep(selector2, 3)]
+        def dep1 = node(2, "org", "dep1", "1.0")
+        dep1.outgoingEdges >> [dep(selector2, 3)]
+        def dep2 = node(3, "other", "dep2", "1.0")
+
+        builder.start(root)
+
+        builder.visitNode(root)
+        builder.visitNode(dep1)
+        builder.visitNode(dep2)
+
+        builder.visitSelector(selector1)
+        builder.visitSelector(selector2)
+
+        builder.visitEdges(root)
+        builder.visitEdges(dep1)
+
+        builder.finish(root)
+
+        def components = []
+        def dependencies = []
+        Long rootId = null
+        def visitor = [
+            visitComponent: { ResolvedGraphComponent component -> components << component.moduleVersion.toString() },
+            visitDependency: { Long from, ResolvedGraphDependency dependency -> dependencies << "${from} -> ${dependency.requested.displayName} (${dependency.selected})".toString() },
+            finish: { Long id -> rootId = id }
+        ] as ResolutionResultGraphVisitor
+
+        when:
+        def result = builder.complete(emptySet())
+        result.visitGraph({ it.group == "other" } as Spec, visitor)
+
+        then:
+        components == ["other:dep2:1.0"]
+        dependencies == ["1 -> other:dep2:1.0 (3)", "2 -> other:dep2:1.0 (3)"]
+        rootId == 1
+
+        and:
+        result.allComponents*.moduleVersion*.toString() == ["org:root:1.0", "org:dep1:1.0", "other:dep2:1.0"]
+    }
+
     private DependencyGraphEdge dep(DependencyGraphSelector selector, Long selectedId) {
         def edge = Stub(DependencyGraphEdge)
         _ * edge.selector >> selector
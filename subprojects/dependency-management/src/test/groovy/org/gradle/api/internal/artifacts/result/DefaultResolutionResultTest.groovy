@@ -25,7 +25,10 @@ import org.gradle.api.artifacts.result.ResolvedVariantResult
 import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
 import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier
 import org.gradle.api.internal.artifacts.DefaultProjectComponentIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphComponent
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ResolvedGraphDependency
 import org.gradle.api.internal.attributes.ImmutableAttributes
+import org.gradle.api.specs.Specs
 import org.gradle.api.tasks.diagnostics.internal.graph.nodes.UnresolvedDependencyEdge
 import org.gradle.internal.Factory
 import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
@@ -151,6 +154,27 @@ class DefaultResolutionResultTest extends Specification {
         from.is(projectId)
     }
 
+    def "visits object graph when result has no graph source"() {
+        given:
+        def dep1 = newDependency('dep1')
+        def dep2 = newUnresolvedDependency('dep2')
+        def root = newModule('root').addDependency(dep1).addDependency(dep2)
+        def components = []
+        def dependencies = []
+        def visitor = [
+            visitComponent: { ResolvedGraphComponent component -> components << component.componentId },
+            visitDependency: { Long from, ResolvedGraphDependency dependency -> dependencies << [from, dependency.requested, dependency.selected, dependency.failure] },
+            finish: { Long id -> assert id == 0 }
+        ] as ResolutionResultGraphVisitor
+
+        when:
+        newResolutionResult(root).visitGraph(Specs.satisfyAll(), visitor)
+
+        then:
+        components == [root.id, dep1.selected.id]
+        dependencies == [[0L, dep1.requested, 1L, null], [0L, dep2.requested, null, dep2.failure]]
+    }
+
     private static ResolutionResult newResolutionResult(root) {
         new DefaultResolutionResult({ root } as Factory, ImmutableAttributes.EMPTY)
     }
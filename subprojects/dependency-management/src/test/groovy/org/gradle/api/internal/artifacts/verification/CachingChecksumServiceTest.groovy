@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.verification
+
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheLockingManager
+import org.gradle.api.internal.artifacts.verification.model.ChecksumKind
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.internal.hash.HashUtil
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class CachingChecksumServiceTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+
+    def entries = [:]
+    def persistentCache = Stub(PersistentIndexedCache) {
+        get(_) >> { String key -> entries[key] }
+        put(_, _) >> { String key, value -> entries[key] = value }
+    }
+    def cacheLockingManager = Stub(ArtifactCacheLockingManager) {
+        createCache("artifact-checksums", _, _) >> persistentCache
+    }
+    def delegate = Mock(ChecksumService)
+    def service = new CachingChecksumService(cacheLockingManager, delegate)
+    def file = temporaryFolder.file("artifact.jar").createFile()
+
+    def "computes each kind of checksum once for an unchanged file"() {
+        def sha1 = HashUtil.sha1(file)
+        def sha512 = HashUtil.sha512(file)
+
+        when:
+        def first = service.checksum(file, ChecksumKind.sha1)
+        def second = service.checksum(file, ChecksumKind.sha512)
+        def third = service.checksum(file, ChecksumKind.sha1)
+        def fourth = service.checksum(file, ChecksumKind.sha512)
+
+        then:
+        1 * delegate.checksum(file, ChecksumKind.sha1) >> sha1
+        1 * delegate.checksum(file, ChecksumKind.sha512) >> sha512
+        0 * delegate._
+
+        and:
+        first == sha1
+        second == sha512
+        third == sha1
+        fourth == sha512
+    }
+
+    def "computes checksum again when file has changed"() {
+        when:
+        service.checksum(file, ChecksumKind.sha256)
+        file.text = "changed"
+        service.checksum(file, ChecksumKind.sha256)
+
+        then:
+        2 * delegate.checksum(file, ChecksumKind.sha256) >> { File f, ChecksumKind kind -> HashUtil.sha256(f) }
+    }
+}
@@ -23,6 +23,8 @@
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 public interface ExecutionHistoryStore {
@@ -38,4 +40,28 @@ void store(String key,
                boolean successful);
 
     void remove(String key);
+
+    /**
+     * Loads the execution time of the previous execution of each of the given keys, in milliseconds.
+     * Keys without history are not included. Does not consume the prefetched history of the keys.
+     */
+    default Map<String, Long> loadExecutionTimes(Iterable<String> keys) {
+        Map<String, Long> executionTimes = new LinkedHashMap<>();
+        for (String key : keys) {
+            load(key).ifPresent(state -> executionTimes.put(key, state.getOriginMetadata().getExecutionTime()));
+        }
+        return executionTimes;
+    }
+
+    /**
+     * Loads the history of the given keys in a single batch, so that a subsequent {@link #load(String)} of each of these keys does not need to access the underlying cache again.
+     */
+    default void prefetch(Iterable<String> keys) {
+    }
+
+    /**
+     * Discards the prefetched history of the keys which have not been loaded.
+     */
+    default void discardPrefetched() {
+    }
 }
@@ -30,7 +30,12 @@
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.google.common.collect.ImmutableSortedMap.copyOfSorted;
 import static com.google.common.collect.Maps.transformValues;
@@ -38,6 +43,7 @@
 public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
 
     private final PersistentIndexedCache<String, AfterPreviousExecutionState> store;
+    private final Map<String, Optional<AfterPreviousExecutionState>> prefetched = new ConcurrentHashMap<>();
 
     public DefaultExecutionHistoryStore(ExecutionHistoryCacheAccess executionHistoryCacheAccess, StringInterner stringInterner) {
         DefaultPreviousExecutionStateSerializer serializer = new DefaultPreviousExecutionStateSerializer(
@@ -52,9 +58,43 @@ public DefaultExecutionHistoryStore(ExecutionHistoryCacheAccess executionHistory
 
     @Override
     public Optional<AfterPreviousExecutionState> load(String key) {
+        Optional<AfterPreviousExecutionState> prefetchedState = prefetched.remove(key);
+        if (prefetchedState != null) {
+            return prefetchedState;
+        }
         return Optional.ofNullable(store.get(key));
     }
 
+    @Override
+    public Map<String, Long> loadExecutionTimes(Iterable<String> keys) {
+        Map<String, Long> executionTimes = new LinkedHashMap<>();
+        List<String> notPrefetched = new ArrayList<>();
+        for (String key : keys) {
+            Optional<AfterPreviousExecutionState> prefetchedState = prefetched.get(key);
+            if (prefetchedState == null) {
+                notPrefetched.add(key);
+            } else {
+                prefetchedState.ifPresent(state -> executionTimes.put(key, state.getOriginMetadata().getExecutionTime()));
+            }
+        }
+        // Reads all remaining entries while holding the cache lock once
+        store.getAll(notPrefetched).forEach((key, state) -> executionTimes.put(key, state.getOriginMetadata().getExecutionTime()));
+        return executionTimes;
+    }
+
+    @Override
+    public void prefetch(Iterable<String> keys) {
+        Map<String, AfterPreviousExecutionState> states = store.getAll(keys);
+        for (String key : keys) {
+            prefetched.put(key, Optional.ofNullable(states.get(key)));
+        }
+    }
+
+    @Override
+    public void discardPrefetched() {
+        prefetched.clear();
+    }
+
     @Override
     public void store(
         String key,
@@ -66,6 +106,7 @@ public void store(
         ImmutableSortedMap<String, CurrentFileCollectionFingerprint> outputFileProperties,
         boolean successful
     ) {
+        prefetched.remove(key);
         store.put(key, new DefaultAfterPreviousExecutionState(
             originMetadata,
             implementation,
@@ -79,6 +120,7 @@ public void store(
 
     @Override
     public void remove(String key) {
+        prefetched.remove(key);
         store.remove(key);
     }
 
@@ -243,4 +243,39 @@ class InstantExecutionBuildOptionsIntegrationTest extends AbstractInstantExecuti
         "isCi.map(String::toBoolean).getOrElse(false)" | "value"
         "isCi.isPresent"                               | "presence"
     }
+
+    def "change to build logic input of project outside the task graph invalidates the cache"() {
+
+        given:
+        def instant = newInstantExecutionFixture()
+        settingsFile << """
+            include 'a', 'b'
+        """
+        file("a/build.gradle") << """
+            tasks.register("run") {
+                doLast { println("RUN A") }
+            }
+        """
+        file("b/build.gradle") << """
+            def flavor = providers.systemProperty("flavor").getOrElse("plain")
+            project(':a').tasks.named("run") {
+                doLast { println("RUN A " + flavor) }
+            }
+        """
+
+        when:
+        instantRun ":a:run", "-Dflavor=plain"
+
+        then:
+        outputContains("RUN A plain")
+        instant.assertStateStored()
+
+        when:
+        instantRun ":a:run", "-Dflavor=fancy"
+
+        then:
+        outputContains("RUN A fancy")
+        instant.assertStateStored()
+        outputContains("system property 'flavor' has changed")
+    }
 }
@@ -162,6 +162,63 @@ class InstantExecutionIntegrationTest extends AbstractInstantExecutionIntegratio
         result.groupedOutput.task(":a:c:help").output == firstRunOutput.task(":a:c:help").output
     }
 
+    @Unroll
+    def "restores tasks of many projects sharing a build service when parallel load is #parallelLoad"() {
+        given:
+        def instantExecution = newInstantExecutionFixture()
+        settingsFile << """
+            include 'a', 'b', 'c'
+        """
+        buildFile << """
+            abstract class CounterService implements BuildService<BuildServiceParameters.None> {
+                private int count
+                synchronized int increment() { ++count }
+            }
+
+            abstract class CountingTask extends DefaultTask {
+                @Internal
+                abstract Property<CounterService> getCounter()
+
+                @TaskAction
+                def count() {
+                    println("\$path counted " + counter.get().increment())
+                }
+            }
+
+            def counterService = gradle.sharedServices.registerIfAbsent("counter", CounterService) {}
+            allprojects {
+                tasks.register("count", CountingTask) {
+                    counter = counterService
+                }
+            }
+            project(':b') {
+                tasks.named('count') { dependsOn(':a:count') }
+            }
+            project(':c') {
+                tasks.named('count') { dependsOn(':b:count') }
+            }
+        """
+        def parallelLoadProperty = "-Dorg.gradle.unsafe.instant-execution.parallel-load=$parallelLoad"
+
+        when:
+        instantRun parallelLoadProperty, "count"
+
+        then:
+        result.assertTasksExecuted(":count", ":a:count", ":b:count", ":c:count")
+
+        when:
+        instantRun parallelLoadProperty, "count"
+
+        then:
+        instantExecution.assertStateLoaded()
+        result.assertTasksExecuted(":count", ":a:count", ":b:count", ":c:count")
+        (1..4).every { output.count("counted $it\n") == 1 }
+        result.assertTaskOrder(":a:count", ":b:count", ":c:count")
+
+        where:
+        parallelLoad << [true, false]
+    }
+
     def "restores task fields whose value is an object graph with cycles"() {
         buildFile << """
             class SomeBean {
@@ -32,12 +32,19 @@ import org.gradle.instantexecution.serialization.DefaultReadContext
 import org.gradle.instantexecution.serialization.DefaultWriteContext
 import org.gradle.instantexecution.serialization.IsolateOwner
 import org.gradle.instantexecution.serialization.MutableIsolateContext
+import org.gradle.instantexecution.serialization.ReadIdentities
+import org.gradle.instantexecution.serialization.WriteClassTable
+import org.gradle.instantexecution.serialization.WriteIdentities
 import org.gradle.instantexecution.serialization.beans.BeanConstructors
+import org.gradle.instantexecution.serialization.beans.BeanFieldAccessors
+import org.gradle.instantexecution.serialization.beans.FieldAccessMode
 import org.gradle.instantexecution.serialization.codecs.BuildOperationListenersCodec
 import org.gradle.instantexecution.serialization.codecs.Codecs
 import org.gradle.instantexecution.serialization.codecs.WorkNodeCodec
+import org.gradle.instantexecution.serialization.readClassTable
 import org.gradle.instantexecution.serialization.readCollection
 import org.gradle.instantexecution.serialization.withIsolate
+import org.gradle.instantexecution.serialization.writeClassTable
 import org.gradle.instantexecution.serialization.writeCollection
 import org.gradle.internal.build.event.BuildEventListenerRegistryInternal
 import org.gradle.internal.hash.HashUtil
@@ -50,6 +57,7 @@ import org.gradle.internal.serialize.kryo.KryoBackedEncoder
 import org.gradle.tooling.events.OperationCompletionListener
 import org.gradle.util.GradleVersion
 import org.gradle.util.Path
+import java.io.ByteArrayOutputStream
 import java.io.File
 import java.nio.file.Files
 import java.util.ArrayList
@@ -64,6 +72,7 @@ class DefaultInstantExecution internal constructor(
     private val host: Host,
     private val scopeRegistryListener: InstantExecutionClassLoaderScopeRegistryListener,
     private val beanConstructors: BeanConstructors,
+    private val beanFieldAccessors: BeanFieldAccessors,
     private val valueSourceProviderFactory: ValueSourceProviderFactory
 ) : InstantExecution {
 
@@ -147,9 +156,7 @@ class DefaultInstantExecution internal constructor(
 
                 instantExecutionStateFile.createParentDirectories()
 
-                withWriteContextFor(instantExecutionStateFile, report) {
-                    encodeScheduledWork()
-                }
+                writeScheduledWork(report)
                 withWriteContextFor(instantExecutionFingerprintFile, report) {
                     encodeFingerprint()
                 }
@@ -172,14 +179,64 @@ class DefaultInstantExecution internal constructor(
         scopeRegistryListener.dispose()
 
         buildOperationExecutor.withLoadOperation {
-            withReadContextFor(instantExecutionStateFile) {
-                decodeScheduledWork()
+            readScheduledWork()
+        }
+    }
+
+    /**
+     * Writes the index of the scheduled work to the state file and each shard of the scheduled work to a sibling file.
+     *
+     * The classes of the index and of all shards are written to a single table, ahead of the index, so that the shards
+     * can be read in parallel once the index has been read.
+     *
+     * Shards share the identities of the index, such as the transformation nodes referenced by tasks. The shared
+     * instances a shard refers to first, such as build services and value sources, are written at the end of the index,
+     * so that every shard reads the same instance.
+     */
+    private
+    fun writeScheduledWork(report: InstantExecutionReport) {
+        val classTable = WriteClassTable()
+        val index = ByteArrayOutputStream()
+        KryoBackedEncoder(index).use { encoder ->
+            writeContextFor(encoder, report, classTable).run {
+                runToCompletion {
+                    val shards = encodeScheduledWork()
+                    writeShards(shards, report, classTable, sharedIdentities)
+                    withGradleIsolate(host.currentBuild.gradle) {
+                        writeCollection(sharedIdentities.deferredInstances)
+                    }
+                }
             }
         }
+        stateOutputStreamFor(instantExecutionStateFile, isStateCompressionEnabled).use { outputStream ->
+            val encoder = KryoBackedEncoder(outputStream)
+            writeContextFor(encoder, report).writeClassTable(classTable)
+            encoder.flush()
+            index.writeTo(outputStream)
+        }
     }
 
     private
-    suspend fun DefaultWriteContext.encodeScheduledWork() {
+    fun writeShards(
+        shards: List<WorkNodeCodec.WorkShard>,
+        report: InstantExecutionReport,
+        classTable: WriteClassTable,
+        sharedIdentities: WriteIdentities
+    ) {
+        val build = host.currentBuild
+        sharedIdentities.deferringNewInstances {
+            shards.forEachIndexed { shardId, shard ->
+                withWriteContextFor(shardFileFor(shardId), report, classTable, sharedIdentities) {
+                    WorkNodeCodec(build.gradle, codecs.internalTypesCodec).run {
+                        writeShard(shard)
+                    }
+                }
+            }
+        }
+    }
+
+    private
+    suspend fun DefaultWriteContext.encodeScheduledWork(): List<WorkNodeCodec.WorkShard> {
         val build = host.currentBuild
         writeString(build.rootProject.name)
 
@@ -188,13 +245,33 @@ class DefaultInstantExecution internal constructor(
         val scheduledNodes = build.scheduledWork
         writeRelevantProjectsFor(scheduledNodes)
 
-        WorkNodeCodec(build.gradle, codecs.internalTypesCodec).run {
+        return WorkNodeCodec(build.gradle, codecs.internalTypesCodec).run {
             writeWork(scheduledNodes)
         }
     }
 
     private
-    suspend fun DefaultReadContext.decodeScheduledWork() {
+    fun readScheduledWork() {
+        KryoBackedDecoder(stateInputStreamFor(instantExecutionStateFile)).use { decoder ->
+            val classTable = readContextFor(decoder).run {
+                initClassLoader(javaClass.classLoader)
+                withHostIsolate {
+                    readClassTable()
+                }
+            }
+            readContextFor(decoder, classTable).run {
+                initClassLoader(javaClass.classLoader)
+                val (build, index) = runToCompletion {
+                    decodeScheduledWork()
+                }
+                val shards = readShards(build, index, classTable, sharedIdentities)
+                build.scheduleNodes(index.wire(shards))
+            }
+        }
+    }
+
+    private
+    suspend fun DefaultReadContext.decodeScheduledWork(): Pair<InstantExecutionBuild, WorkNodeCodec.WorkIndex> {
         val rootProjectName = readString()
         val build = host.createBuild(rootProjectName)
 
@@ -207,10 +284,39 @@ class DefaultInstantExecution internal constructor(
 
         initProjectProvider(build::getProject)
 
-        val scheduledNodes = WorkNodeCodec(build.gradle, codecs.internalTypesCodec).run {
+        val index = WorkNodeCodec(build.gradle, codecs.internalTypesCodec).run {
             readWork()
         }
-        build.scheduleNodes(scheduledNodes)
+
+        // The shared instances the shards refer to first, written after the shards
+        withGradleIsolate(build.gradle) {
+            readCollection { read() }
+        }
+        return build to index
+    }
+
+    private
+    fun readShards(
+        build: InstantExecutionBuild,
+        index: WorkNodeCodec.WorkIndex,
+        classTable: List<Class<*>>,
+        sharedIdentities: ReadIdentities
+    ): List<List<Node>> {
+        val shards = arrayOfNulls<List<Node>>(index.shardProjectPaths.size)
+        val readShard = { shardId: Int ->
+            shards[shardId] = withReadContextFor(shardFileFor(shardId), classTable, sharedIdentities.copy()) {
+                initProjectProvider(build::getProject)
+                WorkNodeCodec(build.gradle, codecs.internalTypesCodec).run {
+                    readShard()
+                }
+            }
+        }
+        if (isParallelLoadEnabled) {
+            buildOperationExecutor.withParallelLoadOperations(index.shardProjectPaths, readShard)
+        } else {
+            index.shardProjectPaths.indices.forEach(readShard)
+        }
+        return shards.map { it!! }
     }
 
     private
@@ -322,9 +428,15 @@ class DefaultInstantExecution internal constructor(
     }
 
     private
-    fun withWriteContextFor(file: File, report: InstantExecutionReport, writeOperation: suspend DefaultWriteContext.() -> Unit) {
-        KryoBackedEncoder(file.outputStream()).use { encoder ->
-            writeContextFor(encoder, report).run {
+    fun withWriteContextFor(
+        file: File,
+        report: InstantExecutionReport,
+        classTable: WriteClassTable? = null,
+        sharedIdentities: WriteIdentities = WriteIdentities(),
+        writeOperation: suspend DefaultWriteContext.() -> Unit
+    ) {
+        KryoBackedEncoder(stateOutputStreamFor(file, isStateCompressionEnabled)).use { encoder ->
+            writeContextFor(encoder, report, classTable, sharedIdentities).run {
                 runToCompletion {
                     writeOperation()
                 }
@@ -333,9 +445,14 @@ class DefaultInstantExecution internal constructor(
     }
 
     private
-    fun <R> withReadContextFor(file: File, readOperation: suspend DefaultReadContext.() -> R): R =
-        KryoBackedDecoder(file.inputStream()).use { decoder ->
-            readContextFor(decoder).run {
+    fun <R> withReadContextFor(
+        file: File,
+        classTable: List<Class<*>>? = null,
+        sharedIdentities: ReadIdentities = ReadIdentities(),
+        readOperation: suspend DefaultReadContext.() -> R
+    ): R =
+        KryoBackedDecoder(stateInputStreamFor(file)).use { decoder ->
+            readContextFor(decoder, classTable, sharedIdentities).run {
                 initClassLoader(javaClass.classLoader)
                 runToCompletion {
                     readOperation()
@@ -346,22 +463,36 @@ class DefaultInstantExecution internal constructor(
     private
     fun writeContextFor(
         encoder: Encoder,
-        report: InstantExecutionReport
+        report: InstantExecutionReport,
+        classTable: WriteClassTable? = null,
+        sharedIdentities: WriteIdentities = WriteIdentities()
     ) = DefaultWriteContext(
         codecs.userTypesCodec,
         encoder,
         scopeRegistryListener,
+        beanFieldAccessors,
+        fieldAccessMode,
         logger,
-        report::add
+        report::add,
+        classTable,
+        sharedIdentities
     )
 
     private
-    fun readContextFor(decoder: KryoBackedDecoder) = DefaultReadContext(
+    fun readContextFor(
+        decoder: KryoBackedDecoder,
+        classTable: List<Class<*>>? = null,
+        sharedIdentities: ReadIdentities = ReadIdentities()
+    ) = DefaultReadContext(
         codecs.userTypesCodec,
         decoder,
         service(),
         beanConstructors,
-        logger
+        beanFieldAccessors,
+        fieldAccessMode,
+        logger,
+        classTable,
+        sharedIdentities
     )
 
     private
@@ -476,6 +607,12 @@ class DefaultInstantExecution internal constructor(
         Files.createDirectories(parentFile.toPath())
     }
 
+    private
+    fun shardFileFor(shardId: Int) =
+        instantExecutionStateFile.run {
+            resolveSibling("$name.$shardId")
+        }
+
     private
     val instantExecutionFingerprintFile by lazy {
         instantExecutionStateFile.run {
@@ -521,6 +658,18 @@ class DefaultInstantExecution internal constructor(
             ?.toBoolean()
             ?: false
 
+    private
+    val isParallelLoadEnabled: Boolean
+        get() = systemProperty(SystemProperties.parallelLoad)?.toBoolean() ?: true
+
+    private
+    val isStateCompressionEnabled: Boolean
+        get() = systemProperty(SystemProperties.compressState)?.toBoolean() ?: false
+
+    private
+    val fieldAccessMode: FieldAccessMode
+        get() = if (systemProperty(SystemProperties.methodHandleFieldAccess)?.toBoolean() == true) FieldAccessMode.MethodHandles else FieldAccessMode.Reflection
+
     private
     fun systemProperty(propertyName: String) =
         host.getSystemProperty(propertyName)
@@ -32,15 +32,33 @@ fun BuildOperationExecutor.withStoreOperation(block: () -> Unit) =
     withOperation("Store instant execution state", block)
 
 
+/**
+ * Runs [block] for the index of each project path in parallel, in a load operation for the project.
+ */
+internal
+fun BuildOperationExecutor.withParallelLoadOperations(projectPaths: List<String>, block: (Int) -> Unit) =
+    runAll<RunnableBuildOperation> { queue ->
+        projectPaths.forEachIndexed { index, projectPath ->
+            queue.add(operation("Load instant execution state of project $projectPath") {
+                block(index)
+            })
+        }
+    }
+
+
 private
 fun BuildOperationExecutor.withOperation(displayName: String, block: () -> Unit) {
-    run(object : RunnableBuildOperation {
+    run(operation(displayName, block))
+}
 
-        override fun description(): BuildOperationDescriptor.Builder =
-            BuildOperationDescriptor.displayName(displayName)
 
-        override fun run(context: BuildOperationContext) {
-            block()
-        }
-    })
+private
+fun operation(displayName: String, block: () -> Unit) = object : RunnableBuildOperation {
+
+    override fun description(): BuildOperationDescriptor.Builder =
+        BuildOperationDescriptor.displayName(displayName)
+
+    override fun run(context: BuildOperationContext) {
+        block()
+    }
 }
@@ -17,6 +17,7 @@
 package org.gradle.instantexecution
 
 import org.gradle.instantexecution.serialization.beans.BeanConstructors
+import org.gradle.instantexecution.serialization.beans.BeanFieldAccessors
 import org.gradle.internal.service.ServiceRegistration
 import org.gradle.internal.service.scopes.AbstractPluginServiceRegistry
 
@@ -25,6 +26,7 @@ class InstantExecutionServices : AbstractPluginServiceRegistry() {
     override fun registerGlobalServices(registration: ServiceRegistration) {
         registration.run {
             add(BeanConstructors::class.java)
+            add(BeanFieldAccessors::class.java)
         }
     }
 
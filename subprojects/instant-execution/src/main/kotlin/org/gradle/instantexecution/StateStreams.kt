@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.instantexecution
+
+import java.io.File
+import java.io.InputStream
+import java.io.OutputStream
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.Inflater
+import java.util.zip.InflaterInputStream
+
+
+/**
+ * Opens the given instant execution state file for writing, optionally compressing its content.
+ *
+ * The first byte of the file records whether its content is compressed, so that the file can be read
+ * regardless of the setting of the build reading it.
+ */
+internal
+fun stateOutputStreamFor(file: File, compress: Boolean): OutputStream {
+    val outputStream = file.outputStream()
+    outputStream.write(if (compress) COMPRESSED else UNCOMPRESSED)
+    return if (compress) DeflatingOutputStream(outputStream) else outputStream
+}
+
+
+internal
+fun stateInputStreamFor(file: File): InputStream {
+    val inputStream = file.inputStream()
+    return when (inputStream.read()) {
+        UNCOMPRESSED -> inputStream
+        COMPRESSED -> InflatingInputStream(inputStream)
+        else -> {
+            inputStream.close()
+            throw IllegalStateException("Unexpected format of instant execution state file '$file'.")
+        }
+    }
+}
+
+
+private
+const val UNCOMPRESSED = 0
+
+
+private
+const val COMPRESSED = 1
+
+
+private
+const val BUFFER_SIZE = 64 * 1024
+
+
+/**
+ * Favours speed over compression ratio, as the state is read back by the very next build.
+ */
+private
+class DeflatingOutputStream(outputStream: OutputStream) : DeflaterOutputStream(outputStream, Deflater(Deflater.BEST_SPEED), BUFFER_SIZE) {
+
+    override fun close() {
+        try {
+            super.close()
+        } finally {
+            def.end()
+        }
+    }
+}
+
+
+private
+class InflatingInputStream(inputStream: InputStream) : InflaterInputStream(inputStream, Inflater(), BUFFER_SIZE) {
+
+    override fun close() {
+        try {
+            super.close()
+        } finally {
+            inf.end()
+        }
+    }
+}
@@ -27,4 +27,10 @@ object SystemProperties {
     const val maxProblems = "org.gradle.unsafe.instant-execution.max-problems"
 
     const val failOnProblems = "org.gradle.unsafe.instant-execution.fail-on-problems"
+
+    const val parallelLoad = "org.gradle.unsafe.instant-execution.parallel-load"
+
+    const val compressState = "org.gradle.unsafe.instant-execution.compress-state"
+
+    const val methodHandleFieldAccess = "org.gradle.unsafe.instant-execution.method-handle-field-access"
 }
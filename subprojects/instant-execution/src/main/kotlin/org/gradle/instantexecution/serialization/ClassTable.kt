@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.instantexecution.serialization
+
+
+/**
+ * Assigns ids to the classes written by a group of [DefaultWriteContext]s so that the classes
+ * can be written once, ahead of the state of the contexts, and the state of each context can
+ * then be read independently from the others.
+ */
+internal
+class WriteClassTable {
+
+    private
+    val ids = WriteIdentities()
+
+    val classes = ArrayList<Class<*>>()
+
+    fun idOf(type: Class<*>): Int =
+        ids.getId(type) ?: ids.putInstance(type).also {
+            classes.add(type)
+        }
+}
+
+
+internal
+fun WriteContext.writeClassTable(table: WriteClassTable) {
+    writeSmallInt(table.classes.size)
+    for (type in table.classes) {
+        writeClass(type)
+    }
+}
+
+
+internal
+fun ReadContext.readClassTable(): List<Class<*>> =
+    readCollectionInto({ size -> ArrayList(size) }) {
+        readClass()
+    }
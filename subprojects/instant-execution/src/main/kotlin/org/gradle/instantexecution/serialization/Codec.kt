@@ -27,6 +27,7 @@ import org.gradle.instantexecution.serialization.beans.BeanStateReader
 import org.gradle.instantexecution.serialization.beans.BeanStateWriter
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
+import java.io.File
 import kotlin.reflect.KClass
 
 
@@ -47,6 +48,8 @@ interface WriteContext : IsolateContext, MutableIsolateContext, Encoder {
     suspend fun write(value: Any?)
 
     fun writeClass(type: Class<*>)
+
+    fun writeFile(file: File)
 }
 
 
@@ -71,6 +74,8 @@ interface ReadContext : IsolateContext, MutableIsolateContext, Decoder {
     suspend fun read(): Any?
 
     fun readClass(): Class<*>
+
+    fun readFile(): File
 }
 
 
@@ -359,8 +364,15 @@ inline fun WriteContext.encodePreservingIdentityOf(reference: Any, encode: Write
 
 
 internal
-inline fun WriteContext.encodePreservingSharedIdentityOf(reference: Any, encode: WriteContext.(Any) -> Unit) =
-    encodePreservingIdentityOf(sharedIdentities, reference, encode)
+inline fun WriteContext.encodePreservingSharedIdentityOf(reference: Any, encode: WriteContext.(Any) -> Unit) {
+    val identities = sharedIdentities
+    if (identities.isDeferring && identities.getId(reference) == null) {
+        // Only reserve the id, the instance is written later on
+        writeSmallInt(identities.putDeferredInstance(reference))
+    } else {
+        encodePreservingIdentityOf(identities, reference, encode)
+    }
+}
 
 
 internal
@@ -22,14 +22,17 @@ import org.gradle.api.logging.Logger
 import org.gradle.initialization.ClassLoaderScopeRegistry
 import org.gradle.instantexecution.ClassLoaderScopeSpec
 import org.gradle.instantexecution.serialization.beans.BeanConstructors
+import org.gradle.instantexecution.serialization.beans.BeanFieldAccessors
 import org.gradle.instantexecution.serialization.beans.BeanPropertyReader
 import org.gradle.instantexecution.serialization.beans.BeanPropertyWriter
 import org.gradle.instantexecution.serialization.beans.BeanStateReader
 import org.gradle.instantexecution.serialization.beans.BeanStateWriter
+import org.gradle.instantexecution.serialization.beans.FieldAccessMode
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.instantiation.InstantiatorFactory
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
+import java.io.File
 
 
 internal
@@ -42,13 +45,23 @@ class DefaultWriteContext(
     private
     val scopeLookup: ScopeLookup,
 
+    private
+    val fieldAccessors: BeanFieldAccessors,
+
+    private
+    val fieldAccessMode: FieldAccessMode,
+
     override val logger: Logger,
 
     private
-    val problemHandler: (PropertyProblem) -> Unit
+    val problemHandler: (PropertyProblem) -> Unit,
+
+    private
+    val classTable: WriteClassTable? = null,
+
+    override val sharedIdentities: WriteIdentities = WriteIdentities()
 
 ) : AbstractIsolateContext<WriteIsolate>(codec), WriteContext, Encoder by encoder {
-    override val sharedIdentities = WriteIdentities()
 
     private
     val beanPropertyWriters = hashMapOf<Class<*>, BeanStateWriter>()
@@ -59,8 +72,16 @@ class DefaultWriteContext(
     private
     val scopes = WriteIdentities()
 
+    private
+    val strings = hashMapOf<String, Int>()
+
+    private
+    val files = hashMapOf<File, Int>()
+
     override fun beanStateWriterFor(beanType: Class<*>): BeanStateWriter =
-        beanPropertyWriters.computeIfAbsent(beanType, ::BeanPropertyWriter)
+        beanPropertyWriters.computeIfAbsent(beanType) { type ->
+            BeanPropertyWriter(fieldAccessors.accessorsFor(type, fieldAccessMode))
+        }
 
 
     override val isolate: WriteIsolate
@@ -73,6 +94,10 @@ class DefaultWriteContext(
     }
 
     override fun writeClass(type: Class<*>) {
+        if (classTable != null) {
+            writeSmallInt(classTable.idOf(type))
+            return
+        }
         val id = classes.getId(type)
         if (id != null) {
             writeSmallInt(id)
@@ -122,9 +147,49 @@ class DefaultWriteContext(
         }
     }
 
-    // TODO: consider interning strings
-    override fun writeString(string: CharSequence) =
-        encoder.writeString(string)
+    override fun writeString(string: CharSequence) {
+        val value = string.toString()
+        val id = strings[value]
+        if (id != null) {
+            writeSmallInt(id)
+        } else {
+            val newId = strings.size
+            strings[value] = newId
+            writeSmallInt(newId)
+            encoder.writeString(value)
+        }
+    }
+
+    override fun writeNullableString(string: CharSequence?) {
+        if (string == null) {
+            writeBoolean(false)
+        } else {
+            writeBoolean(true)
+            writeString(string)
+        }
+    }
+
+    /**
+     * Writes each directory once, so that files sharing a parent directory only write their name.
+     */
+    override fun writeFile(file: File) {
+        val id = files[file]
+        if (id != null) {
+            writeSmallInt(id + 1)
+            return
+        }
+        writeSmallInt(0)
+        val parent = file.parentFile
+        if (parent == null) {
+            writeBoolean(false)
+            writeString(file.path)
+        } else {
+            writeBoolean(true)
+            writeFile(parent)
+            writeString(file.name)
+        }
+        files[file] = files.size
+    }
 
     override fun newIsolate(owner: IsolateOwner): WriteIsolate =
         DefaultWriteIsolate(owner)
@@ -163,10 +228,20 @@ class DefaultReadContext(
     private
     val constructors: BeanConstructors,
 
-    override val logger: Logger
-) : AbstractIsolateContext<ReadIsolate>(codec), ReadContext, Decoder by decoder {
+    private
+    val fieldAccessors: BeanFieldAccessors,
 
-    override val sharedIdentities = ReadIdentities()
+    private
+    val fieldAccessMode: FieldAccessMode,
+
+    override val logger: Logger,
+
+    private
+    val classTable: List<Class<*>>? = null,
+
+    override val sharedIdentities: ReadIdentities = ReadIdentities()
+
+) : AbstractIsolateContext<ReadIsolate>(codec), ReadContext, Decoder by decoder {
 
     private
     val beanStateReaders = hashMapOf<Class<*>, BeanStateReader>()
@@ -177,6 +252,12 @@ class DefaultReadContext(
     private
     val scopes = ReadIdentities()
 
+    private
+    val strings = ArrayList<String>()
+
+    private
+    val files = ArrayList<File>()
+
     private
     lateinit var projectProvider: ProjectProvider
 
@@ -202,10 +283,15 @@ class DefaultReadContext(
         get() = getIsolate()
 
     override fun beanStateReaderFor(beanType: Class<*>): BeanStateReader =
-        beanStateReaders.computeIfAbsent(beanType) { type -> BeanPropertyReader(type, constructors, instantiatorFactory) }
+        beanStateReaders.computeIfAbsent(beanType) { type ->
+            BeanPropertyReader(type, constructors, instantiatorFactory, fieldAccessors.accessorsFor(type, fieldAccessMode))
+        }
 
     override fun readClass(): Class<*> {
         val id = readSmallInt()
+        if (classTable != null) {
+            return classTable[id]
+        }
         val type = classes.getInstance(id)
         if (type != null) {
             return type as Class<*>
@@ -252,6 +338,34 @@ class DefaultReadContext(
         return newScope
     }
 
+    override fun readString(): String {
+        val id = readSmallInt()
+        if (id < strings.size) {
+            return strings[id]
+        }
+        return decoder.readString().also {
+            strings.add(it)
+        }
+    }
+
+    override fun readNullableString(): String? =
+        if (readBoolean()) readString() else null
+
+    override fun readFile(): File {
+        val id = readSmallInt()
+        if (id > 0) {
+            return files[id - 1]
+        }
+        val file = if (readBoolean()) {
+            val parent = readFile()
+            File(parent, readString())
+        } else {
+            File(readString())
+        }
+        files.add(file)
+        return file
+    }
+
     private
     fun readHashCode() = if (readBoolean()) {
         HashCode.fromBytes(readBinary())
@@ -24,13 +24,48 @@ class WriteIdentities {
     private
     val instanceIds = IdentityHashMap<Any, Int>()
 
-    fun getId(instance: Any) = instanceIds[instance]
+    /**
+     * Instances which have been assigned an id while deferring, but have not been written yet.
+     */
+    private
+    val deferredIds = IdentityHashMap<Any, Int>()
+
+    private
+    var nextId = 0
+
+    var isDeferring = false
+        private set
+
+    fun getId(instance: Any) = instanceIds[instance] ?: if (isDeferring) deferredIds[instance] else null
 
     fun putInstance(instance: Any): Int {
-        val id = instanceIds.size
+        val id = deferredIds.remove(instance) ?: nextId++
         instanceIds[instance] = id
         return id
     }
+
+    fun putDeferredInstance(instance: Any): Int {
+        val id = nextId++
+        deferredIds[instance] = id
+        return id
+    }
+
+    /**
+     * Runs the given block, only assigning ids to the instances seen for the first time.
+     *
+     * The deferred instances are written afterwards, in id order, by writing the [deferredInstances].
+     */
+    fun <T> deferringNewInstances(block: () -> T): T {
+        isDeferring = true
+        try {
+            return block()
+        } finally {
+            isDeferring = false
+        }
+    }
+
+    val deferredInstances: List<Any>
+        get() = deferredIds.entries.sortedBy { it.value }.map { it.key }
 }
 
 
@@ -44,4 +79,8 @@ class ReadIdentities {
     fun putInstance(id: Int, instance: Any) {
         instanceIds[id] = instance
     }
+
+    fun copy() = ReadIdentities().also {
+        it.instanceIds.putAll(instanceIds)
+    }
 }
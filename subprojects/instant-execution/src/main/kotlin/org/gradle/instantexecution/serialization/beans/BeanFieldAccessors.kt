@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.instantexecution.serialization.beans
+
+import org.gradle.cache.internal.CrossBuildInMemoryCache
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory
+import org.gradle.internal.reflect.FieldAccessor
+import org.gradle.internal.reflect.MethodHandleBasedFieldAccessor
+import org.gradle.internal.reflect.ReflectionBasedFieldAccessor
+
+
+enum class FieldAccessMode {
+    Reflection,
+    MethodHandles
+}
+
+
+/**
+ * A global service that caches the accessors for the [relevant state][relevantStateOf] of bean types.
+ */
+class BeanFieldAccessors(
+    cacheFactory: CrossBuildInMemoryCacheFactory
+) {
+    private
+    val reflectionBased: CrossBuildInMemoryCache<Class<*>, List<FieldAccessor>> = cacheFactory.newClassCache()
+
+    private
+    val methodHandleBased: CrossBuildInMemoryCache<Class<*>, List<FieldAccessor>> = cacheFactory.newClassCache()
+
+    fun accessorsFor(beanType: Class<*>, mode: FieldAccessMode): List<FieldAccessor> = when (mode) {
+        FieldAccessMode.Reflection -> reflectionBased.get(beanType) { type ->
+            relevantStateOf(type).map(::ReflectionBasedFieldAccessor)
+        }
+        FieldAccessMode.MethodHandles -> methodHandleBased.get(beanType) { type ->
+            relevantStateOf(type).map(::MethodHandleBasedFieldAccessor)
+        }
+    }
+}
@@ -27,10 +27,10 @@ import org.gradle.instantexecution.serialization.service
 import org.gradle.instantexecution.serialization.withPropertyTrace
 import org.gradle.internal.instantiation.InstantiationScheme
 import org.gradle.internal.instantiation.InstantiatorFactory
+import org.gradle.internal.reflect.FieldAccessor
 import org.gradle.internal.reflect.JavaReflectionUtil
 import org.gradle.internal.service.ServiceRegistry
 import java.io.IOException
-import java.lang.reflect.Field
 import java.util.concurrent.Callable
 import java.util.function.Supplier
 
@@ -38,14 +38,15 @@ import java.util.function.Supplier
 class BeanPropertyReader(
     private val beanType: Class<*>,
     private val constructors: BeanConstructors,
-    instantiatorFactory: InstantiatorFactory
+    instantiatorFactory: InstantiatorFactory,
+    relevantFields: List<FieldAccessor>
 ) : BeanStateReader {
     // TODO should use the same scheme as the original bean
     private
     val instantiationScheme: InstantiationScheme = instantiatorFactory.decorateScheme()
 
     private
-    val fieldSetters = relevantStateOf(beanType).map { Pair(it.name, setterFor(it)) }
+    val fieldSetters = relevantFields.map { Pair(it.field.name, setterFor(it)) }
 
     private
     val constructorForSerialization by lazy {
@@ -70,7 +71,7 @@ class BeanPropertyReader(
     }
 
     private
-    fun setterFor(field: Field): ReadContext.(Any, Any?) -> Unit = when (val type = field.type) {
+    fun setterFor(field: FieldAccessor): ReadContext.(Any, Any?) -> Unit = when (val type = field.field.type) {
         Callable::class.java -> { bean, value ->
             field.set(bean, Callable { value })
         }
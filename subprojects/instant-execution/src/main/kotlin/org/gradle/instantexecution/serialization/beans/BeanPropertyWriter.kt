@@ -25,24 +25,22 @@ import org.gradle.instantexecution.serialization.PropertyKind
 import org.gradle.instantexecution.serialization.WriteContext
 import org.gradle.instantexecution.serialization.logPropertyError
 import org.gradle.instantexecution.serialization.logPropertyInfo
+import org.gradle.internal.reflect.FieldAccessor
 import java.io.IOException
 import java.util.concurrent.Callable
 import java.util.function.Supplier
 
 
 class BeanPropertyWriter(
-    beanType: Class<*>
+    private val relevantFields: List<FieldAccessor>
 ) : BeanStateWriter {
 
-    private
-    val relevantFields = relevantStateOf(beanType)
-
     /**
      * Serializes a bean by serializing the value of each of its fields.
      */
     override suspend fun WriteContext.writeStateOf(bean: Any) {
         for (field in relevantFields) {
-            val fieldName = field.name
+            val fieldName = field.field.name
             val fieldValue = valueOrConvention(field.get(bean), bean, fieldName)
             writeNextProperty(fieldName, fieldValue, PropertyKind.Field)
         }
@@ -77,7 +77,10 @@ class TaskNodeCodec(
 
     override suspend fun ReadContext.decode(): LocalTaskNode {
         val task = readTask()
-        val node = taskNodeFactory.getOrCreateNode(task) as LocalTaskNode
+        // Shards of the work graph are read in parallel
+        val node = synchronized(taskNodeFactory) {
+            taskNodeFactory.getOrCreateNode(task) as LocalTaskNode
+        }
         node.isolated()
         return node
     }
@@ -17,83 +17,149 @@
 package org.gradle.instantexecution.serialization.codecs
 
 import org.gradle.api.internal.GradleInternal
+import org.gradle.execution.plan.LocalTaskNode
 import org.gradle.execution.plan.Node
 import org.gradle.instantexecution.serialization.Codec
 import org.gradle.instantexecution.serialization.IsolateOwner
 import org.gradle.instantexecution.serialization.ReadContext
 import org.gradle.instantexecution.serialization.WriteContext
-import org.gradle.instantexecution.serialization.readCollection
+import org.gradle.instantexecution.serialization.readList
+import org.gradle.instantexecution.serialization.readStrings
 import org.gradle.instantexecution.serialization.withIsolate
 import org.gradle.instantexecution.serialization.writeCollection
+import org.gradle.instantexecution.serialization.writeStrings
 
 
+/**
+ * Writes the scheduled work as an index plus one shard per project.
+ *
+ * Each shard holds the task nodes of a single project and can be read independently from the other
+ * shards, once the index has been read. The index holds the nodes that do not belong to a shard
+ * together with the dependencies between all nodes, which are wired after all shards have been read.
+ */
 internal
 class WorkNodeCodec(
     private val owner: GradleInternal,
     private val internalTypesCodec: Codec<Any?>
 ) {
 
-    suspend fun WriteContext.writeWork(nodes: List<Node>) {
+    class WorkShard(val projectPath: String, val nodes: List<Node>)
+
+    class WorkIndex(
+        private val nodes: List<Node>,
+        val shardProjectPaths: List<String>,
+        private val nodeShards: IntArray,
+        private val nodeSuccessors: List<IntArray>
+    ) {
+        /**
+         * Returns all nodes, in dependency order, after wiring the nodes of the index to the nodes of the given shards.
+         */
+        fun wire(shards: List<List<Node>>): List<Node> {
+            val nodesByShard = listOf(nodes) + shards
+            val nextNodeOfShard = IntArray(nodesByShard.size)
+            val allNodes = ArrayList<Node>(nodeShards.size)
+            for (shard in nodeShards) {
+                allNodes.add(nodesByShard[shard][nextNodeOfShard[shard]++])
+            }
+            for ((id, node) in allNodes.withIndex()) {
+                for (successorId in nodeSuccessors[id]) {
+                    node.addDependencySuccessor(allNodes[successorId])
+                }
+                node.dependenciesProcessed()
+            }
+            return allNodes
+        }
+    }
+
+    /**
+     * Writes the index of the given nodes and returns the shards that remain to be written with [writeShard].
+     */
+    suspend fun WriteContext.writeWork(nodes: List<Node>): List<WorkShard> {
+        val orderedNodes = dependencyOrderOf(nodes)
+        val nodeIds = HashMap<Node, Int>(orderedNodes.size)
+        val indexNodes = ArrayList<Node>()
+        val shardIds = LinkedHashMap<String, Int>()
+        val shardNodes = ArrayList<MutableList<Node>>()
+        val nodeShards = IntArray(orderedNodes.size)
+        for ((id, node) in orderedNodes.withIndex()) {
+            nodeIds[node] = id
+            val projectPath = shardProjectPathOf(node)
+            if (projectPath == null) {
+                indexNodes.add(node)
+            } else {
+                val shardId = shardIds.getOrPut(projectPath) {
+                    shardNodes.add(ArrayList())
+                    shardNodes.size - 1
+                }
+                shardNodes[shardId].add(node)
+                // Shard 0 is the index
+                nodeShards[id] = shardId + 1
+            }
+        }
+
         // Share bean instances across all nodes (except tasks, which have their own isolate)
         withIsolate(IsolateOwner.OwnerGradle(owner), internalTypesCodec) {
-            writeNodes(nodes)
+            writeCollection(indexNodes)
+        }
+        writeStrings(shardIds.keys)
+        writeSmallInt(orderedNodes.size)
+        for ((id, node) in orderedNodes.withIndex()) {
+            writeSmallInt(nodeShards[id])
+            writeCollection(node.dependencySuccessors) { writeSmallInt(nodeIds.getValue(it)) }
         }
+        return shardIds.map { (projectPath, shardId) -> WorkShard(projectPath, shardNodes[shardId]) }
     }
 
-    private
-    suspend fun WriteContext.writeNodes(nodes: List<Node>) {
-        val nodesById = HashMap<Node, Int>(nodes.size)
-        writeSmallInt(nodes.size)
-        for (node in nodes) {
-            writeNode(node, nodesById)
+    suspend fun WriteContext.writeShard(shard: WorkShard) {
+        withIsolate(IsolateOwner.OwnerGradle(owner), internalTypesCodec) {
+            writeCollection(shard.nodes)
         }
     }
 
-    private
-    suspend fun WriteContext.writeNode(node: Node, nodesById: MutableMap<Node, Int>) {
-        if (nodesById.containsKey(node)) {
-            // Already visited
-            return
+    suspend fun ReadContext.readWork(): WorkIndex {
+        val indexNodes = withIsolate(IsolateOwner.OwnerGradle(owner), internalTypesCodec) {
+            readList { read() as Node }
         }
-        for (successor in node.dependencySuccessors) {
-            writeNode(successor, nodesById)
+        val shardProjectPaths = readStrings()
+        val count = readSmallInt()
+        val nodeShards = IntArray(count)
+        val nodeSuccessors = ArrayList<IntArray>(count)
+        for (id in 0 until count) {
+            nodeShards[id] = readSmallInt()
+            nodeSuccessors.add(IntArray(readSmallInt()) { readSmallInt() })
         }
-        val id = nodesById.size
-        writeSmallInt(id)
-        write(node)
-        writeCollection(node.dependencySuccessors) { writeSmallInt(nodesById.getValue(it)) }
-        nodesById[node] = id
+        return WorkIndex(indexNodes, shardProjectPaths, nodeShards, nodeSuccessors)
     }
 
-    suspend fun ReadContext.readWork(): List<Node> {
-        return withIsolate(IsolateOwner.OwnerGradle(owner), internalTypesCodec) {
-            readNodes()
+    suspend fun ReadContext.readShard(): List<Node> =
+        withIsolate(IsolateOwner.OwnerGradle(owner), internalTypesCodec) {
+            readList { read() as Node }
         }
-    }
 
+    /**
+     * Task nodes are sharded by project, all other nodes are kept in the index.
+     */
     private
-    suspend fun ReadContext.readNodes(): ArrayList<Node> {
-        val count = readSmallInt()
-        val nodesById = HashMap<Int, Node>(count)
-        val nodes = ArrayList<Node>(count)
-        for (i in 0 until count) {
-            val node = readNode(nodesById)
-            nodes.add(node)
+    fun shardProjectPathOf(node: Node): String? =
+        (node as? LocalTaskNode)?.task?.project?.path
+
+    private
+    fun dependencyOrderOf(nodes: List<Node>): List<Node> {
+        val visited = LinkedHashSet<Node>(nodes.size)
+        for (node in nodes) {
+            visit(node, visited)
         }
-        return nodes
+        return visited.toList()
     }
 
     private
-    suspend fun ReadContext.readNode(nodesById: MutableMap<Int, Node>): Node {
-        val id = readSmallInt()
-        val node = read() as Node
-        readCollection {
-            val depId = readSmallInt()
-            val dep = nodesById.getValue(depId)
-            node.addDependencySuccessor(dep)
+    fun visit(node: Node, visited: MutableSet<Node>) {
+        if (visited.contains(node)) {
+            return
+        }
+        for (successor in node.dependencySuccessors) {
+            visit(successor, visited)
         }
-        node.dependenciesProcessed()
-        nodesById[id] = node
-        return node
+        visited.add(node)
     }
 }
@@ -29,6 +29,8 @@ import org.gradle.instantexecution.serialization.IsolateOwner
 import org.gradle.instantexecution.serialization.MutableIsolateContext
 import org.gradle.instantexecution.serialization.PropertyProblem
 import org.gradle.instantexecution.serialization.beans.BeanConstructors
+import org.gradle.instantexecution.serialization.beans.BeanFieldAccessors
+import org.gradle.instantexecution.serialization.beans.FieldAccessMode
 import org.gradle.instantexecution.serialization.withIsolate
 
 import org.gradle.internal.io.NullOutputStream
@@ -45,6 +47,7 @@ import org.junit.Test
 
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
+import java.io.File
 import java.io.ObjectInputStream
 import java.io.ObjectOutputStream
 import java.io.OutputStream
@@ -172,6 +175,63 @@ class UserTypesCodecTest {
         )
     }
 
+    @Test
+    fun `can access bean fields through method handles`() {
+
+        val bean = MutableBean(listOf("a", "b")).apply {
+            count = 42
+            name = "42"
+        }
+
+        val read = roundtrip(Pair(bean, bean), FieldAccessMode.MethodHandles)
+
+        assertThat(
+            read.first.count,
+            equalTo(42)
+        )
+
+        assertThat(
+            read.first.name,
+            equalTo<Any>("42")
+        )
+
+        assertThat(
+            "writes final fields",
+            read.first.items,
+            equalTo(listOf("a", "b"))
+        )
+
+        assertThat(
+            read.first,
+            sameInstance(read.second)
+        )
+    }
+
+    @Test
+    fun `writes repeated strings and files once`() {
+
+        val dir = File("build/classes/java/main").absoluteFile
+        val files = (0 until 100).map { File(dir, "Class$it.class") }
+        val strings = (0 until 100).map { "org.gradle.instantexecution.SomeRepeatedString" }
+        val graph = ArrayList<Any>(files + strings + listOf(File("/"), File("relative/file")))
+
+        assertThat(
+            roundtrip(graph),
+            equalTo<Any>(graph)
+        )
+
+        assertThat(
+            "writes each string once",
+            writeToByteArray(graph, FieldAccessMode.Reflection).size < strings.size * strings.first().length,
+            equalTo(true)
+        )
+    }
+
+    class MutableBean(val items: List<String>) {
+        var count: Int = 0
+        var name: String? = null
+    }
+
     private
     fun serializationProblemsOf(bean: Any): List<PropertyProblem> =
         mutableListOf<PropertyProblem>().also { problems ->
@@ -257,15 +317,15 @@ class UserTypesCodecTest {
     }
 
     private
-    fun <T : Any> roundtrip(graph: T): T =
-        writeToByteArray(graph)
-            .let(::readFromByteArray)!!
+    fun <T : Any> roundtrip(graph: T, fieldAccessMode: FieldAccessMode = FieldAccessMode.Reflection): T =
+        writeToByteArray(graph, fieldAccessMode)
+            .let { readFromByteArray(it, fieldAccessMode) }!!
             .uncheckedCast()
 
     private
-    fun writeToByteArray(graph: Any): ByteArray {
+    fun writeToByteArray(graph: Any, fieldAccessMode: FieldAccessMode): ByteArray {
         val outputStream = ByteArrayOutputStream()
-        writeTo(outputStream, graph)
+        writeTo(outputStream, graph, fieldAccessMode = fieldAccessMode)
         return outputStream.toByteArray()
     }
 
@@ -273,10 +333,11 @@ class UserTypesCodecTest {
     fun writeTo(
         outputStream: OutputStream,
         graph: Any,
+        fieldAccessMode: FieldAccessMode = FieldAccessMode.Reflection,
         problemHandler: (PropertyProblem) -> Unit = mock()
     ) {
         KryoBackedEncoder(outputStream).use { encoder ->
-            writeContextFor(encoder, problemHandler).run {
+            writeContextFor(encoder, fieldAccessMode, problemHandler).run {
                 withIsolateMock {
                     runToCompletion {
                         write(graph)
@@ -287,12 +348,12 @@ class UserTypesCodecTest {
     }
 
     private
-    fun readFromByteArray(bytes: ByteArray) =
-        readFrom(ByteArrayInputStream(bytes))
+    fun readFromByteArray(bytes: ByteArray, fieldAccessMode: FieldAccessMode) =
+        readFrom(ByteArrayInputStream(bytes), fieldAccessMode)
 
     private
-    fun readFrom(inputStream: ByteArrayInputStream) =
-        readContextFor(inputStream).run {
+    fun readFrom(inputStream: ByteArrayInputStream, fieldAccessMode: FieldAccessMode) =
+        readContextFor(inputStream, fieldAccessMode).run {
             initClassLoader(javaClass.classLoader)
             withIsolateMock {
                 runToCompletion {
@@ -308,22 +369,26 @@ class UserTypesCodecTest {
         }
 
     private
-    fun writeContextFor(encoder: Encoder, problemHandler: (PropertyProblem) -> Unit) =
+    fun writeContextFor(encoder: Encoder, fieldAccessMode: FieldAccessMode, problemHandler: (PropertyProblem) -> Unit) =
         DefaultWriteContext(
             codec = codecs().userTypesCodec,
             encoder = encoder,
             scopeLookup = mock(),
+            fieldAccessors = BeanFieldAccessors(TestCrossBuildInMemoryCacheFactory()),
+            fieldAccessMode = fieldAccessMode,
             logger = mock(),
             problemHandler = problemHandler
         )
 
     private
-    fun readContextFor(inputStream: ByteArrayInputStream) =
+    fun readContextFor(inputStream: ByteArrayInputStream, fieldAccessMode: FieldAccessMode) =
         DefaultReadContext(
             codec = codecs().userTypesCodec,
             decoder = KryoBackedDecoder(inputStream),
             instantiatorFactory = TestUtil.instantiatorFactory(),
             constructors = BeanConstructors(TestCrossBuildInMemoryCacheFactory()),
+            fieldAccessors = BeanFieldAccessors(TestCrossBuildInMemoryCacheFactory()),
+            fieldAccessMode = fieldAccessMode,
             logger = mock()
         )
 
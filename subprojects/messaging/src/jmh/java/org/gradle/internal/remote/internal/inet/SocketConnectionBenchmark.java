@@ -0,0 +1,113 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.remote.internal.inet;
+
+import org.gradle.internal.remote.internal.KryoBackedMessageSerializer;
+import org.gradle.internal.remote.internal.RemoteConnection;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Serializers;
+import org.gradle.internal.serialize.StatefulSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Measures the round trip latency and the throughput of messages exchanged over a {@link SocketConnection}
+ * with a peer echoing every message it receives.
+ */
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class SocketConnectionBenchmark {
+    private static final int BATCH_SIZE = 16;
+
+    @Param({"64", "4096"})
+    int payloadSize;
+
+    private final StatefulSerializer<byte[]> serializer = Serializers.stateful(BaseSerializerFactory.BYTE_ARRAY_SERIALIZER);
+    private RemoteConnection<byte[]> connection;
+    private RemoteConnection<byte[]> peer;
+    private Thread echo;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void connect() throws Exception {
+        payload = new byte[payloadSize];
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel channel = SocketChannel.open(serverChannel.getLocalAddress());
+            SocketChannel peerChannel = serverChannel.accept();
+            connection = new SocketConnection<byte[]>(channel, new KryoBackedMessageSerializer(), serializer);
+            peer = new SocketConnection<byte[]>(peerChannel, new KryoBackedMessageSerializer(), serializer);
+        } finally {
+            serverChannel.close();
+        }
+        echo = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] message;
+                while ((message = peer.receive()) != null) {
+                    peer.dispatch(message);
+                    peer.flush();
+                }
+            }
+        }, "echo");
+        echo.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws Exception {
+        connection.stop();
+        echo.join();
+        peer.stop();
+    }
+
+    @Benchmark
+    public void roundTrip(Blackhole bh) {
+        connection.dispatch(payload);
+        connection.flush();
+        bh.consume(connection.receive());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void pipelined(Blackhole bh) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            connection.dispatch(payload);
+        }
+        connection.flush();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            bh.consume(connection.receive());
+        }
+    }
+}
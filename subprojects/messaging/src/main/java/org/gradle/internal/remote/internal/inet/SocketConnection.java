@@ -34,6 +34,7 @@
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -56,6 +57,10 @@ public SocketConnection(SocketChannel socket, MessageSerializer streamSerializer
             // NOTE: we use non-blocking IO as there is no reliable way when using blocking IO to shutdown reads while
             // keeping writes active. For example, Socket.shutdownInput() does not work on Windows.
             socket.configureBlocking(false);
+            // Messages are buffered and written when the connection is flushed, typically once for each batch of queued messages,
+            // so there is nothing to gain from coalescing writes in the network stack. Doing so delays small messages, such as
+            // requests to and results from worker processes, until the peer acknowledges the previous write.
+            socket.socket().setTcpNoDelay(true);
             outstr = new SocketOutputStream(socket);
             instr = new SocketInputStream(socket);
         } catch (IOException e) {
@@ -161,7 +166,7 @@ public SocketInputStream(SocketChannel socket) throws IOException {
             this.socket = socket;
             selector = Selector.open();
             socket.register(selector, SelectionKey.OP_READ);
-            buffer = ByteBuffer.allocateDirect(4096);
+            buffer = ByteBuffer.allocateDirect(32 * 1024);
             BufferCaster.cast(buffer).limit(0);
         }
 
@@ -181,26 +186,26 @@ public int read(byte[] dest, int offset, int max) throws IOException {
             }
 
             if (buffer.remaining() == 0) {
-                try {
-                    selector.select();
-                } catch (ClosedSelectorException e) {
-                    return -1;
-                }
                 if (!selector.isOpen()) {
                     return -1;
                 }
 
+                // Read whatever is already available before waiting on the selector, so that a peer sending messages
+                // back to back does not cost a select call for each buffer full of data
                 BufferCaster.cast(buffer).clear();
-                int nread;
-                try {
-                    nread = socket.read(buffer);
-                } catch (IOException e) {
-                    if (isEndOfStream(e)) {
-                        BufferCaster.cast(buffer).position(0);
-                        BufferCaster.cast(buffer).limit(0);
-                        return -1;
+                int nread = readFromChannel();
+                while (nread == 0) {
+                    try {
+                        selector.select();
+                    } catch (ClosedSelectorException e) {
+                        nread = -1;
+                        break;
                     }
-                    throw e;
+                    if (!selector.isOpen()) {
+                        nread = -1;
+                        break;
+                    }
+                    nread = readFromChannel();
                 }
                 BufferCaster.cast(buffer).flip();
 
@@ -214,6 +219,23 @@ public int read(byte[] dest, int offset, int max) throws IOException {
             return count;
         }
 
+        private int readFromChannel() throws IOException {
+            try {
+                return socket.read(buffer);
+            } catch (ClosedChannelException e) {
+                if (!selector.isOpen()) {
+                    // Connection has been stopped
+                    return -1;
+                }
+                throw e;
+            } catch (IOException e) {
+                if (isEndOfStream(e)) {
+                    return -1;
+                }
+                throw e;
+            }
+        }
+
         @Override
         public void close() throws IOException {
             selector.close();
@@ -225,6 +225,37 @@ class TcpConnectorTest extends ConcurrentSpec {
         acceptor?.stop()
     }
 
+    def "can exchange batches of messages of varying size with peer"() {
+        given:
+        def messages = (0..<100).collect { it % 10 == 0 ? "x" * (64 * 1024 + it) : "message $it" }
+        def action = { ConnectCompletion completion ->
+            def connection = completion.create(serializer)
+            def message
+            while ((message = connection.receive()) != null) {
+                connection.dispatch(message)
+                connection.flush()
+            }
+            connection.stop()
+        } as Action
+
+        when:
+        def acceptor = incomingConnector.accept(action, false)
+        def connection = outgoingConnector.connect(acceptor.address).create(serializer)
+        def received = []
+        messages.collate(10).each { batch ->
+            batch.each { connection.dispatch(it) }
+            connection.flush()
+            batch.size().times { received << connection.receive() }
+        }
+
+        then:
+        received == messages
+
+        cleanup:
+        connection?.stop()
+        acceptor?.stop()
+    }
+
     def "returns null on failure to receive due to truncated input"() {
         given:
         def incomingSerializer = { Encoder encoder, String value ->
@@ -18,6 +18,8 @@
 import org.gradle.api.Transformer;
 
 import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * A persistent store of objects of type V indexed by a key of type K.
@@ -46,6 +48,24 @@
      */
     V get(K key, Transformer<? extends V, ? super K> producer);
 
+    /**
+     * Fetches the values mapped to the given keys from this cache, blocking until they are available.
+     *
+     * The implementation may fetch all values while holding the file lock once, rather than once per key.
+     *
+     * @return The values mapped to the given keys. Keys with no associated value are not included.
+     */
+    default Map<K, V> getAll(Iterable<? extends K> keys) {
+        Map<K, V> values = new LinkedHashMap<K, V>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
     /**
      * Maps the given value to the given key, replacing any existing value.
      *
@@ -53,6 +73,17 @@
      */
     void put(K key, V value);
 
+    /**
+     * Maps the given values to their keys, replacing any existing values.
+     *
+     * The implementation may do this synchronously or asynchronously, and may write all values as a single update. A file lock is held until the values have been written to the persistent store.
+     */
+    default void putAll(Map<? extends K, ? extends V> entries) {
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
     /**
      * Removes a key-value mapping from this cache. A shared lock is held while updating the value.
      *
@@ -23,6 +23,7 @@
 import org.gradle.internal.Factory;
 
 import javax.annotation.Nullable;
+import java.util.Map;
 
 public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentIndexedCache<K, V> {
     private final AsyncCacheAccess asyncCacheAccess;
@@ -54,6 +55,16 @@ public V get(K key, Transformer<? extends V, ? super K> producer, Runnable compl
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Map<K, V> getAll(final Iterable<? extends K> keys) {
+        return asyncCacheAccess.read(new Factory<Map<K, V>>() {
+            @Override
+            public Map<K, V> create() {
+                return persistentCache.getAll(keys);
+            }
+        });
+    }
+
     @Override
     public void putLater(final K key, final V value, final Runnable completion) {
         try {
@@ -73,6 +84,25 @@ public void run() {
         }
     }
 
+    @Override
+    public void putAllLater(final Map<? extends K, ? extends V> entries, final Runnable completion) {
+        try {
+            asyncCacheAccess.enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        persistentCache.putAll(entries);
+                    } finally {
+                        completion.run();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            completion.run();
+            throw e;
+        }
+    }
+
     @Override
     public void removeLater(final K key, final Runnable completion) {
         try {
@@ -23,6 +23,8 @@
 import org.gradle.internal.Factory;
 
 import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Applies cross-process file locking to a backing cache, to ensure that any in-memory and on file state is kept in sync while this process is read from or writing to the cache.
@@ -58,12 +60,31 @@ public V get(final K key, final Transformer<? extends V, ? super K> producer) {
         return target.get(key, producer, runnable);
     }
 
+    @Override
+    public Map<K, V> getAll(final Iterable<? extends K> keys) {
+        return cacheAccess.withFileLock(new Factory<Map<K, V>>() {
+            @Override
+            public Map<K, V> create() {
+                return target.getAll(keys);
+            }
+        });
+    }
+
     @Override
     public void put(K key, V value) {
         Runnable runnable = cacheAccess.acquireFileLock();
         target.putLater(key, value, runnable);
     }
 
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Runnable runnable = cacheAccess.acquireFileLock();
+        target.putAllLater(new LinkedHashMap<K, V>(entries), runnable);
+    }
+
     @Override
     public void remove(K key) {
         Runnable runnable = cacheAccess.acquireFileLock();
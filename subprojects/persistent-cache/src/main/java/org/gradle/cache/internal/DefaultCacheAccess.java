@@ -30,6 +30,7 @@
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.mapped.MappedLogPersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
@@ -270,9 +271,12 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
         IndexedCacheEntry<K, V> entry = Cast.uncheckedCast(caches.get(parameters.getCacheName()));
         try {
             if (entry == null) {
-                final File cacheFile = new File(baseDir, parameters.getCacheName() + ".bin");
+                boolean mappedLog = parameters.getStoreType() == PersistentIndexedCacheParameters.StoreType.MAPPED_LOG;
+                final File cacheFile = new File(baseDir, parameters.getCacheName() + (mappedLog ? ".mlog" : ".bin"));
                 LOG.debug("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<? extends PersistentIndexedCacheStore<K, V>> indexedCacheFactory = mappedLog
+                    ? () -> new MappedLogPersistentIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer())
+                    : () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
 
                 MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
                 CacheDecorator decorator = parameters.getCacheDecorator();
@@ -431,6 +435,7 @@ void assertCompatibleCacheParameters(PersistentIndexedCacheParameters<K, V> para
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleStoreType(faultMessages, parameters.getStoreType());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = SystemProperties.getInstance().getLineSeparator();
@@ -466,6 +471,13 @@ private void checkCompatibleValueSerializer(Collection<String> faultMessages, Se
             }
         }
 
+        private void checkCompatibleStoreType(Collection<String> faultMessages, PersistentIndexedCacheParameters.StoreType storeType) {
+            if (storeType != parameters.getStoreType()) {
+                faultMessages.add(
+                    String.format(" * Requested store type (%s) doesn't match current store type (%s)", storeType, parameters.getStoreType()));
+            }
+        }
+
         private void checkCompatibleCacheDecorator(Collection<String> faultMessages, CacheDecorator cacheDecorator) {
             if (!Objects.equal(cacheDecorator, parameters.getCacheDecorator())) {
                 faultMessages.add(
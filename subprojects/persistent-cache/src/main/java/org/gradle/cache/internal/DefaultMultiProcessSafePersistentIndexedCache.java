@@ -20,15 +20,18 @@
 import org.gradle.cache.FileIntegrityViolationException;
 import org.gradle.cache.FileLock;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
-import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.internal.Factory;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
     private final FileAccess fileAccess;
-    private final Factory<BTreePersistentIndexedCache<K, V>> factory;
-    private BTreePersistentIndexedCache<K, V> cache;
+    private final Factory<? extends PersistentIndexedCacheStore<K, V>> factory;
+    private PersistentIndexedCacheStore<K, V> cache;
 
-    public DefaultMultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends PersistentIndexedCacheStore<K, V>> factory, FileAccess fileAccess) {
         this.factory = factory;
         this.fileAccess = fileAccess;
     }
@@ -40,7 +43,7 @@ public String toString() {
 
     @Override
     public V get(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final PersistentIndexedCacheStore<K, V> cache = getCache();
         try {
             return fileAccess.readFile(new Factory<V>() {
                 @Override
@@ -53,6 +56,28 @@ public V create() {
         }
     }
 
+    @Override
+    public Map<K, V> getAll(final Iterable<? extends K> keys) {
+        final PersistentIndexedCacheStore<K, V> cache = getCache();
+        try {
+            return fileAccess.readFile(new Factory<Map<K, V>>() {
+                @Override
+                public Map<K, V> create() {
+                    Map<K, V> values = new LinkedHashMap<K, V>();
+                    for (K key : keys) {
+                        V value = cache.get(key);
+                        if (value != null) {
+                            values.put(key, value);
+                        }
+                    }
+                    return values;
+                }
+            });
+        } catch (FileIntegrityViolationException e) {
+            return Collections.emptyMap();
+        }
+    }
+
     @Override
     public V get(K key, Transformer<? extends V, ? super K> producer) {
         V value = get(key);
@@ -65,7 +90,7 @@ public V get(K key, Transformer<? extends V, ? super K> producer) {
 
     @Override
     public void put(final K key, final V value) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final PersistentIndexedCacheStore<K, V> cache = getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(new Runnable() {
@@ -76,9 +101,24 @@ public void run() {
         });
     }
 
+    @Override
+    public void putAll(final Map<? extends K, ? extends V> entries) {
+        final PersistentIndexedCacheStore<K, V> cache = getCache();
+        // Use writeFile because the cache can internally recover from datafile
+        // corruption, so we don't care at this level if it's corrupt
+        fileAccess.writeFile(new Runnable() {
+            @Override
+            public void run() {
+                for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+                    cache.put(entry.getKey(), entry.getValue());
+                }
+            }
+        });
+    }
+
     @Override
     public void remove(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final PersistentIndexedCacheStore<K, V> cache = getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(new Runnable() {
@@ -113,7 +153,7 @@ public void run() {
     public void beforeLockRelease(FileLock.State currentCacheState) {
     }
 
-    private BTreePersistentIndexedCache<K, V> getCache() {
+    private PersistentIndexedCacheStore<K, V> getCache() {
         if (cache == null) {
             // Use writeFile because the cache can internally recover from datafile
             // corruption, so we don't care at this level if it's corrupt
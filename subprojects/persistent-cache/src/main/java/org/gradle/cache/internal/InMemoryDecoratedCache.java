@@ -26,6 +26,10 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
@@ -110,12 +114,49 @@ public Object call() throws Exception {
         }
     }
 
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        Map<K, V> values = new LinkedHashMap<K, V>();
+        List<K> missingKeys = new ArrayList<K>();
+        for (K key : keys) {
+            Object value = inMemoryCache.getIfPresent(key);
+            if (value == null) {
+                missingKeys.add(key);
+            } else if (value != NULL) {
+                values.put(key, Cast.<V>uncheckedCast(value));
+            }
+        }
+        if (missingKeys.isEmpty()) {
+            return values;
+        }
+        Map<K, V> loadedValues = delegate.getAll(missingKeys);
+        for (K key : missingKeys) {
+            Object loadedValue = loadedValues.get(key);
+            if (loadedValue == null) {
+                loadedValue = NULL;
+            }
+            // Keep any value written by another thread while loading
+            Object currentValue = inMemoryCache.asMap().putIfAbsent(key, loadedValue);
+            Object value = currentValue == null ? loadedValue : currentValue;
+            if (value != NULL) {
+                values.put(key, Cast.<V>uncheckedCast(value));
+            }
+        }
+        return values;
+    }
+
     @Override
     public void putLater(K key, V value, Runnable completion) {
         inMemoryCache.put(key, value);
         delegate.putLater(key, value, completion);
     }
 
+    @Override
+    public void putAllLater(Map<? extends K, ? extends V> entries, Runnable completion) {
+        inMemoryCache.putAll(entries);
+        delegate.putAllLater(entries, completion);
+    }
+
     @Override
     public void removeLater(K key, Runnable completion) {
         inMemoryCache.put(key, NULL);
@@ -19,6 +19,7 @@
 import org.gradle.cache.UnitOfWorkParticipant;
 
 import javax.annotation.Nullable;
+import java.util.Map;
 
 /**
  * An indexed cache that may perform updates asynchronously.
@@ -35,11 +36,21 @@
      */
     V get(K key, Transformer<? extends V, ? super K> producer, Runnable completion);
 
+    /**
+     * Fetches the given entries, blocking until the results are available. Entries with no value are not included in the result.
+     */
+    Map<K, V> getAll(Iterable<? extends K> keys);
+
     /**
      * Submits an update to be applied later. This method may or may not block, and will invoke the given completion action when the operation is complete.
      */
     void putLater(K key, V value, Runnable completion);
 
+    /**
+     * Submits a batch of updates to be applied later as a single operation. This method may or may not block, and will invoke the given completion action when all updates are complete.
+     */
+    void putAllLater(Map<? extends K, ? extends V> entries, Runnable completion);
+
     /**
      * Submits a removal to be applied later. This method may or may not block, and will invoke the given completion action when the operation is complete.
      */
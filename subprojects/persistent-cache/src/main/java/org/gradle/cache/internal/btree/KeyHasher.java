@@ -26,7 +26,7 @@
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
-class KeyHasher<K> {
+public class KeyHasher<K> {
     private final Serializer<K> serializer;
     private final MessageDigestStream digestStream = new MessageDigestStream();
     private final KryoBackedEncoder encoder = new KryoBackedEncoder(digestStream);
@@ -35,7 +35,7 @@ public KeyHasher(Serializer<K> serializer) {
         this.serializer = serializer;
     }
 
-    long getHashCode(K key) throws Exception {
+    public long getHashCode(K key) throws Exception {
         serializer.write(encoder, key);
         encoder.flush();
         return digestStream.getChecksum();
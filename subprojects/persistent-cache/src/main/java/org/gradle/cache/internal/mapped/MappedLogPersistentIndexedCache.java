@@ -0,0 +1,399 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.cache.internal.mapped;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.PersistentIndexedCacheStore;
+import org.gradle.cache.internal.btree.KeyHasher;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A persistent indexed cache store which appends entries to a memory-mapped log file and keeps an in-memory hash index of the live entries.
+ *
+ * <p>Lookups read the value directly from the mapped file and writes append to it, so that neither needs a system call once the file is mapped.
+ * Like {@link org.gradle.cache.internal.btree.BTreePersistentIndexedCache}, entries are identified by the 64 bit hash of their serialized key.</p>
+ *
+ * <p>The file starts with a header holding the end of the log and its generation, followed by records of the form {@code (long keyHash, int length, byte[] value)}.
+ * A negative length marks the removal of an entry. When the store is closed and more than half of the log is taken up by replaced or removed
+ * entries, the live records are moved to the start of the log, which starts a new generation, and the file is truncated. The file is discarded if it is found
+ * to be corrupt, including when the process died while compacting it.</p>
+ *
+ * <p>The store is closed whenever the cache lock is released, so the index is written to a checkpoint file next to the log when the store is closed.
+ * When the store is opened again, only the records appended after the checkpoint are scanned, provided the log is still of the same generation.</p>
+ */
+public class MappedLogPersistentIndexedCache<K, V> implements PersistentIndexedCacheStore<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedLogPersistentIndexedCache.class);
+
+    private static final int MAGIC = 0x474c4f47;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 24;
+    private static final int END_OFFSET = 8;
+    private static final int COMPACTING_OFFSET = 12;
+    private static final int GENERATION_OFFSET = 16;
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int REMOVED = -1;
+    private static final int MIN_CAPACITY = 64 * 1024;
+    private static final int MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    private final File cacheFile;
+    private final File checkpointFile;
+    private final KeyHasher<K> keyHasher;
+    private final Serializer<V> serializer;
+    private final Map<Long, Integer> index = new HashMap<Long, Integer>();
+    private RandomAccessFile file;
+    private MappedByteBuffer buffer;
+    private int end;
+    private long liveBytes;
+    private long checkpointGeneration;
+    private int checkpointEnd;
+
+    public MappedLogPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.cacheFile = cacheFile;
+        this.checkpointFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".idx");
+        this.keyHasher = new KeyHasher<K>(keySerializer);
+        this.serializer = valueSerializer;
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + cacheFile.getName() + " (" + cacheFile + ")";
+    }
+
+    private void open() throws IOException {
+        LOGGER.debug("Opening {}", this);
+        file = new RandomAccessFile(cacheFile, "rw");
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            LOGGER.warn("{} is too large. Discarding.", this);
+            length = 0;
+            file.setLength(0);
+        }
+        map(Math.max(MIN_CAPACITY, (int) length));
+        if (length < HEADER_SIZE || !readHeader() || !readIndex(readCheckpoint())) {
+            if (length > 0) {
+                LOGGER.warn("{} is corrupt. Discarding.", this);
+            }
+            clear();
+        }
+    }
+
+    private void map(int capacity) throws IOException {
+        MappedByteBuffer previous = buffer;
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        if (previous != null) {
+            MappedBuffers.unmap(previous);
+        }
+    }
+
+    /**
+     * Returns false when the header of the log is corrupt.
+     */
+    private boolean readHeader() {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(COMPACTING_OFFSET) != 0) {
+            return false;
+        }
+        end = buffer.getInt(END_OFFSET);
+        return end >= HEADER_SIZE && end <= buffer.capacity();
+    }
+
+    /**
+     * Loads the index from the checkpoint file, when it matches the log. Returns the position in the log up to which the index has been loaded.
+     */
+    private int readCheckpoint() {
+        index.clear();
+        liveBytes = 0;
+        checkpointGeneration = 0;
+        checkpointEnd = 0;
+        if (!checkpointFile.isFile()) {
+            return HEADER_SIZE;
+        }
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)));
+            try {
+                long generation = input.readLong();
+                int checkpointedEnd = input.readInt();
+                if (generation != buffer.getLong(GENERATION_OFFSET) || checkpointedEnd < HEADER_SIZE || checkpointedEnd > end) {
+                    return HEADER_SIZE;
+                }
+                long checkpointedLiveBytes = input.readLong();
+                int count = input.readInt();
+                for (int i = 0; i < count; i++) {
+                    long keyHash = input.readLong();
+                    int pos = input.readInt();
+                    if (pos < HEADER_SIZE || pos + RECORD_HEADER_SIZE > checkpointedEnd) {
+                        throw new IOException("Invalid checkpoint entry.");
+                    }
+                    index.put(keyHash, pos);
+                }
+                if (input.readInt() != MAGIC) {
+                    throw new IOException("Incomplete checkpoint.");
+                }
+                liveBytes = checkpointedLiveBytes;
+                checkpointGeneration = generation;
+                checkpointEnd = checkpointedEnd;
+                return checkpointedEnd;
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not read checkpoint of {}. Scanning the log.", this, e);
+            index.clear();
+            liveBytes = 0;
+            return HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Updates the index by scanning the log from the given position. Returns false when the log is corrupt.
+     */
+    private boolean readIndex(int pos) {
+        while (pos < end) {
+            if (pos + RECORD_HEADER_SIZE > end) {
+                return false;
+            }
+            long keyHash = buffer.getLong(pos);
+            int length = buffer.getInt(pos + 8);
+            int recordSize = RECORD_HEADER_SIZE + Math.max(length, 0);
+            if (length < REMOVED || pos + recordSize > end) {
+                return false;
+            }
+            forget(keyHash);
+            if (length != REMOVED) {
+                index.put(keyHash, pos);
+                liveBytes += recordSize;
+            }
+            pos += recordSize;
+        }
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        try {
+            Integer pos = index.get(keyHasher.getHashCode(key));
+            if (pos == null) {
+                return null;
+            }
+            byte[] value = new byte[buffer.getInt(pos + 8)];
+            view(pos + RECORD_HEADER_SIZE).get(value);
+            return serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(value)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            long keyHash = keyHasher.getHashCode(key);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            KryoBackedEncoder encoder = new KryoBackedEncoder(bytes);
+            serializer.write(encoder, value);
+            encoder.flush();
+            byte[] serialized = bytes.toByteArray();
+            int pos = append(keyHash, serialized.length);
+            view(pos + RECORD_HEADER_SIZE).put(serialized);
+            commit(pos + RECORD_HEADER_SIZE + serialized.length);
+            forget(keyHash);
+            index.put(keyHash, pos);
+            liveBytes += RECORD_HEADER_SIZE + serialized.length;
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            long keyHash = keyHasher.getHashCode(key);
+            if (!index.containsKey(keyHash)) {
+                return;
+            }
+            int pos = append(keyHash, REMOVED);
+            commit(pos + RECORD_HEADER_SIZE);
+            forget(keyHash);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    private void forget(long keyHash) {
+        Integer previous = index.remove(keyHash);
+        if (previous != null) {
+            liveBytes -= RECORD_HEADER_SIZE + buffer.getInt(previous + 8);
+        }
+    }
+
+    private int append(long keyHash, int length) throws IOException {
+        int pos = end;
+        long newEnd = (long) pos + RECORD_HEADER_SIZE + Math.max(length, 0);
+        if (newEnd > buffer.capacity()) {
+            if (newEnd > Integer.MAX_VALUE) {
+                throw new IOException("Cache file size limit exceeded.");
+            }
+            map((int) Math.min(Integer.MAX_VALUE, Math.max(newEnd, 2L * buffer.capacity())));
+        }
+        buffer.putLong(pos, keyHash);
+        buffer.putInt(pos + 8, length);
+        return pos;
+    }
+
+    private ByteBuffer view(int pos) {
+        ByteBuffer view = buffer.duplicate();
+        // Cast to Buffer to remain binary compatible with Java 8
+        ((Buffer) view).position(pos);
+        return view;
+    }
+
+    private void commit(int newEnd) {
+        end = newEnd;
+        buffer.putInt(END_OFFSET, end);
+    }
+
+    private void clear() {
+        index.clear();
+        liveBytes = 0;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(COMPACTING_OFFSET, 0);
+        // Start from a generation that cannot match the checkpoint of a discarded log
+        buffer.putLong(GENERATION_OFFSET, new Random().nextLong());
+        commit(HEADER_SIZE);
+    }
+
+    /**
+     * Moves the live records to the start of the log. Records only ever move towards the start, so they can be copied in place.
+     */
+    private void compact() {
+        LOGGER.debug("Compacting {}", this);
+        buffer.putInt(COMPACTING_OFFSET, 1);
+        buffer.force();
+        int target = HEADER_SIZE;
+        int pos = HEADER_SIZE;
+        while (pos < end) {
+            long keyHash = buffer.getLong(pos);
+            int length = buffer.getInt(pos + 8);
+            int recordSize = RECORD_HEADER_SIZE + Math.max(length, 0);
+            Integer live = index.get(keyHash);
+            if (live != null && live == pos) {
+                if (target != pos) {
+                    byte[] record = new byte[recordSize];
+                    view(pos).get(record);
+                    view(target).put(record);
+                    index.put(keyHash, target);
+                }
+                target += recordSize;
+            }
+            pos += recordSize;
+        }
+        commit(target);
+        buffer.putLong(GENERATION_OFFSET, buffer.getLong(GENERATION_OFFSET) + 1);
+        buffer.force();
+        buffer.putInt(COMPACTING_OFFSET, 0);
+    }
+
+    /**
+     * Writes the index to the checkpoint file, unless the log has not changed since the checkpoint was written.
+     */
+    private void writeCheckpoint() {
+        long generation = buffer.getLong(GENERATION_OFFSET);
+        if (generation == checkpointGeneration && end == checkpointEnd) {
+            return;
+        }
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(checkpointFile)));
+            try {
+                output.writeLong(generation);
+                output.writeInt(end);
+                output.writeLong(liveBytes);
+                output.writeInt(index.size());
+                for (Map.Entry<Long, Integer> entry : index.entrySet()) {
+                    output.writeLong(entry.getKey());
+                    output.writeInt(entry.getValue());
+                }
+                output.writeInt(MAGIC);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            // The checkpoint is only an optimization, the log is scanned when it is missing or incomplete
+            LOGGER.debug("Could not write checkpoint of {}.", this, e);
+            checkpointFile.delete();
+        }
+    }
+
+    @Override
+    public void close() {
+        LOGGER.debug("Closing {}", this);
+        try {
+            boolean compacted = false;
+            if (end > MIN_COMPACTION_SIZE && liveBytes < (end - HEADER_SIZE) / 2) {
+                compact();
+                compacted = true;
+            }
+            buffer.force();
+            writeCheckpoint();
+            // The file cannot be truncated while it is mapped on some platforms
+            MappedBuffers.unmap(buffer);
+            buffer = null;
+            if (compacted) {
+                file.setLength(Math.max(MIN_CAPACITY, end));
+            }
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (buffer != null) {
+                MappedBuffers.unmap(buffer);
+            }
+            buffer = null;
+            file = null;
+            index.clear();
+        }
+    }
+}
@@ -111,6 +111,48 @@ class InMemoryDecoratedCacheTest extends ConcurrentSpec {
         0 * _
     }
 
+    def "fetches only entries not present in memory from backing cache"() {
+        given:
+        cache.putLater("key1", "value1", Stub(Runnable))
+        cache.removeLater("key2", Stub(Runnable))
+
+        when:
+        def result = cache.getAll(["key1", "key2", "key3", "key4"])
+
+        then:
+        result == [key1: "value1", key3: "value3"]
+
+        and:
+        1 * target.getAll(["key3", "key4"]) >> [key3: "value3"]
+        0 * _
+
+        when:
+        def cached = cache.getAll(["key3", "key4"])
+
+        then:
+        cached == [key3: "value3"]
+        0 * _
+    }
+
+    def "stores multiple entries in backing cache later"() {
+        def completion = Mock(Runnable)
+        def entries = [key1: "value1", key2: "value2"]
+
+        when:
+        cache.putAllLater(entries, completion)
+
+        then:
+        1 * target.putAllLater(entries, completion)
+        0 * _
+
+        when:
+        def result = cache.getAll(["key1", "key2"])
+
+        then:
+        result == entries
+        0 * _
+    }
+
     def "propagates failure to produce value and marks completed"() {
         def producer = Mock(Transformer)
         def completion = Mock(Runnable)
@@ -64,6 +64,38 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         0 * _._
     }
 
+    def "holds read lock once while getting multiple entries from cache"() {
+        given:
+        cacheOpened()
+
+        when:
+        def result = cache.getAll(["key1", "key2", "key3"])
+
+        then:
+        result == [key1: "value1", key3: "value3"]
+
+        and:
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        1 * backingCache.get("key1") >> "value1"
+        1 * backingCache.get("key2") >> null
+        1 * backingCache.get("key3") >> "value3"
+        0 * _._
+    }
+
+    def "holds write lock once while putting multiple entries into cache"() {
+        given:
+        cacheOpened()
+
+        when:
+        cache.putAll([key1: "value1", key2: "value2"])
+
+        then:
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * backingCache.put("key1", "value1")
+        1 * backingCache.put("key2", "value2")
+        0 * _._
+    }
+
     def "holds write lock while removing entry from cache"() {
         given:
         cacheOpened()
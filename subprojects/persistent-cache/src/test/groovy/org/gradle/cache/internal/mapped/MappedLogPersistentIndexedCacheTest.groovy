@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.cache.internal.mapped
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.internal.serialize.DefaultSerializer
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedLogPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    File cacheFile
+    MappedLogPersistentIndexedCache<String, String> cache
+
+    def setup() {
+        cacheFile = tmpDir.file("cache.mlog")
+        cache = createCache()
+    }
+
+    def cleanup() {
+        cache.close()
+    }
+
+    def "returns null for unknown entry"() {
+        expect:
+        cache.get("unknown") == null
+    }
+
+    def "can add, replace and remove entries"() {
+        when:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.put("a", "3")
+        cache.remove("b")
+        cache.remove("unknown")
+
+        then:
+        cache.get("a") == "3"
+        cache.get("b") == null
+    }
+
+    def "persists entries after reopen"() {
+        given:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.put("c", "3")
+        cache.remove("b")
+        cache.put("c", "4")
+
+        when:
+        reopen()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == null
+        cache.get("c") == "4"
+    }
+
+    def "grows the mapped file for large values"() {
+        def largeValue = "x" * (200 * 1024)
+
+        when:
+        (1..10).each { cache.put("key$it", largeValue + it) }
+        reopen()
+
+        then:
+        (1..10).every { cache.get("key$it") == largeValue + it }
+    }
+
+    def "compacts the log when most entries are stale"() {
+        def value = "x" * 1024
+
+        given:
+        (1..3000).each { cache.put("key${it % 10}", value + it) }
+        reopen()
+        def sizeAfterFirstClose = usedBytes()
+
+        when:
+        reopen()
+
+        then:
+        usedBytes() == sizeAfterFirstClose
+        sizeAfterFirstClose < 20 * 1024
+        (1..10).every { cache.get("key${(2990 + it) % 10}") == value + (2990 + it) }
+    }
+
+    def "truncates the file after compaction"() {
+        def value = "x" * 1024
+
+        given:
+        (1..3000).each { cache.put("key${it % 10}", value + it) }
+        def sizeBeforeClose = cacheFile.length()
+
+        when:
+        cache.close()
+
+        then:
+        cacheFile.length() < sizeBeforeClose
+        cacheFile.length() <= 64 * 1024
+
+        when:
+        cache = createCache()
+
+        then:
+        (1..10).every { cache.get("key${(2990 + it) % 10}") == value + (2990 + it) }
+    }
+
+    def "uses the checkpoint of the index and the records appended after it"() {
+        given:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        reopen()
+        def checkpoint = checkpointFile().bytes
+
+        when:
+        cache.put("a", "3")
+        cache.remove("b")
+        cache.close()
+        checkpointFile().bytes = checkpoint
+        cache = createCache()
+
+        then:
+        cache.get("a") == "3"
+        cache.get("b") == null
+    }
+
+    def "scans the log when the checkpoint is incomplete"() {
+        given:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.close()
+        def raf = new RandomAccessFile(checkpointFile(), "rw")
+        raf.setLength(raf.length() - 4)
+        raf.close()
+
+        when:
+        cache = createCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == "2"
+    }
+
+    def "discards corrupt file"() {
+        given:
+        cache.put("a", "1")
+        cache.close()
+        def raf = new RandomAccessFile(cacheFile, "rw")
+        raf.writeInt(0)
+        raf.close()
+
+        when:
+        cache = createCache()
+
+        then:
+        cache.get("a") == null
+
+        when:
+        cache.put("a", "2")
+        reopen()
+
+        then:
+        cache.get("a") == "2"
+    }
+
+    private void reopen() {
+        cache.close()
+        cache = createCache()
+    }
+
+    private File checkpointFile() {
+        return new File(cacheFile.parentFile, cacheFile.name + ".idx")
+    }
+
+    private int usedBytes() {
+        def raf = new RandomAccessFile(cacheFile, "r")
+        try {
+            raf.seek(8)
+            return raf.readInt()
+        } finally {
+            raf.close()
+        }
+    }
+
+    private MappedLogPersistentIndexedCache<String, String> createCache() {
+        return new MappedLogPersistentIndexedCache<String, String>(cacheFile, new DefaultSerializer<String>(), BaseSerializerFactory.STRING_SERIALIZER)
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.gradle.internal.verifier.HttpRedirectVerifierFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Simulates the HTTP traffic of a build, where the clients of several repositories and of the remote build cache each request a few resources
+ * from the same server, with and without sharing connections between the clients.
+ */
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class SharedConnectionPoolBenchmark {
+    private static final int CLIENTS = 5;
+    private static final int REQUESTS_PER_CLIENT = 20;
+    private static final byte[] CONTENT = new byte[4096];
+
+    @Param({"false", "true"})
+    boolean shared;
+
+    HttpServer server;
+    ExecutorService serverExecutor;
+    HttpConnectionPools connectionPools;
+    HttpSettings settings;
+    String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, CONTENT.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(CONTENT);
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(CLIENTS);
+        server.setExecutor(serverExecutor);
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+        connectionPools = new HttpConnectionPools(shared);
+        settings = DefaultHttpSettings.builder()
+            .withAuthenticationSettings(Collections.emptyList())
+            .withSslContextFactory(new DefaultSslContextFactory())
+            .withRedirectVerifier(HttpRedirectVerifierFactory.create(URI.create(baseUrl), true, () -> {}, uri -> {}))
+            .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        connectionPools.stop();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public void build(Blackhole blackhole) throws IOException {
+        for (int client = 0; client < CLIENTS; client++) {
+            try (HttpClientHelper helper = new HttpClientHelper(settings, connectionPools)) {
+                for (int request = 0; request < REQUESTS_PER_CLIENT; request++) {
+                    try (HttpClientResponse response = helper.performGet(baseUrl + "client-" + client + "/resource-" + request, false)) {
+                        blackhole.consume(IOUtils.toByteArray(response.getContent()));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -37,6 +37,7 @@
 import org.apache.http.client.utils.DateUtils;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.util.PublicSuffixMatcher;
 import org.apache.http.conn.util.PublicSuffixMatcherLoader;
@@ -73,7 +74,9 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
 import java.net.ProxySelector;
 import java.util.Collection;
 import java.util.Collections;
@@ -97,14 +100,21 @@ public class HttpClientConfigurer {
     }
 
     private final HttpSettings httpSettings;
+    private final HttpConnectionPools connectionPools;
 
     public HttpClientConfigurer(HttpSettings httpSettings) {
+        this(httpSettings, null);
+    }
+
+    public HttpClientConfigurer(HttpSettings httpSettings, @Nullable HttpConnectionPools connectionPools) {
         this.httpSettings = httpSettings;
+        this.connectionPools = connectionPools;
     }
 
     public void configure(HttpClientBuilder builder) {
         SystemDefaultCredentialsProvider credentialsProvider = new SystemDefaultCredentialsProvider();
         configureSslSocketConnectionFactory(builder, httpSettings.getSslContextFactory(), httpSettings.getHostnameVerifier());
+        configureSharedConnectionManager(builder, httpSettings.getSslContextFactory(), httpSettings.getHostnameVerifier());
         configureAuthSchemeRegistry(builder);
         configureCredentials(builder, credentialsProvider, httpSettings.getAuthenticationSettings());
         configureProxy(builder, credentialsProvider, httpSettings);
@@ -122,6 +132,20 @@ private void configureSslSocketConnectionFactory(HttpClientBuilder builder, SslC
         builder.setSSLSocketFactory(new SSLConnectionSocketFactory(sslContextFactory.createSslContext(), SSL_PROTOCOLS, null, hostnameVerifier));
     }
 
+    private void configureSharedConnectionManager(HttpClientBuilder builder, SslContextFactory sslContextFactory, HostnameVerifier hostnameVerifier) {
+        if (connectionPools == null) {
+            return;
+        }
+        SSLContext sslContext = sslContextFactory.createSslContext();
+        HttpClientConnectionManager connectionManager = connectionPools.getConnectionManager(sslContext, hostnameVerifier, httpSettings.getTimeoutSettings().getSocketTimeoutMs(),
+            () -> new SSLConnectionSocketFactory(sslContext, SSL_PROTOCOLS, null, hostnameVerifier));
+        if (connectionManager != null) {
+            // The socket factory, socket configuration and connection limits of the shared connection manager apply instead of the ones set on the builder
+            builder.setConnectionManager(connectionManager);
+            builder.setConnectionManagerShared(true);
+        }
+    }
+
     private void configureAuthSchemeRegistry(HttpClientBuilder builder) {
         builder.setDefaultAuthSchemeRegistry(RegistryBuilder.<AuthSchemeProvider>create()
             .register(AuthSchemes.BASIC, new BasicSchemeFactory())
@@ -53,6 +53,7 @@ public class HttpClientHelper implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientHelper.class);
     private CloseableHttpClient client;
     private final HttpSettings settings;
+    private final HttpConnectionPools connectionPools;
 
     /**
      * Maintains a queue of contexts which are shared between threads when authentication
@@ -64,7 +65,15 @@ public class HttpClientHelper implements Closeable {
     private final ConcurrentLinkedQueue<HttpContext> sharedContext;
 
     public HttpClientHelper(HttpSettings settings) {
+        this(settings, null);
+    }
+
+    /**
+     * Creates a helper whose connections are pooled with those of other clients, when enabled by the given pools.
+     */
+    public HttpClientHelper(HttpSettings settings, @Nullable HttpConnectionPools connectionPools) {
         this.settings = settings;
+        this.connectionPools = connectionPools;
         if (!settings.getAuthenticationSettings().isEmpty()) {
             sharedContext = new ConcurrentLinkedQueue<HttpContext>();
         } else {
@@ -192,7 +201,7 @@ private HttpClientResponse processResponse(HttpClientResponse response) {
     private synchronized CloseableHttpClient getClient() {
         if (client == null) {
             HttpClientBuilder builder = HttpClientBuilder.create();
-            new HttpClientConfigurer(settings).configure(builder);
+            new HttpClientConfigurer(settings, connectionPools).configure(builder);
             this.client = builder.build();
         }
         return client;
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Connection pools shared by all HTTP clients, so that the clients of different repositories and of the remote build cache reuse each other's
+ * connections, including across builds run by the same daemon.
+ *
+ * <p>Only clients with the same TLS configuration and socket timeout share a pool. Connections which carry user state, such as NTLM authenticated
+ * connections, are only reused for the same user, as with a pool per client. Sharing the TLS context also allows TLS sessions to be resumed for
+ * new connections to a host another client already connected to.</p>
+ */
+public class HttpConnectionPools implements Stoppable {
+    /**
+     * When set to {@code true}, HTTP connections are pooled across clients.
+     */
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.http.shared-connection-pool";
+
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 20;
+    private static final int MAX_CONNECTIONS = 200;
+    private static final int IDLE_CONNECTION_TIMEOUT_SECONDS = 60;
+    private static final int VALIDATE_AFTER_INACTIVITY_MS = 2000;
+
+    private final boolean enabled;
+    private final Map<PoolKey, PoolingHttpClientConnectionManager> pools = new ConcurrentHashMap<PoolKey, PoolingHttpClientConnectionManager>();
+
+    public HttpConnectionPools(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the shared connection manager to use for the given TLS configuration, or {@code null} when connections are not shared.
+     *
+     * <p>The returned connection manager must not be shut down by the client.</p>
+     */
+    @Nullable
+    HttpClientConnectionManager getConnectionManager(SSLContext sslContext, HostnameVerifier hostnameVerifier, int socketTimeoutMs, Supplier<SSLConnectionSocketFactory> sslSocketFactory) {
+        if (!enabled) {
+            return null;
+        }
+        PoolKey key = new PoolKey(sslContext, hostnameVerifier.getClass(), socketTimeoutMs);
+        PoolingHttpClientConnectionManager pool = pools.computeIfAbsent(key, k -> createPool(sslSocketFactory.get(), socketTimeoutMs));
+        // Connections of earlier builds may have been closed by the server in the meantime
+        pool.closeExpiredConnections();
+        pool.closeIdleConnections(IDLE_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        return pool;
+    }
+
+    private static PoolingHttpClientConnectionManager createPool(SSLConnectionSocketFactory sslSocketFactory, int socketTimeoutMs) {
+        PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .register("https", sslSocketFactory)
+            .build());
+        pool.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(socketTimeoutMs).setSoKeepAlive(true).build());
+        pool.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        pool.setMaxTotal(MAX_CONNECTIONS);
+        pool.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MS);
+        return pool;
+    }
+
+    @Override
+    public void stop() {
+        for (PoolingHttpClientConnectionManager pool : pools.values()) {
+            pool.shutdown();
+        }
+        pools.clear();
+    }
+
+    private static class PoolKey {
+        private final SSLContext sslContext;
+        private final Class<?> hostnameVerifierType;
+        private final int socketTimeoutMs;
+
+        PoolKey(SSLContext sslContext, Class<?> hostnameVerifierType, int socketTimeoutMs) {
+            this.sslContext = sslContext;
+            this.hostnameVerifierType = hostnameVerifierType;
+            this.socketTimeoutMs = socketTimeoutMs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            PoolKey poolKey = (PoolKey) o;
+            return sslContext == poolKey.sslContext
+                && socketTimeoutMs == poolKey.socketTimeoutMs
+                && hostnameVerifierType.equals(poolKey.hostnameVerifierType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(sslContext), hostnameVerifierType, socketTimeoutMs);
+        }
+    }
+}
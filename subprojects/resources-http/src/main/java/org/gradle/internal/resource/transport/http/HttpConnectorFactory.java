@@ -39,9 +39,11 @@ public class HttpConnectorFactory implements ResourceConnectorFactory {
     );
 
     private SslContextFactory sslContextFactory;
+    private final HttpConnectionPools connectionPools;
 
-    public HttpConnectorFactory(SslContextFactory sslContextFactory) {
+    public HttpConnectorFactory(SslContextFactory sslContextFactory, HttpConnectionPools connectionPools) {
         this.sslContextFactory = sslContextFactory;
+        this.connectionPools = connectionPools;
     }
 
     @Override
@@ -60,7 +62,8 @@ public ExternalResourceConnector createResourceConnector(ResourceConnectorSpecif
             .withAuthenticationSettings(connectionDetails.getAuthentications())
             .withSslContextFactory(sslContextFactory)
             .withRedirectVerifier(connectionDetails.getRedirectVerifier())
-            .build()
+            .build(),
+            connectionPools
         );
         HttpResourceAccessor accessor = new HttpResourceAccessor(http);
         HttpResourceLister lister = new HttpResourceLister(accessor);
@@ -43,8 +43,12 @@ SslContextFactory createSslContextFactory() {
             return new DefaultSslContextFactory();
         }
 
-        ResourceConnectorFactory createHttpConnectorFactory(SslContextFactory sslContextFactory) {
-            return new HttpConnectorFactory(sslContextFactory);
+        HttpConnectionPools createHttpConnectionPools() {
+            return new HttpConnectionPools(Boolean.getBoolean(HttpConnectionPools.ENABLED_PROPERTY));
+        }
+
+        ResourceConnectorFactory createHttpConnectorFactory(SslContextFactory sslContextFactory, HttpConnectionPools connectionPools) {
+            return new HttpConnectorFactory(sslContextFactory, connectionPools);
         }
     }
 
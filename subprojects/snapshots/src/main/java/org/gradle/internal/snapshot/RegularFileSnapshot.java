@@ -46,6 +46,10 @@ public HashCode getHash() {
         return contentHash;
     }
 
+    public FileMetadata getMetadata() {
+        return metadata;
+    }
+
     @Override
     public boolean isContentAndMetadataUpToDate(CompleteFileSystemLocationSnapshot other) {
         if (!(other instanceof RegularFileSnapshot)) {
@@ -17,6 +17,7 @@
 package org.gradle.internal.snapshot.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Interner;
 import com.google.common.collect.Lists;
@@ -34,36 +35,69 @@
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystemLoopException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 
 public class DirectorySnapshotter {
+    /**
+     * When set, directories are walked and their files are hashed in parallel on a shared fork-join pool.
+     */
+    public static final String PARALLEL_SNAPSHOTTING_PROPERTY = "org.gradle.internal.snapshot.parallel";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(DirectorySnapshotter.class);
 
     private final FileHasher hasher;
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
+    @Nullable
+    private final ForkJoinPool pool;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, String... defaultExcludes) {
+        this(hasher, stringInterner, null, defaultExcludes);
+    }
+
+    /**
+     * Creates a snapshotter which walks directories in parallel on the given pool, or on the calling thread when no pool is given.
+     */
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, @Nullable ForkJoinPool pool, String... defaultExcludes) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the pool to use for parallel snapshotting when it is enabled via {@value #PARALLEL_SNAPSHOTTING_PROPERTY}, otherwise {@code null}.
+     */
+    @Nullable
+    public static ForkJoinPool parallelSnapshottingPoolIfEnabled() {
+        return Boolean.getBoolean(PARALLEL_SNAPSHOTTING_PROPERTY) ? SharedPool.INSTANCE : null;
     }
 
     public CompleteFileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, final AtomicBoolean hasBeenFiltered) {
+        WalkContext context = new WalkContext(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes);
+        Path rootPath = Paths.get(absolutePath);
+        if (pool != null) {
+            return new ParallelWalker(context, pool).walk(rootPath);
+        }
         try {
-            Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes);
+            PathVisitor visitor = new PathVisitor(context);
             Files.walkFileTree(rootPath, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, visitor);
             return visitor.getResult();
         } catch (IOException e) {
@@ -71,6 +105,10 @@ public CompleteFileSystemLocationSnapshot snapshot(String absolutePath, @Nullabl
         }
     }
 
+    private static class SharedPool {
+        static final ForkJoinPool INSTANCE = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
     @VisibleForTesting
     static class DefaultExcludes {
         private final ImmutableSet<String> excludeFileNames;
@@ -144,22 +182,23 @@ public boolean test(String element) {
         }
     }
 
-    private static class PathVisitor implements java.nio.file.FileVisitor<Path> {
-        private final MerkleDirectorySnapshotBuilder builder;
+    /**
+     * The state shared by all the visits of a single walk. Safe to use from multiple threads.
+     */
+    private static class WalkContext {
         private final SnapshottingFilter.DirectoryWalkerPredicate predicate;
         private final AtomicBoolean hasBeenFiltered;
         private final FileHasher hasher;
         private final Interner<String> stringInterner;
         private final DefaultExcludes defaultExcludes;
 
-        public PathVisitor(
+        public WalkContext(
             @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
             AtomicBoolean hasBeenFiltered,
             FileHasher hasher,
             Interner<String> stringInterner,
             DefaultExcludes defaultExcludes
         ) {
-            this.builder = MerkleDirectorySnapshotBuilder.sortingRequired();
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
             this.hasher = hasher;
@@ -167,34 +206,13 @@ public PathVisitor(
             this.defaultExcludes = defaultExcludes;
         }
 
-        @Override
-        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-            String fileName = getFilename(dir);
-            String internedName = intern(fileName);
-            if (builder.isRoot() || shouldVisit(dir, internedName, true, attrs, builder.getRelativePath())) {
-                builder.preVisitDirectory(intern(dir.toString()), internedName);
-                return FileVisitResult.CONTINUE;
-            } else {
-                return FileVisitResult.SKIP_SUBTREE;
-            }
-        }
-
-        private String getFilename(Path dir) {
+        public String getFilename(Path dir) {
             return Optional.ofNullable(dir.getFileName())
                 .map(Object::toString)
                 .orElse("");
         }
 
-        @Override
-        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-            String internedName = intern(file.getFileName().toString());
-            if (shouldVisit(file, internedName, false, attrs, builder.getRelativePath())) {
-                builder.visitFile(snapshotFile(file, internedName, attrs));
-            }
-            return FileVisitResult.CONTINUE;
-        }
-
-        private CompleteFileSystemLocationSnapshot snapshotFile(Path absoluteFilePath, String internedName, BasicFileAttributes attrs) {
+        public CompleteFileSystemLocationSnapshot snapshotFile(Path absoluteFilePath, String internedName, BasicFileAttributes attrs) {
             String internedAbsoluteFilePath = intern(absoluteFilePath.toString());
             if (attrs.isRegularFile()) {
                 try {
@@ -208,41 +226,31 @@ private CompleteFileSystemLocationSnapshot snapshotFile(Path absoluteFilePath, S
             return new MissingFileSnapshot(internedAbsoluteFilePath, internedName);
         }
 
-        /** unlistable directories (and maybe some locked files) will stop here */
-        @Override
-        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+        /**
+         * Returns the snapshot of a file which could not be visited, or {@code null} when it should not be part of the result.
+         */
+        @Nullable
+        public CompleteFileSystemLocationSnapshot snapshotFailedFile(Path file, IOException exc, Iterable<String> relativePath) {
             // File loop exceptions are ignored. When we encounter a loop (via symbolic links), we continue
             // so we include all the other files apart from the loop.
             // This way, we include each file only once.
             if (isNotFileSystemLoopException(exc)) {
-                String internedName = intern(file.getFileName().toString());
+                String internedName = intern(getFilename(file));
                 boolean isDirectory = Files.isDirectory(file);
-                if (shouldVisit(file, internedName, isDirectory, null, builder.getRelativePath())) {
+                if (shouldVisit(file, internedName, isDirectory, null, relativePath)) {
                     LOGGER.info("Could not read file path '{}'.", file);
                     String internedAbsolutePath = intern(file.toString());
-                    builder.visitFile(new MissingFileSnapshot(internedAbsolutePath, internedName));
+                    return new MissingFileSnapshot(internedAbsolutePath, internedName);
                 }
             }
-            return FileVisitResult.CONTINUE;
-        }
-
-        @Override
-        public FileVisitResult postVisitDirectory(Path dir, @Nullable IOException exc) {
-            // File loop exceptions are ignored. When we encounter a loop (via symbolic links), we continue
-            // so we include all the other files apart from the loop.
-            // This way, we include each file only once.
-            if (isNotFileSystemLoopException(exc)) {
-                throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
-            }
-            builder.postVisitDirectory();
-            return FileVisitResult.CONTINUE;
+            return null;
         }
 
-        private boolean isNotFileSystemLoopException(@Nullable IOException e) {
+        public boolean isNotFileSystemLoopException(@Nullable IOException e) {
             return e != null && !(e instanceof FileSystemLoopException);
         }
 
-        private String intern(String string) {
+        public String intern(String string) {
             return stringInterner.intern(string);
         }
 
@@ -251,7 +259,7 @@ private String intern(String string) {
          * based on the directory/file excludes or the provided filtering predicate.
          * Excludes won't mark this walk as `filtered`, only if the `predicate` rejects any entry.
          **/
-        private boolean shouldVisit(Path path, String internedName, boolean isDirectory, @Nullable BasicFileAttributes attrs, Iterable<String> relativePath) {
+        public boolean shouldVisit(Path path, String internedName, boolean isDirectory, @Nullable BasicFileAttributes attrs, Iterable<String> relativePath) {
             if (isDirectory) {
                 if (defaultExcludes.excludeDir(internedName)) {
                     return false;
@@ -269,9 +277,261 @@ private boolean shouldVisit(Path path, String internedName, boolean isDirectory,
             }
             return allowed;
         }
+    }
+
+    private static class PathVisitor implements java.nio.file.FileVisitor<Path> {
+        private final MerkleDirectorySnapshotBuilder builder;
+        private final WalkContext context;
+
+        public PathVisitor(WalkContext context) {
+            this.builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+            this.context = context;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            String fileName = context.getFilename(dir);
+            String internedName = context.intern(fileName);
+            if (builder.isRoot() || context.shouldVisit(dir, internedName, true, attrs, builder.getRelativePath())) {
+                builder.preVisitDirectory(context.intern(dir.toString()), internedName);
+                return FileVisitResult.CONTINUE;
+            } else {
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            String internedName = context.intern(file.getFileName().toString());
+            if (context.shouldVisit(file, internedName, false, attrs, builder.getRelativePath())) {
+                builder.visitFile(context.snapshotFile(file, internedName, attrs));
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        /** unlistable directories (and maybe some locked files) will stop here */
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            CompleteFileSystemLocationSnapshot snapshot = context.snapshotFailedFile(file, exc, builder.getRelativePath());
+            if (snapshot != null) {
+                builder.visitFile(snapshot);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, @Nullable IOException exc) {
+            // File loop exceptions are ignored. When we encounter a loop (via symbolic links), we continue
+            // so we include all the other files apart from the loop.
+            // This way, we include each file only once.
+            if (context.isNotFileSystemLoopException(exc)) {
+                throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
+            }
+            builder.postVisitDirectory();
+            return FileVisitResult.CONTINUE;
+        }
 
         public CompleteFileSystemLocationSnapshot getResult() {
             return builder.getResult();
         }
     }
+
+    /**
+     * Walks a file tree in the same way as {@link Files#walkFileTree(Path, java.util.Set, int, java.nio.file.FileVisitor)} following links,
+     * but lists subdirectories and hashes files in separate fork-join tasks.
+     *
+     * <p>The snapshot of each directory is assembled by a {@link MerkleDirectorySnapshotBuilder} once all of its children have been snapshotted,
+     * so the result is the same as when walking the tree on a single thread.</p>
+     */
+    private static class ParallelWalker {
+        private static final int FILES_PER_TASK = 64;
+
+        private final WalkContext context;
+        private final ForkJoinPool pool;
+
+        public ParallelWalker(WalkContext context, ForkJoinPool pool) {
+            this.context = context;
+            this.pool = pool;
+        }
+
+        @Nullable
+        public CompleteFileSystemLocationSnapshot walk(Path rootPath) {
+            BasicFileAttributes attrs;
+            try {
+                attrs = readAttributes(rootPath);
+            } catch (IOException e) {
+                return context.snapshotFailedFile(rootPath, e, ImmutableList.of());
+            }
+            if (!attrs.isDirectory()) {
+                String internedName = context.intern(context.getFilename(rootPath));
+                return context.shouldVisit(rootPath, internedName, false, attrs, ImmutableList.of())
+                    ? context.snapshotFile(rootPath, internedName, attrs)
+                    : null;
+            }
+            return pool.invoke(new DirectoryTask(rootPath, new Ancestor(null, rootPath, attrs.fileKey()), null));
+        }
+
+        private static BasicFileAttributes readAttributes(Path path) throws IOException {
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // The target of a link might not exist, so use the attributes of the link itself
+                return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            }
+        }
+
+        private static boolean wouldLoop(Path dir, @Nullable Object key, Ancestor ancestors) {
+            for (Ancestor ancestor = ancestors; ancestor != null; ancestor = ancestor.parent) {
+                if (key != null && ancestor.key != null) {
+                    if (key.equals(ancestor.key)) {
+                        return true;
+                    }
+                } else {
+                    try {
+                        if (Files.isSameFile(dir, ancestor.path)) {
+                            return true;
+                        }
+                    } catch (IOException | SecurityException e) {
+                        // Ignore, same as the default file tree walker
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * The chain of directories leading to a directory, used to detect loops via symbolic links.
+         */
+        private static class Ancestor {
+            private final Ancestor parent;
+            private final Path path;
+            private final Object key;
+
+            Ancestor(@Nullable Ancestor parent, Path path, @Nullable Object key) {
+                this.parent = parent;
+                this.path = path;
+                this.key = key;
+            }
+        }
+
+        /**
+         * Snapshots a directory which passed the excludes, or returns {@code null} when it could not be read and should not be part of the result.
+         */
+        private class DirectoryTask extends RecursiveTask<CompleteFileSystemLocationSnapshot> {
+            private final Path dir;
+            private final Ancestor ancestors;
+            // The relative path of the directory, or null for the root
+            @Nullable
+            private final ImmutableList<String> relativePath;
+
+            DirectoryTask(Path dir, Ancestor ancestors, @Nullable ImmutableList<String> relativePath) {
+                this.dir = dir;
+                this.ancestors = ancestors;
+                this.relativePath = relativePath;
+            }
+
+            @Override
+            protected CompleteFileSystemLocationSnapshot compute() {
+                Iterable<String> parentPath = relativePath == null ? ImmutableList.of() : relativePath.subList(0, relativePath.size() - 1);
+                List<Path> entries = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                    try {
+                        for (Path entry : stream) {
+                            entries.add(entry);
+                        }
+                    } catch (DirectoryIteratorException e) {
+                        throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), e.getCause());
+                    }
+                } catch (IOException e) {
+                    return context.snapshotFailedFile(dir, e, parentPath);
+                }
+
+                ImmutableList<String> childPath = relativePath == null ? ImmutableList.of() : relativePath;
+
+                List<DirectoryTask> directoryTasks = new ArrayList<>();
+                List<FilesTask> fileTasks = new ArrayList<>();
+                List<CompleteFileSystemLocationSnapshot> children = new ArrayList<>();
+                List<FileEntry> files = new ArrayList<>();
+                for (Path entry : entries) {
+                    BasicFileAttributes entryAttrs;
+                    try {
+                        entryAttrs = readAttributes(entry);
+                    } catch (IOException e) {
+                        addIfNotNull(children, context.snapshotFailedFile(entry, e, childPath));
+                        continue;
+                    }
+                    if (!entryAttrs.isDirectory()) {
+                        String entryName = context.intern(entry.getFileName().toString());
+                        if (context.shouldVisit(entry, entryName, false, entryAttrs, childPath)) {
+                            files.add(new FileEntry(entry, entryName, entryAttrs));
+                        }
+                    } else if (wouldLoop(entry, entryAttrs.fileKey(), ancestors)) {
+                        addIfNotNull(children, context.snapshotFailedFile(entry, new FileSystemLoopException(entry.toString()), childPath));
+                    } else {
+                        // Check the excludes before forking, so excluded directories are never listed
+                        String entryName = context.intern(entry.getFileName().toString());
+                        if (!context.shouldVisit(entry, entryName, true, entryAttrs, childPath)) {
+                            continue;
+                        }
+                        ImmutableList<String> entryPath = ImmutableList.<String>builder().addAll(childPath).add(entryName).build();
+                        DirectoryTask task = new DirectoryTask(entry, new Ancestor(ancestors, entry, entryAttrs.fileKey()), entryPath);
+                        task.fork();
+                        directoryTasks.add(task);
+                    }
+                }
+                for (int start = 0; start < files.size(); start += FILES_PER_TASK) {
+                    FilesTask task = new FilesTask(files.subList(start, Math.min(files.size(), start + FILES_PER_TASK)));
+                    task.fork();
+                    fileTasks.add(task);
+                }
+                for (FilesTask task : fileTasks) {
+                    children.addAll(task.join());
+                }
+                for (DirectoryTask task : directoryTasks) {
+                    addIfNotNull(children, task.join());
+                }
+
+                MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+                builder.preVisitDirectory(context.intern(dir.toString()), context.intern(context.getFilename(dir)));
+                children.forEach(builder::visitFile);
+                builder.postVisitDirectory();
+                return builder.getResult();
+            }
+        }
+
+        private class FilesTask extends RecursiveTask<List<CompleteFileSystemLocationSnapshot>> {
+            private final List<FileEntry> files;
+
+            FilesTask(List<FileEntry> files) {
+                this.files = files;
+            }
+
+            @Override
+            protected List<CompleteFileSystemLocationSnapshot> compute() {
+                List<CompleteFileSystemLocationSnapshot> snapshots = new ArrayList<>(files.size());
+                for (FileEntry file : files) {
+                    snapshots.add(context.snapshotFile(file.path, file.internedName, file.attrs));
+                }
+                return snapshots;
+            }
+        }
+
+        private static void addIfNotNull(List<CompleteFileSystemLocationSnapshot> children, @Nullable CompleteFileSystemLocationSnapshot child) {
+            if (child != null) {
+                children.add(child);
+            }
+        }
+
+        private static class FileEntry {
+            private final Path path;
+            private final String internedName;
+            private final BasicFileAttributes attrs;
+
+            FileEntry(Path path, String internedName, BasicFileAttributes attrs) {
+                this.path = path;
+                this.internedName = internedName;
+                this.attrs = attrs;
+            }
+        }
+    }
 }
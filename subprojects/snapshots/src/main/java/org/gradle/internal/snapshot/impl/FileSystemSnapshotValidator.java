@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl;
+
+import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot;
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileMetadata;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Checks whether a snapshot taken by {@link DirectorySnapshotter} still matches the file system, without hashing any file contents.
+ *
+ * <p>Regular files are compared by length and modification time. For directories, the entries of the directory need to be the same
+ * as the children of the snapshot, ignoring default excludes. The check has the same precision as the file hash cache,
+ * i.e. changes which keep the length and the modification time of a file are not detected, and a file whose modification time
+ * cannot be used to detect a change, as decided by the {@link TimestampInspector}, is considered changed.</p>
+ */
+public class FileSystemSnapshotValidator {
+    private final Stat stat;
+    private final TimestampInspector timestampInspector;
+    private final DirectorySnapshotter.DefaultExcludes defaultExcludes;
+
+    public FileSystemSnapshotValidator(Stat stat, TimestampInspector timestampInspector, String... defaultExcludes) {
+        this.stat = stat;
+        this.timestampInspector = timestampInspector;
+        this.defaultExcludes = new DirectorySnapshotter.DefaultExcludes(defaultExcludes);
+    }
+
+    public boolean isUpToDate(CompleteFileSystemLocationSnapshot snapshot) {
+        FileMetadataSnapshot metadata = stat.stat(new File(snapshot.getAbsolutePath()));
+        if (metadata.getType() != snapshot.getType()) {
+            return false;
+        }
+        switch (snapshot.getType()) {
+            case RegularFile:
+                return FileMetadata.from(metadata).equals(((RegularFileSnapshot) snapshot).getMetadata())
+                    && timestampInspector.timestampCanBeUsedToDetectFileChange(snapshot.getAbsolutePath(), metadata.getLastModified());
+            case Missing:
+                return true;
+            case Directory:
+                return isUpToDate((CompleteDirectorySnapshot) snapshot);
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private boolean isUpToDate(CompleteDirectorySnapshot snapshot) {
+        Set<String> childNames = new HashSet<>();
+        for (CompleteFileSystemLocationSnapshot child : snapshot.getChildren()) {
+            childNames.add(child.getName());
+        }
+        int visitedChildren = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(Paths.get(snapshot.getAbsolutePath()))) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (childNames.contains(name)) {
+                    visitedChildren++;
+                } else if (!isExcluded(entry, name)) {
+                    return false;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+        if (visitedChildren != childNames.size()) {
+            return false;
+        }
+        for (CompleteFileSystemLocationSnapshot child : snapshot.getChildren()) {
+            if (!isUpToDate(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decides whether the modification time of a file can be used to detect a change to the file.
+     */
+    public interface TimestampInspector {
+        TimestampInspector TRUST_ALL = (file, timestamp) -> true;
+
+        boolean timestampCanBeUsedToDetectFileChange(String file, long timestamp);
+    }
+
+    private boolean isExcluded(Path entry, String name) {
+        return stat.stat(entry.toFile()).getType() == FileType.Directory
+            ? defaultExcludes.excludeDir(name)
+            : defaultExcludes.excludeFile(name);
+    }
+}
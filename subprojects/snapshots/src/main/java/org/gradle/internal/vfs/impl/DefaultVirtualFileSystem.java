@@ -32,8 +32,11 @@
 import org.gradle.internal.snapshot.SnapshottingFilter;
 import org.gradle.internal.snapshot.impl.DirectorySnapshotter;
 import org.gradle.internal.snapshot.impl.FileSystemSnapshotFilter;
+import org.gradle.internal.snapshot.impl.FileSystemSnapshotValidator;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -44,16 +47,66 @@
 
 public class DefaultVirtualFileSystem extends AbstractVirtualFileSystem {
     private final AtomicReference<SnapshotHierarchy> root;
+    // Snapshots restored from a previous daemon, which have not yet been checked against the file system
+    private final AtomicReference<SnapshotHierarchy> restored;
     private final Stat stat;
     private final DirectorySnapshotter directorySnapshotter;
+    private final FileSystemSnapshotValidator restoredSnapshotValidator;
     private final FileHasher hasher;
     private final StripedProducerGuard<String> producingSnapshots = new StripedProducerGuard<>();
 
     public DefaultVirtualFileSystem(FileHasher hasher, Interner<String> stringInterner, Stat stat, CaseSensitivity caseSensitivity, String... defaultExcludes) {
+        this(hasher, stringInterner, stat, caseSensitivity, FileSystemSnapshotValidator.TimestampInspector.TRUST_ALL, defaultExcludes);
+    }
+
+    /**
+     * Creates a virtual file system which uses the given timestamp inspector to decide whether a restored snapshot of a file can be trusted.
+     */
+    public DefaultVirtualFileSystem(FileHasher hasher, Interner<String> stringInterner, Stat stat, CaseSensitivity caseSensitivity, FileSystemSnapshotValidator.TimestampInspector timestampInspector, String... defaultExcludes) {
         this.stat = stat;
-        this.directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, defaultExcludes);
+        this.directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, DirectorySnapshotter.parallelSnapshottingPoolIfEnabled(), defaultExcludes);
+        this.restoredSnapshotValidator = new FileSystemSnapshotValidator(stat, timestampInspector, defaultExcludes);
         this.hasher = hasher;
         this.root = new AtomicReference<>(DefaultSnapshotHierarchy.empty(caseSensitivity));
+        this.restored = new AtomicReference<>(DefaultSnapshotHierarchy.empty(caseSensitivity));
+    }
+
+    /**
+     * Adds snapshots restored from a previous daemon.
+     *
+     * A restored snapshot is only used after it has been checked against the metadata of the file system, when its location is first queried.
+     */
+    public void restore(Iterable<CompleteFileSystemLocationSnapshot> snapshots) {
+        restored.updateAndGet(restored -> {
+            SnapshotHierarchy result = restored;
+            for (CompleteFileSystemLocationSnapshot snapshot : snapshots) {
+                result = result.store(snapshot.getAbsolutePath(), snapshot);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Returns the outermost complete snapshots known to this file system, including the restored snapshots which have not been checked yet.
+     */
+    public List<CompleteFileSystemLocationSnapshot> getRootSnapshots() {
+        List<CompleteFileSystemLocationSnapshot> rootSnapshots = new ArrayList<>();
+        collectRootSnapshots(root.get(), rootSnapshots);
+        collectRootSnapshots(restored.get(), rootSnapshots);
+        return rootSnapshots;
+    }
+
+    private static void collectRootSnapshots(SnapshotHierarchy hierarchy, List<CompleteFileSystemLocationSnapshot> rootSnapshots) {
+        // Snapshots are visited parent first, so the descendants of a root snapshot directly follow it
+        String[] currentRootPrefix = {null};
+        hierarchy.visitSnapshots(snapshot -> {
+            String absolutePath = snapshot.getAbsolutePath();
+            if (currentRootPrefix[0] != null && absolutePath.startsWith(currentRootPrefix[0])) {
+                return;
+            }
+            rootSnapshots.add(snapshot);
+            currentRootPrefix[0] = absolutePath.endsWith(File.separator) ? absolutePath : absolutePath + File.separatorChar;
+        });
     }
 
     @Override
@@ -84,19 +137,42 @@ public <T> Optional<T> readRegularFileContentHash(String location, Function<Hash
                 }
                 HashCode hash = producingSnapshots.guardByKey(location,
                     () -> root.get().getSnapshot(location)
-                        .orElseGet(() -> {
-                            HashCode hashCode = hasher.hash(file, stat.getLength(), stat.getLastModified());
-                            RegularFileSnapshot snapshot = new RegularFileSnapshot(location, file.getName(), hashCode, FileMetadata.from(stat));
-                            root.updateAndGet(root -> root.store(snapshot.getAbsolutePath(), snapshot));
-                            return snapshot;
-                        }).getHash());
+                        .orElseGet(() -> restoreIfUpToDate(location)
+                            .orElseGet(() -> {
+                                HashCode hashCode = hasher.hash(file, stat.getLength(), stat.getLastModified());
+                                RegularFileSnapshot snapshot = new RegularFileSnapshot(location, file.getName(), hashCode, FileMetadata.from(stat));
+                                store(snapshot);
+                                return snapshot;
+                            })).getHash());
                 return Optional.of(hash);
             })
             .map(visitor);
     }
 
     private void storeStatForMissingFile(String location) {
-        root.updateAndGet(root -> root.store(location, new MissingFileSnapshot(location)));
+        store(new MissingFileSnapshot(location));
+    }
+
+    private void store(CompleteFileSystemLocationSnapshot snapshot) {
+        String absolutePath = snapshot.getAbsolutePath();
+        root.updateAndGet(root -> root.store(absolutePath, snapshot));
+        restored.updateAndGet(restored -> restored.invalidate(absolutePath));
+    }
+
+    /**
+     * Moves the restored snapshot of the location to the hierarchy when it still matches the file system, and discards it otherwise.
+     */
+    private Optional<CompleteFileSystemLocationSnapshot> restoreIfUpToDate(String location) {
+        Optional<CompleteFileSystemLocationSnapshot> restoredSnapshot = restored.get().getSnapshot(location);
+        if (!restoredSnapshot.isPresent()) {
+            return restoredSnapshot;
+        }
+        if (restoredSnapshotValidator.isUpToDate(restoredSnapshot.get())) {
+            store(restoredSnapshot.get());
+            return restoredSnapshot;
+        }
+        restored.updateAndGet(restored -> restored.invalidate(location));
+        return Optional.empty();
     }
 
     @Override
@@ -109,12 +185,14 @@ public void read(String location, SnapshottingFilter filter, Consumer<CompleteFi
                 .map(snapshot -> FileSystemSnapshotFilter.filterSnapshot(filter.getAsSnapshotPredicate(), snapshot))
                 .orElseGet(() -> producingSnapshots.guardByKey(location,
                     () -> root.get().getSnapshot(location)
+                        .map(Optional::of)
+                        .orElseGet(() -> restoreIfUpToDate(location))
                         .map(snapshot -> FileSystemSnapshotFilter.filterSnapshot(filter.getAsSnapshotPredicate(), snapshot))
                         .orElseGet(() -> {
                             AtomicBoolean hasBeenFiltered = new AtomicBoolean(false);
                             CompleteFileSystemLocationSnapshot snapshot = directorySnapshotter.snapshot(location, filter.getAsDirectoryWalkerPredicate(), hasBeenFiltered);
                             if (!hasBeenFiltered.get()) {
-                                root.updateAndGet(root -> root.store(snapshot.getAbsolutePath(), snapshot));
+                                store(snapshot);
                             }
                             return snapshot;
                         })
@@ -133,15 +211,15 @@ private CompleteFileSystemLocationSnapshot snapshot(String location) {
             case RegularFile:
                 HashCode hash = hasher.hash(file, stat.getLength(), stat.getLastModified());
                 RegularFileSnapshot regularFileSnapshot = new RegularFileSnapshot(location, file.getName(), hash, FileMetadata.from(stat));
-                root.updateAndGet(root -> root.store(regularFileSnapshot.getAbsolutePath(), regularFileSnapshot));
+                store(regularFileSnapshot);
                 return regularFileSnapshot;
             case Missing:
                 MissingFileSnapshot missingFileSnapshot = new MissingFileSnapshot(location);
-                root.updateAndGet(root -> root.store(missingFileSnapshot.getAbsolutePath(), missingFileSnapshot));
+                store(missingFileSnapshot);
                 return missingFileSnapshot;
             case Directory:
                 CompleteFileSystemLocationSnapshot directorySnapshot = directorySnapshotter.snapshot(location, null, new AtomicBoolean(false));
-                root.updateAndGet(root -> root.store(directorySnapshot.getAbsolutePath(), directorySnapshot));
+                store(directorySnapshot);
                 return directorySnapshot;
             default:
                 throw new UnsupportedOperationException();
@@ -156,30 +234,36 @@ SnapshotHierarchy getRoot() {
     private CompleteFileSystemLocationSnapshot readLocation(String location) {
         return root.get().getSnapshot(location)
             .orElseGet(() -> producingSnapshots.guardByKey(location,
-                () -> root.get().getSnapshot(location).orElseGet(() -> snapshot(location)))
+                () -> root.get().getSnapshot(location)
+                .orElseGet(() -> restoreIfUpToDate(location)
+                    .orElseGet(() -> snapshot(location))))
             );
     }
 
     @Override
     public void update(Iterable<String> locations, Runnable action) {
-        root.updateAndGet(root -> {
-            SnapshotHierarchy result = root;
-            for (String location : locations) {
-                result = result.invalidate(location);
-            }
-            return result;
-        });
+        root.updateAndGet(root -> invalidate(root, locations));
+        restored.updateAndGet(restored -> invalidate(restored, locations));
         action.run();
     }
 
+    private static SnapshotHierarchy invalidate(SnapshotHierarchy hierarchy, Iterable<String> locations) {
+        SnapshotHierarchy result = hierarchy;
+        for (String location : locations) {
+            result = result.invalidate(location);
+        }
+        return result;
+    }
+
     @Override
     public void invalidateAll() {
         root.updateAndGet(SnapshotHierarchy::empty);
+        restored.updateAndGet(SnapshotHierarchy::empty);
     }
 
     @Override
     public void updateWithKnownSnapshot(CompleteFileSystemLocationSnapshot snapshot) {
-        root.updateAndGet(root -> root.store(snapshot.getAbsolutePath(), snapshot));
+        store(snapshot);
     }
 
     private static class StripedProducerGuard<T> {
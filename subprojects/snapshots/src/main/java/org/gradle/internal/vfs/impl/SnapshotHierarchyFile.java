@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl;
+
+import com.google.common.collect.Interner;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot;
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileMetadata;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Reads and writes the complete snapshots of a {@link SnapshotHierarchy} from and to a versioned file.
+ *
+ * <p>Only the roots of the stored snapshots are listed in the file, their descendants are written as children of the roots.
+ * Files with a different format version are ignored.</p>
+ */
+public class SnapshotHierarchyFile {
+    private static final int MAGIC = 0x47564653;
+    private static final int VERSION = 1;
+
+    private static final byte MISSING = 0;
+    private static final byte REGULAR_FILE = 1;
+    private static final byte DIRECTORY = 2;
+
+    private final File file;
+
+    public SnapshotHierarchyFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Writes the given snapshots, replacing the current contents of the file.
+     */
+    public void write(Iterable<CompleteFileSystemLocationSnapshot> snapshots) throws IOException {
+        File parentDir = file.getParentFile();
+        Files.createDirectories(parentDir.toPath());
+        File tempFile = File.createTempFile(file.getName(), ".tmp", parentDir);
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                for (CompleteFileSystemLocationSnapshot snapshot : snapshots) {
+                    output.writeBoolean(true);
+                    writeString(output, snapshot.getAbsolutePath());
+                    writeSnapshot(output, snapshot);
+                }
+                output.writeBoolean(false);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Reads the snapshots from the file, or returns an empty list when the file does not exist or has a different format version.
+     */
+    public List<CompleteFileSystemLocationSnapshot> read(Interner<String> stringInterner) throws IOException {
+        List<CompleteFileSystemLocationSnapshot> snapshots = new ArrayList<>();
+        if (!file.isFile()) {
+            return snapshots;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return snapshots;
+            }
+            while (input.readBoolean()) {
+                String absolutePath = stringInterner.intern(readString(input));
+                snapshots.add(readSnapshot(input, name -> absolutePath, stringInterner));
+            }
+            return snapshots;
+        }
+    }
+
+    public void delete() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private static void writeSnapshot(DataOutputStream output, CompleteFileSystemLocationSnapshot snapshot) throws IOException {
+        switch (snapshot.getType()) {
+            case Missing:
+                output.writeByte(MISSING);
+                writeString(output, snapshot.getName());
+                break;
+            case RegularFile:
+                FileMetadata metadata = ((RegularFileSnapshot) snapshot).getMetadata();
+                output.writeByte(REGULAR_FILE);
+                writeString(output, snapshot.getName());
+                writeHash(output, snapshot.getHash());
+                output.writeLong(metadata.getSize());
+                output.writeLong(metadata.getLastModified());
+                break;
+            case Directory:
+                List<CompleteFileSystemLocationSnapshot> children = ((CompleteDirectorySnapshot) snapshot).getChildren();
+                output.writeByte(DIRECTORY);
+                writeString(output, snapshot.getName());
+                writeHash(output, snapshot.getHash());
+                output.writeInt(children.size());
+                for (CompleteFileSystemLocationSnapshot child : children) {
+                    writeSnapshot(output, child);
+                }
+                break;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private static CompleteFileSystemLocationSnapshot readSnapshot(DataInputStream input, Function<String, String> absolutePathForName, Interner<String> stringInterner) throws IOException {
+        byte type = input.readByte();
+        String name = stringInterner.intern(readString(input));
+        String absolutePath = absolutePathForName.apply(name);
+        switch (type) {
+            case MISSING:
+                return new MissingFileSnapshot(absolutePath, name);
+            case REGULAR_FILE:
+                HashCode contentHash = readHash(input);
+                long size = input.readLong();
+                long lastModified = input.readLong();
+                return new RegularFileSnapshot(absolutePath, name, contentHash, new FileMetadata(size, lastModified));
+            case DIRECTORY:
+                HashCode hash = readHash(input);
+                int childCount = input.readInt();
+                List<CompleteFileSystemLocationSnapshot> children = new ArrayList<>(childCount);
+                String childPathPrefix = absolutePath.endsWith(File.separator) ? absolutePath : absolutePath + File.separatorChar;
+                for (int i = 0; i < childCount; i++) {
+                    children.add(readSnapshot(input, childName -> stringInterner.intern(childPathPrefix + childName), stringInterner));
+                }
+                return new CompleteDirectorySnapshot(absolutePath, name, children, hash);
+            default:
+                throw new IOException("Unexpected snapshot type " + type + " in " + absolutePath);
+        }
+    }
+
+    private static void writeHash(DataOutputStream output, HashCode hash) throws IOException {
+        byte[] bytes = hash.toByteArray();
+        output.writeByte(bytes.length);
+        output.write(bytes);
+    }
+
+    private static HashCode readHash(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readUnsignedByte()];
+        input.readFully(bytes);
+        return HashCode.fromBytes(bytes);
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
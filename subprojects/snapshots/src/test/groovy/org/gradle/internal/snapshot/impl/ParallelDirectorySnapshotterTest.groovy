@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl
+
+import org.apache.tools.ant.DirectoryScanner
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.tasks.util.PatternSet
+import org.gradle.internal.fingerprint.impl.PatternSetSnapshottingFilter
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicBoolean
+
+class ParallelDirectorySnapshotterTest extends DirectorySnapshotterTest {
+    def pool = new ForkJoinPool(4)
+
+    def setup() {
+        directorySnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), pool)
+    }
+
+    def cleanup() {
+        pool.shutdown()
+    }
+
+    def "produces the same snapshot as walking the tree on a single thread"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        10.times { dir ->
+            100.times { file ->
+                rootDir.file("dir${dir}/sub${file % 3}/file${file}.${file % 2 == 0 ? 'txt' : 'html'}").text = "content ${dir} ${file}"
+            }
+        }
+        rootDir.file("dir0/.git/config").createFile()
+        rootDir.file("dir1/file.txt~").createFile()
+        def defaultExcludes = DirectoryScanner.getDefaultExcludes()
+        def sequentialSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), defaultExcludes)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), pool, defaultExcludes)
+        def predicate = new PatternSetSnapshottingFilter(new PatternSet().include("**/*.txt").exclude("dir2/**"), TestFiles.fileSystem()).asDirectoryWalkerPredicate
+
+        when:
+        def sequentialFiltered = new AtomicBoolean(false)
+        def parallelFiltered = new AtomicBoolean(false)
+        def sequential = sequentialSnapshotter.snapshot(rootDir.absolutePath, predicate, sequentialFiltered)
+        def parallel = parallelSnapshotter.snapshot(rootDir.absolutePath, predicate, parallelFiltered)
+
+        then:
+        parallel.hash == sequential.hash
+        parallelFiltered.get()
+        sequentialFiltered.get()
+        parallelSnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(false)).hash == sequentialSnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(false)).hash
+    }
+
+    @Requires(TestPrecondition.SYMLINKS)
+    def "ignores loops via symbolic links"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        rootDir.file("a/b/file.txt").createFile()
+        rootDir.file("a/b/loop").createLink(rootDir.file("a"))
+        def sequentialSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner())
+
+        when:
+        def snapshot = directorySnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(false))
+
+        then:
+        snapshot.hash == sequentialSnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(false)).hash
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.internal.snapshot.impl.FileSystemSnapshotValidator
+import org.gradle.test.fixtures.file.TestFile
+
+import static org.gradle.internal.snapshot.CaseSensitivity.CASE_SENSITIVE
+
+class DefaultVirtualFileSystemPersistenceTest extends AbstractVirtualFileSystemTest {
+    def restoredVfs = new DefaultVirtualFileSystem(fileHasher, new StringInterner(), stat, CASE_SENSITIVE)
+    TestFile stateFileLocation
+    SnapshotHierarchyFile stateFile
+
+    def setup() {
+        stateFileLocation = temporaryFolder.file("state/snapshots.bin")
+        stateFile = new SnapshotHierarchyFile(stateFileLocation)
+    }
+
+    def "restores snapshots without hashing when the file system did not change"() {
+        TestFile someDir = createDirectory()
+        TestFile someFile = temporaryFolder.file("other/someFile.txt").createFile()
+        TestFile missingFile = temporaryFolder.file("other/missing.txt")
+
+        when:
+        allowFileSystemAccess(true)
+        def directorySnapshot = readFromVfs(someDir)
+        def fileSnapshot = readFromVfs(someFile)
+        readFromVfs(missingFile)
+        persistAndRestore()
+        fileHasher.allowHashing(false)
+
+        then:
+        restoredVfs.read(someDir.absolutePath, { it }).hash == directorySnapshot.hash
+        restoredVfs.read(someDir.file("sub/file.txt").absolutePath, { it }).hash == hashFile(someDir.file("sub/file.txt"))
+        restoredVfs.read(someFile.absolutePath, { it }).hash == fileSnapshot.hash
+        assertIsMissingFileSnapshot(restoredVfs.read(missingFile.absolutePath, { it }), missingFile)
+    }
+
+    def "discards restored snapshots which do not match the file system"() {
+        TestFile someDir = createDirectory()
+
+        when:
+        allowFileSystemAccess(true)
+        def directorySnapshot = readFromVfs(someDir)
+        persistAndRestore()
+        someDir.file("sub/new.txt").text = "new"
+
+        then:
+        def snapshot = restoredVfs.read(someDir.absolutePath, { it })
+        snapshot.hash != directorySnapshot.hash
+        assertIsDirectorySnapshot(snapshot, someDir)
+    }
+
+    def "discards restored snapshots of files whose timestamp cannot be used to detect a change"() {
+        TestFile someFile = temporaryFolder.file("other/someFile.txt").createFile()
+        restoredVfs = new DefaultVirtualFileSystem(fileHasher, new StringInterner(), stat, CASE_SENSITIVE, { file, timestamp ->
+            file != someFile.absolutePath
+        } as FileSystemSnapshotValidator.TimestampInspector)
+
+        when:
+        allowFileSystemAccess(true)
+        readFromVfs(someFile)
+        persistAndRestore()
+        fileHasher.allowHashing(false)
+        restoredVfs.read(someFile.absolutePath, { it })
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "discards restored snapshots which have been invalidated"() {
+        TestFile someDir = createDirectory()
+        TestFile someFile = someDir.file("sub/file.txt")
+
+        when:
+        allowFileSystemAccess(true)
+        readFromVfs(someDir)
+        persistAndRestore()
+        restoredVfs.update([someFile.absolutePath], {})
+        stat.allowStat(false)
+        fileHasher.allowHashing(false)
+        restoredVfs.read(someDir.absolutePath, { it })
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "ignores state file with a different format"() {
+        stateFileLocation.text = "not a state file"
+
+        expect:
+        stateFile.read(new StringInterner()).empty
+    }
+
+    private TestFile createDirectory() {
+        temporaryFolder.file("some/dir").create {
+            dir("sub") {
+                file("file.txt").text = "content"
+                file("other.txt").text = "other"
+            }
+            file("root.txt").text = "root"
+            dir("empty") {}
+        }
+    }
+
+    private void persistAndRestore() {
+        stateFile.write(vfs.rootSnapshots)
+        restoredVfs.restore(stateFile.read(new StringInterner()))
+    }
+}